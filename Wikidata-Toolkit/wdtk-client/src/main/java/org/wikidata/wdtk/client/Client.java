@@ -20,6 +20,7 @@ package org.wikidata.wdtk.client;
  * #L%
  */
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -33,7 +34,13 @@ import org.apache.log4j.PatternLayout;
 import org.apache.log4j.varia.LevelRangeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorBroker;
+import org.wikidata.wdtk.datamodel.interfaces.ParallelEntityDocumentProcessorBroker;
 import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.datamodel.json.jackson.ParallelJsonDocumentDecoder;
 import org.wikidata.wdtk.dumpfiles.DumpContentType;
 import org.wikidata.wdtk.dumpfiles.DumpProcessingController;
 import org.wikidata.wdtk.dumpfiles.EntityTimerProcessor;
@@ -134,6 +141,19 @@ public class Client {
 		this.clientConfiguration.setProjectName(dumpFile.getProjectName());
 		this.clientConfiguration.setDateStamp(dumpFile.getDateStamp());
 
+		ParallelEntityDocumentProcessorBroker broker = null;
+		if (this.clientConfiguration.isParallel()) {
+			broker = new ParallelEntityDocumentProcessorBroker();
+		}
+
+		// Documents are decoded by the dump processing controller unless
+		// several decoding threads are requested for a JSON dump:
+		EntityDocumentProcessorBroker decodedDocumentBroker = null;
+		if (this.clientConfiguration.getThreads() > 1
+				&& dumpFile.getDumpContentType() == DumpContentType.JSON) {
+			decodedDocumentBroker = new EntityDocumentProcessorBroker();
+		}
+
 		boolean hasReadyProcessor = false;
 		for (DumpProcessingAction props : this.clientConfiguration.getActions()) {
 
@@ -150,8 +170,11 @@ public class Client {
 			}
 			props.setDumpInformation(dumpFile.getProjectName(),
 					dumpFile.getDateStamp());
-			this.dumpProcessingController.registerEntityDocumentProcessor(
-					props, null, true);
+			if (broker != null) {
+				broker.registerEntityDocumentProcessor(props);
+			} else {
+				registerProcessor(props, decodedDocumentBroker);
+			}
 			hasReadyProcessor = true;
 		}
 
@@ -163,11 +186,26 @@ public class Client {
 		if (!this.clientConfiguration.isQuiet()) {
 			EntityTimerProcessor entityTimerProcessor = new EntityTimerProcessor(
 					0);
-			this.dumpProcessingController.registerEntityDocumentProcessor(
-					entityTimerProcessor, null, true);
+			registerProcessor(entityTimerProcessor, decodedDocumentBroker);
+		}
+		if (broker != null) {
+			registerProcessor(broker, decodedDocumentBroker);
 		}
+
 		openActions();
-		this.dumpProcessingController.processDump(dumpFile);
+		if (broker != null) {
+			broker.open();
+		}
+		if (decodedDocumentBroker != null) {
+			processJsonDumpInParallel(dumpFile, decodedDocumentBroker);
+		} else {
+			this.dumpProcessingController.processDump(dumpFile);
+		}
+		if (broker != null) {
+			broker.close();
+			logger.info("Parallel processing finished:\n"
+					+ broker.getStatusReport());
+		}
 		closeActions();
 
 		try {
@@ -178,6 +216,76 @@ public class Client {
 
 	}
 
+	/**
+	 * Registers a processor for the documents of the dump. If a broker is
+	 * given, the processor is registered there, and the documents are decoded
+	 * in parallel by {@link #processJsonDumpInParallel}. Otherwise the
+	 * processor is registered with the dump processing controller.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to register
+	 * @param decodedDocumentBroker
+	 *            broker for processors of documents decoded in parallel, or
+	 *            null if the controller decodes the dump
+	 */
+	private void registerProcessor(
+			EntityDocumentProcessor entityDocumentProcessor,
+			EntityDocumentProcessorBroker decodedDocumentBroker) {
+		if (decodedDocumentBroker != null) {
+			decodedDocumentBroker
+					.registerEntityDocumentProcessor(entityDocumentProcessor);
+		} else {
+			this.dumpProcessingController.registerEntityDocumentProcessor(
+					entityDocumentProcessor, null, true);
+		}
+	}
+
+	/**
+	 * Processes a JSON dump by decoding its lines on several threads. The
+	 * documents are passed on to the given processor in the order of the dump.
+	 * The configured filters are applied while parsing the JSON, so that
+	 * filtered data is never deserialized.
+	 *
+	 * @param dumpFile
+	 *            the JSON dump to process
+	 * @param entityDocumentProcessor
+	 *            the processor for the decoded documents
+	 * @throws RuntimeException
+	 *             if the dump could not be read completely
+	 */
+	private void processJsonDumpInParallel(MwDumpFile dumpFile,
+			EntityDocumentProcessor entityDocumentProcessor) {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(this.clientConfiguration.getFilterLanguages());
+		filter.setSiteLinkFilter(this.clientConfiguration.getFilterSiteKeys());
+		filter.setPropertyFilter(this.clientConfiguration
+				.getFilterProperties());
+		if (filter.getLanguageFilter() == null
+				&& filter.getSiteLinkFilter() == null
+				&& filter.getPropertyFilter() == null) {
+			filter = null;
+		}
+
+		int threads = this.clientConfiguration.getThreads();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				entityDocumentProcessor, Datamodel.SITE_WIKIDATA, threads,
+				ParallelJsonDocumentDecoder.DEFAULT_BATCH_SIZE, filter);
+		try {
+			dumpFile.prepareDumpFile();
+			try (BufferedReader reader = dumpFile.getDumpFileReader()) {
+				decoder.processDump(reader);
+			}
+		} catch (IOException e) {
+			logger.error("Could not read dump file " + dumpFile.toString()
+					+ ": " + e.getMessage());
+			throw new RuntimeException("Could not read dump file "
+					+ dumpFile.toString() + ": " + e.getMessage(), e);
+		}
+		logger.info("Decoded " + decoder.getDocumentCount()
+				+ " entity documents using " + threads + " threads ("
+				+ decoder.getErrorCount() + " errors).");
+	}
+
 	private void prepareSites() {
 		if (this.sites == null) {
 			try {
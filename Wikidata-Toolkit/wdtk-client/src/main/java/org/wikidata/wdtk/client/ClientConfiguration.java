@@ -104,6 +104,10 @@ public class ClientConfiguration {
 	 * Short command-line alternative to {@link #OPTION_LOCAL_DUMPFILE}.
 	 */
 	public static final String CMD_OPTION_LOCAL_DUMPFILE = "i";
+	/**
+	 * Short command-line alternative to {@link #OPTION_THREADS}.
+	 */
+	public static final String CMD_OPTION_THREADS = "t";
 
 	/**
 	 * Name of the long command line option for printing the help text.
@@ -176,11 +180,36 @@ public class ClientConfiguration {
 	 * specifying the tasks for RDF serialization.
 	 */
 	public static final String OPTION_OUTPUT_RDF_TYPE = "rdftasks";
+	/**
+	 * Name of the long command line option and configuration file field for
+	 * specifying the number of shards for parallel RDF serialization.
+	 */
+	public static final String OPTION_OUTPUT_RDF_SHARDS = RdfSerializationAction.OPTION_RDF_SHARDS;
+	/**
+	 * Name of the long command line option and configuration file field for
+	 * merging the part files of a sharded RDF serialization.
+	 */
+	public static final String OPTION_OUTPUT_RDF_MERGE = RdfSerializationAction.OPTION_RDF_MERGE;
+	/**
+	 * Name of the long command line option and configuration file field for
+	 * specifying the format of the RDF serialization.
+	 */
+	public static final String OPTION_OUTPUT_RDF_FORMAT = RdfSerializationAction.OPTION_RDF_FORMAT;
 	/**
 	 * Name of the long command line option and configuration file field for
 	 * defining the path to a local dump file.
 	 */
 	public static final String OPTION_LOCAL_DUMPFILE = "input";
+	/**
+	 * Name of the long command line option and configuration file field for
+	 * running all actions in parallel, each on its own thread.
+	 */
+	public static final String OPTION_PARALLEL = "parallel";
+	/**
+	 * Name of the long command line option and configuration file field for
+	 * setting the number of threads used to decode JSON dumps.
+	 */
+	public static final String OPTION_THREADS = "threads";
 
 	static final Map<String, Class<? extends DumpProcessingAction>> KNOWN_ACTIONS = new HashMap<>();
 	static {
@@ -230,6 +259,16 @@ public class ClientConfiguration {
 	 */
 	boolean quiet = false;
 
+	/**
+	 * True if actions should run in parallel threads.
+	 */
+	boolean parallel = false;
+
+	/**
+	 * Number of threads used to decode JSON dumps.
+	 */
+	int threads = 1;
+
 	/**
 	 * Set language codes to use as a filter, or null if no filter should be
 	 * used.
@@ -325,6 +364,28 @@ public class ClientConfiguration {
 		return this.quiet;
 	}
 
+	/**
+	 * Returns true if the configured actions should process the dump in
+	 * parallel, each on its own thread, rather than one after the other on the
+	 * thread that reads the dump.
+	 *
+	 * @return true if actions should run in parallel
+	 */
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	/**
+	 * Returns the number of threads that should be used to decode the entity
+	 * documents of JSON dumps. The value 1 means that documents are decoded by
+	 * the thread that reads the dump.
+	 *
+	 * @return number of decoding threads
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
 	/**
 	 * Returns the output destination where a report file should be created. If
 	 * the client should not create such a file the function will return null.
@@ -553,6 +614,14 @@ public class ClientConfiguration {
 			this.quiet = true;
 		}
 
+		if (cmd.hasOption(OPTION_PARALLEL)) {
+			this.parallel = true;
+		}
+
+		if (cmd.hasOption(CMD_OPTION_THREADS)) {
+			setThreads(cmd.getOptionValue(CMD_OPTION_THREADS));
+		}
+
 		if (cmd.hasOption(CMD_OPTION_CREATE_REPORT)) {
 			this.reportFilename = cmd.getOptionValue(CMD_OPTION_CREATE_REPORT);
 		}
@@ -594,6 +663,14 @@ public class ClientConfiguration {
 					this.quiet = true;
 				}
 				break;
+			case OPTION_PARALLEL:
+				if (section.get(key).toLowerCase().equals("true")) {
+					this.parallel = true;
+				}
+				break;
+			case OPTION_THREADS:
+				setThreads(section.get(key));
+				break;
 			case OPTION_CREATE_REPORT:
 				this.reportFilename = section.get(key);
 				break;
@@ -722,6 +799,26 @@ public class ClientConfiguration {
 
 	}
 
+	/**
+	 * Sets the number of decoding threads based on the given string.
+	 *
+	 * @param threads
+	 *            string representation of a positive number
+	 */
+	private void setThreads(String threads) {
+		try {
+			int value = Integer.parseInt(threads);
+			if (value > 0) {
+				this.threads = value;
+				return;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		logger.warn("Invalid number of threads \"" + threads
+				+ "\". Using one thread.");
+	}
+
 	/**
 	 * Sets the set of language filters based on the given string.
 	 *
@@ -810,6 +907,20 @@ public class ClientConfiguration {
 						"specify which data to include in RDF dump (use with action \"rdf\"); run with options \"-a rdf -n\" for help")
 				.withLongOpt(OPTION_OUTPUT_RDF_TYPE).create();
 
+		Option rdfShards = OptionBuilder
+				.hasArg()
+				.withArgName("number")
+				.withDescription(
+						"split the RDF dump into the given number of part files that are written in parallel (use with action \"rdf\")")
+				.withLongOpt(OPTION_OUTPUT_RDF_SHARDS).create();
+
+		Option rdfFormat = OptionBuilder
+				.hasArg()
+				.withArgName("format")
+				.withDescription(
+						"write the RDF dump as N-Triples (\"nt\", default) or in compact binary form (\"binary\") (use with action \"rdf\")")
+				.withLongOpt(OPTION_OUTPUT_RDF_FORMAT).create();
+
 		Option filterLanguages = OptionBuilder
 				.hasArgs()
 				.withArgName("languages")
@@ -874,8 +985,22 @@ public class ClientConfiguration {
 		options.addOption(report);
 		options.addOption(localDump);
 		options.addOption(rdfdump);
+		options.addOption(rdfShards);
+		options.addOption(rdfFormat);
+		options.addOption(null, OPTION_OUTPUT_RDF_MERGE, false,
+				"merge the part files of a sharded RDF dump into one file");
 		options.addOption(CMD_OPTION_OFFLINE_MODE, OPTION_OFFLINE_MODE, false,
 				"execute all operations in offline mode, especially do not download new dumps");
+		Option threads = OptionBuilder
+				.hasArg()
+				.withArgName("number")
+				.withDescription(
+						"set the number of threads used to decode JSON dumps")
+				.withLongOpt(OPTION_THREADS).create(CMD_OPTION_THREADS);
+
+		options.addOption(threads);
+		options.addOption(null, OPTION_PARALLEL, false,
+				"run all actions in parallel, each on its own thread");
 		options.addOption(CMD_OPTION_HELP, OPTION_HELP, false,
 				"print this message");
 
@@ -20,22 +20,37 @@ package org.wikidata.wdtk.client;
  * #L%
  */
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.lang3.text.WordUtils;
+import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.rdf.BinaryRdfReader;
+import org.wikidata.wdtk.rdf.BinaryRdfWriter;
+import org.wikidata.wdtk.rdf.DigestSet;
 import org.wikidata.wdtk.rdf.PropertyRegister;
 import org.wikidata.wdtk.rdf.RdfSerializer;
+import org.wikidata.wdtk.rdf.ShardedRdfSerializer;
 
 /**
  * This class represents an action of generating an RDF dump from data. It
@@ -63,6 +78,28 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 	 */
 	public static final String OPTION_RDF_TASKS = "rdftasks";
 
+	/**
+	 * Name of the option that defines the number of shards for parallel RDF
+	 * serialization. With more than one shard, the export is done by several
+	 * threads, each writing its own part file named like
+	 * "{PROJECT}-{DATE}-part-0007.nt".
+	 */
+	public static final String OPTION_RDF_SHARDS = "rdfshards";
+
+	/**
+	 * Name of the option to merge the part files of a sharded export into a
+	 * single output file after serialization. This is achieved by setting the
+	 * value to the string "true". Other values are ignored.
+	 */
+	public static final String OPTION_RDF_MERGE = "rdfmerge";
+
+	/**
+	 * Name of the option that defines the RDF output format. Supported values
+	 * are "nt" for N-Triples (the default) and "binary" for the compact
+	 * dictionary-encoded format of {@link BinaryRdfWriter}.
+	 */
+	public static final String OPTION_RDF_FORMAT = "rdfformat";
+
 	public static final Map<String, Integer> KNOWN_TASKS = new HashMap<>();
 	static {
 		KNOWN_TASKS.put("items", RdfSerializer.TASK_ITEMS);
@@ -137,6 +174,28 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 	 */
 	RdfSerializer serializer;
 
+	/**
+	 * Internal serializer object that will write the RDF output in sharded
+	 * mode, or null if only one shard is used.
+	 */
+	ShardedRdfSerializer shardedSerializer;
+
+	/**
+	 * Number of part files that the export is split into.
+	 */
+	int shards = 1;
+
+	/**
+	 * True if the part files of a sharded export should be merged into one
+	 * file.
+	 */
+	boolean mergeShards = false;
+
+	/**
+	 * The RDF format that the output is written in.
+	 */
+	RDFFormat rdfFormat = RDFFormat.NTRIPLES;
+
 	/**
 	 * A string to identify the overall task to be executed. This is used to
 	 * create the default output file name.
@@ -162,6 +221,15 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 		case OPTION_RDF_TASKS:
 			setTasks(value);
 			return true;
+		case OPTION_RDF_SHARDS:
+			setShards(value);
+			return true;
+		case OPTION_RDF_MERGE:
+			this.mergeShards = (value == null) || "true".equals(value);
+			return true;
+		case OPTION_RDF_FORMAT:
+			setRdfFormat(value);
+			return true;
 		default:
 			return false;
 		}
@@ -185,6 +253,14 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 	@Override
 	public void open() {
 		try {
+			if (this.shards > 1 && !this.useStdOut) {
+				this.shardedSerializer = createShardedRdfSerializer();
+				this.shardedSerializer.open();
+				return;
+			} else if (this.shards > 1) {
+				logger.warn("Sharded RDF serialization is not possible "
+						+ "when writing to stdout. Using a single thread.");
+			}
 			this.serializer = createRdfSerializer();
 			this.serializer.open();
 		} catch (IOException e) {
@@ -195,18 +271,39 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 
 	@Override
 	public void processItemDocument(ItemDocument itemDocument) {
-		this.serializer.processItemDocument(itemDocument);
+		if (this.shardedSerializer != null) {
+			this.shardedSerializer.processItemDocument(itemDocument);
+		} else {
+			this.serializer.processItemDocument(itemDocument);
+		}
 	}
 
 	@Override
 	public void processPropertyDocument(PropertyDocument propertyDocument) {
-		this.serializer.processPropertyDocument(propertyDocument);
+		if (this.shardedSerializer != null) {
+			this.shardedSerializer.processPropertyDocument(propertyDocument);
+		} else {
+			this.serializer.processPropertyDocument(propertyDocument);
+		}
 	}
 
 	@Override
 	public void close() {
-		this.serializer.close();
-		super.close();
+		if (this.shardedSerializer != null) {
+			this.shardedSerializer.close();
+			super.close(); // waits for asynchronous compression to finish
+			if (this.mergeShards) {
+				try {
+					mergePartFiles();
+				} catch (IOException e) {
+					throw new RuntimeException(e.getMessage(), e);
+				}
+				super.close(); // waits for compression of the merged file
+			}
+		} else {
+			this.serializer.close();
+			super.close();
+		}
 	}
 
 	/**
@@ -218,20 +315,11 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 	 *             if there were problems opening the output files
 	 */
 	protected RdfSerializer createRdfSerializer() throws IOException {
-
-		String outputDestinationFinal;
-		if (this.outputDestination != null) {
-			outputDestinationFinal = this.outputDestination;
-		} else {
-			outputDestinationFinal = "{PROJECT}" + this.taskName + "{DATE}"
-					+ ".nt";
-		}
-
 		OutputStream exportOutputStream = getOutputStream(this.useStdOut,
-				insertDumpInformation(outputDestinationFinal),
+				insertDumpInformation(getOutputDestinationPattern()),
 				this.compressionType);
 
-		RdfSerializer serializer = new RdfSerializer(RDFFormat.NTRIPLES,
+		RdfSerializer serializer = new RdfSerializer(this.rdfFormat,
 				exportOutputStream, this.sites,
 				PropertyRegister.getWikidataPropertyRegister());
 		serializer.setTasks(this.tasks);
@@ -239,6 +327,218 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 		return serializer;
 	}
 
+	/**
+	 * Creates a new sharded RDF serializer based on the current configuration
+	 * of this object, with one part file for each shard.
+	 *
+	 * @return the newly created RDF serializer
+	 * @throws IOException
+	 *             if there were problems opening the output files
+	 */
+	protected ShardedRdfSerializer createShardedRdfSerializer()
+			throws IOException {
+		List<OutputStream> outputStreams = new ArrayList<>(this.shards);
+		for (int i = 0; i < this.shards; i++) {
+			outputStreams.add(getOutputStream(false,
+					insertDumpInformation(getPartFileName(
+							getOutputDestinationPattern(), i)),
+					this.compressionType));
+		}
+
+		ShardedRdfSerializer serializer = new ShardedRdfSerializer(
+				this.rdfFormat, outputStreams, this.sites,
+				PropertyRegister.getWikidataPropertyRegister(), new DigestSet());
+		serializer.setTasks(this.tasks);
+
+		return serializer;
+	}
+
+	/**
+	 * Returns the file name pattern of the output, which may contain
+	 * placeholders for dump information.
+	 *
+	 * @return output file name pattern
+	 */
+	String getOutputDestinationPattern() {
+		if (this.outputDestination != null) {
+			return this.outputDestination;
+		} else {
+			return "{PROJECT}" + this.taskName + "{DATE}" + "."
+					+ this.rdfFormat.getDefaultFileExtension();
+		}
+	}
+
+	/**
+	 * Returns the name of the part file with the given number. The part number
+	 * is inserted before the file extension, if any.
+	 *
+	 * @param fileName
+	 *            the name of the complete output file
+	 * @param part
+	 *            the number of the part
+	 * @return name of the part file
+	 */
+	static String getPartFileName(String fileName, int part) {
+		String partString = String.format("-part-%04d", part);
+		int extensionStart = fileName.lastIndexOf('.');
+		if (extensionStart <= fileName.lastIndexOf('/')
+				|| extensionStart <= fileName.lastIndexOf('\\')) {
+			return fileName + partString;
+		}
+		return fileName.substring(0, extensionStart) + partString
+				+ fileName.substring(extensionStart);
+	}
+
+	/**
+	 * Merges the part files of a sharded export into a single output file and
+	 * deletes the parts. Textual formats are concatenated, which works for all
+	 * supported compression formats, since they allow several compressed
+	 * streams to be concatenated. Binary RDF parts are complete files with
+	 * their own header and dictionary, so they are re-encoded with a single
+	 * writer instead.
+	 *
+	 * @throws IOException
+	 *             if the files could not be merged
+	 */
+	void mergePartFiles() throws IOException {
+		if (this.rdfFormat == BinaryRdfWriter.BINARY_RDF) {
+			mergeBinaryPartFiles();
+			return;
+		}
+
+		String extension = this.compressionType.isEmpty() ? "" : "."
+				+ this.compressionType;
+		String pattern = getOutputDestinationPattern();
+		Path outputFile = Paths.get(insertDumpInformation(pattern)
+				+ extension);
+		try (OutputStream out = Files.newOutputStream(outputFile)) {
+			for (int i = 0; i < this.shards; i++) {
+				Path partFile = Paths.get(insertDumpInformation(getPartFileName(
+						pattern, i)) + extension);
+				Files.copy(partFile, out);
+				Files.delete(partFile);
+			}
+		}
+		logger.info("Merged " + this.shards + " part files into "
+				+ outputFile);
+	}
+
+	/**
+	 * Reads the triples of all binary RDF part files of a sharded export and
+	 * writes them to a single binary RDF output file. The parts are deleted
+	 * afterwards. The merged file is compressed asynchronously, so
+	 * {@link #close()} of the superclass must be called to wait for it.
+	 *
+	 * @throws IOException
+	 *             if the files could not be merged
+	 */
+	void mergeBinaryPartFiles() throws IOException {
+		String extension = this.compressionType.isEmpty() ? "" : "."
+				+ this.compressionType;
+		String pattern = getOutputDestinationPattern();
+		List<Path> partFiles = new ArrayList<>(this.shards);
+		for (int i = 0; i < this.shards; i++) {
+			partFiles.add(Paths.get(insertDumpInformation(getPartFileName(
+					pattern, i)) + extension));
+		}
+
+		try (OutputStream out = getOutputStream(false,
+				insertDumpInformation(pattern), this.compressionType)) {
+			final BinaryRdfWriter writer = new BinaryRdfWriter(out);
+			RDFHandler handler = new RDFHandlerBase() {
+				@Override
+				public void handleNamespace(String prefix, String uri)
+						throws RDFHandlerException {
+					writer.writeNamespaceDeclaration(prefix, uri);
+				}
+
+				@Override
+				public void handleStatement(Statement st)
+						throws RDFHandlerException {
+					writer.writeTripleValueObject(st.getSubject(),
+							st.getPredicate(), st.getObject());
+				}
+			};
+
+			writer.start();
+			for (Path partFile : partFiles) {
+				try (InputStream in = getPartInputStream(partFile)) {
+					new BinaryRdfReader(in).parse(handler);
+				}
+			}
+			writer.finish();
+		} catch (RDFHandlerException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		for (Path partFile : partFiles) {
+			Files.delete(partFile);
+		}
+		logger.info("Merged " + this.shards + " binary RDF part files into "
+				+ insertDumpInformation(pattern) + extension);
+	}
+
+	/**
+	 * Opens the given part file for reading, decompressing it according to
+	 * the current compression type.
+	 *
+	 * @param partFile
+	 *            the part file to read
+	 * @return stream of the uncompressed data
+	 * @throws IOException
+	 *             if the file could not be opened
+	 */
+	InputStream getPartInputStream(Path partFile) throws IOException {
+		InputStream in = new BufferedInputStream(
+				Files.newInputStream(partFile));
+		switch (this.compressionType) {
+		case COMPRESS_BZ2:
+			return new BZip2CompressorInputStream(in);
+		case COMPRESS_GZIP:
+			return new GzipCompressorInputStream(in);
+		default:
+			return in;
+		}
+	}
+
+	/**
+	 * Sets the number of shards based on the given string value.
+	 *
+	 * @param shards
+	 *            string representation of a positive number
+	 */
+	private void setShards(String shards) {
+		try {
+			int value = Integer.parseInt(shards);
+			if (value > 0) {
+				this.shards = value;
+				return;
+			}
+		} catch (NumberFormatException e) {
+			// fall through
+		}
+		logger.warn("Invalid number of RDF shards \"" + shards
+				+ "\". Using a single shard.");
+	}
+
+	/**
+	 * Sets the RDF output format based on the given string value.
+	 *
+	 * @param format
+	 *            "nt" for N-Triples or "binary" for binary RDF
+	 */
+	private void setRdfFormat(String format) {
+		if ("binary".equals(format)) {
+			this.rdfFormat = BinaryRdfWriter.BINARY_RDF;
+		} else if ("nt".equals(format)) {
+			this.rdfFormat = RDFFormat.NTRIPLES;
+		} else {
+			logger.warn("Unknown RDF format \"" + format
+					+ "\". Using N-Triples.");
+			this.rdfFormat = RDFFormat.NTRIPLES;
+		}
+	}
+
 	/**
 	 * Sets the RDF serialization tasks based on the given string value.
 	 *
@@ -278,7 +578,25 @@ public class RdfSerializationAction extends DumpProcessingOutputAction {
 
 	@Override
 	public String getReport() {
-		if (this.serializer != null) {
+		if (this.shardedSerializer != null) {
+			String fileName;
+			if (this.mergeShards) {
+				fileName = getOutputDestinationPattern();
+			} else {
+				fileName = getPartFileName(getOutputDestinationPattern(), 0);
+			}
+			String message = "Finished serialization of "
+					+ this.shardedSerializer.getTripleCount()
+					+ " RDF triples in " + (this.mergeShards ? "file " : "")
+					+ this.insertDumpInformation(fileName);
+			if (!this.compressionType.equals(COMPRESS_NONE)) {
+				message += "." + this.compressionType;
+			}
+			if (!this.mergeShards) {
+				message += " and " + (this.shards - 1) + " further part files";
+			}
+			return message;
+		} else if (this.serializer != null) {
 			String message = "Finished serialization of "
 					+ this.serializer.getTripleCount()
 					+ " RDF triples in file "
@@ -42,11 +42,11 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.NumericEntityIdValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
@@ -62,6 +62,8 @@ import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
 import org.wikidata.wdtk.datamodel.interfaces.StringValue;
 import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
 import org.wikidata.wdtk.datamodel.interfaces.Value;
+import org.wikidata.wdtk.storage.datastructures.IntIntHashMap;
+import org.wikidata.wdtk.storage.datastructures.IntObjectHashMap;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -156,7 +158,7 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 		 * {@link UsageRecord#itemCount}).
 		 */
 		@JsonIgnore
-		public HashMap<Integer, Integer> propertyCoCounts = new HashMap<>();
+		public IntIntHashMap propertyCoCounts = new IntIntHashMap();
 		/**
 		 * The label of this item. If there isn't any English label available,
 		 * the label is set to null.
@@ -176,20 +178,21 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 		public Map<String, Integer> getRelatedProperties() {
 			List<ImmutablePair<Integer, Double>> list = new ArrayList<>(
 					this.propertyCoCounts.size());
-			for (Entry<Integer, Integer> coCountEntry : this.propertyCoCounts
-					.entrySet()) {
-				double otherThisItemRate = (double) coCountEntry.getValue()
-						/ this.itemCount;
+			for (int slot = this.propertyCoCounts.nextSlot(-1); slot >= 0; slot = this.propertyCoCounts
+					.nextSlot(slot)) {
+				int propertyId = this.propertyCoCounts.keyAt(slot);
+				double otherThisItemRate = (double) this.propertyCoCounts
+						.valueAt(slot) / this.itemCount;
 				double otherGlobalItemRate = (double) SchemaUsageAnalyzer.this.propertyRecords
-						.get(coCountEntry.getKey()).itemCount
+						.get(propertyId).itemCount
 						/ SchemaUsageAnalyzer.this.countPropertyEntities;
 				double otherThisItemRateStep = 1 / (1 + Math.exp(6 * (-2
 						* otherThisItemRate + 0.5)));
 				double otherInvGlobalItemRateStep = 1 / (1 + Math.exp(6 * (-2
 						* (1 - otherGlobalItemRate) + 0.5)));
 
-				list.add(new ImmutablePair<Integer, Double>(coCountEntry
-						.getKey(), otherThisItemRateStep
+				list.add(new ImmutablePair<Integer, Double>(propertyId,
+						otherThisItemRateStep
 						* otherInvGlobalItemRateStep * otherThisItemRate
 						/ otherGlobalItemRate));
 			}
@@ -279,7 +282,7 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 		 * Set of all qualifiers used with this property.
 		 */
 		@JsonIgnore
-		public Map<Integer, Integer> qualifiers = new HashMap<>();
+		public IntIntHashMap qualifiers = new IntIntHashMap();
 
 		/**
 		 * Main URL pattern to be used in links, if any.
@@ -309,20 +312,25 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 		@JsonProperty("qs")
 		@JsonInclude(Include.NON_EMPTY)
 		public Map<String, Integer> getQualifiers() {
-			List<Map.Entry<Integer, Integer>> list = new ArrayList<>(
-					this.qualifiers.entrySet());
+			List<ImmutablePair<Integer, Integer>> list = new ArrayList<>(
+					this.qualifiers.size());
+			for (int slot = this.qualifiers.nextSlot(-1); slot >= 0; slot = this.qualifiers
+					.nextSlot(slot)) {
+				list.add(new ImmutablePair<Integer, Integer>(this.qualifiers
+						.keyAt(slot), this.qualifiers.valueAt(slot)));
+			}
 
 			Collections.sort(list,
-					new Comparator<Map.Entry<Integer, Integer>>() {
+					new Comparator<ImmutablePair<Integer, Integer>>() {
 						@Override
-						public int compare(Map.Entry<Integer, Integer> o1,
-								Map.Entry<Integer, Integer> o2) {
+						public int compare(ImmutablePair<Integer, Integer> o1,
+								ImmutablePair<Integer, Integer> o2) {
 							return o2.getValue().compareTo(o1.getValue());
 						}
 					});
 
 			LinkedHashMap<String, Integer> result = new LinkedHashMap<>();
-			for (Map.Entry<Integer, Integer> entry : list) {
+			for (ImmutablePair<Integer, Integer> entry : list) {
 				result.put(entry.getKey().toString(), entry.getValue());
 			}
 
@@ -354,11 +362,11 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 	/**
 	 * Collection of all property records.
 	 */
-	final HashMap<Integer, PropertyRecord> propertyRecords = new HashMap<>();
+	final IntObjectHashMap<PropertyRecord> propertyRecords = new IntObjectHashMap<>();
 	/**
 	 * Collection of all item records of items used as classes.
 	 */
-	final HashMap<Integer, ClassRecord> classRecords = new HashMap<>();
+	final IntObjectHashMap<ClassRecord> classRecords = new IntObjectHashMap<>();
 	/**
 	 * Collection of all site records of items used as classes.
 	 */
@@ -421,9 +429,11 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 	@Override
 	public void processItemDocument(ItemDocument itemDocument) {
 		// Record relevant labels:
-		Integer itemId = getNumId(itemDocument.getItemId().getId(), false);
-		if (this.classRecords.containsKey(itemId)) {
-			this.classRecords.get(itemId).label = itemDocument.findLabel("en");
+		ClassRecord classRecord = this.classRecords
+				.get(NumericEntityIdValueImpl.getNumericId(itemDocument
+						.getItemId()));
+		if (classRecord != null) {
+			classRecord.label = itemDocument.findLabel("en");
 		}
 
 		countTerms(itemDocument, itemStatistics);
@@ -524,7 +534,8 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			for (Statement s : instanceOfStatements) {
 				Value v = s.getValue();
 				if (v instanceof ItemIdValue) {
-					Integer vId = getNumId(((ItemIdValue) v).getId(), false);
+					Integer vId = NumericEntityIdValueImpl
+							.getNumericId((ItemIdValue) v);
 					superClasses.add(vId);
 					ClassRecord classRecord = getClassRecord(vId);
 					classRecord.itemCount++;
@@ -537,7 +548,7 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			for (Integer classId : superClasses) {
 				ClassRecord classRecord = getClassRecord(classId);
 				classRecord.allInstanceCount++;
-				countCooccurringProperties(statementDocument, classRecord, null);
+				countCooccurringProperties(statementDocument, classRecord, 0);
 			}
 		}
 
@@ -547,18 +558,12 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			PropertyRecord propertyRecord = getPropertyRecord(sg.getProperty());
 			propertyRecord.itemCount++;
 			countCooccurringProperties(statementDocument, propertyRecord,
-					sg.getProperty());
+					NumericEntityIdValueImpl.getNumericId(sg.getProperty()));
 
 			for (Statement s : sg) {
 				for (SnakGroup snakGroup : s.getClaim().getQualifiers()) {
-					Integer qualifierId = getNumId(snakGroup.getProperty()
-							.getId(), false);
-					if (propertyRecord.qualifiers.containsKey(qualifierId)) {
-						propertyRecord.qualifiers.put(qualifierId,
-								propertyRecord.qualifiers.get(qualifierId) + 1);
-					} else {
-						propertyRecord.qualifiers.put(qualifierId, 1);
-					}
+					propertyRecord.qualifiers.addTo(NumericEntityIdValueImpl
+							.getNumericId(snakGroup.getProperty()), 1);
 				}
 			}
 		}
@@ -630,10 +635,10 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			int count = 0;
 			for (JsonNode binding : bindings) {
 				count++;
-				Integer subId = getNumId(binding.path("subC").path("value")
-						.asText(), true);
-				Integer supId = getNumId(binding.path("supC").path("value")
-						.asText(), true);
+				int subId = getNumIdFromUri(binding.path("subC")
+						.path("value").asText());
+				int supId = getNumIdFromUri(binding.path("supC")
+						.path("value").asText());
 				if (supId == 0 || subId == 0) {
 					System.out.println("Ignoring "
 							+ binding.path("subC").path("value").asText()
@@ -653,14 +658,18 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 					+ this.classRecords.size() + " Wikidata items.");
 
 			System.out.println("Computing indirect subclass relationships ...");
-			for (ClassRecord classRecord : this.classRecords.values()) {
+			for (int slot = this.classRecords.nextSlot(-1); slot >= 0; slot = this.classRecords
+					.nextSlot(slot)) {
+				ClassRecord classRecord = this.classRecords.valueAt(slot);
 				for (Integer superClass : classRecord.directSuperClasses) {
 					addSuperClasses(superClass, classRecord);
 				}
 			}
 
 			System.out.println("Computing total subclass counts ...");
-			for (ClassRecord classRecord : this.classRecords.values()) {
+			for (int slot = this.classRecords.nextSlot(-1); slot >= 0; slot = this.classRecords
+					.nextSlot(slot)) {
+				ClassRecord classRecord = this.classRecords.valueAt(slot);
 				for (Integer superClass : classRecord.superClasses) {
 					getClassRecord(superClass).allSubclassCount++;
 				}
@@ -695,25 +704,20 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 	}
 
 	/**
-	 * Extracts a numeric id from a string, which can be either a Wikidata
-	 * entity URI or a short entity or property id.
+	 * Extracts the numeric id from a Wikidata entity URI.
 	 *
-	 * @param idString
-	 * @param isUri
-	 * @return numeric id, or 0 if there was an error
+	 * @param uri
+	 *            the URI, e.g., "http://www.wikidata.org/entity/Q42"
+	 * @return numeric id, or 0 if the URI is not a Wikidata entity URI
+	 * @throws NumberFormatException
+	 *             if the URI does not end with a number
 	 */
-	private Integer getNumId(String idString, boolean isUri) {
-		String numString;
-		if (isUri) {
-			if (!idString.startsWith("http://www.wikidata.org/entity/")) {
-				return 0;
-			}
-			numString = idString.substring("http://www.wikidata.org/entity/Q"
-					.length());
-		} else {
-			numString = idString.substring(1);
+	private int getNumIdFromUri(String uri) {
+		if (!uri.startsWith("http://www.wikidata.org/entity/")) {
+			return 0;
 		}
-		return new Integer(numString);
+		return NumericEntityIdValueImpl.parseNumericId(uri,
+				"http://www.wikidata.org/entity/Q".length());
 	}
 
 	/**
@@ -723,14 +727,13 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 	 *            the numeric id of the class to initialize
 	 * @return the class record
 	 */
-	private ClassRecord getClassRecord(Integer classId) {
-		if (!this.classRecords.containsKey(classId)) {
-			ClassRecord classRecord = new ClassRecord();
+	private ClassRecord getClassRecord(int classId) {
+		ClassRecord classRecord = this.classRecords.get(classId);
+		if (classRecord == null) {
+			classRecord = new ClassRecord();
 			this.classRecords.put(classId, classRecord);
-			return classRecord;
-		} else {
-			return this.classRecords.get(classId);
 		}
+		return classRecord;
 	}
 
 	/**
@@ -741,37 +744,34 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 	 * @return the property record
 	 */
 	private PropertyRecord getPropertyRecord(PropertyIdValue property) {
-		Integer id = getNumId(property.getId(), false);
-		if (!this.propertyRecords.containsKey(id)) {
-			PropertyRecord propertyRecord = new PropertyRecord();
+		int id = NumericEntityIdValueImpl.getNumericId(property);
+		PropertyRecord propertyRecord = this.propertyRecords.get(id);
+		if (propertyRecord == null) {
+			propertyRecord = new PropertyRecord();
 			this.propertyRecords.put(id, propertyRecord);
-			return propertyRecord;
-		} else {
-			return this.propertyRecords.get(id);
 		}
+		return propertyRecord;
 	}
 
 	/**
 	 * Counts each property for which there is a statement in the given item
-	 * document, ignoring the property thisPropertyIdValue to avoid properties
+	 * document, ignoring the property thisPropertyId to avoid properties
 	 * counting themselves.
 	 *
 	 * @param statementDocument
 	 * @param usageRecord
-	 * @param thisPropertyIdValue
+	 * @param thisPropertyId
+	 *            numeric id of the property to ignore, or 0 to count all
+	 *            properties
 	 */
 	private void countCooccurringProperties(
 			StatementDocument statementDocument, UsageRecord usageRecord,
-			PropertyIdValue thisPropertyIdValue) {
+			int thisPropertyId) {
 		for (StatementGroup sg : statementDocument.getStatementGroups()) {
-			if (!sg.getProperty().equals(thisPropertyIdValue)) {
-				Integer propertyId = getNumId(sg.getProperty().getId(), false);
-				if (!usageRecord.propertyCoCounts.containsKey(propertyId)) {
-					usageRecord.propertyCoCounts.put(propertyId, 1);
-				} else {
-					usageRecord.propertyCoCounts.put(propertyId,
-							usageRecord.propertyCoCounts.get(propertyId) + 1);
-				}
+			int propertyId = NumericEntityIdValueImpl.getNumericId(sg
+					.getProperty());
+			if (propertyId != thisPropertyId) {
+				usageRecord.propertyCoCounts.addTo(propertyId, 1);
 			}
 		}
 	}
@@ -819,13 +819,13 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			out.println("{");
 
 			int count = 0;
-			for (Entry<Integer, PropertyRecord> propertyEntry : this.propertyRecords
-					.entrySet()) {
+			for (int slot = this.propertyRecords.nextSlot(-1); slot >= 0; slot = this.propertyRecords
+					.nextSlot(slot)) {
 				if (count > 0) {
 					out.println(",");
 				}
-				out.print("\"" + propertyEntry.getKey() + "\":");
-				mapper.writeValue(out, propertyEntry.getValue());
+				out.print("\"" + this.propertyRecords.keyAt(slot) + "\":");
+				mapper.writeValue(out, this.propertyRecords.valueAt(slot));
 				count++;
 			}
 			out.println("\n}");
@@ -864,36 +864,39 @@ public class SchemaUsageAnalyzer implements DumpProcessingAction {
 			out.println("{");
 
 			// Add direct subclass information:
-			for (Entry<Integer, ClassRecord> classEntry : this.classRecords
-					.entrySet()) {
-				if (classEntry.getValue().subclassCount == 0
-						&& classEntry.getValue().itemCount == 0) {
+			for (int slot = this.classRecords.nextSlot(-1); slot >= 0; slot = this.classRecords
+					.nextSlot(slot)) {
+				ClassRecord classRecord = this.classRecords.valueAt(slot);
+				if (classRecord.subclassCount == 0
+						&& classRecord.itemCount == 0) {
 					continue;
 				}
-				for (Integer superClass : classEntry.getValue().directSuperClasses) {
+				for (Integer superClass : classRecord.directSuperClasses) {
 					this.classRecords.get(superClass).nonemptyDirectSubclasses
-							.add(classEntry.getKey().toString());
+							.add(Integer.toString(this.classRecords
+									.keyAt(slot)));
 				}
 			}
 
 			int count = 0;
 			int countNoLabel = 0;
-			for (Entry<Integer, ClassRecord> classEntry : this.classRecords
-					.entrySet()) {
-				if (classEntry.getValue().subclassCount == 0
-						&& classEntry.getValue().itemCount == 0) {
+			for (int slot = this.classRecords.nextSlot(-1); slot >= 0; slot = this.classRecords
+					.nextSlot(slot)) {
+				ClassRecord classRecord = this.classRecords.valueAt(slot);
+				if (classRecord.subclassCount == 0
+						&& classRecord.itemCount == 0) {
 					continue;
 				}
 
-				if (classEntry.getValue().label == null) {
+				if (classRecord.label == null) {
 					countNoLabel++;
 				}
 
 				if (count > 0) {
 					out.println(",");
 				}
-				out.print("\"" + classEntry.getKey() + "\":");
-				mapper.writeValue(out, classEntry.getValue());
+				out.print("\"" + this.classRecords.keyAt(slot) + "\":");
+				mapper.writeValue(out, classRecord);
 				count++;
 			}
 			out.println("\n}");
@@ -153,6 +153,27 @@ public class ClientConfigurationTest {
 		assertTrue(config.getOfflineMode());
 	}
 
+	@Test
+	public void testParallelArguments() {
+		String[] args = new String[] { "--parallel" };
+		ClientConfiguration config = new ClientConfiguration(args);
+		assertTrue(config.isParallel());
+	}
+
+	@Test
+	public void testThreadsArguments() {
+		String[] args = new String[] { "--threads", "4" };
+		ClientConfiguration config = new ClientConfiguration(args);
+		assertEquals(4, config.getThreads());
+	}
+
+	@Test
+	public void testInvalidThreadsArguments() {
+		String[] args = new String[] { "-t", "none" };
+		ClientConfiguration config = new ClientConfiguration(args);
+		assertEquals(1, config.getThreads());
+	}
+
 	@Test
 	public void testStdOutOutputArgumentsShort() {
 		String[] args = new String[] { "-a", "json", "-s" };
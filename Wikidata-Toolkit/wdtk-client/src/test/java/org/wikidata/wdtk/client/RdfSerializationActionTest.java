@@ -24,7 +24,29 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.rdf.BinaryRdfReader;
+import org.wikidata.wdtk.rdf.BinaryRdfWriter;
 import org.wikidata.wdtk.rdf.RdfSerializer;
 
 public class RdfSerializationActionTest {
@@ -68,4 +90,101 @@ public class RdfSerializationActionTest {
 				RdfSerializer.TASK_PROPERTIES | RdfSerializer.TASK_LABELS);
 
 	}
+
+	@Test
+	public void testShardOptions() {
+		String[] args = new String[] { "-a", "rdf", "--rdftasks", "items",
+				"--rdfshards", "4", "--rdfmerge" };
+		RdfSerializationAction action = (RdfSerializationAction) DumpProcessingOutputActionTest
+				.getActionFromArgs(args);
+
+		assertEquals(4, action.shards);
+		assertTrue(action.mergeShards);
+	}
+
+	@Test
+	public void testBinaryFormatOption() {
+		String[] args = new String[] { "-a", "rdf", "--rdftasks", "items",
+				"--rdfformat", "binary" };
+		RdfSerializationAction action = (RdfSerializationAction) DumpProcessingOutputActionTest
+				.getActionFromArgs(args);
+
+		assertEquals(BinaryRdfWriter.BINARY_RDF, action.rdfFormat);
+	}
+
+	@Test
+	public void testMergeBinaryShards() throws IOException,
+			RDFHandlerException {
+		Path directory = Files.createTempDirectory("wdtk-rdf-merge");
+		Path outputFile = directory.resolve("out.rdfb.gz");
+		try {
+			String[] args = new String[] { "-a", "rdf", "--rdftasks",
+					"items,labels", "--rdfshards", "3", "--rdfmerge",
+					"--rdfformat", "binary", "-z", "gz", "--output",
+					directory.resolve("out.rdfb").toString() };
+			RdfSerializationAction action = (RdfSerializationAction) DumpProcessingOutputActionTest
+					.getActionFromArgs(args);
+			action.setSites(Mockito.mock(Sites.class));
+			action.open();
+			for (int i = 1; i <= 100; i++) {
+				action.processItemDocument(ItemDocumentBuilder
+						.forItemId(Datamodel.makeWikidataItemIdValue("Q" + i))
+						.withLabel("label " + i, "en").build());
+			}
+			action.close();
+
+			assertTrue(Files.exists(outputFile));
+			try (DirectoryStream<Path> files = Files
+					.newDirectoryStream(directory)) {
+				int count = 0;
+				for (Iterator<Path> it = files.iterator(); it.hasNext(); it
+						.next()) {
+					count++;
+				}
+				assertEquals(1, count);
+			}
+
+			// the parts are re-encoded into a single binary RDF file
+			try (InputStream in = new GzipCompressorInputStream(
+					Files.newInputStream(outputFile))) {
+				String content = new String(IOUtils.toByteArray(in),
+						StandardCharsets.ISO_8859_1);
+				assertEquals(content.indexOf("WDTKRDFB"),
+						content.lastIndexOf("WDTKRDFB"));
+			}
+
+			final Set<String> labels = new HashSet<>();
+			final long[] tripleCount = { 0 };
+			try (InputStream in = new GzipCompressorInputStream(
+					Files.newInputStream(outputFile))) {
+				new BinaryRdfReader(in).parse(new RDFHandlerBase() {
+					@Override
+					public void handleStatement(Statement st) {
+						tripleCount[0]++;
+						if (st.getObject() instanceof Literal) {
+							labels.add(st.getObject().stringValue());
+						}
+					}
+				});
+			}
+			assertEquals(action.shardedSerializer.getTripleCount(),
+					tripleCount[0]);
+			assertTrue(labels.contains("label 1"));
+			assertTrue(labels.contains("label 100"));
+		} finally {
+			Files.deleteIfExists(outputFile);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testPartFileName() {
+		assertEquals("{PROJECT}-{DATE}-part-0007.nt",
+				RdfSerializationAction.getPartFileName("{PROJECT}-{DATE}.nt",
+						7));
+		assertEquals("out/dump-part-0012",
+				RdfSerializationAction.getPartFileName("out/dump", 12));
+		assertEquals("out.d/dump-part-0000",
+				RdfSerializationAction.getPartFileName("out.d/dump", 0));
+	}
 }
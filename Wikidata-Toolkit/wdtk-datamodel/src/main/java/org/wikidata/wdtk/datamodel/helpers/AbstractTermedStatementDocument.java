@@ -20,8 +20,11 @@ package org.wikidata.wdtk.datamodel.helpers;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
@@ -102,6 +105,107 @@ public abstract class AbstractTermedStatementDocument implements
 		return null;
 	}
 
+	/**
+	 * Returns the {@link StatementGroup} objects for all of the given
+	 * properties that have statements in this document. Properties without
+	 * statements are ignored. The order of the result is not specified.
+	 * Implementations that maintain an index of statement groups can
+	 * overwrite this method to answer it without looking at all statement
+	 * groups.
+	 *
+	 * @param propertyIdValues
+	 *            the properties to search for
+	 * @return list of {@link StatementGroup} objects, possibly empty
+	 */
+	public List<StatementGroup> findStatementGroups(
+			Set<PropertyIdValue> propertyIdValues) {
+		List<StatementGroup> result = new ArrayList<>();
+		if (propertyIdValues.isEmpty()) {
+			return result;
+		}
+		for (StatementGroup sg : getStatementGroups()) {
+			if (propertyIdValues.contains(sg.getProperty())) {
+				result.add(sg);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the {@link StatementGroup} objects for all of the given
+	 * properties that have statements in the given document. This uses
+	 * {@link #findStatementGroups(Set)} for documents that are based on this
+	 * class, and looks at all statement groups of other documents.
+	 *
+	 * @param document
+	 *            the document to search
+	 * @param propertyIdValues
+	 *            the properties to search for
+	 * @return list of {@link StatementGroup} objects, possibly empty
+	 */
+	public static List<StatementGroup> findStatementGroups(
+			StatementDocument document, Set<PropertyIdValue> propertyIdValues) {
+		if (document instanceof AbstractTermedStatementDocument) {
+			return ((AbstractTermedStatementDocument) document)
+					.findStatementGroups(propertyIdValues);
+		}
+		List<StatementGroup> result = new ArrayList<>();
+		for (StatementGroup sg : document.getStatementGroups()) {
+			if (propertyIdValues.contains(sg.getProperty())) {
+				result.add(sg);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds statement groups for the given properties using an index of
+	 * statement groups by property id string. This can be used by
+	 * implementations that maintain such an index to implement
+	 * {@link #findStatementGroups(Set)} without a scan.
+	 *
+	 * @param propertyIdValues
+	 *            the properties to search for
+	 * @param statementGroupIndex
+	 *            map from property ids to statement groups
+	 * @return list of {@link StatementGroup} objects, possibly empty
+	 */
+	protected static List<StatementGroup> findStatementGroups(
+			Set<PropertyIdValue> propertyIdValues,
+			Map<String, StatementGroup> statementGroupIndex) {
+		List<StatementGroup> result = new ArrayList<>();
+		for (PropertyIdValue propertyIdValue : propertyIdValues) {
+			StatementGroup sg = findStatementGroup(propertyIdValue,
+					statementGroupIndex);
+			if (sg != null) {
+				result.add(sg);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the statement group for the given property using an index of
+	 * statement groups by property id string. The site IRI of the property is
+	 * checked after the lookup.
+	 *
+	 * @param propertyIdValue
+	 *            the property to search for
+	 * @param statementGroupIndex
+	 *            map from property ids to statement groups
+	 * @return {@link StatementGroup} or null
+	 */
+	protected static StatementGroup findStatementGroup(
+			PropertyIdValue propertyIdValue,
+			Map<String, StatementGroup> statementGroupIndex) {
+		StatementGroup sg = statementGroupIndex.get(propertyIdValue.getId());
+		if (sg != null && propertyIdValue.equals(sg.getProperty())) {
+			return sg;
+		} else {
+			return null;
+		}
+	}
+
 	@Override
 	public boolean hasStatement(PropertyIdValue propertyIdValue) {
 		return findStatementGroup(propertyIdValue) != null;
@@ -0,0 +1,319 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
+
+/**
+ * Abstract base class for read-only views of {@link TermedDocument} and
+ * {@link StatementDocument} objects that hide the data excluded by a
+ * {@link DocumentDataFilter}. The underlying document is not copied. Maps of
+ * terms and site links are returned as views that check the filter on access,
+ * and the list of statement groups only holds references to the groups of the
+ * underlying document. If a filter component is not set, the data of the
+ * underlying document is returned as is.
+ * <p>
+ * The filter is read whenever data is accessed, so it should not be modified
+ * while views are in use.
+ *
+ * @author agent
+ *
+ * @param <T>
+ *            the type of the underlying document
+ */
+public abstract class FilteredTermedStatementDocument<T extends TermedDocument & StatementDocument>
+		extends AbstractTermedStatementDocument {
+
+	final T document;
+	final DocumentDataFilter filter;
+
+	/**
+	 * Filtered list of statement groups; computed when first needed.
+	 */
+	List<StatementGroup> statementGroups = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param document
+	 *            the document to filter
+	 * @param filter
+	 *            the filter settings to apply
+	 */
+	FilteredTermedStatementDocument(T document, DocumentDataFilter filter) {
+		this.document = document;
+		this.filter = filter;
+	}
+
+	/**
+	 * Returns the document that this object provides a filtered view of.
+	 *
+	 * @return the underlying document
+	 */
+	public T getFilteredDocument() {
+		return this.document;
+	}
+
+	@Override
+	public EntityIdValue getEntityId() {
+		return this.document.getEntityId();
+	}
+
+	@Override
+	public long getRevisionId() {
+		return this.document.getRevisionId();
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getLabels() {
+		return filterMap(this.document.getLabels(),
+				this.filter.getLanguageFilter());
+	}
+
+	@Override
+	public Map<String, MonolingualTextValue> getDescriptions() {
+		return filterMap(this.document.getDescriptions(),
+				this.filter.getLanguageFilter());
+	}
+
+	@Override
+	public Map<String, List<MonolingualTextValue>> getAliases() {
+		return filterMap(this.document.getAliases(),
+				this.filter.getLanguageFilter());
+	}
+
+	@Override
+	public List<StatementGroup> getStatementGroups() {
+		if (this.filter.getPropertyFilter() == null) {
+			return this.document.getStatementGroups();
+		} else if (this.filter.excludeAllProperties()) {
+			return Collections.emptyList();
+		}
+
+		if (this.statementGroups == null) {
+			List<StatementGroup> result = new ArrayList<>();
+			for (StatementGroup statementGroup : this.document
+					.getStatementGroups()) {
+				if (this.filter.includePropertyId(statementGroup.getProperty())) {
+					result.add(statementGroup);
+				}
+			}
+			this.statementGroups = Collections.unmodifiableList(result);
+		}
+		return this.statementGroups;
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(PropertyIdValue propertyIdValue) {
+		if (!this.filter.includePropertyId(propertyIdValue)) {
+			return null;
+		}
+		return this.document.findStatementGroup(propertyIdValue);
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(String propertyId) {
+		StatementGroup statementGroup = this.document
+				.findStatementGroup(propertyId);
+		if (statementGroup != null
+				&& this.filter.includePropertyId(statementGroup.getProperty())) {
+			return statementGroup;
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public List<StatementGroup> findStatementGroups(
+			Set<PropertyIdValue> propertyIdValues) {
+		if (this.filter.getPropertyFilter() == null) {
+			return findStatementGroups(this.document, propertyIdValues);
+		}
+
+		List<StatementGroup> result = new ArrayList<>();
+		for (StatementGroup statementGroup : findStatementGroups(
+				this.document, propertyIdValues)) {
+			if (this.filter.includePropertyId(statementGroup.getProperty())) {
+				result.add(statementGroup);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a view of the given map that only contains the given keys.
+	 *
+	 * @param map
+	 *            the map to filter
+	 * @param keys
+	 *            the keys to keep, or null if all keys should be kept
+	 * @return filtered map
+	 */
+	static <V> Map<String, V> filterMap(Map<String, V> map, Set<String> keys) {
+		if (keys == null) {
+			return map;
+		} else if (keys.isEmpty() || map.isEmpty()) {
+			return Collections.emptyMap();
+		} else {
+			return new FilteredMap<>(map, keys);
+		}
+	}
+
+	/**
+	 * Read-only view of a map that only contains the entries for a given set
+	 * of keys. Lookups are answered by the underlying map directly. The size of
+	 * the map is computed by iterating over the smaller of the two key sets.
+	 *
+	 * @author agent
+	 *
+	 * @param <V>
+	 *            the type of values
+	 */
+	static class FilteredMap<V> extends AbstractMap<String, V> {
+
+		final Map<String, V> map;
+		final Set<String> keys;
+
+		FilteredMap(Map<String, V> map, Set<String> keys) {
+			this.map = map;
+			this.keys = keys;
+		}
+
+		@Override
+		public V get(Object key) {
+			if (this.keys.contains(key)) {
+				return this.map.get(key);
+			} else {
+				return null;
+			}
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return this.keys.contains(key) && this.map.containsKey(key);
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet() {
+			return new AbstractSet<Entry<String, V>>() {
+
+				@Override
+				public Iterator<Entry<String, V>> iterator() {
+					return new FilteredEntryIterator<>(FilteredMap.this.map
+							.entrySet().iterator(), FilteredMap.this.keys);
+				}
+
+				@Override
+				public int size() {
+					int size = 0;
+					if (FilteredMap.this.keys.size() < FilteredMap.this.map
+							.size()) {
+						for (String key : FilteredMap.this.keys) {
+							if (FilteredMap.this.map.containsKey(key)) {
+								size++;
+							}
+						}
+					} else {
+						for (String key : FilteredMap.this.map.keySet()) {
+							if (FilteredMap.this.keys.contains(key)) {
+								size++;
+							}
+						}
+					}
+					return size;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Iterator over the entries of a map that skips all entries whose key is
+	 * not in a given set.
+	 *
+	 * @author agent
+	 *
+	 * @param <V>
+	 *            the type of values
+	 */
+	static class FilteredEntryIterator<V> implements Iterator<Entry<String, V>> {
+
+		final Iterator<Entry<String, V>> entries;
+		final Set<String> keys;
+		Entry<String, V> next;
+
+		FilteredEntryIterator(Iterator<Entry<String, V>> entries,
+				Set<String> keys) {
+			this.entries = entries;
+			this.keys = keys;
+			advance();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public Entry<String, V> next() {
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			Entry<String, V> result = this.next;
+			advance();
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"Filtered maps cannot be modified.");
+		}
+
+		void advance() {
+			this.next = null;
+			while (this.entries.hasNext()) {
+				Entry<String, V> entry = this.entries.next();
+				if (this.keys.contains(entry.getKey())) {
+					this.next = entry;
+					return;
+				}
+			}
+		}
+	}
+
+}
@@ -63,13 +63,45 @@ import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
  */
 public class DataObjectFactoryImpl implements DataObjectFactory {
 
+	/**
+	 * Pool used to obtain canonical entity ids, or null if new ids should be
+	 * created for every request.
+	 */
+	final EntityIdValuePool entityIdValuePool;
+
+	/**
+	 * Constructor.
+	 */
+	public DataObjectFactoryImpl() {
+		this(null);
+	}
+
+	/**
+	 * Constructor for a factory that returns canonical objects for item and
+	 * property ids. This avoids keeping many copies of the same ids in memory
+	 * when processing large amounts of data.
+	 *
+	 * @param entityIdValuePool
+	 *            the pool to get ids from, or null if no pooling should be
+	 *            used
+	 */
+	public DataObjectFactoryImpl(EntityIdValuePool entityIdValuePool) {
+		this.entityIdValuePool = entityIdValuePool;
+	}
+
 	@Override
 	public ItemIdValue getItemIdValue(String id, String siteIri) {
+		if (this.entityIdValuePool != null) {
+			return this.entityIdValuePool.getItemIdValue(id, siteIri);
+		}
 		return ItemIdValueImpl.create(id, siteIri);
 	}
 
 	@Override
 	public PropertyIdValue getPropertyIdValue(String id, String siteIri) {
+		if (this.entityIdValuePool != null) {
+			return this.entityIdValuePool.getPropertyIdValue(id, siteIri);
+		}
 		return PropertyIdValueImpl.create(id, siteIri);
 	}
 
@@ -0,0 +1,329 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+/**
+ * Pool of canonical {@link ItemIdValue} and {@link PropertyIdValue} objects.
+ * Requesting the same id twice returns the same object, so that large amounts
+ * of data that refer to the same entities many times only need to keep one
+ * object per entity. Site IRIs are canonicalized as well, so that all objects
+ * of one site share the same string.
+ * <p>
+ * Objects are stored in tables that are indexed by a numeric key that
+ * combines the site, the entity type, and the numeric id. No temporary
+ * objects are created for lookups. The pool is thread-safe; the tables are
+ * split into segments that are locked independently.
+ * <p>
+ * The pool never forgets an object. To limit memory usage, a maximal number
+ * of pooled objects can be given. When the pool is full, new ids are still
+ * returned but not pooled.
+ *
+ * @author agent
+ *
+ */
+public class EntityIdValuePool {
+
+	/**
+	 * Number of independently locked segments; must be a power of two.
+	 */
+	static final int SEGMENT_COUNT = 32;
+
+	static final int TYPE_ITEM = 0;
+	static final int TYPE_PROPERTY = 1;
+
+	/**
+	 * Canonical site IRIs mapped to their index used in numeric keys.
+	 */
+	final ConcurrentHashMap<String, Integer> siteIndexes = new ConcurrentHashMap<>();
+	final ConcurrentHashMap<Integer, String> siteIris = new ConcurrentHashMap<>();
+
+	final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+	final int maxSize;
+	final AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 * Constructor for a pool without a limit on the number of objects.
+	 */
+	public EntityIdValuePool() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize
+	 *            maximal number of objects that will be pooled
+	 */
+	public EntityIdValuePool(int maxSize) {
+		this.maxSize = maxSize;
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			this.segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Returns the canonical {@link ItemIdValue} for the given id.
+	 *
+	 * @param id
+	 *            a string of the form Qn... where n... is the string
+	 *            representation of a positive integer number
+	 * @param siteIri
+	 *            IRI to identify the site, e.g.,
+	 *            "http://www.wikidata.org/entity/"
+	 * @return canonical item id
+	 * @throws IllegalArgumentException
+	 *             if the id is not valid
+	 */
+	public ItemIdValue getItemIdValue(String id, String siteIri) {
+		int numericId = parseNumericId(id, 'Q');
+		if (numericId < 0) {
+			return ItemIdValueImpl.create(id, siteIri); // throws exception
+		}
+		return getItemIdValue(numericId, siteIri);
+	}
+
+	/**
+	 * Returns the canonical {@link ItemIdValue} for the given numeric id.
+	 *
+	 * @param numericId
+	 *            the number after "Q"
+	 * @param siteIri
+	 *            IRI to identify the site, e.g.,
+	 *            "http://www.wikidata.org/entity/"
+	 * @return canonical item id
+	 */
+	public ItemIdValue getItemIdValue(int numericId, String siteIri) {
+		return (ItemIdValue) getEntityIdValue(TYPE_ITEM, numericId, siteIri);
+	}
+
+	/**
+	 * Returns the canonical {@link PropertyIdValue} for the given id.
+	 *
+	 * @param id
+	 *            a string of the form Pn... where n... is the string
+	 *            representation of a positive integer number
+	 * @param siteIri
+	 *            IRI to identify the site, e.g.,
+	 *            "http://www.wikidata.org/entity/"
+	 * @return canonical property id
+	 * @throws IllegalArgumentException
+	 *             if the id is not valid
+	 */
+	public PropertyIdValue getPropertyIdValue(String id, String siteIri) {
+		int numericId = parseNumericId(id, 'P');
+		if (numericId < 0) {
+			return PropertyIdValueImpl.create(id, siteIri); // throws exception
+		}
+		return getPropertyIdValue(numericId, siteIri);
+	}
+
+	/**
+	 * Returns the canonical {@link PropertyIdValue} for the given numeric id.
+	 *
+	 * @param numericId
+	 *            the number after "P"
+	 * @param siteIri
+	 *            IRI to identify the site, e.g.,
+	 *            "http://www.wikidata.org/entity/"
+	 * @return canonical property id
+	 */
+	public PropertyIdValue getPropertyIdValue(int numericId, String siteIri) {
+		return (PropertyIdValue) getEntityIdValue(TYPE_PROPERTY, numericId,
+				siteIri);
+	}
+
+	/**
+	 * Returns the canonical object for the given entity id. Ids of items and
+	 * properties are replaced by their pooled version; other ids are returned
+	 * unchanged.
+	 *
+	 * @param entityIdValue
+	 *            the id to canonicalize
+	 * @return canonical entity id
+	 */
+	public EntityIdValue getEntityIdValue(EntityIdValue entityIdValue) {
+		switch (entityIdValue.getEntityType()) {
+		case EntityIdValue.ET_ITEM:
+			return getItemIdValue(entityIdValue.getId(),
+					entityIdValue.getSiteIri());
+		case EntityIdValue.ET_PROPERTY:
+			return getPropertyIdValue(entityIdValue.getId(),
+					entityIdValue.getSiteIri());
+		default:
+			return entityIdValue;
+		}
+	}
+
+	/**
+	 * Returns the number of objects in the pool.
+	 *
+	 * @return number of pooled objects
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * Returns the canonical object for the given data, creating it if
+	 * necessary.
+	 */
+	NumericEntityIdValueImpl getEntityIdValue(int type, int numericId,
+			String siteIri) {
+		int siteIndex = getSiteIndex(siteIri);
+		long key = ((long) siteIndex << 33) | ((long) type << 32)
+				| (numericId & 0xFFFFFFFFL);
+		Segment segment = this.segments[mix(key) & (SEGMENT_COUNT - 1)];
+		synchronized (segment) {
+			NumericEntityIdValueImpl result = segment.get(key);
+			if (result == null) {
+				String canonicalSiteIri = this.siteIris.get(siteIndex);
+				if (type == TYPE_ITEM) {
+					result = new ItemIdValueImpl(numericId, canonicalSiteIri);
+				} else {
+					result = new PropertyIdValueImpl(numericId,
+							canonicalSiteIri);
+				}
+				if (this.size.get() < this.maxSize) {
+					segment.put(key, result);
+					this.size.incrementAndGet();
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the index of the given site IRI, registering the IRI if it is
+	 * new.
+	 */
+	int getSiteIndex(String siteIri) {
+		Integer index = this.siteIndexes.get(siteIri);
+		if (index == null) {
+			synchronized (this.siteIndexes) {
+				index = this.siteIndexes.get(siteIri);
+				if (index == null) {
+					index = this.siteIndexes.size();
+					this.siteIris.put(index, siteIri);
+					this.siteIndexes.put(siteIri, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Parses the numeric part of an entity id string with the given prefix
+	 * letter.
+	 *
+	 * @return the numeric id, or -1 if the string is not a valid id
+	 */
+	static int parseNumericId(String id, char prefix) {
+		if (id == null || id.length() <= 1 || id.length() > 11
+				|| id.charAt(0) != prefix) {
+			return -1;
+		}
+		long result = 0;
+		for (int i = 1; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = 10 * result + (c - '0');
+		}
+		if (result > Integer.MAX_VALUE) {
+			return -1;
+		}
+		return (int) result;
+	}
+
+	/**
+	 * Spreads the bits of a key for choosing segments and table slots.
+	 */
+	static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Open-addressing hash table from long keys to id objects, using linear
+	 * probing. Not thread-safe.
+	 *
+	 * @author agent
+	 *
+	 */
+	static class Segment {
+
+		long[] keys = new long[16];
+		NumericEntityIdValueImpl[] values = new NumericEntityIdValueImpl[16];
+		int size = 0;
+
+		NumericEntityIdValueImpl get(long key) {
+			int mask = this.keys.length - 1;
+			int i = (mix(key) >>> 5) & mask;
+			while (this.values[i] != null) {
+				if (this.keys[i] == key) {
+					return this.values[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		void put(long key, NumericEntityIdValueImpl value) {
+			if (2 * (this.size + 1) > this.keys.length) {
+				resize();
+			}
+			insert(key, value);
+			this.size++;
+		}
+
+		void insert(long key, NumericEntityIdValueImpl value) {
+			int mask = this.keys.length - 1;
+			int i = (mix(key) >>> 5) & mask;
+			while (this.values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = key;
+			this.values[i] = value;
+		}
+
+		void resize() {
+			long[] oldKeys = this.keys;
+			NumericEntityIdValueImpl[] oldValues = this.values;
+			this.keys = new long[2 * oldKeys.length];
+			this.values = new NumericEntityIdValueImpl[2 * oldKeys.length];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldValues[i] != null) {
+					insert(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+	}
+
+}
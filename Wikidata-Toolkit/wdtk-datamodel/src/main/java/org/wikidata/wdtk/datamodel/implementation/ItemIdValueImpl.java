@@ -64,8 +64,8 @@ public class ItemIdValueImpl extends NumericEntityIdValueImpl implements
 	}
 
 	/**
-	 * Constructor. Use {@link #create(String, String)} to create objects of
-	 * this type.
+	 * Constructor. Use {@link #create(String, String)} or an
+	 * {@link EntityIdValuePool} to create objects of this type.
 	 *
 	 * @see NumericEntityIdValueImpl#EntityIdImpl(int, String)
 	 * @param id
@@ -74,7 +74,7 @@ public class ItemIdValueImpl extends NumericEntityIdValueImpl implements
 	 *            the first part of the entity IRI of the site this belongs to,
 	 *            e.g., "http://www.wikidata.org/entity/"
 	 */
-	private ItemIdValueImpl(int id, String baseIri) {
+	ItemIdValueImpl(int id, String baseIri) {
 		super(id, baseIri);
 	}
 
@@ -89,7 +89,7 @@ public class ItemIdValueImpl extends NumericEntityIdValueImpl implements
 	}
 
 	@Override
-	public String getId() {
-		return "Q" + this.id;
+	char getIdPrefix() {
+		return 'Q';
 	}
 }
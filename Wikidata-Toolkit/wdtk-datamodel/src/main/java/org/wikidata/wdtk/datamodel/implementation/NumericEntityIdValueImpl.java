@@ -50,6 +50,16 @@ public abstract class NumericEntityIdValueImpl implements EntityIdValue,
 	final int id;
 	final String siteIri;
 
+	/**
+	 * The string id, e.g., "Q42"; computed when first needed.
+	 */
+	transient String stringId = null;
+
+	/**
+	 * Cached hash code, or 0 if not computed yet.
+	 */
+	transient int hashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -78,6 +88,87 @@ public abstract class NumericEntityIdValueImpl implements EntityIdValue,
 		return this.siteIri;
 	}
 
+	/**
+	 * Returns the numeric part of the id, e.g., 42 for "Q42".
+	 *
+	 * @return numeric id
+	 */
+	public int getNumericId() {
+		return this.id;
+	}
+
+	@Override
+	public String getId() {
+		String result = this.stringId;
+		if (result == null) {
+			result = getIdPrefix() + Integer.toString(this.id);
+			this.stringId = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the numeric part of the id of the given entity, e.g., 42 for
+	 * "Q42". For objects of this class, the stored number is returned. Other
+	 * ids are parsed with {@link #parseNumericId(String, int)}, which does
+	 * not create any intermediate strings.
+	 *
+	 * @param entityIdValue
+	 *            the id of an entity whose string id consists of one letter
+	 *            and a number
+	 * @return numeric id
+	 * @throws NumberFormatException
+	 *             if the id does not have the expected form
+	 */
+	public static int getNumericId(EntityIdValue entityIdValue) {
+		if (entityIdValue instanceof NumericEntityIdValueImpl) {
+			return ((NumericEntityIdValueImpl) entityIdValue).id;
+		}
+		return parseNumericId(entityIdValue.getId(), 1);
+	}
+
+	/**
+	 * Parses the number at the end of an id string, e.g., 42 for "Q42" and
+	 * start position 1. The string is parsed in place.
+	 *
+	 * @param idString
+	 *            the string to parse
+	 * @param start
+	 *            the position where the number starts
+	 * @return the number
+	 * @throws NumberFormatException
+	 *             if the string does not end with a number at the given
+	 *             position, or if the number is too large for an int
+	 */
+	public static int parseNumericId(String idString, int start) {
+		if (start < 0 || start >= idString.length()) {
+			throw new NumberFormatException("No numeric id in \"" + idString
+					+ "\"");
+		}
+		int result = 0;
+		for (int i = start; i < idString.length(); i++) {
+			int digit = idString.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("No numeric id in \""
+						+ idString + "\"");
+			}
+			if (result > (Integer.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException("Numeric id in \"" + idString
+						+ "\" is too large");
+			}
+			result = 10 * result + digit;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the letter that is used before the numeric part in the string id
+	 * of this type of entity, e.g., 'Q' for items.
+	 *
+	 * @return id prefix
+	 */
+	abstract char getIdPrefix();
+
 	@Override
 	public <T> T accept(ValueVisitor<T> valueVisitor) {
 		return valueVisitor.visit(this);
@@ -85,11 +176,23 @@ public abstract class NumericEntityIdValueImpl implements EntityIdValue,
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = this.hashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			this.hashCode = result;
+		}
+		return result;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		if (obj instanceof NumericEntityIdValueImpl) {
+			// fast path that avoids building string ids
+			NumericEntityIdValueImpl other = (NumericEntityIdValueImpl) obj;
+			return this.id == other.id
+					&& getIdPrefix() == other.getIdPrefix()
+					&& this.siteIri.equals(other.siteIri);
+		}
 		return Equality.equalsEntityIdValue(this, obj);
 	}
 
@@ -65,8 +65,8 @@ public class PropertyIdValueImpl extends NumericEntityIdValueImpl implements
 	}
 
 	/**
-	 * Constructor. Use {@link #create(String, String)} to
-	 * create objects of this type.
+	 * Constructor. Use {@link #create(String, String)} or an
+	 * {@link EntityIdValuePool} to create objects of this type.
 	 *
 	 * @see NumericEntityIdValueImpl#EntityIdImpl(int, String)
 	 * @param id
@@ -75,7 +75,7 @@ public class PropertyIdValueImpl extends NumericEntityIdValueImpl implements
 	 *            the first part of the entity IRI of the site this belongs to,
 	 *            e.g., "http://www.wikidata.org/entity/"
 	 */
-	private PropertyIdValueImpl(int id, String baseIri) {
+	PropertyIdValueImpl(int id, String baseIri) {
 		super(id, baseIri);
 	}
 
@@ -90,8 +90,8 @@ public class PropertyIdValueImpl extends NumericEntityIdValueImpl implements
 	}
 
 	@Override
-	public String getId() {
-		return "P" + this.id;
+	char getIdPrefix() {
+		return 'P';
 	}
 
 }
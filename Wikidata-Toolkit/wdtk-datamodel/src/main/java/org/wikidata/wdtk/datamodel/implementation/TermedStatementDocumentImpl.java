@@ -26,12 +26,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.Validate;
 import org.wikidata.wdtk.datamodel.helpers.AbstractTermedStatementDocument;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
 
@@ -53,6 +55,12 @@ public abstract class TermedStatementDocumentImpl extends
 	final List<StatementGroup> statementGroups;
 	final long revisionId;
 
+	/**
+	 * Index of statement groups by the string id of their property. This is
+	 * built when first needed.
+	 */
+	transient volatile Map<String, StatementGroup> statementGroupIndex = null;
+
 	/**
 	 * Constructor.
 	 *
@@ -154,8 +162,42 @@ public abstract class TermedStatementDocumentImpl extends
 		return Collections.unmodifiableList(statementGroups);
 	}
 
+	@Override
+	public StatementGroup findStatementGroup(PropertyIdValue propertyIdValue) {
+		return findStatementGroup(propertyIdValue, getStatementGroupIndex());
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(String propertyId) {
+		return getStatementGroupIndex().get(propertyId);
+	}
+
+	@Override
+	public List<StatementGroup> findStatementGroups(
+			Set<PropertyIdValue> propertyIdValues) {
+		return findStatementGroups(propertyIdValues, getStatementGroupIndex());
+	}
+
 	@Override
 	public long getRevisionId() {
 		return this.revisionId;
 	}
+
+	/**
+	 * Returns the index of statement groups by property id, creating it if
+	 * necessary.
+	 *
+	 * @return map from property ids to statement groups
+	 */
+	Map<String, StatementGroup> getStatementGroupIndex() {
+		Map<String, StatementGroup> index = this.statementGroupIndex;
+		if (index == null) {
+			index = new HashMap<>(2 * this.statementGroups.size());
+			for (StatementGroup sg : this.statementGroups) {
+				index.put(sg.getProperty().getId(), sg);
+			}
+			this.statementGroupIndex = index;
+		}
+		return index;
+	}
 }
@@ -20,23 +20,26 @@ package org.wikidata.wdtk.datamodel.interfaces;
  * #L%
  */
 
-import org.wikidata.wdtk.datamodel.helpers.DatamodelConverter;
-import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.helpers.FilteredItemDocument;
+import org.wikidata.wdtk.datamodel.helpers.FilteredPropertyDocument;
 
 /**
  * Implementation of {@link EntityDocumentProcessor} that acts as a filter,
  * removing some of the data from {@link EntityDocument} objects before passing
- * them on to another processor. There is an overhead involved in using this,
- * even if no filters are set, since a deep copy of the data is created to
- * filter it.
- *
+ * them on to another processor. The documents are not copied. Instead, the
+ * processor receives lightweight views that hide the filtered data, so the
+ * overhead of using this is small. Processors that need to keep documents
+ * beyond the processing call should be aware that the views refer to the
+ * original documents.
  *
+ * @see FilteredItemDocument
+ * @see FilteredPropertyDocument
  * @author Markus Kroetzsch
  *
  */
 public class EntityDocumentProcessorFilter implements EntityDocumentProcessor {
 
-	final DatamodelConverter converter;
+	final DocumentDataFilter filter;
 	final EntityDocumentProcessor entityDocumentProcessor;
 
 	/**
@@ -50,21 +53,22 @@ public class EntityDocumentProcessorFilter implements EntityDocumentProcessor {
 	public EntityDocumentProcessorFilter(
 			EntityDocumentProcessor entityDocumentProcessor,
 			DocumentDataFilter filter) {
-		this.converter = new DatamodelConverter(new DataObjectFactoryImpl());
-		this.converter.setOptionFilter(filter);
+		this.filter = filter;
 		this.entityDocumentProcessor = entityDocumentProcessor;
 	}
 
 	@Override
 	public void processItemDocument(ItemDocument itemDocument) {
-		itemDocument = this.converter.copy(itemDocument);
-		this.entityDocumentProcessor.processItemDocument(itemDocument);
+		this.entityDocumentProcessor
+				.processItemDocument(new FilteredItemDocument(itemDocument,
+						this.filter));
 	}
 
 	@Override
 	public void processPropertyDocument(PropertyDocument propertyDocument) {
-		propertyDocument = this.converter.copy(propertyDocument);
-		this.entityDocumentProcessor.processPropertyDocument(propertyDocument);
+		this.entityDocumentProcessor
+				.processPropertyDocument(new FilteredPropertyDocument(
+						propertyDocument, this.filter));
 	}
 
 }
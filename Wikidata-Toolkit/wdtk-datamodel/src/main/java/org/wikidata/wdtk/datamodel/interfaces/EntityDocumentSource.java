@@ -0,0 +1,85 @@
+package org.wikidata.wdtk.datamodel.interfaces;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for classes that provide {@link EntityDocument} objects by their
+ * string ids, such as a local store of documents or a client of an online
+ * Wikibase API. Code that only looks up documents can use this interface to
+ * switch between these sources.
+ * <p>
+ * Like {@link java.util.concurrent.Callable#call()}, the methods are declared
+ * to throw any exception, since the sources fail in different ways.
+ * Implementations declare the specific exceptions they throw, so code that
+ * uses them directly does not need to catch general exceptions.
+ *
+ * @author agent
+ *
+ */
+public interface EntityDocumentSource {
+
+	/**
+	 * Returns the document for the entity of the given string id.
+	 *
+	 * @param entityId
+	 *            string id (e.g., "P31" or "Q42") of requested entity
+	 * @return the document, or null if no document could be found
+	 * @throws Exception
+	 *             if the document could not be retrieved
+	 */
+	EntityDocument getEntityDocument(String entityId) throws Exception;
+
+	/**
+	 * Returns the documents for the entities of the given string ids. The
+	 * result is a map from entity ids to {@link EntityDocument} objects. Ids
+	 * for which no document could be found are not set in the map.
+	 *
+	 * @param entityIds
+	 *            list of string ids (e.g., "P31", "Q42") of requested
+	 *            entities
+	 * @return map from ids for which data could be found to the documents
+	 * @throws Exception
+	 *             if the documents could not be retrieved
+	 */
+	Map<String, EntityDocument> getEntityDocuments(List<String> entityIds)
+			throws Exception;
+
+	/**
+	 * Passes the documents for the entities of the given string ids to the
+	 * given processor. Documents may be processed in any order, and ids for
+	 * which no document could be found are ignored. This is usually faster
+	 * than {@link #getEntityDocuments(List)} for large numbers of entities.
+	 *
+	 * @param entityIds
+	 *            list of string ids (e.g., "P31", "Q42") of requested
+	 *            entities
+	 * @param entityDocumentProcessor
+	 *            the processor that should receive the documents
+	 * @throws Exception
+	 *             if the documents could not be retrieved
+	 */
+	void processEntityDocuments(List<String> entityIds,
+			EntityDocumentProcessor entityDocumentProcessor) throws Exception;
+
+}
@@ -0,0 +1,443 @@
+package org.wikidata.wdtk.datamodel.interfaces;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Broker implementation of {@link EntityDocumentProcessor} which distributes
+ * entity documents to multiple registered listeners that run in parallel.
+ * Every registered processor has its own bounded queue and its own worker
+ * threads, so that a slow processor does not hold up the others until its
+ * queue is full. When this happens, the thread that feeds documents into the
+ * broker blocks, which prevents unbounded memory use.
+ * <p>
+ * Processors that are registered with a single thread (the default) receive
+ * all documents in the order in which they were given to the broker, and they
+ * are never called concurrently. Processors that are registered with more
+ * than one thread must be thread-safe and cannot rely on any particular order.
+ * <p>
+ * The broker must be started with {@link #open()} before any document is
+ * processed, and finished with {@link #close()}, which waits until all queued
+ * documents have been processed. The open and close methods of registered
+ * processors are not called by the broker. If a processor throws an
+ * exception, it is rethrown (wrapped in a {@link RuntimeException}) to the
+ * thread that uses the broker on the next call.
+ *
+ * @author agent
+ *
+ */
+public class ParallelEntityDocumentProcessorBroker implements
+		EntityDocumentDumpProcessor {
+
+	/**
+	 * Default number of documents that can be queued for each processor.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Object used to tell worker threads that there are no more documents.
+	 */
+	static final Object END_OF_DOCUMENTS = new Object();
+
+	/**
+	 * Processor and queue for each registered processor, in order of
+	 * registration.
+	 */
+	final List<ProcessorChannel> channels = new ArrayList<>();
+	/**
+	 * Lookup of channels by processor, used to avoid duplicate registrations
+	 * and to find the statistics of a processor.
+	 */
+	final IdentityHashMap<EntityDocumentProcessor, ProcessorChannel> channelRegistry = new IdentityHashMap<>();
+
+	/**
+	 * Number of documents that can be queued for each processor.
+	 */
+	final int queueCapacity;
+
+	/**
+	 * First error that occurred in any of the worker threads, if any.
+	 */
+	final AtomicReference<Throwable> workerError = new AtomicReference<>();
+
+	volatile boolean open = false;
+
+	/**
+	 * Constructor. Creates a broker that uses queues of size
+	 * {@link #DEFAULT_QUEUE_CAPACITY}.
+	 */
+	public ParallelEntityDocumentProcessorBroker() {
+		this(DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param queueCapacity
+	 *            the maximal number of documents that can be waiting for each
+	 *            processor before the broker blocks
+	 */
+	public ParallelEntityDocumentProcessorBroker(int queueCapacity) {
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException(
+					"Queue capacity must be positive");
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Registers a listener which will be called for all entity documents that
+	 * are processed. The listener will get all documents in order and is
+	 * never called concurrently. The method avoids duplicates in the sense
+	 * that the exact same object cannot be registered twice.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the listener to register
+	 */
+	public void registerEntityDocumentProcessor(
+			EntityDocumentProcessor entityDocumentProcessor) {
+		registerEntityDocumentProcessor(entityDocumentProcessor, 1);
+	}
+
+	/**
+	 * Registers a listener which will be called for all entity documents that
+	 * are processed, using the given number of threads. If more than one
+	 * thread is used, the listener must be thread-safe, and documents may
+	 * reach it in any order. The method avoids duplicates in the sense that
+	 * the exact same object cannot be registered twice.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the listener to register
+	 * @param threadCount
+	 *            the number of threads that should call the listener
+	 */
+	public synchronized void registerEntityDocumentProcessor(
+			EntityDocumentProcessor entityDocumentProcessor, int threadCount) {
+		if (this.open) {
+			throw new IllegalStateException(
+					"Cannot register processors after the broker was opened");
+		}
+		if (threadCount <= 0) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive");
+		}
+		if (!this.channelRegistry.containsKey(entityDocumentProcessor)) {
+			ProcessorChannel channel = new ProcessorChannel(
+					entityDocumentProcessor, threadCount, this.queueCapacity);
+			this.channels.add(channel);
+			this.channelRegistry.put(entityDocumentProcessor, channel);
+		}
+	}
+
+	@Override
+	public synchronized void open() {
+		if (this.open) {
+			return;
+		}
+		this.open = true;
+		for (ProcessorChannel channel : this.channels) {
+			channel.start();
+		}
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		dispatch(itemDocument);
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		dispatch(propertyDocument);
+	}
+
+	/**
+	 * Waits until all queued documents have been processed and stops all
+	 * worker threads.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!this.open) {
+			return;
+		}
+		this.open = false;
+
+		for (ProcessorChannel channel : this.channels) {
+			for (int i = 0; i < channel.threads.size(); i++) {
+				enqueue(channel, END_OF_DOCUMENTS, false);
+			}
+		}
+		try {
+			for (ProcessorChannel channel : this.channels) {
+				for (Thread thread : channel.threads) {
+					thread.join();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for processors to finish", e);
+		}
+		checkWorkerError();
+	}
+
+	/**
+	 * Returns the number of documents that are currently waiting to be
+	 * processed by the given processor. A processor that constantly has a full
+	 * queue is slowing down the broker.
+	 *
+	 * @param entityDocumentProcessor
+	 *            a registered processor
+	 * @return number of queued documents
+	 */
+	public int getQueueSize(EntityDocumentProcessor entityDocumentProcessor) {
+		return getChannel(entityDocumentProcessor).queue.size();
+	}
+
+	/**
+	 * Returns the number of documents that the given processor has finished
+	 * processing so far.
+	 *
+	 * @param entityDocumentProcessor
+	 *            a registered processor
+	 * @return number of processed documents
+	 */
+	public long getDocumentCount(EntityDocumentProcessor entityDocumentProcessor) {
+		return getChannel(entityDocumentProcessor).documentCount.get();
+	}
+
+	/**
+	 * Returns the total time in nanoseconds that the given processor has spent
+	 * processing documents so far. If more than one thread is used for the
+	 * processor, this is the sum of the times of all threads.
+	 *
+	 * @param entityDocumentProcessor
+	 *            a registered processor
+	 * @return processing time in nanoseconds
+	 */
+	public long getProcessingTime(
+			EntityDocumentProcessor entityDocumentProcessor) {
+		return getChannel(entityDocumentProcessor).processingTime.get();
+	}
+
+	/**
+	 * Returns a human-readable summary of the queue sizes and throughput of
+	 * all registered processors. This can be logged regularly to find out
+	 * which processor is the bottleneck.
+	 *
+	 * @return status report
+	 */
+	public String getStatusReport() {
+		StringBuilder builder = new StringBuilder();
+		for (ProcessorChannel channel : this.channels) {
+			long count = channel.documentCount.get();
+			long time = channel.processingTime.get();
+			builder.append(channel.entityDocumentProcessor.getClass()
+					.getSimpleName());
+			builder.append(": ").append(count).append(" documents");
+			if (time > 0) {
+				builder.append(" (").append(
+						count * 1000000000L / time * channel.threads.size());
+				builder.append(" docs/s)");
+			}
+			builder.append(", queue ").append(channel.queue.size());
+			builder.append("/").append(this.queueCapacity);
+			builder.append(System.getProperty("line.separator"));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Puts the given document into the queues of all processors.
+	 *
+	 * @param entityDocument
+	 *            the document to distribute
+	 */
+	void dispatch(EntityDocument entityDocument) {
+		if (!this.open) {
+			throw new IllegalStateException(
+					"Broker must be opened before processing documents");
+		}
+		for (ProcessorChannel channel : this.channels) {
+			enqueue(channel, entityDocument, true);
+		}
+	}
+
+	/**
+	 * Puts an object into the queue of a processor, waiting until there is
+	 * space in the queue. Errors in worker threads are checked while waiting,
+	 * so that a failing processor does not block the broker forever. If all
+	 * worker threads of the processor have stopped, nobody will ever take the
+	 * object from the queue: documents are then rejected with an exception,
+	 * and {@link #END_OF_DOCUMENTS} is not needed anymore and is dropped.
+	 *
+	 * @param channel
+	 *            the channel to put the object to
+	 * @param object
+	 *            the document or {@link #END_OF_DOCUMENTS}
+	 * @param checkErrors
+	 *            if true, errors of worker threads are rethrown
+	 */
+	void enqueue(ProcessorChannel channel, Object object, boolean checkErrors) {
+		try {
+			while (!channel.queue.offer(object, 100, TimeUnit.MILLISECONDS)) {
+				if (checkErrors) {
+					checkWorkerError();
+				}
+				if (!channel.isAlive()) {
+					if (!checkErrors) {
+						return;
+					}
+					checkWorkerError();
+					throw new RuntimeException("Worker threads of "
+							+ channel.getName() + " have stopped");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while waiting for processor queue", e);
+		}
+		if (checkErrors) {
+			checkWorkerError();
+		}
+	}
+
+	/**
+	 * Throws an exception if one of the worker threads failed.
+	 */
+	void checkWorkerError() {
+		Throwable error = this.workerError.get();
+		if (error != null) {
+			throw new RuntimeException("Entity document processor failed: "
+					+ error.getMessage(), error);
+		}
+	}
+
+	ProcessorChannel getChannel(EntityDocumentProcessor entityDocumentProcessor) {
+		ProcessorChannel channel = this.channelRegistry
+				.get(entityDocumentProcessor);
+		if (channel == null) {
+			throw new IllegalArgumentException(
+					"Processor is not registered with this broker");
+		}
+		return channel;
+	}
+
+	/**
+	 * Queue, worker threads, and statistics for one registered processor.
+	 *
+	 * @author agent
+	 *
+	 */
+	class ProcessorChannel implements Runnable {
+
+		final EntityDocumentProcessor entityDocumentProcessor;
+		final BlockingQueue<Object> queue;
+		final List<Thread> threads;
+		final int threadCount;
+
+		final AtomicLong documentCount = new AtomicLong(0);
+		final AtomicLong processingTime = new AtomicLong(0);
+
+		ProcessorChannel(EntityDocumentProcessor entityDocumentProcessor,
+				int threadCount, int queueCapacity) {
+			this.entityDocumentProcessor = entityDocumentProcessor;
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+			this.threadCount = threadCount;
+			this.threads = new ArrayList<>(threadCount);
+		}
+
+		/**
+		 * Creates and starts the worker threads for this processor.
+		 */
+		void start() {
+			this.threads.clear();
+			for (int i = 0; i < this.threadCount; i++) {
+				Thread thread = new Thread(this, "wdtk-broker-" + getName()
+						+ "-" + i);
+				thread.setDaemon(true);
+				this.threads.add(thread);
+				thread.start();
+			}
+		}
+
+		/**
+		 * Returns true if at least one worker thread of this processor is
+		 * still running.
+		 *
+		 * @return true if documents in the queue will still be processed
+		 */
+		boolean isAlive() {
+			for (Thread thread : this.threads) {
+				if (thread.isAlive()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		String getName() {
+			return this.entityDocumentProcessor.getClass().getSimpleName();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Object next = this.queue.take();
+					if (next == END_OF_DOCUMENTS) {
+						return;
+					}
+					if (workerError.get() != null) {
+						continue; // keep draining so that the broker can finish
+					}
+					long start = System.nanoTime();
+					try {
+						if (next instanceof ItemDocument) {
+							this.entityDocumentProcessor
+									.processItemDocument((ItemDocument) next);
+						} else if (next instanceof PropertyDocument) {
+							this.entityDocumentProcessor
+									.processPropertyDocument((PropertyDocument) next);
+						}
+					} catch (RuntimeException | Error e) {
+						workerError.compareAndSet(null, e);
+					}
+					this.processingTime.addAndGet(System.nanoTime() - start);
+					this.documentCount.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				// the queue is not drained anymore, so the broker must fail
+				workerError.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
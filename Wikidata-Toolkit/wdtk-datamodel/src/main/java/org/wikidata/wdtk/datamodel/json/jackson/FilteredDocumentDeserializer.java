@@ -0,0 +1,350 @@
+package org.wikidata.wdtk.datamodel.json.jackson;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * A streaming deserializer for {@link JacksonTermedStatementDocument} that
+ * applies a {@link DocumentDataFilter} while reading the JSON input. Terms in
+ * languages, site links to sites, and statement groups for properties that
+ * are excluded by the filter are skipped on the token level without creating
+ * any objects for them. This is much faster than deserializing the complete
+ * document and filtering it afterwards, especially when only a small part of
+ * the data is kept.
+ * <p>
+ * The property filter is evaluated based on the string ids of properties
+ * only, since the site IRI of the document is not known during
+ * deserialization. The filter settings are read when the deserializer is
+ * created; later changes to the filter object have no effect.
+ * <p>
+ * The result is the same as when filtering the deserialized document with
+ * {@link org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorFilter}
+ * , but the document is still a Jackson object that can be serialized again.
+ *
+ * @author agent
+ *
+ */
+public class FilteredDocumentDeserializer extends
+		JsonDeserializer<JacksonTermedStatementDocument> {
+
+	final DocumentDataFilter filter;
+
+	/**
+	 * Ids of the properties whose statements should be kept, or null if all
+	 * statements should be kept.
+	 */
+	final Set<String> propertyIds;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param filter
+	 *            the filter to apply while reading documents
+	 */
+	public FilteredDocumentDeserializer(DocumentDataFilter filter) {
+		this.filter = filter;
+		if (filter.getPropertyFilter() != null) {
+			this.propertyIds = new HashSet<>();
+			for (PropertyIdValue propertyIdValue : filter.getPropertyFilter()) {
+				this.propertyIds.add(propertyIdValue.getId());
+			}
+		} else {
+			this.propertyIds = null;
+		}
+	}
+
+	/**
+	 * Creates an object reader that reads
+	 * {@link JacksonTermedStatementDocument} objects using a
+	 * {@link FilteredDocumentDeserializer} for the given filter. Object
+	 * readers are thread-safe and can be used to read many documents.
+	 *
+	 * @param filter
+	 *            the filter to apply while reading documents
+	 * @return object reader for filtered documents
+	 */
+	public static ObjectReader getFilteredDocumentReader(
+			DocumentDataFilter filter) {
+		SimpleModule module = new SimpleModule();
+		module.addDeserializer(JacksonTermedStatementDocument.class,
+				new FilteredDocumentDeserializer(filter));
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(module);
+		return mapper.reader(JacksonTermedStatementDocument.class);
+	}
+
+	@Override
+	public Object deserializeWithType(JsonParser jp,
+			DeserializationContext ctxt, TypeDeserializer typeDeserializer)
+			throws IOException {
+		// The type is read from the "type" field by this deserializer itself
+		return deserialize(jp, ctxt);
+	}
+
+	@Override
+	public JacksonTermedStatementDocument deserialize(JsonParser jp,
+			DeserializationContext ctxt) throws IOException {
+		JsonToken token = jp.getCurrentToken();
+		if (token == JsonToken.START_OBJECT) {
+			token = jp.nextToken();
+		}
+
+		String type = null;
+		String id = null;
+		String datatype = null;
+		long revisionId = 0;
+		Map<String, JacksonMonolingualTextValue> labels = null;
+		Map<String, JacksonMonolingualTextValue> descriptions = null;
+		Map<String, List<JacksonMonolingualTextValue>> aliases = null;
+		Map<String, JacksonSiteLink> siteLinks = null;
+		Map<String, List<JacksonStatement>> claims = null;
+
+		for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+			String fieldName = jp.getCurrentName();
+			jp.nextToken();
+			switch (fieldName) {
+			case "type":
+				type = jp.getText();
+				break;
+			case "id":
+				id = jp.getText();
+				break;
+			case "datatype":
+				datatype = jp.getText();
+				break;
+			case "lastrevid":
+				revisionId = jp.getValueAsLong();
+				break;
+			case "labels":
+				labels = readTerms(jp);
+				break;
+			case "descriptions":
+				descriptions = readTerms(jp);
+				break;
+			case "aliases":
+				aliases = readAliases(jp);
+				break;
+			case "sitelinks":
+				siteLinks = readSiteLinks(jp);
+				break;
+			case "claims":
+				claims = readClaims(jp);
+				break;
+			default:
+				jp.skipChildren();
+			}
+		}
+
+		JacksonTermedStatementDocument document;
+		if (JacksonTermedStatementDocument.JSON_TYPE_ITEM.equals(type)) {
+			JacksonItemDocument itemDocument = new JacksonItemDocument();
+			if (siteLinks != null) {
+				itemDocument.setSiteLinks(siteLinks);
+			}
+			document = itemDocument;
+		} else if (JacksonTermedStatementDocument.JSON_TYPE_PROPERTY
+				.equals(type)) {
+			JacksonPropertyDocument propertyDocument = new JacksonPropertyDocument();
+			propertyDocument.setJsonDatatype(datatype);
+			document = propertyDocument;
+		} else {
+			throw new JsonMappingException("Unknown entity document type \""
+					+ type + "\"", jp.getCurrentLocation());
+		}
+
+		if (id != null) {
+			document.setJsonId(id);
+		}
+		document.setRevisionId(revisionId);
+		if (labels != null) {
+			document.setLabels(labels);
+		}
+		if (descriptions != null) {
+			document.setDescriptions(descriptions);
+		}
+		if (aliases != null) {
+			document.setAliases(aliases);
+		}
+		if (claims != null) {
+			document.setJsonClaims(claims);
+		}
+		return document;
+	}
+
+	/**
+	 * Reads a map of labels or descriptions, skipping all languages that are
+	 * not included by the filter.
+	 *
+	 * @param jp
+	 *            parser positioned at the start of the map
+	 * @return map of terms by language
+	 * @throws IOException
+	 */
+	Map<String, JacksonMonolingualTextValue> readTerms(JsonParser jp)
+			throws IOException {
+		Map<String, JacksonMonolingualTextValue> result = new LinkedHashMap<>();
+		if (jp.getCurrentToken() != JsonToken.START_OBJECT
+				|| this.filter.excludeAllLanguages()) {
+			// also covers the empty list "[]" that is sometimes used instead
+			// of an empty map (https://phabricator.wikimedia.org/T73349)
+			jp.skipChildren();
+			return result;
+		}
+
+		ObjectCodec codec = jp.getCodec();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String languageCode = jp.getCurrentName();
+			jp.nextToken();
+			if (this.filter.includeLanguage(languageCode)) {
+				result.put(languageCode,
+						codec.readValue(jp, JacksonMonolingualTextValue.class));
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a map of aliases, skipping all languages that are not included by
+	 * the filter.
+	 *
+	 * @param jp
+	 *            parser positioned at the start of the map
+	 * @return map of lists of aliases by language
+	 * @throws IOException
+	 */
+	Map<String, List<JacksonMonolingualTextValue>> readAliases(JsonParser jp)
+			throws IOException {
+		Map<String, List<JacksonMonolingualTextValue>> result = new LinkedHashMap<>();
+		if (jp.getCurrentToken() != JsonToken.START_OBJECT
+				|| this.filter.excludeAllLanguages()) {
+			jp.skipChildren();
+			return result;
+		}
+
+		ObjectCodec codec = jp.getCodec();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String languageCode = jp.getCurrentName();
+			jp.nextToken();
+			if (this.filter.includeLanguage(languageCode)) {
+				List<JacksonMonolingualTextValue> values = new ArrayList<>();
+				while (jp.nextToken() == JsonToken.START_OBJECT) {
+					values.add(codec.readValue(jp,
+							JacksonMonolingualTextValue.class));
+				}
+				result.put(languageCode, values);
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a map of site links, skipping all sites that are not included by
+	 * the filter.
+	 *
+	 * @param jp
+	 *            parser positioned at the start of the map
+	 * @return map of site links by site key
+	 * @throws IOException
+	 */
+	Map<String, JacksonSiteLink> readSiteLinks(JsonParser jp)
+			throws IOException {
+		Map<String, JacksonSiteLink> result = new LinkedHashMap<>();
+		if (jp.getCurrentToken() != JsonToken.START_OBJECT
+				|| this.filter.excludeAllSiteLinks()) {
+			jp.skipChildren();
+			return result;
+		}
+
+		ObjectCodec codec = jp.getCodec();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String siteKey = jp.getCurrentName();
+			jp.nextToken();
+			if (this.filter.includeSiteLink(siteKey)) {
+				result.put(siteKey, codec.readValue(jp, JacksonSiteLink.class));
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the map of statement groups, skipping all properties that are not
+	 * included by the filter.
+	 *
+	 * @param jp
+	 *            parser positioned at the start of the map
+	 * @return map of lists of statements by property id
+	 * @throws IOException
+	 */
+	Map<String, List<JacksonStatement>> readClaims(JsonParser jp)
+			throws IOException {
+		Map<String, List<JacksonStatement>> result = new LinkedHashMap<>();
+		if (jp.getCurrentToken() != JsonToken.START_OBJECT
+				|| this.filter.excludeAllProperties()) {
+			jp.skipChildren();
+			return result;
+		}
+
+		ObjectCodec codec = jp.getCodec();
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String propertyId = jp.getCurrentName();
+			jp.nextToken();
+			if (this.propertyIds == null
+					|| this.propertyIds.contains(propertyId)) {
+				List<JacksonStatement> statements = new ArrayList<>();
+				while (jp.nextToken() == JsonToken.START_OBJECT) {
+					statements.add(codec.readValue(jp, JacksonStatement.class));
+				}
+				result.put(propertyId, statements);
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return result;
+	}
+
+}
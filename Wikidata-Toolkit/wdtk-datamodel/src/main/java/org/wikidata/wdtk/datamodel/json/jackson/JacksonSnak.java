@@ -21,6 +21,7 @@ package org.wikidata.wdtk.datamodel.json.jackson;
  */
 
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Snak;
 import org.wikidata.wdtk.datamodel.interfaces.Value;
@@ -72,6 +73,13 @@ public abstract class JacksonSnak implements Snak {
 	@JsonIgnore
 	String siteIri = null;
 
+	/**
+	 * The property id object of this snak; created when first needed, or
+	 * taken from an {@link EntityIdValuePool} when setting the site IRI.
+	 */
+	@JsonIgnore
+	PropertyIdValue propertyIdValue = null;
+
 	/**
 	 * Constructor. Creates an empty object that can be populated during JSON
 	 * deserialization. Should only be used by Jackson for this very purpose.
@@ -98,13 +106,18 @@ public abstract class JacksonSnak implements Snak {
 	 */
 	public void setProperty(String property) {
 		this.property = property;
+		this.propertyIdValue = null;
 	}
 
 	@JsonIgnore
 	@Override
 	public PropertyIdValue getPropertyId() {
-		if (this.siteIri != null) {
-			return Datamodel.makePropertyIdValue(property, this.siteIri);
+		if (this.propertyIdValue != null) {
+			return this.propertyIdValue;
+		} else if (this.siteIri != null) {
+			this.propertyIdValue = Datamodel.makePropertyIdValue(property,
+					this.siteIri);
+			return this.propertyIdValue;
 		} else {
 			throw new RuntimeException(
 					"Cannot access the property id of an insufficiently initialised Jackson snak.");
@@ -124,12 +137,34 @@ public abstract class JacksonSnak implements Snak {
 	 * of the JSON serialization of snaks. This method should only be used
 	 * during deserialization.
 	 *
-	 * @param parentDocument
+	 * @param siteIri
 	 *            new value
 	 */
 	@JsonIgnore
 	void setSiteIri(String siteIri) {
+		setSiteIri(siteIri, null);
+	}
+
+	/**
+	 * Sets the IRI of the site this snak belongs to, and uses the given pool to
+	 * obtain the id of the property of this snak. This method should only be
+	 * used during deserialization.
+	 *
+	 * @see #setSiteIri(String)
+	 * @param siteIri
+	 *            new value
+	 * @param entityIdValuePool
+	 *            pool for canonical entity ids, or null if no pool is used
+	 */
+	@JsonIgnore
+	void setSiteIri(String siteIri, EntityIdValuePool entityIdValuePool) {
 		this.siteIri = siteIri;
+		if (entityIdValuePool != null) {
+			this.propertyIdValue = entityIdValuePool.getPropertyIdValue(
+					this.property, siteIri);
+		} else {
+			this.propertyIdValue = null;
+		}
 	}
 
 }
@@ -29,6 +29,7 @@ import java.util.Map;
 import org.wikidata.wdtk.datamodel.helpers.Equality;
 import org.wikidata.wdtk.datamodel.helpers.Hash;
 import org.wikidata.wdtk.datamodel.helpers.ToString;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
 import org.wikidata.wdtk.datamodel.interfaces.Claim;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Reference;
@@ -160,20 +161,37 @@ public class JacksonStatement implements Statement {
 	 */
 	@JsonIgnore
 	void setSubject(EntityIdValue subject) {
+		setSubject(subject, null);
+	}
+
+	/**
+	 * Sets the subject entity of this statement, and uses the given pool to
+	 * obtain the property ids of all snaks. This method should only be used
+	 * during deserialization.
+	 *
+	 * @see #setSubject(EntityIdValue)
+	 * @param subject
+	 *            new value
+	 * @param entityIdValuePool
+	 *            pool for canonical entity ids, or null if no pool is used
+	 */
+	@JsonIgnore
+	void setSubject(EntityIdValue subject, EntityIdValuePool entityIdValuePool) {
 		this.subject = subject;
+		String siteIri = subject.getSiteIri();
 
-		this.mainsnak.setSiteIri(subject.getSiteIri());
+		this.mainsnak.setSiteIri(siteIri, entityIdValuePool);
 
 		for (List<JacksonSnak> snaks : this.qualifiers.values()) {
 			for (JacksonSnak snak : snaks) {
-				snak.setSiteIri(subject.getSiteIri());
+				snak.setSiteIri(siteIri, entityIdValuePool);
 			}
 		}
 
 		for (JacksonReference reference : this.references) {
 			for (List<JacksonSnak> snaks : reference.snaks.values()) {
 				for (JacksonSnak snak : snaks) {
-					snak.setSiteIri(subject.getSiteIri());
+					snak.setSiteIri(siteIri, entityIdValuePool);
 				}
 			}
 		}
@@ -26,11 +26,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.wikidata.wdtk.datamodel.helpers.AbstractTermedStatementDocument;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
 
@@ -85,7 +88,13 @@ public abstract class JacksonTermedStatementDocument extends
 	 * Statement groups. This member is initialized when statements are
 	 * accessed.
 	 */
-	private List<StatementGroup> statementGroups = null;
+	private volatile List<StatementGroup> statementGroups = null;
+
+	/**
+	 * Index of statement groups by the string id of their property. This is
+	 * built when first needed.
+	 */
+	private volatile Map<String, StatementGroup> statementGroupIndex = null;
 
 	/**
 	 * The id of the entity that the document refers to. This is not mapped to
@@ -237,14 +246,33 @@ public abstract class JacksonTermedStatementDocument extends
 	 */
 	@JsonIgnore
 	public void setSiteIri(String siteIri) {
+		setSiteIri(siteIri, null);
+	}
+
+	/**
+	 * Sets the site iri to the given value, like {@link #setSiteIri(String)},
+	 * and uses the given pool to obtain canonical objects for the entity ids
+	 * of the subject and the properties of all statements. This saves memory
+	 * when many documents are kept.
+	 *
+	 * @param siteIri
+	 *            the site IRI
+	 * @param entityIdValuePool
+	 *            pool for canonical entity ids, or null if no pool is used
+	 */
+	@JsonIgnore
+	public void setSiteIri(String siteIri, EntityIdValuePool entityIdValuePool) {
 		this.siteIri = siteIri;
 
 		EntityIdValue subject = this.getEntityId();
+		if (entityIdValuePool != null) {
+			subject = entityIdValuePool.getEntityIdValue(subject);
+		}
 
 		for (Entry<String, List<JacksonStatement>> entry : this.claims
 				.entrySet()) {
 			for (JacksonStatement statement : entry.getValue()) {
-				statement.setSubject(subject);
+				statement.setSubject(subject, entityIdValuePool);
 			}
 		}
 	}
@@ -257,14 +285,50 @@ public abstract class JacksonTermedStatementDocument extends
 	@JsonIgnore
 	@Override
 	public List<StatementGroup> getStatementGroups() {
-		if (this.statementGroups == null) {
-			this.statementGroups = new ArrayList<>(this.claims.size());
+		List<StatementGroup> groups = this.statementGroups;
+		if (groups == null) {
+			groups = new ArrayList<>(this.claims.size());
 			for (List<JacksonStatement> statements : this.claims.values()) {
-				this.statementGroups
-						.add(new StatementGroupFromJson(statements));
+				groups.add(new StatementGroupFromJson(statements));
+			}
+			this.statementGroups = groups;
+		}
+		return groups;
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(PropertyIdValue propertyIdValue) {
+		return findStatementGroup(propertyIdValue, getStatementGroupIndex());
+	}
+
+	@Override
+	public StatementGroup findStatementGroup(String propertyId) {
+		return getStatementGroupIndex().get(propertyId);
+	}
+
+	@Override
+	public List<StatementGroup> findStatementGroups(
+			Set<PropertyIdValue> propertyIdValues) {
+		return findStatementGroups(propertyIdValues, getStatementGroupIndex());
+	}
+
+	/**
+	 * Returns the index of statement groups by property id, creating it if
+	 * necessary.
+	 *
+	 * @return map from property ids to statement groups
+	 */
+	Map<String, StatementGroup> getStatementGroupIndex() {
+		Map<String, StatementGroup> index = this.statementGroupIndex;
+		if (index == null) {
+			List<StatementGroup> groups = getStatementGroups();
+			index = new HashMap<>(2 * groups.size());
+			for (StatementGroup sg : groups) {
+				index.put(sg.getProperty().getId(), sg);
 			}
+			this.statementGroupIndex = index;
 		}
-		return this.statementGroups;
+		return index;
 	}
 
 	/**
@@ -285,6 +349,7 @@ public abstract class JacksonTermedStatementDocument extends
 			this.claims = claims;
 		}
 		this.statementGroups = null; // clear cache
+		this.statementGroupIndex = null;
 	}
 
 	/**
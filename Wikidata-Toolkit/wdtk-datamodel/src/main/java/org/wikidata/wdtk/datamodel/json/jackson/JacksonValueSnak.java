@@ -23,6 +23,8 @@ package org.wikidata.wdtk.datamodel.json.jackson;
 import org.wikidata.wdtk.datamodel.helpers.Equality;
 import org.wikidata.wdtk.datamodel.helpers.Hash;
 import org.wikidata.wdtk.datamodel.helpers.ToString;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.SnakVisitor;
 import org.wikidata.wdtk.datamodel.interfaces.Value;
 import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
@@ -47,6 +49,15 @@ public class JacksonValueSnak extends JacksonSnak implements ValueSnak {
 	 */
 	private JacksonValue datavalue;
 
+	/**
+	 * The canonical entity id taken from an {@link EntityIdValuePool} when
+	 * setting the site IRI, or null if the value is not an entity id or no
+	 * pool was used. If set, it is returned as the value of this snak, while
+	 * {@link #datavalue} is still used for serialization.
+	 */
+	@JsonIgnore
+	private EntityIdValue pooledValue = null;
+
 	/**
 	 * The property datatype of the property used for this value snak. This is
 	 * redundant information provided in the JSON but not represented in the
@@ -67,6 +78,9 @@ public class JacksonValueSnak extends JacksonSnak implements ValueSnak {
 	@JsonIgnore
 	@Override
 	public Value getValue() {
+		if (this.pooledValue != null) {
+			return this.pooledValue;
+		}
 		return this.datavalue;
 	}
 
@@ -100,6 +114,7 @@ public class JacksonValueSnak extends JacksonSnak implements ValueSnak {
 	 */
 	public void setDatavalue(JacksonValue datavalue) {
 		this.datavalue = datavalue;
+		this.pooledValue = null;
 	}
 
 	/**
@@ -112,10 +127,17 @@ public class JacksonValueSnak extends JacksonSnak implements ValueSnak {
 	}
 
 	@Override
-	void setSiteIri(String siteIri) {
-		super.setSiteIri(siteIri);
+	void setSiteIri(String siteIri, EntityIdValuePool entityIdValuePool) {
+		super.setSiteIri(siteIri, entityIdValuePool);
 		if (this.datavalue instanceof JacksonValueEntityId) {
-			((JacksonValueEntityId) this.datavalue).setSiteIri(siteIri);
+			JacksonValueEntityId entityIdValue = (JacksonValueEntityId) this.datavalue;
+			entityIdValue.setSiteIri(siteIri);
+			if (entityIdValuePool != null) {
+				this.pooledValue = entityIdValuePool
+						.getEntityIdValue(entityIdValue);
+			} else {
+				this.pooledValue = null;
+			}
 		}
 	}
 
@@ -0,0 +1,409 @@
+package org.wikidata.wdtk.datamodel.json.jackson;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Class to decode the lines of a JSON dump into entity documents using several
+ * threads. Lines are collected into batches, which are parsed in parallel into
+ * {@link JacksonTermedStatementDocument} objects. The resulting documents are
+ * passed on to an {@link EntityDocumentProcessor} in the original order of the
+ * lines, always on the thread that provides the lines. Hence the processor
+ * does not need to be thread-safe.
+ * <p>
+ * The decoder understands the line format of Wikidata's JSON dumps, which
+ * contain one entity per line, each followed by a comma, within a surrounding
+ * JSON array. Lines that only contain the array brackets are ignored. The
+ * number of batches that are parsed or waiting to be processed is bounded, so
+ * memory use stays constant regardless of the size of the dump.
+ * <p>
+ * After all lines have been given to the decoder, {@link #finish()} must be
+ * called to process the last documents and to stop the decoding threads.
+ *
+ * @author agent
+ *
+ */
+public class ParallelJsonDocumentDecoder {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(ParallelJsonDocumentDecoder.class);
+
+	/**
+	 * Default number of lines that are parsed together by one thread.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * Reader used to parse documents. Object readers are immutable and can be
+	 * shared by all threads.
+	 */
+	final ObjectReader documentReader;
+
+	/**
+	 * The processor that documents are passed to.
+	 */
+	final EntityDocumentProcessor entityDocumentProcessor;
+
+	/**
+	 * The site IRI to be set for all documents, or null if the default should
+	 * be used.
+	 */
+	final String siteIri;
+
+	final int batchSize;
+
+	/**
+	 * The maximal number of batches that are parsed or parsed but not yet
+	 * processed at any time.
+	 */
+	final int maxPendingBatches;
+
+	final ExecutorService executor;
+
+	/**
+	 * Batches in the order of submission. The head of the queue is the next
+	 * batch to be processed.
+	 */
+	final Queue<Future<List<JacksonTermedStatementDocument>>> pendingBatches = new ArrayDeque<>();
+
+	/**
+	 * Lines of the batch that is currently being filled.
+	 */
+	List<String> currentBatch;
+
+	/**
+	 * Pool for canonical entity ids, or null if ids should not be pooled.
+	 */
+	EntityIdValuePool entityIdValuePool = null;
+
+	final AtomicLong errorCount = new AtomicLong(0);
+	long documentCount = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to pass decoded documents to
+	 * @param siteIri
+	 *            the IRI of the site the dump is from, e.g.,
+	 *            "http://www.wikidata.org/entity/"; may be null to use the
+	 *            default
+	 * @param threadCount
+	 *            the number of threads to use for parsing
+	 * @param batchSize
+	 *            the number of lines that are parsed together by one thread
+	 */
+	public ParallelJsonDocumentDecoder(
+			EntityDocumentProcessor entityDocumentProcessor, String siteIri,
+			int threadCount, int batchSize) {
+		this(entityDocumentProcessor, siteIri, threadCount, batchSize, null);
+	}
+
+	/**
+	 * Constructor for a decoder that filters the data of documents while
+	 * parsing them, using a {@link FilteredDocumentDeserializer}. Data that is
+	 * excluded by the filter is skipped without creating any objects for it.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to pass decoded documents to
+	 * @param siteIri
+	 *            the IRI of the site the dump is from, e.g.,
+	 *            "http://www.wikidata.org/entity/"; may be null to use the
+	 *            default
+	 * @param threadCount
+	 *            the number of threads to use for parsing
+	 * @param batchSize
+	 *            the number of lines that are parsed together by one thread
+	 * @param filter
+	 *            the filter to apply while parsing, or null if all data
+	 *            should be kept
+	 */
+	public ParallelJsonDocumentDecoder(
+			EntityDocumentProcessor entityDocumentProcessor, String siteIri,
+			int threadCount, int batchSize, DocumentDataFilter filter) {
+		if (threadCount <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException(
+					"Thread count and batch size must be positive");
+		}
+		if (filter != null) {
+			this.documentReader = FilteredDocumentDeserializer
+					.getFilteredDocumentReader(filter);
+		} else {
+			this.documentReader = new ObjectMapper()
+					.reader(JacksonTermedStatementDocument.class);
+		}
+		this.entityDocumentProcessor = entityDocumentProcessor;
+		this.siteIri = siteIri;
+		this.batchSize = batchSize;
+		this.maxPendingBatches = 2 * threadCount;
+		this.currentBatch = new ArrayList<>(batchSize);
+		this.executor = Executors.newFixedThreadPool(threadCount,
+				new ThreadFactory() {
+					int count = 0;
+
+					@Override
+					public synchronized Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"wdtk-json-decoder-" + (count++));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Constructor. Uses batches of size {@link #DEFAULT_BATCH_SIZE}.
+	 *
+	 * @param entityDocumentProcessor
+	 *            the processor to pass decoded documents to
+	 * @param siteIri
+	 *            the IRI of the site the dump is from; may be null to use the
+	 *            default
+	 * @param threadCount
+	 *            the number of threads to use for parsing
+	 */
+	public ParallelJsonDocumentDecoder(
+			EntityDocumentProcessor entityDocumentProcessor, String siteIri,
+			int threadCount) {
+		this(entityDocumentProcessor, siteIri, threadCount, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Sets a pool that is used to obtain canonical objects for the ids of
+	 * entities and properties in decoded documents. This reduces memory usage
+	 * if documents are kept after processing. Pooling is only used if a site
+	 * IRI has been given. This method must be called before any lines are
+	 * processed.
+	 *
+	 * @param entityIdValuePool
+	 *            the pool to use, or null if ids should not be pooled
+	 */
+	public void setEntityIdValuePool(EntityIdValuePool entityIdValuePool) {
+		this.entityIdValuePool = entityIdValuePool;
+	}
+
+	/**
+	 * Decodes all lines that can be read from the given reader, and finishes
+	 * processing afterwards. If reading or processing fails, the remaining
+	 * batches are discarded and the decoding threads are stopped, so that the
+	 * original exception is passed on.
+	 *
+	 * @param reader
+	 *            reader for the lines of a JSON dump
+	 * @throws IOException
+	 *             if there was a problem reading the input
+	 */
+	public void processDump(BufferedReader reader) throws IOException {
+		boolean completed = false;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				processLine(line);
+			}
+			completed = true;
+		} finally {
+			if (!completed) {
+				this.executor.shutdownNow();
+			}
+		}
+		finish();
+	}
+
+	/**
+	 * Adds one line of a JSON dump for decoding. Documents of previous lines
+	 * may be passed to the processor during this call.
+	 *
+	 * @param line
+	 *            the line
+	 */
+	public void processLine(String line) {
+		this.currentBatch.add(line);
+		if (this.currentBatch.size() >= this.batchSize) {
+			submitCurrentBatch();
+		}
+	}
+
+	/**
+	 * Processes all remaining documents and stops the decoding threads. The
+	 * decoder cannot be used after this.
+	 */
+	public void finish() {
+		try {
+			submitCurrentBatch();
+			while (!this.pendingBatches.isEmpty()) {
+				processNextBatch();
+			}
+		} finally {
+			this.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of documents that have been passed to the processor
+	 * so far.
+	 *
+	 * @return number of documents
+	 */
+	public long getDocumentCount() {
+		return this.documentCount;
+	}
+
+	/**
+	 * Returns the number of lines that could not be decoded.
+	 *
+	 * @return number of errors
+	 */
+	public long getErrorCount() {
+		return this.errorCount.get();
+	}
+
+	/**
+	 * Starts the parsing of the current batch, processing older batches first
+	 * if too many batches are pending.
+	 */
+	void submitCurrentBatch() {
+		if (this.currentBatch.isEmpty()) {
+			return;
+		}
+		while (this.pendingBatches.size() >= this.maxPendingBatches) {
+			processNextBatch();
+		}
+		final List<String> lines = this.currentBatch;
+		this.currentBatch = new ArrayList<>(this.batchSize);
+		this.pendingBatches.add(this.executor
+				.submit(new Callable<List<JacksonTermedStatementDocument>>() {
+					@Override
+					public List<JacksonTermedStatementDocument> call() {
+						return decodeLines(lines);
+					}
+				}));
+	}
+
+	/**
+	 * Waits for the oldest pending batch and passes its documents to the
+	 * processor.
+	 */
+	void processNextBatch() {
+		List<JacksonTermedStatementDocument> documents;
+		try {
+			documents = this.pendingBatches.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while decoding JSON", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to decode JSON: "
+					+ e.getCause().getMessage(), e.getCause());
+		}
+
+		for (JacksonTermedStatementDocument document : documents) {
+			if (document instanceof ItemDocument) {
+				this.entityDocumentProcessor
+						.processItemDocument((ItemDocument) document);
+			} else if (document instanceof PropertyDocument) {
+				this.entityDocumentProcessor
+						.processPropertyDocument((PropertyDocument) document);
+			}
+			this.documentCount++;
+		}
+	}
+
+	/**
+	 * Parses the given lines into documents. Lines that do not contain an
+	 * entity are skipped. Lines that cannot be parsed are logged and skipped.
+	 *
+	 * @param lines
+	 *            the lines to parse
+	 * @return list of documents in the order of the lines
+	 */
+	List<JacksonTermedStatementDocument> decodeLines(List<String> lines) {
+		List<JacksonTermedStatementDocument> result = new ArrayList<>(
+				lines.size());
+		for (String line : lines) {
+			String json = getJsonFromLine(line);
+			if (json == null) {
+				continue;
+			}
+			try {
+				JacksonTermedStatementDocument document = documentReader
+						.readValue(json);
+				if (this.siteIri != null) {
+					document.setSiteIri(this.siteIri, this.entityIdValuePool);
+				}
+				result.add(document);
+			} catch (IOException e) {
+				this.errorCount.incrementAndGet();
+				logger.error("Failed to decode JSON entity document: "
+						+ e.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Extracts the JSON object from a line of a JSON dump.
+	 *
+	 * @param line
+	 *            the line
+	 * @return the JSON string, or null if the line does not contain an entity
+	 */
+	static String getJsonFromLine(String line) {
+		int start = 0;
+		int end = line.length();
+		while (start < end && Character.isWhitespace(line.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+			end--;
+		}
+		if (end > start && line.charAt(end - 1) == ',') {
+			end--;
+		}
+		if (end - start <= 1) { // empty lines, "[", and "]"
+			return null;
+		}
+		return line.substring(start, end);
+	}
+
+}
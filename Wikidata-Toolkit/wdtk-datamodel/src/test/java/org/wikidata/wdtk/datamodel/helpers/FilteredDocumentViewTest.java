@@ -0,0 +1,233 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.interfaces.Claim;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessorFilter;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+
+public class FilteredDocumentViewTest {
+
+	final PropertyIdValue p1 = Datamodel.makeWikidataPropertyIdValue("P1");
+	final PropertyIdValue p2 = Datamodel.makeWikidataPropertyIdValue("P2");
+	final PropertyIdValue p3 = Datamodel.makeWikidataPropertyIdValue("P3");
+
+	StatementGroup makeTestStatementGroup(PropertyIdValue propertyIdValue) {
+		Claim claim = Datamodel.makeClaim(
+				Datamodel.makeWikidataItemIdValue("Q42"),
+				Datamodel.makeSomeValueSnak(propertyIdValue),
+				Collections.<SnakGroup> emptyList());
+		Statement statement = Datamodel.makeStatement(claim,
+				Collections.<Reference> emptyList(), StatementRank.NORMAL,
+				"statement-id-" + propertyIdValue.getId());
+		return Datamodel.makeStatementGroup(Collections
+				.singletonList(statement));
+	}
+
+	List<MonolingualTextValue> makeTerms(String prefix) {
+		List<MonolingualTextValue> terms = new ArrayList<>();
+		terms.add(Datamodel.makeMonolingualTextValue(prefix + " de", "de"));
+		terms.add(Datamodel.makeMonolingualTextValue(prefix + " en", "en"));
+		terms.add(Datamodel.makeMonolingualTextValue(prefix + " he", "he"));
+		return terms;
+	}
+
+	ItemDocument makeTestItemDocument() {
+		List<MonolingualTextValue> aliases = makeTerms("Alias");
+		aliases.add(Datamodel.makeMonolingualTextValue("Alias de2", "de"));
+
+		List<StatementGroup> statementGroups = new ArrayList<>();
+		statementGroups.add(makeTestStatementGroup(this.p1));
+		statementGroups.add(makeTestStatementGroup(this.p2));
+		statementGroups.add(makeTestStatementGroup(this.p3));
+
+		Map<String, SiteLink> siteLinks = new HashMap<>();
+		for (int i = 1; i <= 4; i++) {
+			siteLinks.put("site" + i, Datamodel.makeSiteLink("Title " + i,
+					"site" + i, Collections.<String> emptyList()));
+		}
+
+		return Datamodel.makeItemDocument(
+				Datamodel.makeWikidataItemIdValue("Q42"), makeTerms("Label"),
+				makeTerms("Desc"), aliases, statementGroups, siteLinks);
+	}
+
+	DocumentDataFilter makeTestFilter() {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		Set<String> languages = new HashSet<>();
+		languages.add("de");
+		languages.add("he");
+		filter.setLanguageFilter(languages);
+		Set<PropertyIdValue> properties = new HashSet<>();
+		properties.add(this.p1);
+		properties.add(this.p3);
+		filter.setPropertyFilter(properties);
+		Set<String> sites = new HashSet<>();
+		sites.add("site2");
+		sites.add("site4");
+		sites.add("site5");
+		filter.setSiteLinkFilter(sites);
+		return filter;
+	}
+
+	/**
+	 * Returns the result of filtering the document with
+	 * {@link DatamodelConverter}, which the views should agree with.
+	 */
+	ItemDocument copyWithFilter(ItemDocument itemDocument,
+			DocumentDataFilter filter) {
+		DatamodelConverter converter = new DatamodelConverter(
+				new DataObjectFactoryImpl());
+		converter.setOptionFilter(filter);
+		return converter.copy(itemDocument);
+	}
+
+	@Test
+	public void testItemDocumentFilter() {
+		ItemDocument itemDocument = makeTestItemDocument();
+		DocumentDataFilter filter = makeTestFilter();
+		FilteredItemDocument view = new FilteredItemDocument(itemDocument,
+				filter);
+		ItemDocument expected = copyWithFilter(itemDocument, filter);
+
+		assertEquals(expected, view);
+		assertEquals(view, expected);
+		assertEquals(expected.hashCode(), view.hashCode());
+		assertEquals(expected.toString(), view.toString());
+
+		assertEquals(2, view.getLabels().size());
+		assertEquals("Label de", view.findLabel("de"));
+		assertNull(view.findLabel("en"));
+		assertFalse(view.getDescriptions().containsKey("en"));
+		assertEquals(2, view.getAliases().get("de").size());
+		assertEquals(2, view.getSiteLinks().size());
+		assertFalse(view.getSiteLinks().containsKey("site5"));
+
+		assertEquals(2, view.getStatementGroups().size());
+		assertTrue(view.hasStatement(this.p3));
+		assertTrue(view.hasStatement("P1"));
+		assertFalse(view.hasStatement(this.p2));
+		assertFalse(view.hasStatement("P2"));
+		assertSame(itemDocument, view.getFilteredDocument());
+	}
+
+	@Test
+	public void testEmptyFilters() {
+		ItemDocument itemDocument = makeTestItemDocument();
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(Collections.<String> emptySet());
+		filter.setPropertyFilter(Collections.<PropertyIdValue> emptySet());
+		filter.setSiteLinkFilter(Collections.<String> emptySet());
+		FilteredItemDocument view = new FilteredItemDocument(itemDocument,
+				filter);
+
+		assertEquals(copyWithFilter(itemDocument, filter), view);
+		assertTrue(view.getLabels().isEmpty());
+		assertTrue(view.getAliases().isEmpty());
+		assertTrue(view.getStatementGroups().isEmpty());
+		assertTrue(view.getSiteLinks().isEmpty());
+		assertFalse(view.hasStatement(this.p1));
+	}
+
+	@Test
+	public void testNoFilters() {
+		ItemDocument itemDocument = makeTestItemDocument();
+		FilteredItemDocument view = new FilteredItemDocument(itemDocument,
+				new DocumentDataFilter());
+
+		assertEquals(itemDocument, view);
+		assertEquals(itemDocument.getStatementGroups(),
+				view.getStatementGroups());
+		assertEquals(itemDocument.getSiteLinks(), view.getSiteLinks());
+	}
+
+	@Test
+	public void testPropertyDocumentFilter() {
+		PropertyDocument propertyDocument = Datamodel.makePropertyDocument(
+				this.p1, makeTerms("Label"), makeTerms("Desc"),
+				makeTerms("Alias"), Collections.<StatementGroup> emptyList(),
+				Datamodel.makeDatatypeIdValue(DatatypeIdValue.DT_STRING));
+		DocumentDataFilter filter = makeTestFilter();
+		DatamodelConverter converter = new DatamodelConverter(
+				new DataObjectFactoryImpl());
+		converter.setOptionFilter(filter);
+
+		FilteredPropertyDocument view = new FilteredPropertyDocument(
+				propertyDocument, filter);
+
+		assertEquals(converter.copy(propertyDocument), view);
+		assertEquals(this.p1, view.getPropertyId());
+		assertEquals(DatatypeIdValue.DT_STRING, view.getDatatype().getIri());
+	}
+
+	@Test
+	public void testProcessorFilter() {
+		final List<ItemDocument> results = new ArrayList<>();
+		DocumentDataFilter filter = makeTestFilter();
+		EntityDocumentProcessorFilter processorFilter = new EntityDocumentProcessorFilter(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						results.add(itemDocument);
+					}
+
+					@Override
+					public void processPropertyDocument(
+							PropertyDocument propertyDocument) {
+					}
+				}, filter);
+
+		ItemDocument itemDocument = makeTestItemDocument();
+		processorFilter.processItemDocument(itemDocument);
+
+		assertEquals(1, results.size());
+		assertEquals(copyWithFilter(itemDocument, filter), results.get(0));
+	}
+
+}
@@ -22,13 +22,21 @@ package org.wikidata.wdtk.datamodel.helpers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Test;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.json.jackson.JacksonObjectFactory;
 
 public class StatementDocumentTest {
 	static ItemIdValue Q1 = Datamodel.makeWikidataItemIdValue("Q1");
@@ -61,4 +69,53 @@ public class StatementDocumentTest {
 		assertEquals(null, id.findStatement(P3));
 		assertEquals(null, id.findStatement("P3"));
 	}
+
+	@Test
+	public void testFindStatementGroups() {
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P2)
+				.withValue(Q2).build();
+		ItemDocument id = ItemDocumentBuilder.forItemId(Q1).withStatement(s1)
+				.withStatement(s2).build();
+		ItemDocument jacksonId = new DatamodelConverter(
+				new JacksonObjectFactory()).copy(id);
+
+		for (ItemDocument document : new ItemDocument[] { id, jacksonId }) {
+			Set<PropertyIdValue> properties = new HashSet<>();
+			properties.add(P1);
+			properties.add(P3);
+			List<StatementGroup> result = AbstractTermedStatementDocument
+					.findStatementGroups(document, properties);
+			assertEquals(1, result.size());
+			assertEquals(P1, result.get(0).getProperty());
+
+			properties.add(P2);
+			assertEquals(2, AbstractTermedStatementDocument
+					.findStatementGroups(document, properties).size());
+			assertTrue(AbstractTermedStatementDocument.findStatementGroups(
+					document, Collections.<PropertyIdValue> emptySet())
+					.isEmpty());
+
+			assertEquals(s2, document.findStatementGroup("P2")
+					.getStatements().get(0));
+			assertNull(document.findStatementGroup("P3"));
+		}
+	}
+
+	@Test
+	public void testFindStatementGroupChecksSite() {
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).build();
+		ItemDocument id = ItemDocumentBuilder.forItemId(Q1).withStatement(s1)
+				.build();
+		PropertyIdValue otherP1 = Datamodel.makePropertyIdValue("P1",
+				"http://example.org/entity/");
+
+		assertTrue(id.hasStatement(P1));
+		assertFalse(id.hasStatement(otherP1));
+		assertTrue(AbstractTermedStatementDocument
+				.findStatementGroups(id, Collections.singleton(otherP1))
+				.isEmpty());
+	}
 }
@@ -0,0 +1,148 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ValueVisitor;
+
+public class EntityIdValuePoolTest {
+
+	static final String WIKIDATA = "http://www.wikidata.org/entity/";
+	static final String EXAMPLE = "http://www.example.org/entity/";
+
+	@Test
+	public void testIdsAreCanonical() {
+		EntityIdValuePool pool = new EntityIdValuePool();
+		ItemIdValue q42 = pool.getItemIdValue("Q42", WIKIDATA);
+
+		assertSame(q42, pool.getItemIdValue("Q42", new String(WIKIDATA)));
+		assertSame(q42, pool.getItemIdValue(42, WIKIDATA));
+		assertSame(q42, pool.getEntityIdValue(ItemIdValueImpl.create("Q42",
+				WIKIDATA)));
+		assertEquals(ItemIdValueImpl.create("Q42", WIKIDATA), q42);
+		assertEquals("Q42", q42.getId());
+
+		PropertyIdValue p42 = pool.getPropertyIdValue("P42", WIKIDATA);
+		assertSame(p42, pool.getPropertyIdValue(42, WIKIDATA));
+		assertFalse(p42.equals(q42));
+
+		ItemIdValue otherQ42 = pool.getItemIdValue("Q42", EXAMPLE);
+		assertNotSame(q42, otherQ42);
+		assertEquals(EXAMPLE, otherQ42.getSiteIri());
+
+		assertEquals(3, pool.size());
+	}
+
+	@Test
+	public void testSiteIrisAreShared() {
+		EntityIdValuePool pool = new EntityIdValuePool();
+		ItemIdValue q1 = pool.getItemIdValue("Q1", WIKIDATA);
+		ItemIdValue q2 = pool.getItemIdValue("Q2", new String(WIKIDATA));
+		assertSame(q1.getSiteIri(), q2.getSiteIri());
+	}
+
+	@Test
+	public void testManyIds() {
+		EntityIdValuePool pool = new EntityIdValuePool();
+		for (int i = 1; i <= 10000; i++) {
+			pool.getItemIdValue(i, WIKIDATA);
+		}
+		for (int i = 1; i <= 10000; i++) {
+			assertEquals("Q" + i, pool.getItemIdValue("Q" + i, WIKIDATA)
+					.getId());
+		}
+		assertEquals(10000, pool.size());
+	}
+
+	@Test
+	public void testMaxSize() {
+		EntityIdValuePool pool = new EntityIdValuePool(1);
+		ItemIdValue q1 = pool.getItemIdValue("Q1", WIKIDATA);
+		ItemIdValue q2 = pool.getItemIdValue("Q2", WIKIDATA);
+
+		assertSame(q1, pool.getItemIdValue("Q1", WIKIDATA));
+		assertNotSame(q2, pool.getItemIdValue("Q2", WIKIDATA));
+		assertEquals(q2, pool.getItemIdValue("Q2", WIKIDATA));
+		assertEquals(1, pool.size());
+	}
+
+	@Test
+	public void testOtherEntityIdsUnchanged() {
+		EntityIdValuePool pool = new EntityIdValuePool();
+		EntityIdValue id = new EntityIdValue() {
+			@Override
+			public String getIri() {
+				return EXAMPLE + "L1";
+			}
+
+			@Override
+			public <T> T accept(ValueVisitor<T> valueVisitor) {
+				return valueVisitor.visit(this);
+			}
+
+			@Override
+			public String getEntityType() {
+				return "http://example.org/lexeme";
+			}
+
+			@Override
+			public String getId() {
+				return "L1";
+			}
+
+			@Override
+			public String getSiteIri() {
+				return EXAMPLE;
+			}
+		};
+		assertSame(id, pool.getEntityIdValue(id));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidItemId() {
+		new EntityIdValuePool().getItemIdValue("P42", WIKIDATA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPropertyId() {
+		new EntityIdValuePool().getPropertyIdValue("P4x", WIKIDATA);
+	}
+
+	@Test
+	public void testFactoryUsesPool() {
+		EntityIdValuePool pool = new EntityIdValuePool();
+		DataObjectFactoryImpl factory = new DataObjectFactoryImpl(pool);
+
+		assertSame(factory.getItemIdValue("Q5", WIKIDATA),
+				factory.getItemIdValue("Q5", WIKIDATA));
+		assertSame(pool.getPropertyIdValue("P31", WIKIDATA),
+				factory.getPropertyIdValue("P31", WIKIDATA));
+	}
+
+}
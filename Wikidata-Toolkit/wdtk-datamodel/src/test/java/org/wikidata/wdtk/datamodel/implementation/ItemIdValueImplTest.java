@@ -103,6 +103,30 @@ public class ItemIdValueImplTest {
 		ItemIdValueImpl.create(null, "http://www.wikidata.org/entity/");
 	}
 
+	@Test
+	public void numericIdIsCorrect() {
+		assertEquals(42, NumericEntityIdValueImpl.getNumericId(item1));
+		assertEquals(57, NumericEntityIdValueImpl.parseNumericId(
+				"http://www.wikidata.org/entity/Q57", 32));
+		assertEquals(Integer.MAX_VALUE,
+				NumericEntityIdValueImpl.parseNumericId("P2147483647", 1));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void numericIdValidatedForNumber() {
+		NumericEntityIdValueImpl.parseNumericId("Q34d23", 1);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void numericIdValidatedForLength() {
+		NumericEntityIdValueImpl.parseNumericId("Q", 1);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void numericIdValidatedForOverflow() {
+		NumericEntityIdValueImpl.parseNumericId("Q2147483648", 1);
+	}
+
 	@Test(expected = NullPointerException.class)
 	public void baseIriNotNull() {
 		ItemIdValueImpl.create("Q42", null);
@@ -0,0 +1,183 @@
+package org.wikidata.wdtk.datamodel.interfaces;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+
+public class ParallelEntityDocumentProcessorBrokerTest {
+
+	static class RecordingProcessor implements EntityDocumentProcessor {
+		final List<String> ids = new ArrayList<>();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			this.ids.add(itemDocument.getEntityId().getId());
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			this.ids.add(propertyDocument.getEntityId().getId());
+		}
+	}
+
+	static class CountingProcessor implements EntityDocumentProcessor {
+		final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			this.count.incrementAndGet();
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			this.count.incrementAndGet();
+		}
+	}
+
+	static ItemDocument makeItemDocument(int id) {
+		return Datamodel.makeItemDocument(
+				Datamodel.makeWikidataItemIdValue("Q" + id),
+				Collections.<MonolingualTextValue> emptyList(),
+				Collections.<MonolingualTextValue> emptyList(),
+				Collections.<MonolingualTextValue> emptyList(),
+				Collections.<StatementGroup> emptyList(),
+				Collections.<String, SiteLink> emptyMap());
+	}
+
+	@Test
+	public void testOrderPreserved() {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker(
+				3);
+		RecordingProcessor first = new RecordingProcessor();
+		RecordingProcessor second = new RecordingProcessor();
+		broker.registerEntityDocumentProcessor(first);
+		broker.registerEntityDocumentProcessor(second);
+		broker.registerEntityDocumentProcessor(first);
+
+		List<String> expected = new ArrayList<>();
+		broker.open();
+		for (int i = 1; i <= 500; i++) {
+			broker.processItemDocument(makeItemDocument(i));
+			expected.add("Q" + i);
+		}
+		broker.close();
+
+		assertEquals(expected, first.ids);
+		assertEquals(expected, second.ids);
+		assertEquals(500, broker.getDocumentCount(first));
+		assertEquals(0, broker.getQueueSize(first));
+	}
+
+	@Test
+	public void testMultipleThreads() {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker();
+		CountingProcessor processor = new CountingProcessor();
+		broker.registerEntityDocumentProcessor(processor, 4);
+
+		broker.open();
+		for (int i = 1; i <= 1000; i++) {
+			broker.processItemDocument(makeItemDocument(i));
+		}
+		broker.close();
+
+		assertEquals(1000, processor.count.get());
+		assertEquals(1000, broker.getDocumentCount(processor));
+		assertTrue(broker.getStatusReport().startsWith(
+				"CountingProcessor: 1000 documents"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testProcessorErrorIsReported() {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker(
+				2);
+		broker.registerEntityDocumentProcessor(new EntityDocumentProcessor() {
+			@Override
+			public void processItemDocument(ItemDocument itemDocument) {
+				throw new IllegalStateException("Test failure");
+			}
+
+			@Override
+			public void processPropertyDocument(
+					PropertyDocument propertyDocument) {
+			}
+		});
+
+		broker.open();
+		for (int i = 1; i <= 100; i++) {
+			broker.processItemDocument(makeItemDocument(i));
+		}
+		broker.close();
+	}
+
+	@Test
+	public void testInterruptedWorkerIsReported() throws InterruptedException {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker(
+				2);
+		CountingProcessor processor = new CountingProcessor();
+		broker.registerEntityDocumentProcessor(processor);
+
+		broker.open();
+		Thread worker = broker.getChannel(processor).threads.get(0);
+		worker.interrupt();
+		worker.join();
+
+		RuntimeException error = null;
+		try {
+			for (int i = 1; i <= 100; i++) {
+				broker.processItemDocument(makeItemDocument(i));
+			}
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		assertTrue(error != null);
+		assertTrue(error.getCause() instanceof InterruptedException);
+
+		error = null;
+		try {
+			broker.close();
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		assertTrue(error != null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testProcessingRequiresOpen() {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker();
+		broker.processItemDocument(makeItemDocument(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProcessorStatistics() {
+		ParallelEntityDocumentProcessorBroker broker = new ParallelEntityDocumentProcessorBroker();
+		broker.getDocumentCount(new CountingProcessor());
+	}
+
+}
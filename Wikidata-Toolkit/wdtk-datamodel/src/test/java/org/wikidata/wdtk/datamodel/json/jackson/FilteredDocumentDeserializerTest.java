@@ -0,0 +1,130 @@
+package org.wikidata.wdtk.datamodel.json.jackson;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public class FilteredDocumentDeserializerTest {
+
+	static final String ITEM_JSON = "{\"type\":\"item\",\"id\":\"Q42\",\"lastrevid\":123,"
+			+ "\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Douglas Adams\"},"
+			+ "\"de\":{\"language\":\"de\",\"value\":\"Douglas Adams\"}},"
+			+ "\"descriptions\":{\"de\":{\"language\":\"de\",\"value\":\"Schriftsteller\"}},"
+			+ "\"aliases\":{\"en\":[{\"language\":\"en\",\"value\":\"DNA\"}],"
+			+ "\"fr\":[{\"language\":\"fr\",\"value\":\"DA\"}]},"
+			+ "\"claims\":{\"P31\":[{\"mainsnak\":{\"snaktype\":\"novalue\",\"property\":\"P31\"},"
+			+ "\"type\":\"statement\",\"id\":\"Q42$1\",\"rank\":\"normal\"}],"
+			+ "\"P18\":[{\"mainsnak\":{\"snaktype\":\"somevalue\",\"property\":\"P18\"},"
+			+ "\"type\":\"statement\",\"id\":\"Q42$2\",\"rank\":\"normal\"}]},"
+			+ "\"sitelinks\":{\"enwiki\":{\"site\":\"enwiki\",\"title\":\"Douglas Adams\",\"badges\":[]},"
+			+ "\"dewiki\":{\"site\":\"dewiki\",\"title\":\"Douglas Adams\",\"badges\":[]}},"
+			+ "\"modified\":\"2015-01-01T00:00:00Z\"}";
+
+	@Test
+	public void testUnfilteredMatchesDefaultDeserialization()
+			throws IOException {
+		ObjectReader reader = FilteredDocumentDeserializer
+				.getFilteredDocumentReader(new DocumentDataFilter());
+		JacksonTermedStatementDocument filtered = reader.readValue(ITEM_JSON);
+		JacksonTermedStatementDocument expected = new ObjectMapper().reader(
+				JacksonTermedStatementDocument.class).readValue(ITEM_JSON);
+		filtered.setSiteIri(Datamodel.SITE_WIKIDATA);
+		expected.setSiteIri(Datamodel.SITE_WIKIDATA);
+
+		assertEquals(expected, filtered);
+		assertEquals(123, filtered.getRevisionId());
+	}
+
+	@Test
+	public void testFilteredDocument() throws IOException {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(Collections.singleton("en"));
+		filter.setSiteLinkFilter(Collections.singleton("dewiki"));
+		filter.setPropertyFilter(Collections.<PropertyIdValue> singleton(Datamodel
+				.makeWikidataPropertyIdValue("P31")));
+
+		JacksonItemDocument document = FilteredDocumentDeserializer
+				.getFilteredDocumentReader(filter).readValue(ITEM_JSON);
+		document.setSiteIri(Datamodel.SITE_WIKIDATA);
+
+		assertEquals("Q42", document.getEntityId().getId());
+		assertEquals(Collections.singleton("en"), document.getLabels().keySet());
+		assertTrue(document.getDescriptions().isEmpty());
+		assertEquals(Collections.singleton("en"), document.getAliases()
+				.keySet());
+		assertEquals(Collections.singleton("dewiki"), document.getSiteLinks()
+				.keySet());
+		assertEquals(1, document.getStatementGroups().size());
+		assertEquals("P31", document.getStatementGroups().get(0)
+				.getProperty().getId());
+	}
+
+	@Test
+	public void testExcludeAll() throws IOException {
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(Collections.<String> emptySet());
+		filter.setSiteLinkFilter(Collections.<String> emptySet());
+		filter.setPropertyFilter(Collections.<PropertyIdValue> emptySet());
+
+		JacksonItemDocument document = FilteredDocumentDeserializer
+				.getFilteredDocumentReader(filter).readValue(ITEM_JSON);
+
+		assertTrue(document.getLabels().isEmpty());
+		assertTrue(document.getAliases().isEmpty());
+		assertTrue(document.getSiteLinks().isEmpty());
+		assertTrue(document.getStatementGroups().isEmpty());
+	}
+
+	@Test
+	public void testPropertyDocumentWithEmptyLists() throws IOException {
+		String json = "{\"type\":\"property\",\"id\":\"P31\",\"datatype\":\"wikibase-item\","
+				+ "\"labels\":[],\"descriptions\":[],\"aliases\":[],\"claims\":[]}";
+		JacksonPropertyDocument document = FilteredDocumentDeserializer
+				.getFilteredDocumentReader(new DocumentDataFilter()).readValue(
+						json);
+
+		assertEquals("P31", document.getEntityId().getId());
+		assertEquals(JacksonDatatypeId.JSON_DT_ITEM, document.getJsonDatatype());
+		assertTrue(document.getLabels().isEmpty());
+		assertTrue(document.getStatementGroups().isEmpty());
+	}
+
+	@Test(expected = JsonMappingException.class)
+	public void testUnknownType() throws IOException {
+		FilteredDocumentDeserializer.getFilteredDocumentReader(
+				new DocumentDataFilter()).readValue(
+				"{\"type\":\"lexeme\",\"id\":\"L1\"}");
+	}
+
+}
@@ -0,0 +1,224 @@
+package org.wikidata.wdtk.datamodel.json.jackson;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.EntityIdValuePool;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+public class ParallelJsonDocumentDecoderTest {
+
+	static class RecordingProcessor implements EntityDocumentProcessor {
+		final List<String> ids = new ArrayList<>();
+		final List<String> siteIris = new ArrayList<>();
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			this.ids.add(itemDocument.getEntityId().getId());
+			this.siteIris.add(itemDocument.getEntityId().getSiteIri());
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			this.ids.add(propertyDocument.getEntityId().getId());
+			this.siteIris.add(propertyDocument.getEntityId().getSiteIri());
+		}
+	}
+
+	static String makeItemLine(int id) {
+		return "{\"type\":\"item\",\"id\":\"Q" + id
+				+ "\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Label "
+				+ id + "\"}},\"claims\":{},\"sitelinks\":{}},";
+	}
+
+	static String makePropertyLine(int id) {
+		return "{\"type\":\"property\",\"id\":\"P" + id
+				+ "\",\"datatype\":\"string\",\"labels\":{},\"claims\":{}},";
+	}
+
+	@Test
+	public void testOrderPreserved() throws IOException {
+		StringBuilder dump = new StringBuilder("[\n");
+		List<String> expected = new ArrayList<>();
+		for (int i = 1; i <= 200; i++) {
+			if (i % 10 == 0) {
+				dump.append(makePropertyLine(i)).append("\n");
+				expected.add("P" + i);
+			} else {
+				dump.append(makeItemLine(i)).append("\n");
+				expected.add("Q" + i);
+			}
+		}
+		dump.append("]\n");
+
+		RecordingProcessor processor = new RecordingProcessor();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				processor, "http://example.org/entity/", 3, 7);
+		decoder.processDump(new BufferedReader(new StringReader(dump
+				.toString())));
+
+		assertEquals(expected, processor.ids);
+		assertEquals(200, decoder.getDocumentCount());
+		assertEquals(0, decoder.getErrorCount());
+		assertEquals("http://example.org/entity/", processor.siteIris.get(0));
+	}
+
+	@Test
+	public void testEntityIdValuePool() {
+		final List<ItemDocument> documents = new ArrayList<>();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						documents.add(itemDocument);
+					}
+
+					@Override
+					public void processPropertyDocument(
+							PropertyDocument propertyDocument) {
+					}
+				}, Datamodel.SITE_WIKIDATA, 2, 1);
+		EntityIdValuePool pool = new EntityIdValuePool();
+		decoder.setEntityIdValuePool(pool);
+		for (int i = 1; i <= 2; i++) {
+			decoder.processLine("{\"type\":\"item\",\"id\":\"Q"
+					+ i
+					+ "\",\"claims\":{\"P31\":[{\"mainsnak\":{\"snaktype\":\"novalue\",\"property\":\"P31\"},"
+					+ "\"type\":\"statement\",\"id\":\"Q" + i
+					+ "$1\",\"rank\":\"normal\"}]}},");
+		}
+		decoder.finish();
+
+		assertEquals(2, documents.size());
+		assertSame(documents.get(0).findStatementGroup("P31").getProperty(),
+				documents.get(1).findStatementGroup("P31").getProperty());
+		assertSame(pool.getItemIdValue("Q2", Datamodel.SITE_WIKIDATA),
+				documents.get(1).findStatement("P31").getClaim().getSubject());
+	}
+
+	@Test
+	public void testEntityIdValuesArePooled() {
+		final List<ItemDocument> documents = new ArrayList<>();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						documents.add(itemDocument);
+					}
+
+					@Override
+					public void processPropertyDocument(
+							PropertyDocument propertyDocument) {
+					}
+				}, Datamodel.SITE_WIKIDATA, 2, 1);
+		EntityIdValuePool pool = new EntityIdValuePool();
+		decoder.setEntityIdValuePool(pool);
+		for (int i = 1; i <= 2; i++) {
+			decoder.processLine("{\"type\":\"item\",\"id\":\"Q"
+					+ i
+					+ "\",\"claims\":{\"P31\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\","
+					+ "\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":5},\"type\":\"wikibase-entityid\"}},"
+					+ "\"type\":\"statement\",\"id\":\"Q" + i
+					+ "$1\",\"rank\":\"normal\"}]}},");
+		}
+		decoder.finish();
+
+		assertEquals(2, documents.size());
+		Value value1 = documents.get(0).findStatementValue("P31");
+		Value value2 = documents.get(1).findStatementValue("P31");
+		assertEquals(Datamodel.makeWikidataItemIdValue("Q5"), value1);
+		assertSame(value1, value2);
+		assertSame(pool.getItemIdValue("Q5", Datamodel.SITE_WIKIDATA), value1);
+	}
+
+	@Test
+	public void testProcessorErrorIsPassedOn() throws IOException {
+		StringBuilder dump = new StringBuilder("[\n");
+		for (int i = 1; i <= 100; i++) {
+			dump.append(makeItemLine(i)).append("\n");
+		}
+		dump.append("]\n");
+
+		final List<String> ids = new ArrayList<>();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						ids.add(itemDocument.getEntityId().getId());
+						throw new IllegalStateException("processor failed on "
+								+ itemDocument.getEntityId().getId());
+					}
+
+					@Override
+					public void processPropertyDocument(
+							PropertyDocument propertyDocument) {
+					}
+				}, Datamodel.SITE_WIKIDATA, 2, 5);
+		try {
+			decoder.processDump(new BufferedReader(new StringReader(dump
+					.toString())));
+			fail("Processor exception should be passed on");
+		} catch (IllegalStateException e) {
+			assertEquals("processor failed on Q1", e.getMessage());
+		}
+		// remaining batches are not processed after the error
+		assertEquals(1, ids.size());
+	}
+
+	@Test
+	public void testErrorsAreSkipped() {
+		RecordingProcessor processor = new RecordingProcessor();
+		ParallelJsonDocumentDecoder decoder = new ParallelJsonDocumentDecoder(
+				processor, null, 2);
+		decoder.processLine(makeItemLine(1));
+		decoder.processLine("{\"type\":\"item\",\"id\":");
+		decoder.processLine(makeItemLine(2));
+		decoder.finish();
+
+		assertEquals(2, processor.ids.size());
+		assertEquals(1, decoder.getErrorCount());
+	}
+
+	@Test
+	public void testGetJsonFromLine() {
+		assertNull(ParallelJsonDocumentDecoder.getJsonFromLine("["));
+		assertNull(ParallelJsonDocumentDecoder.getJsonFromLine(" ]\t"));
+		assertNull(ParallelJsonDocumentDecoder.getJsonFromLine(""));
+		assertEquals("{}", ParallelJsonDocumentDecoder.getJsonFromLine("{},"));
+		assertEquals("{}", ParallelJsonDocumentDecoder.getJsonFromLine(" {} "));
+	}
+
+}
@@ -35,6 +35,7 @@ import java.util.Map.Entry;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.wikidata.wdtk.datamodel.helpers.DatamodelConverter;
 import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.implementation.NumericEntityIdValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.DataObjectFactory;
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
@@ -51,6 +52,8 @@ import org.wikidata.wdtk.datamodel.interfaces.StringValue;
 import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
 import org.wikidata.wdtk.datamodel.interfaces.Value;
 import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+import org.wikidata.wdtk.storage.datastructures.IntIntHashMap;
+import org.wikidata.wdtk.storage.datastructures.IntObjectHashMap;
 
 /**
  * This advanced example analyses the use of properties and classes in a dump
@@ -132,9 +135,10 @@ public class ClassPropertyUsageAnalyzer implements EntityDocumentProcessor {
 		/**
 		 * Map that records how many times certain properties are used on items
 		 * that use this entity (where "use" has the meaning explained for
-		 * {@link UsageRecord#itemCount}).
+		 * {@link UsageRecord#itemCount}). Properties are given by their
+		 * numeric ids.
 		 */
-		public HashMap<PropertyIdValue, Integer> propertyCoCounts = new HashMap<PropertyIdValue, Integer>();
+		public IntIntHashMap propertyCoCounts = new IntIntHashMap();
 	}
 
 	/**
@@ -248,6 +252,12 @@ public class ClassPropertyUsageAnalyzer implements EntityDocumentProcessor {
 	 * Collection of all property records.
 	 */
 	final HashMap<PropertyIdValue, PropertyRecord> propertyRecords = new HashMap<PropertyIdValue, PropertyRecord>();
+	/**
+	 * Properties of all property records by their numeric ids. This is used
+	 * to find the records of the properties in
+	 * {@link UsageRecord#propertyCoCounts}.
+	 */
+	final IntObjectHashMap<PropertyIdValue> propertyIdValues = new IntObjectHashMap<>();
 	/**
 	 * Collection of all item records of items used as classes.
 	 */
@@ -425,6 +435,8 @@ public class ClassPropertyUsageAnalyzer implements EntityDocumentProcessor {
 		if (!this.propertyRecords.containsKey(property)) {
 			PropertyRecord propertyRecord = new PropertyRecord();
 			this.propertyRecords.put(property, propertyRecord);
+			this.propertyIdValues.put(
+					NumericEntityIdValueImpl.getNumericId(property), property);
 			return propertyRecord;
 		} else {
 			return this.propertyRecords.get(property);
@@ -435,13 +447,9 @@ public class ClassPropertyUsageAnalyzer implements EntityDocumentProcessor {
 			UsageRecord usageRecord, PropertyIdValue thisPropertyIdValue) {
 		for (StatementGroup sg : itemDocument.getStatementGroups()) {
 			if (!sg.getProperty().equals(thisPropertyIdValue)) {
-				if (!usageRecord.propertyCoCounts.containsKey(sg.getProperty())) {
-					usageRecord.propertyCoCounts.put(sg.getProperty(), 1);
-				} else {
-					usageRecord.propertyCoCounts
-							.put(sg.getProperty(), usageRecord.propertyCoCounts
-									.get(sg.getProperty()) + 1);
-				}
+				usageRecord.propertyCoCounts.addTo(
+						NumericEntityIdValueImpl.getNumericId(sg.getProperty()),
+						1);
 			}
 		}
 	}
@@ -810,20 +818,22 @@ public class ClassPropertyUsageAnalyzer implements EntityDocumentProcessor {
 
 		List<ImmutablePair<PropertyIdValue, Double>> list = new ArrayList<ImmutablePair<PropertyIdValue, Double>>(
 				usageRecord.propertyCoCounts.size());
-		for (Entry<PropertyIdValue, Integer> coCountEntry : usageRecord.propertyCoCounts
-				.entrySet()) {
-			double otherThisItemRate = (double) coCountEntry.getValue()
-					/ usageRecord.itemCount;
+		for (int slot = usageRecord.propertyCoCounts.nextSlot(-1); slot >= 0; slot = usageRecord.propertyCoCounts
+				.nextSlot(slot)) {
+			PropertyIdValue propertyIdValue = this.propertyIdValues
+					.get(usageRecord.propertyCoCounts.keyAt(slot));
+			double otherThisItemRate = (double) usageRecord.propertyCoCounts
+					.valueAt(slot) / usageRecord.itemCount;
 			double otherGlobalItemRate = (double) this.propertyRecords
-					.get(coCountEntry.getKey()).itemCount
+					.get(propertyIdValue).itemCount
 					/ this.countPropertyItems;
 			double otherThisItemRateStep = 1 / (1 + Math.exp(6 * (-2
 					* otherThisItemRate + 0.5)));
 			double otherInvGlobalItemRateStep = 1 / (1 + Math.exp(6 * (-2
 					* (1 - otherGlobalItemRate) + 0.5)));
 
-			list.add(new ImmutablePair<PropertyIdValue, Double>(coCountEntry
-					.getKey(), otherThisItemRateStep
+			list.add(new ImmutablePair<PropertyIdValue, Double>(
+					propertyIdValue, otherThisItemRateStep
 					* otherInvGlobalItemRateStep * otherThisItemRate
 					/ otherGlobalItemRate));
 		}
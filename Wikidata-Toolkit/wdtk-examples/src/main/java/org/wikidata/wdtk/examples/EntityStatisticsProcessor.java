@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.wikidata.wdtk.datamodel.implementation.NumericEntityIdValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
@@ -38,6 +39,7 @@ import org.wikidata.wdtk.datamodel.interfaces.Statement;
 import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.TermedDocument;
+import org.wikidata.wdtk.storage.datastructures.IntIntHashMap;
 
 /**
  * A simple example class that processes EntityDocuments to compute basic
@@ -74,10 +76,10 @@ class EntityStatisticsProcessor implements EntityDocumentProcessor {
 		long countStatements = 0;
 		long countReferencedStatements = 0;
 
-		// Maps to store property usage data for each property:
-		final HashMap<PropertyIdValue, Integer> propertyCountsMain = new HashMap<>();
-		final HashMap<PropertyIdValue, Integer> propertyCountsQualifier = new HashMap<>();
-		final HashMap<PropertyIdValue, Integer> propertyCountsReferences = new HashMap<>();
+		// Maps to store property usage data for each numeric property id:
+		final IntIntHashMap propertyCountsMain = new IntIntHashMap();
+		final IntIntHashMap propertyCountsQualifier = new IntIntHashMap();
+		final IntIntHashMap propertyCountsReferences = new IntIntHashMap();
 		final HashMap<String, Integer> labelCounts = new HashMap<>();
 		final HashMap<String, Integer> descriptionCounts = new HashMap<>();
 		final HashMap<String, Integer> aliasCounts = new HashMap<>();
@@ -272,15 +274,18 @@ class EntityStatisticsProcessor implements EntityDocumentProcessor {
 
 			out.println("Property id,in statements,in qualifiers,in references,total");
 
-			for (Entry<PropertyIdValue, Integer> entry : usageStatistics.propertyCountsMain
-					.entrySet()) {
-				int qCount = usageStatistics.propertyCountsQualifier.get(entry
-						.getKey());
-				int rCount = usageStatistics.propertyCountsReferences.get(entry
-						.getKey());
-				int total = entry.getValue() + qCount + rCount;
-				out.println(entry.getKey().getId() + "," + entry.getValue()
-						+ "," + qCount + "," + rCount + "," + total);
+			IntIntHashMap propertyCountsMain = usageStatistics.propertyCountsMain;
+			for (int slot = propertyCountsMain.nextSlot(-1); slot >= 0; slot = propertyCountsMain
+					.nextSlot(slot)) {
+				int propertyId = propertyCountsMain.keyAt(slot);
+				int mCount = propertyCountsMain.valueAt(slot);
+				int qCount = usageStatistics.propertyCountsQualifier
+						.get(propertyId);
+				int rCount = usageStatistics.propertyCountsReferences
+						.get(propertyId);
+				int total = mCount + qCount + rCount;
+				out.println("P" + propertyId + "," + mCount + "," + qCount
+						+ "," + rCount + "," + total);
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -371,9 +376,8 @@ class EntityStatisticsProcessor implements EntityDocumentProcessor {
 	 */
 	private void countPropertyMain(UsageStatistics usageStatistics,
 			PropertyIdValue property, int count) {
-		addPropertyCounters(usageStatistics, property);
-		usageStatistics.propertyCountsMain.put(property,
-				usageStatistics.propertyCountsMain.get(property) + count);
+		usageStatistics.propertyCountsMain.addTo(
+				NumericEntityIdValueImpl.getNumericId(property), count);
 	}
 
 	/**
@@ -389,9 +393,10 @@ class EntityStatisticsProcessor implements EntityDocumentProcessor {
 	 */
 	private void countPropertyQualifier(UsageStatistics usageStatistics,
 			PropertyIdValue property, int count) {
-		addPropertyCounters(usageStatistics, property);
-		usageStatistics.propertyCountsQualifier.put(property,
-				usageStatistics.propertyCountsQualifier.get(property) + count);
+		int propertyId = NumericEntityIdValueImpl.getNumericId(property);
+		// every counted property gets a line in the output:
+		usageStatistics.propertyCountsMain.addTo(propertyId, 0);
+		usageStatistics.propertyCountsQualifier.addTo(propertyId, count);
 	}
 
 	/**
@@ -406,26 +411,10 @@ class EntityStatisticsProcessor implements EntityDocumentProcessor {
 	 */
 	private void countPropertyReference(UsageStatistics usageStatistics,
 			PropertyIdValue property, int count) {
-		addPropertyCounters(usageStatistics, property);
-		usageStatistics.propertyCountsReferences.put(property,
-				usageStatistics.propertyCountsReferences.get(property) + count);
-	}
-
-	/**
-	 * Initializes the counters for a property to zero if not done yet.
-	 *
-	 * @param usageStatistics
-	 *            statistics object to initialize
-	 * @param property
-	 *            the property to count
-	 */
-	private void addPropertyCounters(UsageStatistics usageStatistics,
-			PropertyIdValue property) {
-		if (!usageStatistics.propertyCountsMain.containsKey(property)) {
-			usageStatistics.propertyCountsMain.put(property, 0);
-			usageStatistics.propertyCountsQualifier.put(property, 0);
-			usageStatistics.propertyCountsReferences.put(property, 0);
-		}
+		int propertyId = NumericEntityIdValueImpl.getNumericId(property);
+		// every counted property gets a line in the output:
+		usageStatistics.propertyCountsMain.addTo(propertyId, 0);
+		usageStatistics.propertyCountsReferences.addTo(propertyId, count);
 	}
 
 	/**
@@ -435,6 +435,8 @@ public class WikiArtistMatcher {
         // Filter Wikibase Datafetcher to EN, ENWiki
         wiki.wbdf.getFilter().setLanguageFilter(Collections.singleton("en"));
         wiki.wbdf.getFilter().setSiteLinkFilter(Collections.singleton("enwiki"));
+        // Candidate lists are fetched in chunks; allow a few requests at once
+        wiki.wbdf.setMaxRequestsInFlight(4);
 
         EntityDocument entityP31 = wiki.wbdf.getEntityDocument("P31");      // Instance of
         EntityDocument entityP106 = wiki.wbdf.getEntityDocument("P106");    // Occupation
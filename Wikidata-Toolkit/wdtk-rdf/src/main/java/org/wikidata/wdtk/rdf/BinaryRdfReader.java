@@ -0,0 +1,260 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Reader for the binary RDF format written by {@link BinaryRdfWriter}. The
+ * triples are passed to an {@link RDFHandler}. Every dictionary term is
+ * created only once, so repeated terms are not decoded again.
+ *
+ * @author agent
+ *
+ */
+public class BinaryRdfReader {
+
+	final InputStream input;
+	final ValueFactory factory;
+
+	/**
+	 * Terms of the current dictionary; the term with id i is at position i-1.
+	 */
+	final List<Value> dictionary = new ArrayList<>();
+
+	byte[] stringBuffer = new byte[256];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *            the stream to read from
+	 */
+	public BinaryRdfReader(InputStream input) {
+		this(input, ValueFactoryImpl.getInstance());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *            the stream to read from
+	 * @param factory
+	 *            the factory used to create RDF terms
+	 */
+	public BinaryRdfReader(InputStream input, ValueFactory factory) {
+		this.input = new BufferedInputStream(input);
+		this.factory = factory;
+	}
+
+	/**
+	 * Reads the complete input and passes all namespaces and triples to the
+	 * given handler. The input may consist of several complete binary RDF
+	 * streams that were concatenated; they are read as one document.
+	 *
+	 * @param handler
+	 *            the handler to pass the data to
+	 * @throws IOException
+	 *             if the input could not be read or is not in the expected
+	 *             format
+	 * @throws RDFHandlerException
+	 *             if the handler reported a problem
+	 */
+	public void parse(RDFHandler handler) throws IOException,
+			RDFHandlerException {
+		handler.startRDF();
+		int firstByte = readByte();
+		do {
+			readHeader(firstByte);
+			readRecords(handler);
+			firstByte = this.input.read();
+		} while (firstByte >= 0);
+		handler.endRDF();
+	}
+
+	/**
+	 * Reads and checks the header of one binary RDF stream.
+	 *
+	 * @param firstByte
+	 *            the first byte of the header, which has already been read
+	 * @throws IOException
+	 *             if the header is not valid
+	 */
+	void readHeader(int firstByte) throws IOException {
+		byte[] magic = new byte[BinaryRdfWriter.MAGIC.length];
+		magic[0] = (byte) firstByte;
+		for (int i = 1; i < magic.length; i++) {
+			magic[i] = (byte) readByte();
+		}
+		if (!Arrays.equals(magic, BinaryRdfWriter.MAGIC)) {
+			throw new IOException("Input is not in the binary RDF format.");
+		}
+		int version = readNumber();
+		if (version != BinaryRdfWriter.FORMAT_VERSION) {
+			throw new IOException("Unsupported binary RDF format version "
+					+ version + ".");
+		}
+		this.dictionary.clear();
+	}
+
+	/**
+	 * Reads the records of one binary RDF stream up to its end record.
+	 *
+	 * @param handler
+	 *            the handler to pass the data to
+	 * @throws IOException
+	 *             if the input could not be read or is not in the expected
+	 *             format
+	 * @throws RDFHandlerException
+	 *             if the handler reported a problem
+	 */
+	void readRecords(RDFHandler handler) throws IOException,
+			RDFHandlerException {
+		while (true) {
+			int record = readByte();
+			switch (record) {
+			case BinaryRdfWriter.RECORD_END:
+				return;
+			case BinaryRdfWriter.RECORD_BLOCK:
+				readBlock(handler);
+				break;
+			case BinaryRdfWriter.RECORD_DICTIONARY_RESET:
+				this.dictionary.clear();
+				break;
+			case BinaryRdfWriter.RECORD_NAMESPACE:
+				String prefix = readString();
+				handler.handleNamespace(prefix, readString());
+				break;
+			default:
+				throw new IOException("Unknown record type " + record + ".");
+			}
+		}
+	}
+
+	void readBlock(RDFHandler handler) throws IOException,
+			RDFHandlerException {
+		int termCount = readNumber();
+		for (int i = 0; i < termCount; i++) {
+			int kind = readByte();
+			String term = readString();
+			if (kind == BinaryRdfWriter.TERM_URI) {
+				this.dictionary.add(this.factory.createURI(term));
+			} else if (kind == BinaryRdfWriter.TERM_BNODE) {
+				this.dictionary.add(this.factory.createBNode(term));
+			} else {
+				throw new IOException("Unknown term type " + kind + ".");
+			}
+		}
+
+		int tripleCount = readNumber();
+		int subjectId = 0;
+		for (int i = 0; i < tripleCount; i++) {
+			int zigzag = readNumber();
+			subjectId += (zigzag >>> 1) ^ -(zigzag & 1);
+			Resource subject = (Resource) getTerm(subjectId);
+			URI predicate = (URI) getTerm(readNumber());
+			int objectId = readNumber();
+			Value object = objectId == 0 ? readLiteral() : getTerm(objectId);
+			handler.handleStatement(this.factory.createStatement(subject,
+					predicate, object));
+		}
+	}
+
+	Value readLiteral() throws IOException {
+		int kind = readByte();
+		String label = readString();
+		switch (kind) {
+		case BinaryRdfWriter.LITERAL_PLAIN:
+			return this.factory.createLiteral(label);
+		case BinaryRdfWriter.LITERAL_LANGUAGE:
+			return this.factory.createLiteral(label, readString());
+		case BinaryRdfWriter.LITERAL_TYPED:
+			return this.factory.createLiteral(label,
+					(URI) getTerm(readNumber()));
+		default:
+			throw new IOException("Unknown literal type " + kind + ".");
+		}
+	}
+
+	Value getTerm(int id) throws IOException {
+		if (id < 1 || id > this.dictionary.size()) {
+			throw new IOException("Unknown term id " + id + ".");
+		}
+		return this.dictionary.get(id - 1);
+	}
+
+	int readByte() throws IOException {
+		int b = this.input.read();
+		if (b < 0) {
+			throw new EOFException("Unexpected end of binary RDF input.");
+		}
+		return b;
+	}
+
+	int readNumber() throws IOException {
+		int result = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte();
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return result;
+	}
+
+	String readString() throws IOException {
+		int length = readNumber();
+		if (length > this.stringBuffer.length) {
+			this.stringBuffer = new byte[Math.max(length,
+					2 * this.stringBuffer.length)];
+		}
+		readFully(this.stringBuffer, length);
+		return new String(this.stringBuffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	void readFully(byte[] buffer, int length) throws IOException {
+		int position = 0;
+		while (position < length) {
+			int count = this.input.read(buffer, position, length - position);
+			if (count < 0) {
+				throw new EOFException("Unexpected end of binary RDF input.");
+			}
+			position += count;
+		}
+	}
+
+}
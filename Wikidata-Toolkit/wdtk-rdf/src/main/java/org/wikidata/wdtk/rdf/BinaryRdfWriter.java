@@ -0,0 +1,409 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * An {@link RdfWriter} that writes a compact, dictionary-encoded binary
+ * format instead of a textual RDF syntax. URIs and blank nodes are written
+ * only once into a term dictionary and are then referred to by integer ids,
+ * so that repeated terms such as property URIs, vocabulary URIs, and entity
+ * IRIs take only a few bytes. Triples are written in blocks of integer
+ * triples, similar to the layout of HDT, but in a streaming fashion so that
+ * the dictionary does not need to be known in advance. The files can be read
+ * with {@link BinaryRdfReader} without any parsing of RDF syntax.
+ * <p>
+ * The format is as follows. All numbers are written as unsigned variable
+ * length integers (7 bits per byte, least significant group first, high bit
+ * set on all bytes but the last). Strings are written as the number of bytes
+ * followed by the bytes of their UTF-8 encoding.
+ *
+ * <pre>
+ * file    := "WDTKRDFB" version record* 0x00
+ * record  := 0x01 block | 0x02 | 0x03 string string
+ * block   := termCount term* tripleCount triple*
+ * term    := 0x00 string (URI) | 0x01 string (blank node id)
+ * triple  := zigzag(subjectId - previousSubjectId) predicateId object
+ * object  := termId | 0 literal
+ * literal := 0x00 label | 0x01 label language | 0x02 label datatypeId
+ * </pre>
+ *
+ * Record 0x02 clears the dictionary, and 0x03 is a namespace declaration
+ * (prefix and namespace). Terms are numbered from 1 in the order in which
+ * they are added to the dictionary. The terms of a block are added before its
+ * triples are read. The previous subject id is 0 at the start of each block,
+ * so that subsequent triples with the same subject need a single byte for
+ * their subject. Literals are not put into the dictionary, since most of them
+ * occur only once. To bound the memory that is needed for reading and
+ * writing, the dictionary is cleared whenever it reaches its maximal size.
+ *
+ * @author agent
+ *
+ */
+public class BinaryRdfWriter extends RdfWriter {
+
+	/**
+	 * Format object for the binary RDF format, which is used by
+	 * {@link RdfSerializer} to select this writer.
+	 */
+	public static final RDFFormat BINARY_RDF = new RDFFormat("WDTK binary RDF",
+			"application/x-wdtk-binary-rdf", null, "rdfb", true, false);
+
+	static final byte[] MAGIC = "WDTKRDFB".getBytes(StandardCharsets.US_ASCII);
+	static final int FORMAT_VERSION = 1;
+
+	static final int RECORD_END = 0x00;
+	static final int RECORD_BLOCK = 0x01;
+	static final int RECORD_DICTIONARY_RESET = 0x02;
+	static final int RECORD_NAMESPACE = 0x03;
+
+	static final int TERM_URI = 0x00;
+	static final int TERM_BNODE = 0x01;
+
+	static final int LITERAL_PLAIN = 0x00;
+	static final int LITERAL_LANGUAGE = 0x01;
+	static final int LITERAL_TYPED = 0x02;
+
+	/**
+	 * Number of triples after which a block is written.
+	 */
+	static final int BLOCK_SIZE = 8192;
+
+	/**
+	 * Default maximal number of terms in the dictionary.
+	 */
+	public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1000000;
+
+	final OutputStream output;
+	final int maxDictionarySize;
+
+	/**
+	 * Dictionary of terms. Blank nodes are stored with the prefix "_:", which
+	 * cannot occur at the start of an absolute URI.
+	 */
+	final Map<String, Integer> dictionary = new HashMap<>();
+
+	final ByteArrayOutputStream termBuffer = new ByteArrayOutputStream();
+	final ByteArrayOutputStream tripleBuffer = new ByteArrayOutputStream();
+	int blockTermCount = 0;
+	int blockTripleCount = 0;
+	int previousSubjectId = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param output
+	 *            the stream to write to
+	 */
+	public BinaryRdfWriter(OutputStream output) {
+		this(output, DEFAULT_MAX_DICTIONARY_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param output
+	 *            the stream to write to
+	 * @param maxDictionarySize
+	 *            number of terms after which the dictionary is cleared; this
+	 *            bounds the memory that is needed for writing and reading
+	 */
+	public BinaryRdfWriter(OutputStream output, int maxDictionarySize) {
+		super();
+		if (maxDictionarySize < 4) {
+			throw new IllegalArgumentException(
+					"The dictionary must be able to hold at least four terms.");
+		}
+		this.output = output;
+		this.maxDictionarySize = maxDictionarySize;
+	}
+
+	@Override
+	public void start() throws RDFHandlerException {
+		this.tripleCount = 0;
+		try {
+			this.output.write(MAGIC);
+			writeNumber(this.output, FORMAT_VERSION);
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void finish() throws RDFHandlerException {
+		try {
+			writeBlock();
+			this.output.write(RECORD_END);
+			this.output.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeNamespaceDeclaration(String prefix, String uri)
+			throws RDFHandlerException {
+		try {
+			writeBlock();
+			this.output.write(RECORD_NAMESPACE);
+			writeString(this.output, prefix);
+			writeString(this.output, uri);
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleStringObject(Resource subject, URI predicate,
+			String objectLiteral) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getResourceId(subject), predicate);
+		writeLiteral(objectLiteral, null, null);
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleIntegerObject(Resource subject, URI predicate,
+			int objectLiteral) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getResourceId(subject), predicate);
+		writeLiteral(Integer.toString(objectLiteral), null, XSD_INT);
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleUriObject(String subjectUri, URI predicate,
+			String objectUri) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getUriId(subjectUri), predicate);
+		writeNumber(this.tripleBuffer, getUriId(objectUri));
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleUriObject(Resource subject, URI predicate,
+			String objectUri) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getResourceId(subject), predicate);
+		writeNumber(this.tripleBuffer, getUriId(objectUri));
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleValueObject(String subjectUri, URI predicate,
+			Value object) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getUriId(subjectUri), predicate);
+		writeValue(object);
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleValueObject(Resource subject, URI predicate,
+			Value object) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getResourceId(subject), predicate);
+		writeValue(object);
+		finishTriple();
+	}
+
+	@Override
+	public void writeTripleLiteralObject(Resource subject, URI predicate,
+			String objectLexicalValue, URI datatype) throws RDFHandlerException {
+		reserveTerms();
+		startTriple(getResourceId(subject), predicate);
+		writeLiteral(objectLexicalValue, null, datatype);
+		finishTriple();
+	}
+
+	/**
+	 * Writes subject and predicate of a new triple to the current block.
+	 * {@link #reserveTerms()} must have been called before the subject id was
+	 * obtained.
+	 *
+	 * @param subjectId
+	 *            dictionary id of the subject
+	 * @param predicate
+	 *            the predicate
+	 */
+	void startTriple(int subjectId, URI predicate) {
+		int delta = subjectId - this.previousSubjectId;
+		writeNumber(this.tripleBuffer, (delta << 1) ^ (delta >> 31));
+		this.previousSubjectId = subjectId;
+		writeNumber(this.tripleBuffer, getUriId(predicate.toString()));
+	}
+
+	void finishTriple() throws RDFHandlerException {
+		this.tripleCount++;
+		this.blockTripleCount++;
+		if (this.blockTripleCount >= BLOCK_SIZE) {
+			try {
+				writeBlock();
+			} catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+		}
+	}
+
+	void writeValue(Value value) {
+		if (value instanceof Resource) {
+			writeNumber(this.tripleBuffer, getResourceId((Resource) value));
+		} else {
+			Literal literal = (Literal) value;
+			writeLiteral(literal.getLabel(), literal.getLanguage(),
+					literal.getDatatype());
+		}
+	}
+
+	void writeLiteral(String label, String language, URI datatype) {
+		writeNumber(this.tripleBuffer, 0);
+		if (language != null) {
+			this.tripleBuffer.write(LITERAL_LANGUAGE);
+			writeString(this.tripleBuffer, label);
+			writeString(this.tripleBuffer, language);
+		} else if (datatype != null) {
+			this.tripleBuffer.write(LITERAL_TYPED);
+			writeString(this.tripleBuffer, label);
+			writeNumber(this.tripleBuffer, getUriId(datatype.toString()));
+		} else {
+			this.tripleBuffer.write(LITERAL_PLAIN);
+			writeString(this.tripleBuffer, label);
+		}
+	}
+
+	/**
+	 * Returns the id of the given resource, adding it to the dictionary if
+	 * necessary.
+	 */
+	int getResourceId(Resource resource) {
+		if (resource instanceof BNode) {
+			return getTermId("_:" + ((BNode) resource).getID(), TERM_BNODE);
+		} else {
+			return getUriId(resource.toString());
+		}
+	}
+
+	int getUriId(String uri) {
+		return getTermId(uri, TERM_URI);
+	}
+
+	int getTermId(String key, int kind) {
+		Integer id = this.dictionary.get(key);
+		if (id != null) {
+			return id;
+		}
+
+		id = this.dictionary.size() + 1;
+		this.dictionary.put(key, id);
+		this.termBuffer.write(kind);
+		writeString(this.termBuffer,
+				kind == TERM_BNODE ? key.substring(2) : key);
+		this.blockTermCount++;
+		return id;
+	}
+
+	/**
+	 * Makes sure that the dictionary can take all terms of the next triple
+	 * (subject, predicate, object, and datatype). If not, the current block
+	 * is written and the dictionary is cleared.
+	 *
+	 * @throws RDFHandlerException
+	 *             if the block could not be written
+	 */
+	void reserveTerms() throws RDFHandlerException {
+		if (this.dictionary.size() + 4 <= this.maxDictionarySize) {
+			return;
+		}
+		try {
+			writeBlock();
+			this.output.write(RECORD_DICTIONARY_RESET);
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+		this.dictionary.clear();
+	}
+
+	/**
+	 * Writes the current block to the output, if it is not empty.
+	 *
+	 * @throws IOException
+	 */
+	void writeBlock() throws IOException {
+		if (this.blockTermCount == 0 && this.blockTripleCount == 0) {
+			return;
+		}
+		this.output.write(RECORD_BLOCK);
+		writeNumber(this.output, this.blockTermCount);
+		this.termBuffer.writeTo(this.output);
+		writeNumber(this.output, this.blockTripleCount);
+		this.tripleBuffer.writeTo(this.output);
+
+		this.termBuffer.reset();
+		this.tripleBuffer.reset();
+		this.blockTermCount = 0;
+		this.blockTripleCount = 0;
+		this.previousSubjectId = 0;
+	}
+
+	static void writeNumber(ByteArrayOutputStream out, int number) {
+		while ((number & ~0x7F) != 0) {
+			out.write((number & 0x7F) | 0x80);
+			number >>>= 7;
+		}
+		out.write(number);
+	}
+
+	static void writeNumber(OutputStream out, int number) throws IOException {
+		while ((number & ~0x7F) != 0) {
+			out.write((number & 0x7F) | 0x80);
+			number >>>= 7;
+		}
+		out.write(number);
+	}
+
+	static void writeString(ByteArrayOutputStream out, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeNumber(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	static void writeString(OutputStream out, String string)
+			throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeNumber(out, bytes.length);
+		out.write(bytes);
+	}
+
+}
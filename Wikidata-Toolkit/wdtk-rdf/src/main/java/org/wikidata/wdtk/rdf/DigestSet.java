@@ -0,0 +1,415 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact set of 128-bit digests, as used in the URIs of values and
+ * references (see {@link Vocabulary#getReferenceUri} and
+ * {@link Vocabulary#getLastDigestHigh()}). It is used to remember
+ * which resources have already been declared during an export. Digests are
+ * stored as pairs of primitive longs in an open-addressing hash table, which
+ * needs only 16 bytes per slot instead of the several hundred bytes that a
+ * {@link java.util.HashSet} of URI objects takes.
+ * <p>
+ * The heap memory used by the table can be limited. When the limit is
+ * reached, the set behaves in one of two ways:
+ * <ul>
+ * <li>In the exact mode, the table is moved to memory-mapped temporary files
+ * and continues to grow there. Membership is always decided correctly.</li>
+ * <li>In the lossy mode, the table stops growing and new digests replace old
+ * ones. A digest that has been forgotten in this way is reported as new
+ * again, so that the export may contain some duplicate triples, but no
+ * triples are ever lost.</li>
+ * </ul>
+ * <p>
+ * The lossy mode is deliberately not based on a Bloom filter. A false
+ * positive of a Bloom filter would report a new digest as known, so that
+ * the declaration of a resource would be missing from the export, whereas
+ * forgetting a digest only leads to a repeated declaration. The price is that
+ * the rate of duplicates is not fixed in advance: once the table is full,
+ * every digest that finds no free slot among {@link #MAX_PROBES} slots
+ * evicts one old digest. A resource is declared again only if it recurs after
+ * its digest has been evicted, so the number of duplicate declarations is at
+ * most the number of evictions, which is reported by
+ * {@link #getEvictedCount()} and logged when the set is closed. When adding
+ * n distinct digests to a full table with c slots, there are about n - c
+ * evictions; how many of them cause duplicates depends on how often
+ * resources recur in the data.
+ * <p>
+ * This class is thread-safe, so that one set can be shared by several
+ * converters that work in parallel.
+ *
+ * @author agent
+ *
+ */
+public class DigestSet implements Closeable {
+
+	static final Logger logger = LoggerFactory.getLogger(DigestSet.class);
+
+	/**
+	 * Number of digest characters at the end of hash-based URIs.
+	 */
+	static final int DIGEST_HEX_LENGTH = 32;
+
+	/**
+	 * Number of slots of a new table; must be a power of two.
+	 */
+	static final int INITIAL_CAPACITY = 1 << 10;
+
+	/**
+	 * Logarithm of the number of longs in one buffer segment. Large tables
+	 * are split into segments, since a single buffer cannot address more than
+	 * 2GB.
+	 */
+	static final int SEGMENT_BITS = 24;
+	static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	/**
+	 * Logarithm of the maximal number of slots of a table.
+	 */
+	static final int MAX_CAPACITY_BITS = 36;
+
+	/**
+	 * Number of slots that are inspected before an old digest is replaced
+	 * when the table cannot grow any further.
+	 */
+	static final int MAX_PROBES = 16;
+
+	final long memoryLimit;
+	final boolean lossy;
+
+	LongBuffer[] segments;
+	long capacity;
+	long mask;
+	long size;
+
+	/**
+	 * Number of digests that have been replaced by other digests in the
+	 * lossy mode.
+	 */
+	long evicted;
+
+	/**
+	 * True if the table cannot grow anymore, so that old entries are replaced
+	 * when needed.
+	 */
+	boolean full;
+
+	/**
+	 * True if the digest that consists only of zeros has been added. This
+	 * digest is used to mark empty slots and cannot be stored in the table.
+	 */
+	boolean containsZero;
+
+	/**
+	 * Temporary file that backs the table, or null if the table is on the
+	 * heap.
+	 */
+	Path mappedFile;
+
+	/**
+	 * Creates an exact set without any memory limit.
+	 */
+	public DigestSet() {
+		this(Long.MAX_VALUE, false);
+	}
+
+	/**
+	 * Creates a set that uses at most the given amount of heap memory for its
+	 * table.
+	 *
+	 * @param memoryLimit
+	 *            maximal size of the table on the heap, in bytes
+	 * @param lossy
+	 *            if true, old digests are forgotten when the limit is
+	 *            reached; otherwise the table is moved to memory-mapped
+	 *            temporary files
+	 */
+	public DigestSet(long memoryLimit, boolean lossy) {
+		this.memoryLimit = memoryLimit;
+		this.lossy = lossy;
+		this.capacity = INITIAL_CAPACITY;
+		this.mask = this.capacity - 1;
+		this.segments = allocateHeapSegments(this.capacity);
+	}
+
+	/**
+	 * Adds the digest at the end of the given hash-based URI to the set. The
+	 * converters do not use this method, since they get the digest directly
+	 * from {@link Vocabulary#getLastDigestHigh()} and
+	 * {@link Vocabulary#getLastDigestLow()} without parsing the URI.
+	 *
+	 * @param uri
+	 *            URI that ends with a hexadecimal 128-bit digest
+	 * @return true if the digest was not in the set yet
+	 * @see #add(long, long)
+	 */
+	public boolean add(String uri) {
+		int start = uri.length() - DIGEST_HEX_LENGTH;
+		if (start < 0) {
+			throw new IllegalArgumentException("URI \"" + uri
+					+ "\" does not end with a digest.");
+		}
+		return add(parseHexLong(uri, start), parseHexLong(uri, start + 16));
+	}
+
+	/**
+	 * Adds the given digest to the set. In lossy mode, digests that have been
+	 * added before may be reported as new again.
+	 *
+	 * @param high
+	 *            the upper 64 bits of the digest
+	 * @param low
+	 *            the lower 64 bits of the digest
+	 * @return true if the digest was not in the set yet
+	 */
+	public synchronized boolean add(long high, long low) {
+		if (high == 0 && low == 0) {
+			boolean result = !this.containsZero;
+			this.containsZero = true;
+			return result;
+		}
+
+		if (!this.full && (this.size + 1) * 4 > this.capacity * 3) {
+			grow();
+		}
+
+		long slot = hash(high, low) & this.mask;
+		int probes = 0;
+		while (true) {
+			long slotHigh = getLong(2 * slot);
+			long slotLow = getLong(2 * slot + 1);
+			if (slotHigh == high && slotLow == low) {
+				return false;
+			} else if (slotHigh == 0 && slotLow == 0) {
+				break;
+			}
+			probes++;
+			if (this.full && probes >= MAX_PROBES) {
+				// forget the entry at the original position
+				slot = hash(high, low) & this.mask;
+				this.size--;
+				this.evicted++;
+				break;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+
+		setLong(2 * slot, high);
+		setLong(2 * slot + 1, low);
+		this.size++;
+		return true;
+	}
+
+	/**
+	 * Returns the number of digests in the set. In lossy mode, forgotten
+	 * digests are not counted.
+	 *
+	 * @return number of digests
+	 */
+	public synchronized long size() {
+		return this.containsZero ? this.size + 1 : this.size;
+	}
+
+	/**
+	 * Returns the number of digests that have been forgotten to make room
+	 * for new ones. This is an upper bound for the number of times that
+	 * {@link #add(long, long)} has wrongly reported a digest as new. The
+	 * result is always 0 unless the table has stopped growing.
+	 *
+	 * @return number of evicted digests
+	 */
+	public synchronized long getEvictedCount() {
+		return this.evicted;
+	}
+
+	/**
+	 * Returns true if the table is stored in memory-mapped files rather than
+	 * on the heap.
+	 *
+	 * @return true if the set uses the disk
+	 */
+	public synchronized boolean isMapped() {
+		return this.mappedFile != null;
+	}
+
+	/**
+	 * Releases the table and deletes the temporary file, if any. The set
+	 * should not be used afterwards.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.evicted > 0) {
+			logger.warn(this.evicted + " digests were forgotten since the "
+					+ "digest table was full. Up to " + this.evicted
+					+ " resources may have been declared more than once.");
+		}
+		this.segments = new LongBuffer[0];
+		if (this.mappedFile != null) {
+			Files.deleteIfExists(this.mappedFile);
+			this.mappedFile = null;
+		}
+	}
+
+	/**
+	 * Doubles the size of the table, moving it to disk if the heap memory
+	 * limit would be exceeded. If this is not possible or not wanted, the
+	 * table is marked as full.
+	 */
+	void grow() {
+		long newCapacity = 2 * this.capacity;
+		LongBuffer[] newSegments;
+		if (newCapacity > (1L << MAX_CAPACITY_BITS)) {
+			logger.warn("Digest table has reached its maximal size. "
+					+ "Some resources may be declared more than once.");
+			this.full = true;
+			return;
+		} else if (this.mappedFile == null
+				&& 16 * newCapacity <= this.memoryLimit) {
+			newSegments = allocateHeapSegments(newCapacity);
+		} else if (this.lossy) {
+			this.full = true;
+			return;
+		} else {
+			try {
+				newSegments = allocateMappedSegments(newCapacity);
+			} catch (IOException e) {
+				logger.error("Could not move digest table to disk: "
+						+ e.toString()
+						+ ". Some resources may be declared more than once.");
+				this.full = true;
+				return;
+			}
+		}
+
+		LongBuffer[] oldSegments = this.segments;
+		long oldCapacity = this.capacity;
+		this.segments = newSegments;
+		this.capacity = newCapacity;
+		this.mask = newCapacity - 1;
+		this.size = 0;
+		for (long slot = 0; slot < oldCapacity; slot++) {
+			long high = getLong(oldSegments, 2 * slot);
+			long low = getLong(oldSegments, 2 * slot + 1);
+			if (high != 0 || low != 0) {
+				add(high, low);
+			}
+		}
+	}
+
+	LongBuffer[] allocateHeapSegments(long capacity) {
+		LongBuffer[] result = new LongBuffer[getSegmentCount(capacity)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = LongBuffer.allocate((int) Math.min(2 * capacity,
+					1L << SEGMENT_BITS));
+		}
+		return result;
+	}
+
+	LongBuffer[] allocateMappedSegments(long capacity) throws IOException {
+		Path file = Files.createTempFile("wdtk-digests-", ".bin");
+		file.toFile().deleteOnExit();
+		LongBuffer[] result = new LongBuffer[getSegmentCount(capacity)];
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long segmentBytes = 8 * Math.min(2 * capacity, 1L << SEGMENT_BITS);
+			for (int i = 0; i < result.length; i++) {
+				result[i] = channel
+						.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes,
+								segmentBytes).order(ByteOrder.nativeOrder())
+						.asLongBuffer();
+			}
+		}
+		if (this.mappedFile != null) {
+			Files.deleteIfExists(this.mappedFile);
+		} else {
+			logger.info("Moving digest table with " + this.size
+					+ " entries to disk.");
+		}
+		this.mappedFile = file;
+		return result;
+	}
+
+	int getSegmentCount(long capacity) {
+		return (int) Math.max(1, (2 * capacity) >>> SEGMENT_BITS);
+	}
+
+	long getLong(long index) {
+		return getLong(this.segments, index);
+	}
+
+	long getLong(LongBuffer[] segments, long index) {
+		return segments[(int) (index >>> SEGMENT_BITS)]
+				.get((int) (index & SEGMENT_MASK));
+	}
+
+	void setLong(long index, long value) {
+		this.segments[(int) (index >>> SEGMENT_BITS)].put(
+				(int) (index & SEGMENT_MASK), value);
+	}
+
+	/**
+	 * Computes a hash code for the given digest. Digests are already well
+	 * distributed, but the bits are mixed anyway in case the input is not a
+	 * cryptographic hash.
+	 */
+	static long hash(long high, long low) {
+		long h = high * 0x9E3779B97F4A7C15L + low;
+		h ^= h >>> 32;
+		h *= 0xD6E8FEB86659FD93L;
+		return h ^ (h >>> 32);
+	}
+
+	/**
+	 * Parses sixteen hexadecimal digits of the given string as a long.
+	 *
+	 * @param s
+	 *            the string
+	 * @param start
+	 *            the position of the first digit
+	 * @return the parsed value
+	 */
+	static long parseHexLong(String s, int start) {
+		long result = 0;
+		for (int i = start; i < start + 16; i++) {
+			int digit = Character.digit(s.charAt(i), 16);
+			if (digit < 0) {
+				throw new IllegalArgumentException("String \"" + s
+						+ "\" does not end with a hexadecimal digest.");
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+}
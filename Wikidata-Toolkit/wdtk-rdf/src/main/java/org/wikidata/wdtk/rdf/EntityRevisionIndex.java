@@ -0,0 +1,406 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+
+/**
+ * Compact record of the revision ids and content hashes of the entities that
+ * have been exported, used to find the entities that changed since a previous
+ * export. Entries are kept in an open-addressing hash table of primitive
+ * longs, using 24 bytes per slot.
+ * <p>
+ * An index is built for one combination of serialization tasks (see
+ * {@link RdfSerializer#setTasks(int)}), since the exported data depends on
+ * them. Stored indexes that were built for other tasks are not loaded.
+ * <p>
+ * Only items and properties are recorded. Entities of other types are always
+ * reported as modified.
+ *
+ * @author agent
+ *
+ */
+public class EntityRevisionIndex {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(EntityRevisionIndex.class);
+
+	/**
+	 * Status of an entity that was not in the index before.
+	 */
+	public static final int STATUS_ADDED = 0;
+	/**
+	 * Status of an entity whose data has changed.
+	 */
+	public static final int STATUS_MODIFIED = 1;
+	/**
+	 * Status of an entity whose data has not changed.
+	 */
+	public static final int STATUS_UNCHANGED = 2;
+
+	static final int INDEX_FORMAT_VERSION = 2;
+
+	/**
+	 * Number of slots of a new table; must be a power of two.
+	 */
+	static final int INITIAL_CAPACITY = 1 << 10;
+
+	final int tasks;
+
+	/**
+	 * Keys of the table, as computed by {@link #getKey(EntityIdValue)}; 0
+	 * marks empty slots.
+	 */
+	long[] keys;
+	long[] revisionIds;
+	long[] contentHashes;
+
+	/**
+	 * Slots of the entities that have been updated since the index was
+	 * created or loaded.
+	 */
+	BitSet updated;
+
+	int size;
+	int mask;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param tasks
+	 *            the serialization tasks that the index is used for
+	 */
+	public EntityRevisionIndex(int tasks) {
+		this.tasks = tasks;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Returns the serialization tasks that the index is used for.
+	 *
+	 * @return tasks as defined in {@link RdfSerializer}
+	 */
+	public int getTasks() {
+		return this.tasks;
+	}
+
+	/**
+	 * Returns the number of entities in the index.
+	 *
+	 * @return number of entities
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Records the current revision of an entity and returns how it relates to
+	 * the recorded one. If the current and the recorded revision ids are
+	 * known, the entity is unchanged if and only if they are the same. The
+	 * content hash is only compared if a revision id is not known, and a hash
+	 * of 0 never matches.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @param revisionId
+	 *            the current revision id, or 0 if not known
+	 * @param contentHash
+	 *            64-bit digest of the current data of the entity, or 0 if no
+	 *            digest was computed
+	 * @return one of {@link #STATUS_ADDED}, {@link #STATUS_MODIFIED}, and
+	 *         {@link #STATUS_UNCHANGED}
+	 */
+	public synchronized int update(EntityIdValue entityId, long revisionId,
+			long contentHash) {
+		long key = getKey(entityId);
+		if (key == 0) {
+			return STATUS_MODIFIED;
+		}
+
+		int slot = findSlot(key);
+		int status;
+		if (this.keys[slot] == 0) {
+			if ((this.size + 1) * 4 > this.keys.length * 3) {
+				grow();
+				slot = findSlot(key);
+			}
+			this.keys[slot] = key;
+			this.size++;
+			status = STATUS_ADDED;
+		} else if (revisionId != 0 && this.revisionIds[slot] != 0) {
+			status = this.revisionIds[slot] == revisionId ? STATUS_UNCHANGED
+					: STATUS_MODIFIED;
+		} else if (contentHash != 0 && this.contentHashes[slot] == contentHash) {
+			status = STATUS_UNCHANGED;
+		} else {
+			status = STATUS_MODIFIED;
+		}
+		this.revisionIds[slot] = revisionId;
+		this.contentHashes[slot] = contentHash;
+		this.updated.set(slot);
+		return status;
+	}
+
+	/**
+	 * Returns the recorded revision id of the given entity.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the revision id, or -1 if the entity is not in the index
+	 */
+	public synchronized long getRevisionId(EntityIdValue entityId) {
+		long key = getKey(entityId);
+		if (key == 0) {
+			return -1;
+		}
+		int slot = findSlot(key);
+		return this.keys[slot] == 0 ? -1 : this.revisionIds[slot];
+	}
+
+	/**
+	 * Returns the ids of all entities in the index that have not been updated
+	 * since the index was created or loaded. After processing a complete
+	 * dump, these are the entities that have been deleted. The entities are
+	 * removed from the index, and the remaining entities are considered not
+	 * updated again, so that the index can be used for the next export.
+	 *
+	 * @return list of entity ids, such as "Q42"
+	 */
+	public synchronized List<String> removeOutdatedEntities() {
+		List<String> result = new ArrayList<>();
+		long[] oldKeys = this.keys;
+		long[] oldRevisionIds = this.revisionIds;
+		long[] oldContentHashes = this.contentHashes;
+		BitSet oldUpdated = this.updated;
+
+		allocate(oldKeys.length);
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == 0) {
+				continue;
+			}
+			if (oldUpdated.get(i)) {
+				int slot = findSlot(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.revisionIds[slot] = oldRevisionIds[i];
+				this.contentHashes[slot] = oldContentHashes[i];
+				this.size++;
+			} else {
+				result.add(getEntityId(oldKeys[i]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the index to a (gzip-compressed) file in the given directory. The
+	 * file can be loaded again with {@link #read(DirectoryManager, String)}.
+	 *
+	 * @param directoryManager
+	 *            the directory to write to
+	 * @param fileName
+	 *            the name of the index file
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public synchronized void write(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		try (OutputStream out = directoryManager
+				.getOutputStreamForFile(fileName);
+				DataOutputStream data = new DataOutputStream(
+						new GZIPOutputStream(out))) {
+			data.writeInt(INDEX_FORMAT_VERSION);
+			data.writeInt(this.tasks);
+			data.writeInt(this.size);
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i] != 0) {
+					data.writeLong(this.keys[i]);
+					data.writeLong(this.revisionIds[i]);
+					data.writeLong(this.contentHashes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads an index file that was written with
+	 * {@link #write(DirectoryManager, String)}. The entries are added to the
+	 * entries that the index already has. Indexes that were built for other
+	 * serialization tasks are not loaded.
+	 *
+	 * @param directoryManager
+	 *            the directory to read from
+	 * @param fileName
+	 *            the name of the index file
+	 * @return true if the index was loaded, and false if there was no
+	 *         suitable index file
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public synchronized boolean read(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		if (!directoryManager.hasFile(fileName)) {
+			return false;
+		}
+
+		try (InputStream in = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.GZIP);
+				DataInputStream data = new DataInputStream(in)) {
+			int version = data.readInt();
+			if (version != INDEX_FORMAT_VERSION) {
+				logger.warn("Entity revision index \"" + fileName
+						+ "\" has unsupported format version " + version
+						+ ". Ignoring it.");
+				return false;
+			}
+			int tasks = data.readInt();
+			if (tasks != this.tasks) {
+				logger.warn("Entity revision index \"" + fileName
+						+ "\" was made for different serialization tasks."
+						+ " Ignoring it.");
+				return false;
+			}
+
+			int count = data.readInt();
+			for (int i = 0; i < count; i++) {
+				long key = data.readLong();
+				long revisionId = data.readLong();
+				long contentHash = data.readLong();
+				int slot = findSlot(key);
+				if (this.keys[slot] == 0) {
+					if ((this.size + 1) * 4 > this.keys.length * 3) {
+						grow();
+						slot = findSlot(key);
+					}
+					this.keys[slot] = key;
+					this.size++;
+				}
+				this.revisionIds[slot] = revisionId;
+				this.contentHashes[slot] = contentHash;
+			}
+			logger.info("Loaded revisions of " + count
+					+ " entities from index \"" + fileName + "\".");
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the key of the given entity in the table. The key combines the
+	 * number of the id with a bit for the entity type.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the key, or 0 if the entity cannot be recorded
+	 */
+	static long getKey(EntityIdValue entityId) {
+		long type;
+		switch (entityId.getEntityType()) {
+		case EntityIdValue.ET_ITEM:
+			type = 0;
+			break;
+		case EntityIdValue.ET_PROPERTY:
+			type = 1;
+			break;
+		default:
+			return 0;
+		}
+		long number;
+		try {
+			number = Long.parseLong(entityId.getId().substring(1));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+		return number > 0 ? (number << 1) | type : 0;
+	}
+
+	/**
+	 * Returns the entity id for the given key.
+	 *
+	 * @param key
+	 *            the key as computed by {@link #getKey(EntityIdValue)}
+	 * @return the entity id, such as "Q42"
+	 */
+	static String getEntityId(long key) {
+		return ((key & 1) == 0 ? "Q" : "P") + (key >>> 1);
+	}
+
+	/**
+	 * Returns the slot that holds the given key, or the empty slot where it
+	 * should be inserted.
+	 */
+	int findSlot(long key) {
+		int slot = (int) (DigestSet.hash(key, 0) & this.mask);
+		while (this.keys[slot] != 0 && this.keys[slot] != key) {
+			slot = (slot + 1) & this.mask;
+		}
+		return slot;
+	}
+
+	void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.revisionIds = new long[capacity];
+		this.contentHashes = new long[capacity];
+		this.updated = new BitSet(capacity);
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Doubles the capacity of the table.
+	 */
+	void grow() {
+		if (this.keys.length >= (1 << 30)) {
+			throw new IllegalStateException(
+					"Entity revision index cannot grow any further.");
+		}
+		long[] oldKeys = this.keys;
+		long[] oldRevisionIds = this.revisionIds;
+		long[] oldContentHashes = this.contentHashes;
+		BitSet oldUpdated = this.updated;
+
+		allocate(2 * oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = findSlot(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.revisionIds[slot] = oldRevisionIds[i];
+				this.contentHashes[slot] = oldContentHashes[i];
+				if (oldUpdated.get(i)) {
+					this.updated.set(slot);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,275 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.openrdf.rio.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.datamodel.json.jackson.JsonSerializer;
+
+/**
+ * An RDF serializer that only exports the entities that have changed since a
+ * previous export. The revisions of the exported entities are recorded in an
+ * {@link EntityRevisionIndex}, which should be stored after the export and
+ * loaded again before the next one.
+ * <p>
+ * The RDF output contains the complete data of all added and modified
+ * entities. In addition, a list of changes is written to a second output
+ * stream. It has one line for each added, modified, or deleted entity, which
+ * consists of the letter "A", "M", or "D", a space, and the id of the entity,
+ * e.g., "M Q42". To update an existing export, the data of modified and
+ * deleted entities is removed and the RDF output is added.
+ * <p>
+ * Deleted entities are found when the serializer is closed, as the entities
+ * of the index that have not been seen. This is only correct if all entities
+ * of a complete dump have been processed.
+ *
+ * @author agent
+ *
+ */
+public class IncrementalRdfSerializer implements EntityDocumentDumpProcessor {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(IncrementalRdfSerializer.class);
+
+	final RdfSerializer rdfSerializer;
+	final EntityRevisionIndex revisionIndex;
+	final Writer changeWriter;
+
+	long addedCount = 0;
+	long modifiedCount = 0;
+	long unchangedCount = 0;
+	long deletedCount = 0;
+
+	/**
+	 * Creates a new incremental serializer. The serialization tasks are taken
+	 * from the given index.
+	 *
+	 * @param format
+	 *            RDF format, such as RDFFormat.NTRIPLES
+	 * @param output
+	 *            the output stream to write the RDF data to
+	 * @param changeOutput
+	 *            the output stream to write the list of changed entities to
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            register of properties and their datatypes
+	 * @param revisionIndex
+	 *            the revisions of the entities of the previous export; it is
+	 *            updated during serialization
+	 */
+	public IncrementalRdfSerializer(RDFFormat format, OutputStream output,
+			OutputStream changeOutput, Sites sites,
+			PropertyRegister propertyRegister,
+			EntityRevisionIndex revisionIndex) {
+		this.rdfSerializer = new RdfSerializer(format, output, sites,
+				propertyRegister);
+		this.rdfSerializer.setTasks(revisionIndex.getTasks());
+		this.revisionIndex = revisionIndex;
+		this.changeWriter = new BufferedWriter(new OutputStreamWriter(
+				changeOutput, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the number of entities that have been added since the previous
+	 * export.
+	 *
+	 * @return number of added entities
+	 */
+	public long getAddedCount() {
+		return this.addedCount;
+	}
+
+	/**
+	 * Returns the number of entities that have been modified since the
+	 * previous export.
+	 *
+	 * @return number of modified entities
+	 */
+	public long getModifiedCount() {
+		return this.modifiedCount;
+	}
+
+	/**
+	 * Returns the number of entities that have not changed since the previous
+	 * export and were therefore not serialized.
+	 *
+	 * @return number of unchanged entities
+	 */
+	public long getUnchangedCount() {
+		return this.unchangedCount;
+	}
+
+	/**
+	 * Returns the number of entities that have been deleted since the
+	 * previous export. This is only known after the serializer was closed.
+	 *
+	 * @return number of deleted entities
+	 */
+	public long getDeletedCount() {
+		return this.deletedCount;
+	}
+
+	/**
+	 * Returns the number of triples that have been written so far.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		return this.rdfSerializer.getTripleCount();
+	}
+
+	@Override
+	public void open() {
+		this.rdfSerializer.open();
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		if (!hasTask(RdfSerializer.TASK_ITEMS)) {
+			return;
+		}
+		long contentHash = 0;
+		if (itemDocument.getRevisionId() == 0) {
+			contentHash = getContentHash(JsonSerializer
+					.getJsonString(itemDocument));
+		}
+		if (recordChange(itemDocument.getEntityId(),
+				itemDocument.getRevisionId(), contentHash)) {
+			this.rdfSerializer.processItemDocument(itemDocument);
+		}
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		if (!hasTask(RdfSerializer.TASK_PROPERTIES)) {
+			return;
+		}
+		long contentHash = 0;
+		if (propertyDocument.getRevisionId() == 0) {
+			contentHash = getContentHash(JsonSerializer
+					.getJsonString(propertyDocument));
+		}
+		if (recordChange(propertyDocument.getEntityId(),
+				propertyDocument.getRevisionId(), contentHash)) {
+			this.rdfSerializer.processPropertyDocument(propertyDocument);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			for (String entityId : this.revisionIndex.removeOutdatedEntities()) {
+				writeChange("D", entityId);
+				this.deletedCount++;
+			}
+			this.changeWriter.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+		this.rdfSerializer.close();
+
+		logger.info("Incremental RDF export: " + this.addedCount
+				+ " entities added, " + this.modifiedCount + " modified, "
+				+ this.deletedCount + " deleted, " + this.unchangedCount
+				+ " unchanged.");
+	}
+
+	/**
+	 * Records the current revision of an entity in the index and writes it to
+	 * the list of changes if needed.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @param revisionId
+	 *            the current revision id, or 0 if not known
+	 * @param contentHash
+	 *            digest of the current data of the entity, or 0 if the
+	 *            revision id is known
+	 * @return true if the entity has changed and must be serialized
+	 */
+	boolean recordChange(EntityIdValue entityId, long revisionId,
+			long contentHash) {
+		int status = this.revisionIndex.update(entityId, revisionId,
+				contentHash);
+		try {
+			switch (status) {
+			case EntityRevisionIndex.STATUS_ADDED:
+				writeChange("A", entityId.getId());
+				this.addedCount++;
+				return true;
+			case EntityRevisionIndex.STATUS_MODIFIED:
+				writeChange("M", entityId.getId());
+				this.modifiedCount++;
+				return true;
+			default:
+				this.unchangedCount++;
+				return false;
+			}
+		} catch (IOException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	void writeChange(String status, String entityId) throws IOException {
+		this.changeWriter.write(status);
+		this.changeWriter.write(' ');
+		this.changeWriter.write(entityId);
+		this.changeWriter.write('\n');
+	}
+
+	boolean hasTask(int task) {
+		return (this.revisionIndex.getTasks() & task) == task;
+	}
+
+	/**
+	 * Returns a 64-bit digest of the JSON serialization of a document. It is
+	 * only used for documents without a revision id, so that the serialization
+	 * does not need to be computed in most cases.
+	 *
+	 * @param json
+	 *            JSON serialization of the document, or null if it could not
+	 *            be serialized
+	 * @return the digest, or 0 if there is no serialization
+	 */
+	static long getContentHash(String json) {
+		if (json == null) {
+			return 0;
+		}
+		ValueUriHasher hasher = ValueUriHasher.getInstance();
+		hasher.update(json);
+		return hasher.getLongDigest();
+	}
+
+}
@@ -0,0 +1,431 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * An {@link RdfWriter} for N-Triples that writes triples directly to the
+ * output stream instead of creating Sesame statement objects and passing
+ * them through a generic Rio writer. Terms are escaped into a large byte
+ * buffer, and the URIs of the fixed vocabulary (such as
+ * {@link RdfWriter#RDF_TYPE}) as well as all predicates are only encoded
+ * once.
+ * <p>
+ * The output is byte-for-byte the same as the output of Sesame's N-Triples
+ * writer: all characters outside of printable ASCII are written as
+ * \\u escape sequences, so the output is pure ASCII.
+ *
+ * @author agent
+ *
+ */
+public class NTriplesRdfWriter extends RdfWriter {
+
+	static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Maximal number of predicates whose encoding is cached.
+	 */
+	static final int MAX_CACHED_PREDICATES = 100000;
+
+	static final byte[] HEX_DIGITS = "0123456789ABCDEF"
+			.getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Encoded URIs of the vocabulary constants of {@link RdfWriter}.
+	 */
+	static final Map<Value, byte[]> CONSTANT_URIS = new IdentityHashMap<>();
+	static {
+		for (Field field : RdfWriter.class.getFields()) {
+			if (Modifier.isStatic(field.getModifiers())
+					&& URI.class.isAssignableFrom(field.getType())) {
+				try {
+					URI uri = (URI) field.get(null);
+					CONSTANT_URIS.put(uri, encodeUri(uri.toString()));
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e.toString(), e);
+				}
+			}
+		}
+	}
+
+	final OutputStream output;
+
+	final byte[] buffer = new byte[BUFFER_SIZE];
+	int position = 0;
+
+	/**
+	 * Encoded URIs of predicates that have been written before.
+	 */
+	final Map<URI, byte[]> predicateCache = new HashMap<>();
+
+	public NTriplesRdfWriter(OutputStream output) {
+		super();
+		this.output = output;
+	}
+
+	@Override
+	public void start() throws RDFHandlerException {
+		this.tripleCount = 0;
+	}
+
+	@Override
+	public void finish() throws RDFHandlerException {
+		try {
+			flushBuffer();
+			this.output.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeNamespaceDeclaration(String prefix, String uri)
+			throws RDFHandlerException {
+		// N-Triples has no namespace declarations
+	}
+
+	@Override
+	public void writeTripleStringObject(Resource subject, URI predicate,
+			String objectLiteral) throws RDFHandlerException {
+		try {
+			writeResource(subject);
+			writePredicate(predicate);
+			writeQuotedString(objectLiteral);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleIntegerObject(Resource subject, URI predicate,
+			int objectLiteral) throws RDFHandlerException {
+		try {
+			writeResource(subject);
+			writePredicate(predicate);
+			writeQuotedString(Integer.toString(objectLiteral));
+			writeAscii("^^");
+			writeBytes(CONSTANT_URIS.get(XSD_INT));
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleUriObject(String subjectUri, URI predicate,
+			String objectUri) throws RDFHandlerException {
+		try {
+			writeUri(subjectUri);
+			writePredicate(predicate);
+			writeUri(objectUri);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleUriObject(Resource subject, URI predicate,
+			String objectUri) throws RDFHandlerException {
+		try {
+			writeResource(subject);
+			writePredicate(predicate);
+			writeUri(objectUri);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleValueObject(String subjectUri, URI predicate,
+			Value object) throws RDFHandlerException {
+		try {
+			writeUri(subjectUri);
+			writePredicate(predicate);
+			writeValue(object);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleValueObject(Resource subject, URI predicate,
+			Value object) throws RDFHandlerException {
+		try {
+			writeResource(subject);
+			writePredicate(predicate);
+			writeValue(object);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeTripleLiteralObject(Resource subject, URI predicate,
+			String objectLexicalValue, URI datatype) throws RDFHandlerException {
+		try {
+			writeResource(subject);
+			writePredicate(predicate);
+			writeQuotedString(objectLexicalValue);
+			writeAscii("^^");
+			writeUriValue(datatype);
+			writeEndOfTriple();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	void writeEndOfTriple() throws IOException {
+		writeAscii(" .\n");
+		this.tripleCount++;
+	}
+
+	void writePredicate(URI predicate) throws IOException {
+		byte[] bytes = CONSTANT_URIS.get(predicate);
+		if (bytes == null) {
+			bytes = this.predicateCache.get(predicate);
+			if (bytes == null) {
+				bytes = encodeUri(predicate.toString());
+				if (this.predicateCache.size() < MAX_CACHED_PREDICATES) {
+					this.predicateCache.put(predicate, bytes);
+				}
+			}
+		}
+		writeAscii(" ");
+		writeBytes(bytes);
+		writeAscii(" ");
+	}
+
+	void writeValue(Value value) throws IOException {
+		if (value instanceof Resource) {
+			writeResource((Resource) value);
+		} else {
+			Literal literal = (Literal) value;
+			writeQuotedString(literal.getLabel());
+			if (literal.getLanguage() != null) {
+				writeAscii("@");
+				writeAscii(literal.getLanguage());
+			} else if (literal.getDatatype() != null) {
+				writeAscii("^^");
+				writeUriValue(literal.getDatatype());
+			}
+		}
+	}
+
+	void writeResource(Resource resource) throws IOException {
+		if (resource instanceof URI) {
+			writeUriValue((URI) resource);
+		} else {
+			writeBNode((BNode) resource);
+		}
+	}
+
+	void writeUriValue(URI uri) throws IOException {
+		byte[] bytes = CONSTANT_URIS.get(uri);
+		if (bytes != null) {
+			writeBytes(bytes);
+		} else {
+			writeUri(uri.toString());
+		}
+	}
+
+	/**
+	 * Writes a URI given as a string. The same check is made as when creating
+	 * a URI object, so that invalid URIs lead to the same exception.
+	 */
+	void writeUri(String uri) throws IOException {
+		if (uri.indexOf(':') < 0) {
+			throw new IllegalArgumentException("Not a valid (absolute) URI: "
+					+ uri);
+		}
+		writeAscii("<");
+		writeEscapedString(uri);
+		writeAscii(">");
+	}
+
+	/**
+	 * Writes a blank node, encoding its id in the same way as Sesame.
+	 */
+	void writeBNode(BNode bnode) throws IOException {
+		String id = bnode.getID();
+		writeAscii("_:");
+		if (id.isEmpty()) {
+			writeAscii("genid");
+			writeAscii(Integer.toHexString(bnode.hashCode()));
+			return;
+		}
+		if (!isLetter(id.charAt(0))) {
+			writeAscii("genid");
+			writeAscii(Integer.toHexString(id.charAt(0)));
+		}
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (isLetter(c) || (c >= '0' && c <= '9')) {
+				ensureCapacity(1);
+				this.buffer[this.position++] = (byte) c;
+			} else {
+				writeAscii(Integer.toHexString(c));
+			}
+		}
+	}
+
+	void writeQuotedString(String s) throws IOException {
+		writeAscii("\"");
+		writeEscapedString(s);
+		writeAscii("\"");
+	}
+
+	/**
+	 * Writes the given string, escaping all characters that are not printable
+	 * ASCII characters.
+	 */
+	void writeEscapedString(String s) throws IOException {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (this.position + 6 > this.buffer.length) {
+				flushBuffer();
+			}
+			this.position = escapeChar(s.charAt(i), this.buffer, this.position);
+		}
+	}
+
+	/**
+	 * Writes a string that only contains ASCII characters that need no
+	 * escaping.
+	 */
+	void writeAscii(String s) throws IOException {
+		int length = s.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			this.buffer[this.position++] = (byte) s.charAt(i);
+		}
+	}
+
+	void writeBytes(byte[] bytes) throws IOException {
+		if (bytes.length > this.buffer.length) {
+			flushBuffer();
+			this.output.write(bytes);
+			return;
+		}
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+		this.position += bytes.length;
+	}
+
+	void ensureCapacity(int length) throws IOException {
+		if (this.position + length > this.buffer.length) {
+			flushBuffer();
+		}
+	}
+
+	void flushBuffer() throws IOException {
+		this.output.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+
+	static boolean isLetter(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+
+	/**
+	 * Writes the escaped form of the given character to the buffer.
+	 *
+	 * @param c
+	 *            the character to write
+	 * @param buffer
+	 *            the buffer, which must have space for at least six bytes
+	 * @param position
+	 *            the position to write to
+	 * @return the position after the written bytes
+	 */
+	static int escapeChar(char c, byte[] buffer, int position) {
+		switch (c) {
+		case '\\':
+			buffer[position++] = '\\';
+			buffer[position++] = '\\';
+			return position;
+		case '"':
+			buffer[position++] = '\\';
+			buffer[position++] = '"';
+			return position;
+		case '\n':
+			buffer[position++] = '\\';
+			buffer[position++] = 'n';
+			return position;
+		case '\r':
+			buffer[position++] = '\\';
+			buffer[position++] = 'r';
+			return position;
+		case '\t':
+			buffer[position++] = '\\';
+			buffer[position++] = 't';
+			return position;
+		default:
+			if (c >= 0x20 && c < 0x7F) {
+				buffer[position++] = (byte) c;
+			} else {
+				buffer[position++] = '\\';
+				buffer[position++] = 'u';
+				buffer[position++] = HEX_DIGITS[(c >>> 12) & 0xF];
+				buffer[position++] = HEX_DIGITS[(c >>> 8) & 0xF];
+				buffer[position++] = HEX_DIGITS[(c >>> 4) & 0xF];
+				buffer[position++] = HEX_DIGITS[c & 0xF];
+			}
+			return position;
+		}
+	}
+
+	/**
+	 * Returns the bytes of the N-Triples representation of the given URI.
+	 */
+	static byte[] encodeUri(String uri) {
+		byte[] result = new byte[6 * uri.length() + 2];
+		int position = 0;
+		result[position++] = '<';
+		for (int i = 0; i < uri.length(); i++) {
+			position = escapeChar(uri.charAt(i), result, position);
+		}
+		result[position++] = '>';
+		byte[] trimmed = new byte[position];
+		System.arraycopy(result, 0, trimmed, 0, position);
+		return trimmed;
+	}
+
+}
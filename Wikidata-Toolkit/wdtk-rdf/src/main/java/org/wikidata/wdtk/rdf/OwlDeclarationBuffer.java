@@ -20,9 +20,10 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openrdf.model.URI;
 import org.openrdf.rio.RDFHandlerException;
@@ -35,30 +36,57 @@ import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
  * are ordered by subject, (2) to avoid some duplicate triples for things that
  * are needed in many places. Due to memory constraints, this class does not
  * provide perfect duplicate elimination.
+ * <p>
+ * Pending declarations are kept in insertion-ordered sets, so that duplicates
+ * within one batch of documents are removed before the (possibly shared) sets
+ * of declared entities are checked.
  *
  * @author Markus Kroetzsch
  *
  */
 public class OwlDeclarationBuffer {
 
-	final List<PropertyIdValue> objectPropertyQueue;
-	final List<PropertyIdValue> datatypePropertyQueue;
-	final List<URI> objectPropertyUriQueue;
-	final List<URI> datatypePropertyUriQueue;
-	final HashSet<PropertyIdValue> declaredProperties;
-	final HashSet<URI> declaredPropertyUris;
-	final List<EntityIdValue> classEntityQueue;
-	final HashSet<EntityIdValue> declaredClassEntities;
+	final Set<PropertyIdValue> objectPropertyQueue;
+	final Set<PropertyIdValue> datatypePropertyQueue;
+	final Set<URI> objectPropertyUriQueue;
+	final Set<URI> datatypePropertyUriQueue;
+	final Set<PropertyIdValue> declaredProperties;
+	final Set<URI> declaredPropertyUris;
+	final Set<EntityIdValue> classEntityQueue;
+	final Set<EntityIdValue> declaredClassEntities;
 
 	public OwlDeclarationBuffer() {
-		this.objectPropertyQueue = new ArrayList<PropertyIdValue>();
-		this.datatypePropertyQueue = new ArrayList<PropertyIdValue>();
-		this.objectPropertyUriQueue = new ArrayList<URI>();
-		this.datatypePropertyUriQueue = new ArrayList<URI>();
-		this.declaredProperties = new HashSet<PropertyIdValue>();
-		this.declaredPropertyUris = new HashSet<URI>();
-		this.classEntityQueue = new ArrayList<EntityIdValue>();
-		this.declaredClassEntities = new HashSet<EntityIdValue>();
+		this.objectPropertyQueue = new LinkedHashSet<PropertyIdValue>();
+		this.datatypePropertyQueue = new LinkedHashSet<PropertyIdValue>();
+		this.objectPropertyUriQueue = new LinkedHashSet<URI>();
+		this.datatypePropertyUriQueue = new LinkedHashSet<URI>();
+		this.declaredProperties = Collections
+				.newSetFromMap(new ConcurrentHashMap<PropertyIdValue, Boolean>());
+		this.declaredPropertyUris = Collections
+				.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+		this.classEntityQueue = new LinkedHashSet<EntityIdValue>();
+		this.declaredClassEntities = Collections
+				.newSetFromMap(new ConcurrentHashMap<EntityIdValue, Boolean>());
+	}
+
+	/**
+	 * Constructor for a buffer that shares the record of declared properties
+	 * and classes with the given buffer, so that nothing is declared twice by
+	 * either of them. Buffers that share declarations can be used in
+	 * different threads. The queues of pending declarations are not shared.
+	 *
+	 * @param sharedDeclarations
+	 *            buffer whose declarations should be shared
+	 */
+	public OwlDeclarationBuffer(OwlDeclarationBuffer sharedDeclarations) {
+		this.objectPropertyQueue = new LinkedHashSet<PropertyIdValue>();
+		this.datatypePropertyQueue = new LinkedHashSet<PropertyIdValue>();
+		this.objectPropertyUriQueue = new LinkedHashSet<URI>();
+		this.datatypePropertyUriQueue = new LinkedHashSet<URI>();
+		this.declaredProperties = sharedDeclarations.declaredProperties;
+		this.declaredPropertyUris = sharedDeclarations.declaredPropertyUris;
+		this.classEntityQueue = new LinkedHashSet<EntityIdValue>();
+		this.declaredClassEntities = sharedDeclarations.declaredClassEntities;
 	}
 
 	/**
@@ -238,4 +266,18 @@ public class OwlDeclarationBuffer {
 		this.classEntityQueue.clear();
 	}
 
+	/**
+	 * Returns the number of declarations that have been added but not written
+	 * yet.
+	 *
+	 * @return number of pending declarations
+	 */
+	public int getPendingDeclarationCount() {
+		return this.objectPropertyQueue.size()
+				+ this.datatypePropertyQueue.size()
+				+ this.objectPropertyUriQueue.size()
+				+ this.datatypePropertyUriQueue.size()
+				+ this.classEntityQueue.size();
+	}
+
 }
@@ -20,20 +20,37 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
@@ -43,13 +60,29 @@ import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.StringValue;
 import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
 import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
 import org.wikidata.wdtk.wikibaseapi.ApiConnection;
+import org.wikidata.wdtk.wikibaseapi.EntityDocumentCache;
 import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
 /**
  * This class helps to manage information about Properties that has to obtained
- * by a webservice.
+ * by a webservice. The register is thread-safe, so that one object can be
+ * shared by several converters that run in parallel. Information is stored in
+ * an array indexed by the numeric part of the property ids, which is read
+ * without locking; properties with very large numbers are stored in a map
+ * instead. If several threads need the same missing information at
+ * the same time, only one of them fetches it online while the others wait
+ * for the result.
+ * <p>
+ * To avoid fetching data online during a conversion, the register can be
+ * filled from the property documents of a dump in a first pass using
+ * {@link #getPropertyDocumentProcessor()}, and it can be stored in and loaded
+ * from a snapshot file using {@link #writeSnapshot(DirectoryManager, String)}
+ * and {@link #readSnapshot(DirectoryManager, String)}. In offline mode, no
+ * data is fetched online at all.
  *
  * @author Michael Guenther
  *
@@ -66,17 +99,80 @@ public class PropertyRegister {
 	WikibaseDataFetcher dataFetcher;
 
 	/**
-	 * Map that stores the datatype of properties. Properties are identified by
-	 * their Pid; dataypes are identified by their datatype IRI.
+	 * Information about one property. Objects of this class are immutable, so
+	 * that they can be read by other threads without locking.
 	 */
-	final protected Map<String, String> datatypes = new HashMap<String, String>();
+	static final class PropertyInfo {
+		/**
+		 * IRI of the datatype, or null if it is unknown.
+		 */
+		final String datatype;
+		/**
+		 * URI pattern using $1 as placeholder for the escaped value, or null
+		 * if there is no pattern.
+		 */
+		final String uriPattern;
+
+		PropertyInfo(String datatype, String uriPattern) {
+			this.datatype = datatype;
+			this.uriPattern = uriPattern;
+		}
+	}
+
+	/**
+	 * Array that stores information about properties at the position of their
+	 * numeric id. Entries are null for properties that are not known. The
+	 * array is replaced by a larger copy when needed; all modifications are
+	 * synchronized.
+	 */
+	volatile AtomicReferenceArray<PropertyInfo> propertyInfos = new AtomicReferenceArray<>(
+			1024);
+
+	/**
+	 * Largest property number that is stored in {@link #propertyInfos}.
+	 * Information about properties with larger numbers is stored in
+	 * {@link #largePropertyInfos}, so that a single unusual id cannot make
+	 * the array huge.
+	 */
+	static final int MAX_ARRAY_PROPERTY_ID_NUMBER = (1 << 20) - 1;
+
+	/**
+	 * Information about properties with numbers above
+	 * {@link #MAX_ARRAY_PROPERTY_ID_NUMBER}.
+	 */
+	final ConcurrentMap<Integer, PropertyInfo> largePropertyInfos = new ConcurrentHashMap<>();
 
 	/**
-	 * Map that stores the URI patterns of properties. Properties are identified
-	 * by their Pid; patterns are given as strings using $1 as placeholder for
-	 * the escaped value.
+	 * Map view of the datatypes of properties. Properties are identified by
+	 * their Pid; dataypes are identified by their datatype IRI. Only
+	 * {@link Map#get(Object)}, {@link Map#containsKey(Object)} and
+	 * {@link Map#put(Object, Object)} are efficient; iterating over the view
+	 * copies all property information.
+	 *
+	 * @deprecated the information is stored in {@link #propertyInfos}; use
+	 *             {@link #getPropertyType(PropertyIdValue)} and
+	 *             {@link #setPropertyType(PropertyIdValue, String)} instead
+	 */
+	@Deprecated
+	final protected Map<String, String> datatypes = new PropertyInfoView(false);
+
+	/**
+	 * Map view of the URI patterns of properties. Properties are identified by
+	 * their Pid; patterns are given as strings using $1 as placeholder for the
+	 * escaped value. The same restrictions as for {@link #datatypes} apply.
+	 *
+	 * @deprecated the information is stored in {@link #propertyInfos}; use
+	 *             {@link #getPropertyUriPattern(PropertyIdValue)} instead
 	 */
-	final protected Map<String, String> uriPatterns = new HashMap<String, String>();
+	@Deprecated
+	final protected Map<String, String> uriPatterns = new PropertyInfoView(
+			true);
+
+	/**
+	 * Fetches that are currently running, indexed by the numbers of all
+	 * properties that they are fetching. Access is synchronized.
+	 */
+	final Map<Integer, FutureTask<Void>> pendingFetches = new HashMap<>();
 
 	/**
 	 * Pid of the property used to store URI patterns, if used, or null if no
@@ -99,10 +195,20 @@ public class PropertyRegister {
 	 * Smallest property number for which no information has been fetched from
 	 * the Web yet in a systematic fashion. Whenever any property data is
 	 * fetched, additional properties are also fetched and this number is
-	 * incremented accordingly.
+	 * incremented accordingly. Access is synchronized.
 	 */
 	int smallestUnfetchedPropertyIdNumber = 1;
 
+	/**
+	 * If true, no property information is fetched online.
+	 */
+	volatile boolean offlineMode = false;
+
+	/**
+	 * Number that identifies the format of snapshot files.
+	 */
+	static final int SNAPSHOT_FORMAT_VERSION = 1;
+
 	static final PropertyRegister WIKIDATA_PROPERTY_REGISTER = new PropertyRegister(
 			"P1921", ApiConnection.getWikidataApiConnection(),
 			Datamodel.SITE_WIKIDATA);
@@ -138,6 +244,40 @@ public class PropertyRegister {
 		return WIKIDATA_PROPERTY_REGISTER;
 	}
 
+	/**
+	 * Sets a cache for the property documents that are fetched online, so
+	 * that they do not have to be fetched again in later runs. See
+	 * {@link WikibaseDataFetcher#setEntityDocumentCache(EntityDocumentCache)}.
+	 *
+	 * @param entityDocumentCache
+	 *            the cache to use, or null to disable caching
+	 */
+	public void setEntityDocumentCache(EntityDocumentCache entityDocumentCache) {
+		this.dataFetcher.setEntityDocumentCache(entityDocumentCache);
+	}
+
+	/**
+	 * Returns true if the register is in offline mode. See
+	 * {@link #setOfflineMode(boolean)}.
+	 *
+	 * @return true if the register is offline
+	 */
+	public boolean isOfflineMode() {
+		return this.offlineMode;
+	}
+
+	/**
+	 * Switches offline mode on or off. In offline mode, only the information
+	 * that has been registered or loaded before is used, and properties that
+	 * are not known are treated as if they could not be found online.
+	 *
+	 * @param offlineMode
+	 *            true if no data should be fetched online
+	 */
+	public void setOfflineMode(boolean offlineMode) {
+		this.offlineMode = offlineMode;
+	}
+
 	/**
 	 * Returns the URI prefix that is used on the site considered by this
 	 * object. This string also identifies the site globally.
@@ -157,10 +297,8 @@ public class PropertyRegister {
 	 *         not be determined
 	 */
 	public String getPropertyType(PropertyIdValue propertyIdValue) {
-		if (!datatypes.containsKey(propertyIdValue.getId())) {
-			fetchPropertyInformation(propertyIdValue);
-		}
-		return datatypes.get(propertyIdValue.getId());
+		PropertyInfo propertyInfo = getPropertyInfo(propertyIdValue);
+		return propertyInfo == null ? null : propertyInfo.datatype;
 	}
 
 	/**
@@ -170,10 +308,12 @@ public class PropertyRegister {
 	 * @param propertyIdValue
 	 * @param datatypeIri
 	 */
-	public void setPropertyType(PropertyIdValue propertyIdValue,
+	public synchronized void setPropertyType(PropertyIdValue propertyIdValue,
 			String datatypeIri) {
-		datatypes.put(propertyIdValue.getId(), datatypeIri);
-
+		PropertyInfo propertyInfo = getKnownPropertyInfo(propertyIdValue
+				.getId());
+		putPropertyInformation(propertyIdValue.getId(), datatypeIri,
+				propertyInfo == null ? null : propertyInfo.uriPattern);
 	}
 
 	/**
@@ -187,11 +327,109 @@ public class PropertyRegister {
 	 *         was found for the given property
 	 */
 	public String getPropertyUriPattern(PropertyIdValue propertyIdValue) {
-		if (!this.datatypes.containsKey(propertyIdValue.getId())) {
+		PropertyInfo propertyInfo = getPropertyInfo(propertyIdValue);
+		return propertyInfo == null ? null : propertyInfo.uriPattern;
+	}
+
+	/**
+	 * Returns the information about the given property, fetching it online if
+	 * it is not known yet.
+	 *
+	 * @param propertyIdValue
+	 *            the property
+	 * @return the information, or null if it could not be found
+	 */
+	PropertyInfo getPropertyInfo(PropertyIdValue propertyIdValue) {
+		PropertyInfo propertyInfo = getKnownPropertyInfo(propertyIdValue
+				.getId());
+		if (propertyInfo == null) {
 			fetchPropertyInformation(propertyIdValue);
+			propertyInfo = getKnownPropertyInfo(propertyIdValue.getId());
+		}
+		return propertyInfo;
+	}
+
+	/**
+	 * Returns the information about the given property that is already
+	 * stored, without fetching anything online. This method does not block.
+	 *
+	 * @param propertyId
+	 *            the id of the property, e.g., "P31"
+	 * @return the information, or null if the property is not known
+	 */
+	PropertyInfo getKnownPropertyInfo(String propertyId) {
+		int propertyIdNumber = getPropertyIdNumber(propertyId);
+		if (propertyIdNumber > MAX_ARRAY_PROPERTY_ID_NUMBER) {
+			return this.largePropertyInfos.get(propertyIdNumber);
 		}
-		return this.uriPatterns.get(propertyIdValue.getId());
+		AtomicReferenceArray<PropertyInfo> infos = this.propertyInfos;
+		if (propertyIdNumber < infos.length()) {
+			return infos.get(propertyIdNumber);
+		} else {
+			return null;
+		}
+	}
 
+	/**
+	 * Stores information about the given property, replacing any information
+	 * that was stored before.
+	 *
+	 * @param propertyId
+	 *            the id of the property, e.g., "P31"
+	 * @param datatype
+	 *            IRI of the datatype, or null if it is unknown
+	 * @param uriPattern
+	 *            URI pattern, or null if there is none
+	 */
+	synchronized void putPropertyInformation(String propertyId,
+			String datatype, String uriPattern) {
+		int propertyIdNumber = getPropertyIdNumber(propertyId);
+		if (propertyIdNumber > MAX_ARRAY_PROPERTY_ID_NUMBER) {
+			this.largePropertyInfos.put(propertyIdNumber, new PropertyInfo(
+					datatype, uriPattern));
+			return;
+		}
+		AtomicReferenceArray<PropertyInfo> infos = this.propertyInfos;
+		if (propertyIdNumber >= infos.length()) {
+			AtomicReferenceArray<PropertyInfo> newInfos = new AtomicReferenceArray<>(
+					Math.min(MAX_ARRAY_PROPERTY_ID_NUMBER + 1, Math.max(
+							propertyIdNumber + 1, 2 * infos.length())));
+			for (int i = 0; i < infos.length(); i++) {
+				newInfos.set(i, infos.get(i));
+			}
+			infos = newInfos;
+			this.propertyInfos = newInfos;
+		}
+		infos.set(propertyIdNumber, new PropertyInfo(datatype, uriPattern));
+	}
+
+	/**
+	 * Returns a copy of all property information that is stored, indexed by
+	 * the numbers of the properties in ascending order.
+	 *
+	 * @return map from property numbers to property information
+	 */
+	synchronized Map<Integer, PropertyInfo> getPropertyInfos() {
+		Map<Integer, PropertyInfo> result = new TreeMap<>();
+		AtomicReferenceArray<PropertyInfo> infos = this.propertyInfos;
+		for (int i = 0; i < infos.length(); i++) {
+			if (infos.get(i) != null) {
+				result.put(i, infos.get(i));
+			}
+		}
+		result.putAll(this.largePropertyInfos);
+		return result;
+	}
+
+	/**
+	 * Returns the numeric part of a property id.
+	 *
+	 * @param propertyId
+	 *            the id of the property, e.g., "P31"
+	 * @return the number, e.g., 31
+	 */
+	static int getPropertyIdNumber(String propertyId) {
+		return Integer.parseInt(propertyId.substring(1));
 	}
 
 	/**
@@ -288,40 +526,101 @@ public class PropertyRegister {
 	 * Fetches the information of the given property from the Web API. Further
 	 * properties are fetched in the same request and results cached so as to
 	 * limit the total number of Web requests made until all properties are
-	 * fetched.
+	 * fetched. If the property is already being fetched by another thread, the
+	 * method waits for this fetch to finish instead.
 	 *
 	 * @param property
 	 */
 	protected void fetchPropertyInformation(PropertyIdValue property) {
-		int propertyIdNumber = new Integer(property.getId().substring(1));
-		// Don't do anything if all properties up to this index have already
-		// been fetched. In particular, don't try indefinitely to find a
-		// certain property type (maybe the property was deleted).
-		if (this.smallestUnfetchedPropertyIdNumber > propertyIdNumber) {
-			return;
-		}
+		int propertyIdNumber = getPropertyIdNumber(property.getId());
+		FutureTask<Void> fetch;
+		boolean isOwnFetch = false;
+		final List<String> propertyIds;
+
+		synchronized (this) {
+			fetch = this.pendingFetches.get(propertyIdNumber);
+			if (fetch == null) {
+				// Don't do anything if all properties up to this index have
+				// already been fetched. In particular, don't try indefinitely
+				// to find a certain property type (maybe the property was
+				// deleted).
+				if (this.offlineMode
+						|| this.smallestUnfetchedPropertyIdNumber > propertyIdNumber
+						|| getKnownPropertyInfo(property.getId()) != null) {
+					return;
+				}
 
-		List<String> propertyIds = new ArrayList<String>(
-				API_MAX_ENTITY_DOCUMENT_NUMBER);
+				propertyIds = new ArrayList<String>(
+						API_MAX_ENTITY_DOCUMENT_NUMBER);
+				propertyIds.add(property.getId());
+				for (int i = 1; i < API_MAX_ENTITY_DOCUMENT_NUMBER; i++) {
+					propertyIds.add("P" + this.smallestUnfetchedPropertyIdNumber);
+					this.smallestUnfetchedPropertyIdNumber++;
+				}
 
-		propertyIds.add(property.getId());
-		for (int i = 1; i < API_MAX_ENTITY_DOCUMENT_NUMBER; i++) {
-			propertyIds.add("P" + this.smallestUnfetchedPropertyIdNumber);
-			this.smallestUnfetchedPropertyIdNumber++;
+				fetch = new FutureTask<Void>(new Callable<Void>() {
+					@Override
+					public Void call() {
+						fetchPropertyDocuments(propertyIds);
+						return null;
+					}
+				});
+				for (String propertyId : propertyIds) {
+					this.pendingFetches.put(getPropertyIdNumber(propertyId),
+							fetch);
+				}
+				isOwnFetch = true;
+			} else {
+				propertyIds = null;
+			}
 		}
 
-		dataFetcher.getFilter().setLanguageFilter(
-				Collections.<String> emptySet());
-		dataFetcher.getFilter().setSiteLinkFilter(
-				Collections.<String> emptySet());
+		if (isOwnFetch) {
+			fetch.run();
+			synchronized (this) {
+				for (String propertyId : propertyIds) {
+					this.pendingFetches.remove(getPropertyIdNumber(propertyId));
+				}
+			}
+		}
 
-		Map<String, EntityDocument> properties;
 		try {
-			properties = dataFetcher.getEntityDocuments(propertyIds);
-		} catch (MediaWikiApiErrorException e) {
+			fetch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
 			logger.error("Error when trying to fetch property data: "
-					+ e.toString());
-			properties = Collections.emptyMap();
+					+ e.getCause().toString());
+		}
+
+		if (isOwnFetch && getKnownPropertyInfo(property.getId()) == null) {
+			logger.error("Failed to fetch type information for property "
+					+ property.getId() + " online.");
+		}
+	}
+
+	/**
+	 * Fetches the documents of the given properties from the Web API and
+	 * registers them. Requests are made one at a time.
+	 *
+	 * @param propertyIds
+	 *            the ids of the properties to fetch
+	 */
+	void fetchPropertyDocuments(List<String> propertyIds) {
+		Map<String, EntityDocument> properties;
+		synchronized (this.dataFetcher) {
+			dataFetcher.getFilter().setLanguageFilter(
+					Collections.<String> emptySet());
+			dataFetcher.getFilter().setSiteLinkFilter(
+					Collections.<String> emptySet());
+
+			try {
+				properties = dataFetcher.getEntityDocuments(propertyIds);
+			} catch (MediaWikiApiErrorException e) {
+				logger.error("Error when trying to fetch property data: "
+						+ e.toString());
+				properties = Collections.emptyMap();
+			}
 		}
 
 		for (Entry<String, EntityDocument> entry : properties.entrySet()) {
@@ -330,42 +629,287 @@ public class PropertyRegister {
 				continue;
 			}
 
-			String datatype = ((PropertyDocument) propertyDocument)
-					.getDatatype().getIri();
-			this.datatypes.put(entry.getKey(), datatype);
+			registerPropertyDocument((PropertyDocument) propertyDocument);
+			// the document may have another id than the requested one, e.g.,
+			// if the requested property was redirected
 			logger.info("Fetched type information for property "
-					+ entry.getKey() + " online: " + datatype);
+					+ propertyDocument.getEntityId().getId() + " online: "
+					+ ((PropertyDocument) propertyDocument).getDatatype()
+							.getIri());
+		}
+	}
+
+	/**
+	 * Records the datatype and URI pattern of the given property document.
+	 * This is used for documents fetched online, but can also be used to fill
+	 * the register from other sources.
+	 *
+	 * @param propertyDocument
+	 *            the document of the property
+	 */
+	public synchronized void registerPropertyDocument(
+			PropertyDocument propertyDocument) {
+		String propertyId = propertyDocument.getEntityId().getId();
+		String datatype = propertyDocument.getDatatype().getIri();
+		PropertyInfo propertyInfo = getKnownPropertyInfo(propertyId);
+		String uriPattern = propertyInfo == null ? null
+				: propertyInfo.uriPattern;
+
+		if (!DatatypeIdValue.DT_STRING.equals(datatype)) {
+			putPropertyInformation(propertyId, datatype, uriPattern);
+			return;
+		}
 
-			if (!DatatypeIdValue.DT_STRING.equals(datatype)) {
+		boolean foundUriPattern = false;
+
+		for (StatementGroup sg : propertyDocument.getStatementGroups()) {
+			if (!sg.getProperty().getId().equals(this.uriPatternPropertyId)) {
 				continue;
 			}
+			for (Statement statement : sg.getStatements()) {
+				if (statement.getClaim().getMainSnak() instanceof ValueSnak
+						&& ((ValueSnak) statement.getClaim().getMainSnak())
+								.getValue() instanceof StringValue) {
+					if (foundUriPattern) {
+						logger.info("Found multiple URI patterns for property "
+								+ propertyId
+								+ " but only one is supported in current code.");
+					}
+					uriPattern = ((StringValue) ((ValueSnak) statement
+							.getClaim().getMainSnak()).getValue()).getString();
+					foundUriPattern = true;
+				}
+			}
+		}
+		putPropertyInformation(propertyId, datatype, uriPattern);
+	}
+
+	/**
+	 * Returns a processor that registers all property documents that it
+	 * receives, while item documents are ignored. When this is used to process
+	 * a complete dump before the actual conversion, all properties of the dump
+	 * are known afterwards. Properties with smaller numbers than the largest
+	 * property in the dump are then assumed to be deleted and are never
+	 * fetched online; only properties that were created after the dump are
+	 * still fetched (unless the register is in offline mode).
+	 *
+	 * @return processor for filling the register
+	 */
+	public EntityDocumentProcessor getPropertyDocumentProcessor() {
+		return new EntityDocumentProcessor() {
+			@Override
+			public void processItemDocument(ItemDocument itemDocument) {
+				// nothing to do
+			}
 
-			for (StatementGroup sg : ((PropertyDocument) propertyDocument)
-					.getStatementGroups()) {
-				if (!sg.getProperty().getId().equals(this.uriPatternPropertyId)) {
+			@Override
+			public void processPropertyDocument(
+					PropertyDocument propertyDocument) {
+				registerPropertyDocument(propertyDocument);
+				markPropertyKnown(propertyDocument.getEntityId().getId());
+			}
+		};
+	}
+
+	/**
+	 * Records that information about all properties up to the given one has
+	 * been obtained, so that none of them is fetched online later on.
+	 *
+	 * @param propertyId
+	 *            the id of the property
+	 */
+	synchronized void markPropertyKnown(String propertyId) {
+		int propertyIdNumber = Integer.parseInt(propertyId.substring(1));
+		if (this.smallestUnfetchedPropertyIdNumber <= propertyIdNumber) {
+			this.smallestUnfetchedPropertyIdNumber = propertyIdNumber + 1;
+		}
+	}
+
+	/**
+	 * Writes the current content of the register to a (gzip-compressed)
+	 * snapshot file in the given directory. The file can be loaded again with
+	 * {@link #readSnapshot(DirectoryManager, String)}.
+	 *
+	 * @param directoryManager
+	 *            the directory to write to
+	 * @param fileName
+	 *            the name of the snapshot file
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public synchronized void writeSnapshot(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		try (OutputStream out = directoryManager
+				.getOutputStreamForFile(fileName);
+				DataOutputStream data = new DataOutputStream(
+						new GZIPOutputStream(out))) {
+			data.writeInt(SNAPSHOT_FORMAT_VERSION);
+			data.writeUTF(this.siteUri);
+			data.writeUTF(this.uriPatternPropertyId == null ? ""
+					: this.uriPatternPropertyId);
+			data.writeInt(this.smallestUnfetchedPropertyIdNumber);
+
+			Map<Integer, PropertyInfo> entries = getPropertyInfos();
+
+			int count = 0;
+			for (PropertyInfo propertyInfo : entries.values()) {
+				if (propertyInfo.datatype != null) {
+					count++;
+				}
+			}
+			data.writeInt(count);
+			for (Entry<Integer, PropertyInfo> entry : entries.entrySet()) {
+				PropertyInfo propertyInfo = entry.getValue();
+				if (propertyInfo.datatype == null) {
 					continue;
 				}
-				for (Statement statement : sg.getStatements()) {
-					if (statement.getClaim().getMainSnak() instanceof ValueSnak
-							&& ((ValueSnak) statement.getClaim().getMainSnak())
-									.getValue() instanceof StringValue) {
-						String uriPattern = ((StringValue) ((ValueSnak) statement
-								.getClaim().getMainSnak()).getValue())
-								.getString();
-						if (this.uriPatterns.containsKey(entry.getKey())) {
-							logger.info("Found multiple URI patterns for property "
-									+ entry.getKey()
-									+ " but only one is supported in current code.");
-						}
-						this.uriPatterns.put(entry.getKey(), uriPattern);
-					}
+				data.writeUTF("P" + entry.getKey());
+				data.writeUTF(propertyInfo.datatype);
+				data.writeBoolean(propertyInfo.uriPattern != null);
+				if (propertyInfo.uriPattern != null) {
+					data.writeUTF(propertyInfo.uriPattern);
 				}
 			}
 		}
+	}
 
-		if (!this.datatypes.containsKey(property.getId())) {
-			logger.error("Failed to fetch type information for property "
-					+ property.getId() + " online.");
+	/**
+	 * Loads property information from a snapshot file that was written with
+	 * {@link #writeSnapshot(DirectoryManager, String)}. The information is
+	 * added to the information that the register already has. Snapshots of
+	 * registers for other sites or URI pattern properties are not loaded.
+	 *
+	 * @param directoryManager
+	 *            the directory to read from
+	 * @param fileName
+	 *            the name of the snapshot file
+	 * @return true if the snapshot was loaded, and false if there was no
+	 *         suitable snapshot file
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public synchronized boolean readSnapshot(DirectoryManager directoryManager,
+			String fileName) throws IOException {
+		if (!directoryManager.hasFile(fileName)) {
+			return false;
+		}
+
+		try (InputStream in = directoryManager.getInputStreamForFile(
+				fileName, CompressionType.GZIP);
+				DataInputStream data = new DataInputStream(in)) {
+			int version = data.readInt();
+			if (version != SNAPSHOT_FORMAT_VERSION) {
+				logger.warn("Property register snapshot \"" + fileName
+						+ "\" has unsupported format version " + version
+						+ ". Ignoring it.");
+				return false;
+			}
+			String siteUri = data.readUTF();
+			String uriPatternPropertyId = data.readUTF();
+			if (!siteUri.equals(this.siteUri)
+					|| !uriPatternPropertyId
+							.equals(this.uriPatternPropertyId == null ? ""
+									: this.uriPatternPropertyId)) {
+				logger.warn("Property register snapshot \"" + fileName
+						+ "\" was made for a different site or URI pattern"
+						+ " property. Ignoring it.");
+				return false;
+			}
+
+			int smallestUnfetchedPropertyIdNumber = data.readInt();
+			int count = data.readInt();
+			List<String[]> entries = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				String propertyId = data.readUTF();
+				String datatype = data.readUTF();
+				String uriPattern = data.readBoolean() ? data.readUTF() : null;
+				entries.add(new String[] { propertyId, datatype, uriPattern });
+			}
+
+			for (String[] entry : entries) {
+				putPropertyInformation(entry[0], entry[1], entry[2]);
+			}
+			if (this.smallestUnfetchedPropertyIdNumber < smallestUnfetchedPropertyIdNumber) {
+				this.smallestUnfetchedPropertyIdNumber = smallestUnfetchedPropertyIdNumber;
+			}
+			logger.info("Loaded information about " + count
+					+ " properties from snapshot \"" + fileName + "\".");
+			return true;
+		}
+	}
+
+	/**
+	 * Map view of one part of the stored property information, kept for
+	 * subclasses that used to access the maps {@link #datatypes} and
+	 * {@link #uriPatterns} directly.
+	 */
+	class PropertyInfoView extends AbstractMap<String, String> {
+
+		/**
+		 * If true, the view shows URI patterns; otherwise it shows datatypes.
+		 */
+		final boolean showUriPatterns;
+
+		PropertyInfoView(boolean showUriPatterns) {
+			this.showUriPatterns = showUriPatterns;
+		}
+
+		@Override
+		public String get(Object key) {
+			if (!(key instanceof String) || !((String) key).startsWith("P")) {
+				return null;
+			}
+			PropertyInfo propertyInfo;
+			try {
+				propertyInfo = getKnownPropertyInfo((String) key);
+			} catch (NumberFormatException | IndexOutOfBoundsException e) {
+				return null;
+			}
+			return getPart(propertyInfo);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public String put(String key, String value) {
+			synchronized (PropertyRegister.this) {
+				PropertyInfo propertyInfo = getKnownPropertyInfo(key);
+				String datatype = propertyInfo == null ? null
+						: propertyInfo.datatype;
+				String uriPattern = propertyInfo == null ? null
+						: propertyInfo.uriPattern;
+				if (this.showUriPatterns) {
+					uriPattern = value;
+				} else {
+					datatype = value;
+				}
+				putPropertyInformation(key, datatype, uriPattern);
+				return getPart(propertyInfo);
+			}
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			Map<String, String> result = new HashMap<>();
+			for (Entry<Integer, PropertyInfo> entry : getPropertyInfos()
+					.entrySet()) {
+				String part = getPart(entry.getValue());
+				if (part != null) {
+					result.put("P" + entry.getKey(), part);
+				}
+			}
+			return Collections.unmodifiableMap(result).entrySet();
+		}
+
+		String getPart(PropertyInfo propertyInfo) {
+			if (propertyInfo == null) {
+				return null;
+			}
+			return this.showUriPatterns ? propertyInfo.uriPattern
+					: propertyInfo.datatype;
 		}
 	}
 }
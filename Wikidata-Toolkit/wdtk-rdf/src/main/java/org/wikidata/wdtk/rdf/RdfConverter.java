@@ -72,13 +72,51 @@ public class RdfConverter {
 	int tasks = RdfSerializer.TASK_ALL_ENTITIES
 			| RdfSerializer.TASK_ALL_EXACT_DATA;
 
+	/**
+	 * Number of documents after which buffered declarations, auxiliary
+	 * triples, and references are written.
+	 */
+	int documentsPerFlush = 1;
+
+	/**
+	 * Number of buffered objects that causes a flush even if fewer documents
+	 * have been converted, or 0 if there is no such limit.
+	 */
+	int maxBufferedObjects = 0;
+
+	/**
+	 * Number of documents converted since the last flush.
+	 */
+	int unflushedDocumentCount = 0;
+
 	public RdfConverter(RdfWriter rdfWriter, Sites sites,
 			PropertyRegister propertyRegister) {
+		this(rdfWriter, sites, propertyRegister, new OwlDeclarationBuffer());
+	}
+
+	/**
+	 * Constructor that uses the given buffer for OWL declarations. This can be
+	 * used to share declarations between converters that write parts of one
+	 * export.
+	 *
+	 * @param rdfWriter
+	 *            the writer to write to
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            object to look up property datatypes
+	 * @param owlDeclarationBuffer
+	 *            buffer for OWL declarations that is used only by this
+	 *            converter
+	 */
+	public RdfConverter(RdfWriter rdfWriter, Sites sites,
+			PropertyRegister propertyRegister,
+			OwlDeclarationBuffer owlDeclarationBuffer) {
 		this.sites = sites;
 		this.rdfWriter = rdfWriter;
 		this.propertyRegister = propertyRegister;
 
-		this.owlDeclarationBuffer = new OwlDeclarationBuffer();
+		this.owlDeclarationBuffer = owlDeclarationBuffer;
 		this.valueRdfConverter = new AnyValueConverter(rdfWriter,
 				this.owlDeclarationBuffer, this.propertyRegister);
 		this.snakRdfConverter = new SnakRdfConverter(rdfWriter,
@@ -110,6 +148,94 @@ public class RdfConverter {
 		return this.tasks;
 	}
 
+	/**
+	 * Sets how often buffered data is written. Declarations of properties and
+	 * classes, auxiliary triples for complex values and restrictions, and
+	 * references are buffered while converting documents. By default, they
+	 * are written after each document. Writing them after a larger batch of
+	 * documents reduces the overhead per document and removes duplicates
+	 * within each batch, at the price of separating the triples further from
+	 * the documents that they were used in. Buffered data is always written
+	 * by {@link #flush()}.
+	 *
+	 * @param documentsPerFlush
+	 *            number of documents after which buffered data is written;
+	 *            must be at least 1
+	 * @param maxBufferedObjects
+	 *            number of buffered objects (declarations, values, and
+	 *            references) after which buffered data is written even if
+	 *            fewer documents have been converted; 0 for no limit
+	 */
+	public void setFlushPolicy(int documentsPerFlush, int maxBufferedObjects) {
+		if (documentsPerFlush < 1) {
+			throw new IllegalArgumentException(
+					"Number of documents per flush must be positive.");
+		}
+		this.documentsPerFlush = documentsPerFlush;
+		this.maxBufferedObjects = maxBufferedObjects;
+	}
+
+	/**
+	 * Returns the number of declarations, values, and references that have
+	 * been buffered but not written yet.
+	 *
+	 * @return number of buffered objects
+	 */
+	public int getBufferedObjectCount() {
+		return this.owlDeclarationBuffer.getPendingDeclarationCount()
+				+ this.snakRdfConverter.getBufferedObjectCount()
+				+ this.referenceRdfConverter.getBufferedReferenceCount();
+	}
+
+	/**
+	 * Writes all declarations, auxiliary triples, and references that have
+	 * been buffered.
+	 *
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the triples
+	 */
+	public void flush() throws RDFHandlerException {
+		if (hasTask(RdfSerializer.TASK_TAXONOMY)) {
+			this.owlDeclarationBuffer.writeClassDeclarations(this.rdfWriter);
+		}
+
+		this.snakRdfConverter.writeAuxiliaryTriples();
+		this.owlDeclarationBuffer.writePropertyDeclarations(this.rdfWriter,
+				hasTask(RdfSerializer.TASK_STATEMENTS),
+				hasTask(RdfSerializer.TASK_SIMPLE_STATEMENTS));
+		this.referenceRdfConverter.writeReferences();
+		this.unflushedDocumentCount = 0;
+	}
+
+	/**
+	 * Records that the conversion of one document is complete, and writes
+	 * buffered data if required by the flush policy.
+	 *
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the triples
+	 */
+	void finishDocument() throws RDFHandlerException {
+		this.unflushedDocumentCount++;
+		if (this.unflushedDocumentCount >= this.documentsPerFlush
+				|| (this.maxBufferedObjects > 0 && getBufferedObjectCount() >= this.maxBufferedObjects)) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sets the set of digests that is used to avoid writing the same
+	 * reference or complex value more than once. By default, an exact set
+	 * without memory limit is used. A {@link DigestSet} with a memory limit
+	 * can be used for large exports.
+	 *
+	 * @param declaredResources
+	 *            set of digests of written references and values
+	 */
+	public void setDeclaredResources(DigestSet declaredResources) {
+		this.referenceRdfConverter.setDeclaredReferences(declaredResources);
+		this.valueRdfConverter.setDeclaredValues(declaredResources);
+	}
+
 	/**
 	 * Writes OWL declarations for all basic vocabulary elements used in the
 	 * dump.
@@ -177,15 +303,7 @@ public class RdfConverter {
 
 		writeSiteLinks(subject, document.getSiteLinks());
 
-		if (hasTask(RdfSerializer.TASK_TAXONOMY)) {
-			this.owlDeclarationBuffer.writeClassDeclarations(this.rdfWriter);
-		}
-
-		this.snakRdfConverter.writeAuxiliaryTriples();
-		this.owlDeclarationBuffer.writePropertyDeclarations(this.rdfWriter,
-				hasTask(RdfSerializer.TASK_STATEMENTS),
-				hasTask(RdfSerializer.TASK_SIMPLE_STATEMENTS));
-		this.referenceRdfConverter.writeReferences();
+		finishDocument();
 	}
 
 	public void writePropertyDocument(PropertyDocument document)
@@ -225,11 +343,7 @@ public class RdfConverter {
 			writeSubpropertyOfStatements(subject, document);
 		}
 
-		this.snakRdfConverter.writeAuxiliaryTriples();
-		this.owlDeclarationBuffer.writePropertyDeclarations(this.rdfWriter,
-				hasTask(RdfSerializer.TASK_STATEMENTS),
-				hasTask(RdfSerializer.TASK_SIMPLE_STATEMENTS));
-		this.referenceRdfConverter.writeReferences();
+		finishDocument();
 	}
 
 	/**
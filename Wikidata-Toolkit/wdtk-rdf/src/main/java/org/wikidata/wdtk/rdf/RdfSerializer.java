@@ -69,11 +69,14 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 	final RdfConverter rdfConverter;
 	final RdfWriter rdfWriter;
 
+	DigestSet declaredResources;
+
 	/**
 	 * Creates a new RDF serializer for the specified format and output stream.
 	 *
 	 * @param format
-	 *            RDF format, such as RDFFormat.TURTLE
+	 *            RDF format, such as RDFFormat.TURTLE or
+	 *            {@link BinaryRdfWriter#BINARY_RDF}
 	 * @param output
 	 *            the output stream to write to
 	 * @param sites
@@ -81,10 +84,38 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 	 */
 	public RdfSerializer(RDFFormat format, OutputStream output, Sites sites,
 			PropertyRegister propertyRegister) {
+		this(format, output, sites, propertyRegister,
+				new OwlDeclarationBuffer());
+	}
+
+	/**
+	 * Creates a new RDF serializer that uses the given buffer for OWL
+	 * declarations.
+	 *
+	 * @param format
+	 *            RDF format, such as RDFFormat.TURTLE or
+	 *            {@link BinaryRdfWriter#BINARY_RDF}
+	 * @param output
+	 *            the output stream to write to
+	 * @param sites
+	 *            information about site links
+	 * @param owlDeclarationBuffer
+	 *            buffer for OWL declarations, possibly sharing declarations
+	 *            with other serializers
+	 */
+	RdfSerializer(RDFFormat format, OutputStream output, Sites sites,
+			PropertyRegister propertyRegister,
+			OwlDeclarationBuffer owlDeclarationBuffer) {
 		this.output = output;
-		this.rdfWriter = new RdfWriter(format, output);
+		if (RDFFormat.NTRIPLES.equals(format)) {
+			this.rdfWriter = new NTriplesRdfWriter(output);
+		} else if (BinaryRdfWriter.BINARY_RDF.equals(format)) {
+			this.rdfWriter = new BinaryRdfWriter(output);
+		} else {
+			this.rdfWriter = new RdfWriter(format, output);
+		}
 		this.rdfConverter = new RdfConverter(this.rdfWriter, sites,
-				propertyRegister);
+				propertyRegister, owlDeclarationBuffer);
 	}
 
 	/**
@@ -98,6 +129,34 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 		this.rdfConverter.setTasks(tasks);
 	}
 
+	/**
+	 * Sets how often buffered data is written. See
+	 * {@link RdfConverter#setFlushPolicy(int, int)}.
+	 *
+	 * @param documentsPerFlush
+	 *            number of documents after which buffered data is written
+	 * @param maxBufferedObjects
+	 *            number of buffered objects after which buffered data is
+	 *            written; 0 for no limit
+	 */
+	public void setFlushPolicy(int documentsPerFlush, int maxBufferedObjects) {
+		this.rdfConverter.setFlushPolicy(documentsPerFlush, maxBufferedObjects);
+	}
+
+	/**
+	 * Sets the set of digests that is used to avoid writing the same
+	 * reference or complex value more than once. The set is closed when the
+	 * serializer is closed. See
+	 * {@link RdfConverter#setDeclaredResources(DigestSet)}.
+	 *
+	 * @param declaredResources
+	 *            set of digests of written references and values
+	 */
+	public void setDeclaredResources(DigestSet declaredResources) {
+		this.declaredResources = declaredResources;
+		this.rdfConverter.setDeclaredResources(declaredResources);
+	}
+
 	/**
 	 * Returns the tasks that should be performed during export. The value
 	 * should be a combination of flags such as
@@ -120,10 +179,24 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 
 	@Override
 	public void open() {
+		open(true);
+	}
+
+	/**
+	 * Starts the serialization.
+	 *
+	 * @param basicDeclarations
+	 *            if false, the declarations of the basic vocabulary are not
+	 *            written; this is useful if they are written to another part
+	 *            of the same export
+	 */
+	void open(boolean basicDeclarations) {
 		try {
 			this.rdfWriter.start();
 			this.rdfConverter.writeNamespaceDeclarations();
-			this.rdfConverter.writeBasicDeclarations();
+			if (basicDeclarations) {
+				this.rdfConverter.writeBasicDeclarations();
+			}
 		} catch (RDFHandlerException e) { // we cannot recover here
 			throw new RuntimeException(e.toString(), e);
 		}
@@ -150,12 +223,18 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 	@Override
 	public void close() {
 		try {
+			if (this.rdfConverter.unflushedDocumentCount > 0) {
+				this.rdfConverter.flush();
+			}
 			this.rdfWriter.finish();
 		} catch (RDFHandlerException e) { // we cannot recover here
 			throw new RuntimeException(e.toString(), e);
 		}
 		try {
 			this.output.close();
+			if (this.declaredResources != null) {
+				this.declaredResources.close();
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e.toString(), e);
 		}
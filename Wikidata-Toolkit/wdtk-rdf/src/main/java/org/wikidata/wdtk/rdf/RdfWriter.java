@@ -145,6 +145,13 @@ public class RdfWriter {
 		this.writer = Rio.createWriter(format, output);
 	}
 
+	/**
+	 * Constructor for subclasses that do not use a Rio writer.
+	 */
+	RdfWriter() {
+		this.writer = null;
+	}
+
 	public long getTripleCount() {
 		return this.tripleCount;
 	}
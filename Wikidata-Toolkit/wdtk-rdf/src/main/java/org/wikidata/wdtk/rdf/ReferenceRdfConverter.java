@@ -20,10 +20,8 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.openrdf.model.Resource;
 import org.openrdf.rio.RDFHandlerException;
@@ -45,9 +43,13 @@ public class ReferenceRdfConverter {
 	final RdfWriter rdfWriter;
 	final SnakRdfConverter snakRdfConverter;
 
-	final List<Reference> referenceQueue;
-	final List<Resource> referenceSubjectQueue;
-	final HashSet<Resource> declaredReferences;
+	/**
+	 * References that should still be written, indexed by their RDF resource.
+	 * Since the resource is based on a hash of the reference, this removes
+	 * duplicates within one batch.
+	 */
+	final Map<Resource, QueuedReference> referenceQueue;
+	DigestSet declaredReferences;
 	final String siteUri;
 
 	/**
@@ -66,9 +68,8 @@ public class ReferenceRdfConverter {
 		this.snakRdfConverter = snakRdfConverter;
 		this.siteUri = siteUri;
 
-		this.referenceQueue = new ArrayList<Reference>();
-		this.referenceSubjectQueue = new ArrayList<Resource>();
-		this.declaredReferences = new HashSet<Resource>();
+		this.referenceQueue = new LinkedHashMap<Resource, QueuedReference>();
+		this.declaredReferences = new DigestSet();
 	}
 
 	/**
@@ -84,12 +85,36 @@ public class ReferenceRdfConverter {
 				this.siteUri);
 		Resource resource = this.rdfWriter.getUri(referenceUri);
 
-		this.referenceQueue.add(reference);
-		this.referenceSubjectQueue.add(resource);
+		if (!this.referenceQueue.containsKey(resource)) {
+			this.referenceQueue.put(resource, new QueuedReference(reference,
+					Vocabulary.getLastDigestHigh(),
+					Vocabulary.getLastDigestLow()));
+		}
 
 		return resource;
 	}
 
+	/**
+	 * Returns the number of references that have been added but not written
+	 * yet.
+	 *
+	 * @return number of buffered references
+	 */
+	public int getBufferedReferenceCount() {
+		return this.referenceQueue.size();
+	}
+
+	/**
+	 * Sets the set of digests that is used to remember which references have
+	 * already been written. The set may be shared with other converters.
+	 *
+	 * @param declaredReferences
+	 *            set of digests of written references
+	 */
+	public void setDeclaredReferences(DigestSet declaredReferences) {
+		this.declaredReferences = declaredReferences;
+	}
+
 	/**
 	 * Writes references that have been added recently. Auxiliary triples that
 	 * are generated for serializing snaks in references will be written right
@@ -100,14 +125,14 @@ public class ReferenceRdfConverter {
 	 *             if there was a problem writing the restrictions
 	 */
 	public void writeReferences() throws RDFHandlerException {
-		Iterator<Reference> referenceIterator = this.referenceQueue.iterator();
-		for (Resource resource : this.referenceSubjectQueue) {
-			final Reference reference = referenceIterator.next();
-			if (this.declaredReferences.add(resource)) {
-				writeReference(reference, resource);
+		for (Map.Entry<Resource, QueuedReference> entry : this.referenceQueue
+				.entrySet()) {
+			QueuedReference queuedReference = entry.getValue();
+			if (this.declaredReferences.add(queuedReference.digestHigh,
+					queuedReference.digestLow)) {
+				writeReference(queuedReference.reference, entry.getKey());
 			}
 		}
-		this.referenceSubjectQueue.clear();
 		this.referenceQueue.clear();
 
 		this.snakRdfConverter.writeAuxiliaryTriples();
@@ -126,4 +151,20 @@ public class ReferenceRdfConverter {
 			}
 		}
 	}
+
+	/**
+	 * A reference that waits to be written, together with the digest of its
+	 * resource.
+	 */
+	static class QueuedReference {
+		final Reference reference;
+		final long digestHigh;
+		final long digestLow;
+
+		QueuedReference(Reference reference, long digestHigh, long digestLow) {
+			this.reference = reference;
+			this.digestHigh = digestHigh;
+			this.digestLow = digestLow;
+		}
+	}
 }
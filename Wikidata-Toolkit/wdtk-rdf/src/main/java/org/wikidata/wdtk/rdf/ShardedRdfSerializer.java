@@ -0,0 +1,314 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.openrdf.rio.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+
+/**
+ * An RDF serializer that distributes the work among several
+ * {@link RdfSerializer} objects that run in parallel, each writing to its own
+ * output stream. Documents are passed to the shards in batches. Each output
+ * stream receives a valid RDF document; together, they contain the same
+ * triples as the output of a single {@link RdfSerializer}.
+ * <p>
+ * The shards share the property register, the record of OWL declarations,
+ * and the record of references and values that have already been written,
+ * so that each declaration is written to exactly one of the outputs. The
+ * declarations of the basic vocabulary are only written to the first output.
+ * For line-based formats such as N-Triples, the outputs can therefore simply
+ * be concatenated to obtain a single export.
+ *
+ * @author agent
+ *
+ */
+public class ShardedRdfSerializer implements EntityDocumentDumpProcessor {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(ShardedRdfSerializer.class);
+
+	/**
+	 * Number of documents passed to a shard at once.
+	 */
+	static final int BATCH_SIZE = 100;
+
+	/**
+	 * Number of batches that can wait in the queue of each shard.
+	 */
+	static final int QUEUE_SIZE = 4;
+
+	/**
+	 * Batch that tells a shard that there are no more documents.
+	 */
+	static final List<EntityDocument> END_OF_INPUT = Collections.emptyList();
+
+	/**
+	 * Worker that feeds documents from a queue to one serializer.
+	 */
+	class Shard implements Runnable {
+
+		final RdfSerializer serializer;
+		final BlockingQueue<List<EntityDocument>> queue = new ArrayBlockingQueue<>(
+				QUEUE_SIZE);
+		Thread thread;
+
+		Shard(RdfSerializer serializer) {
+			this.serializer = serializer;
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<EntityDocument> batch;
+				while ((batch = this.queue.take()) != END_OF_INPUT) {
+					// after an error, the queue is still drained so that the
+					// producer is not blocked
+					if (ShardedRdfSerializer.this.error == null) {
+						processBatch(batch);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void processBatch(List<EntityDocument> batch) {
+			try {
+				for (EntityDocument document : batch) {
+					if (document instanceof ItemDocument) {
+						this.serializer
+								.processItemDocument((ItemDocument) document);
+					} else {
+						this.serializer
+								.processPropertyDocument((PropertyDocument) document);
+					}
+				}
+			} catch (RuntimeException e) {
+				logger.error("RDF serialization failed: " + e.toString());
+				ShardedRdfSerializer.this.error = e;
+			}
+		}
+	}
+
+	final List<Shard> shards;
+
+	final DigestSet declaredResources;
+
+	List<EntityDocument> currentBatch = new ArrayList<>(BATCH_SIZE);
+
+	int nextShard = 0;
+
+	/**
+	 * The first error that occurred in any of the shards, or null if there
+	 * was no error.
+	 */
+	volatile RuntimeException error = null;
+
+	/**
+	 * Creates a new serializer that writes to the given output streams. There
+	 * will be one parallel thread for each output.
+	 *
+	 * @param format
+	 *            RDF format, such as RDFFormat.NTRIPLES
+	 * @param outputs
+	 *            the output streams to write to
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            object to look up property datatypes; it is shared by all
+	 *            shards
+	 * @param declaredResources
+	 *            set of digests of written references and values; it is
+	 *            shared by all shards and closed together with this object
+	 */
+	public ShardedRdfSerializer(RDFFormat format, List<OutputStream> outputs,
+			Sites sites, PropertyRegister propertyRegister,
+			DigestSet declaredResources) {
+		if (outputs.isEmpty()) {
+			throw new IllegalArgumentException(
+					"At least one output stream is required.");
+		}
+		this.declaredResources = declaredResources;
+		this.shards = new ArrayList<>(outputs.size());
+		OwlDeclarationBuffer sharedDeclarations = new OwlDeclarationBuffer();
+		for (OutputStream output : outputs) {
+			RdfSerializer serializer = new RdfSerializer(format, output,
+					sites, propertyRegister, new OwlDeclarationBuffer(
+							sharedDeclarations));
+			serializer.rdfConverter.setDeclaredResources(declaredResources);
+			this.shards.add(new Shard(serializer));
+		}
+	}
+
+	/**
+	 * Sets the tasks that should be performed during export. See
+	 * {@link RdfSerializer#setTasks(int)}.
+	 *
+	 * @param tasks
+	 *            the tasks to be performed
+	 */
+	public void setTasks(int tasks) {
+		for (Shard shard : this.shards) {
+			shard.serializer.setTasks(tasks);
+		}
+	}
+
+	/**
+	 * Sets how often buffered data is written in each shard. See
+	 * {@link RdfSerializer#setFlushPolicy(int, int)}.
+	 *
+	 * @param documentsPerFlush
+	 *            number of documents after which buffered data is written
+	 * @param maxBufferedObjects
+	 *            number of buffered objects after which buffered data is
+	 *            written; 0 for no limit
+	 */
+	public void setFlushPolicy(int documentsPerFlush, int maxBufferedObjects) {
+		for (Shard shard : this.shards) {
+			shard.serializer.setFlushPolicy(documentsPerFlush,
+					maxBufferedObjects);
+		}
+	}
+
+	/**
+	 * Returns the tasks that should be performed during export. See
+	 * {@link RdfSerializer#getTasks()}.
+	 *
+	 * @return tasks to be performed
+	 */
+	public int getTasks() {
+		return this.shards.get(0).serializer.getTasks();
+	}
+
+	/**
+	 * Returns the number of shards, which is the number of outputs.
+	 *
+	 * @return number of shards
+	 */
+	public int getShardCount() {
+		return this.shards.size();
+	}
+
+	/**
+	 * Returns the number of triples that have been written so far, summed
+	 * over all shards.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		long result = 0;
+		for (Shard shard : this.shards) {
+			result += shard.serializer.getTripleCount();
+		}
+		return result;
+	}
+
+	@Override
+	public void open() {
+		for (int i = 0; i < this.shards.size(); i++) {
+			Shard shard = this.shards.get(i);
+			shard.serializer.open(i == 0);
+			shard.thread = new Thread(shard, "rdf-shard-" + i);
+			shard.thread.start();
+		}
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		addDocument(itemDocument);
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		addDocument(propertyDocument);
+	}
+
+	@Override
+	public void close() {
+		if (!this.currentBatch.isEmpty()) {
+			dispatchBatch();
+		}
+		try {
+			for (Shard shard : this.shards) {
+				shard.queue.put(END_OF_INPUT);
+			}
+			for (Shard shard : this.shards) {
+				shard.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString(), e);
+		}
+
+		for (Shard shard : this.shards) {
+			shard.serializer.close();
+		}
+		try {
+			this.declaredResources.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+
+		if (this.error != null) {
+			throw this.error;
+		}
+	}
+
+	void addDocument(EntityDocument document) {
+		if (this.error != null) {
+			throw this.error;
+		}
+		this.currentBatch.add(document);
+		if (this.currentBatch.size() >= BATCH_SIZE) {
+			dispatchBatch();
+		}
+	}
+
+	/**
+	 * Passes the current batch to the next shard, waiting if its queue is
+	 * full.
+	 */
+	void dispatchBatch() {
+		try {
+			this.shards.get(this.nextShard).queue.put(this.currentBatch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString(), e);
+		}
+		this.nextShard = (this.nextShard + 1) % this.shards.size();
+		this.currentBatch = new ArrayList<>(BATCH_SIZE);
+	}
+
+}
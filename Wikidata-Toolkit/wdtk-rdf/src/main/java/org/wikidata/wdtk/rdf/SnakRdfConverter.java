@@ -220,6 +220,17 @@ public class SnakRdfConverter implements SnakVisitor<Void> {
 		return null;
 	}
 
+	/**
+	 * Returns the number of restrictions and values that have been buffered
+	 * but not written yet.
+	 *
+	 * @return number of buffered objects
+	 */
+	public int getBufferedObjectCount() {
+		return this.someValuesQueue.size() + this.noValuesQueue.size()
+				+ this.valueRdfConverter.getBufferedValueCount();
+	}
+
 	/**
 	 * Writes all auxiliary triples that have been buffered recently. This
 	 * includes OWL property restrictions but it also includes any auxiliary
@@ -0,0 +1,190 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper class for computing the hash-based URIs of values and references.
+ * Each thread uses its own instance, obtained from {@link #getInstance()},
+ * so that URIs can be computed concurrently without locking. All buffers are
+ * reused, so computing a URI only allocates the resulting string.
+ * <p>
+ * The hashes are MD5 digests of the values' data, so the URIs are the same
+ * as in previous exports.
+ *
+ * @author agent
+ *
+ */
+class ValueUriHasher {
+
+	static final int DIGEST_LENGTH = 16;
+
+	static final char[] hexArray = "0123456789abcdef".toCharArray();
+
+	static final ThreadLocal<ValueUriHasher> instances = new ThreadLocal<ValueUriHasher>() {
+		@Override
+		protected ValueUriHasher initialValue() {
+			return new ValueUriHasher();
+		}
+	};
+
+	final MessageDigest md;
+
+	/**
+	 * Buffer for encoding numbers before adding them to the digest.
+	 */
+	final byte[] numberBytes = new byte[Long.SIZE / 8];
+
+	/**
+	 * Buffer for the computed digest.
+	 */
+	final byte[] digestBytes = new byte[DIGEST_LENGTH];
+
+	/**
+	 * Buffer for building the URI string; grows as needed.
+	 */
+	char[] uriChars = new char[128];
+
+	ValueUriHasher() {
+		try {
+			this.md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(
+					"Your Java does not support MD5 hashes. You should be concerned.");
+		}
+	}
+
+	/**
+	 * Returns the hasher of the current thread. The hasher is reset.
+	 *
+	 * @return hasher that may only be used by the current thread
+	 */
+	static ValueUriHasher getInstance() {
+		ValueUriHasher result = instances.get();
+		result.md.reset();
+		return result;
+	}
+
+	void update(byte b) {
+		this.md.update(b);
+	}
+
+	void update(int x) {
+		this.numberBytes[0] = (byte) (x >>> 24);
+		this.numberBytes[1] = (byte) (x >>> 16);
+		this.numberBytes[2] = (byte) (x >>> 8);
+		this.numberBytes[3] = (byte) x;
+		this.md.update(this.numberBytes, 0, 4);
+	}
+
+	void update(long x) {
+		for (int i = 7; i >= 0; i--) {
+			this.numberBytes[i] = (byte) x;
+			x >>>= 8;
+		}
+		this.md.update(this.numberBytes, 0, 8);
+	}
+
+	void update(String s) {
+		if (s == null) {
+			return;
+		}
+		this.md.update(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Completes the hash computation and returns the first 64 bits of the
+	 * digest.
+	 *
+	 * @return the digest as a long value
+	 */
+	long getLongDigest() {
+		try {
+			this.md.digest(this.digestBytes, 0, DIGEST_LENGTH);
+		} catch (DigestException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+		return getDigestHigh();
+	}
+
+	/**
+	 * Returns the upper 64 bits of the digest that has been computed last.
+	 *
+	 * @return the first eight bytes of the digest as a long value
+	 */
+	long getDigestHigh() {
+		return getDigestLong(0);
+	}
+
+	/**
+	 * Returns the lower 64 bits of the digest that has been computed last.
+	 *
+	 * @return the last eight bytes of the digest as a long value
+	 */
+	long getDigestLow() {
+		return getDigestLong(8);
+	}
+
+	long getDigestLong(int start) {
+		long result = 0;
+		for (int i = start; i < start + 8; i++) {
+			result = (result << 8) | (this.digestBytes[i] & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Completes the hash computation and returns the URI that consists of the
+	 * given prefixes followed by the hexadecimal digest.
+	 *
+	 * @param uriPrefix
+	 *            the URI prefix of the site
+	 * @param valuePrefix
+	 *            the prefix for the type of value
+	 * @return URI string
+	 */
+	String getUri(String uriPrefix, String valuePrefix) {
+		try {
+			this.md.digest(this.digestBytes, 0, DIGEST_LENGTH);
+		} catch (DigestException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+
+		int prefixLength = uriPrefix.length() + valuePrefix.length();
+		int length = prefixLength + 2 * DIGEST_LENGTH;
+		if (this.uriChars.length < length) {
+			this.uriChars = new char[length];
+		}
+		uriPrefix.getChars(0, uriPrefix.length(), this.uriChars, 0);
+		valuePrefix.getChars(0, valuePrefix.length(), this.uriChars,
+				uriPrefix.length());
+		for (int j = 0; j < DIGEST_LENGTH; j++) {
+			int v = this.digestBytes[j] & 0xFF;
+			this.uriChars[prefixLength + j * 2] = hexArray[v >>> 4];
+			this.uriChars[prefixLength + j * 2 + 1] = hexArray[v & 0x0F];
+		}
+		return new String(this.uriChars, 0, length);
+	}
+}
@@ -20,10 +20,6 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -46,16 +42,6 @@ import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
  */
 public class Vocabulary {
 
-	final static MessageDigest md;
-	static {
-		try {
-			md = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(
-					"Your Java does not support MD5 hashes. You should be concerned.");
-		}
-	}
-
 	// Prefixes
 	public static final String PREFIX_WBONTO = "http://www.wikidata.org/ontology#";
 	public static final String PREFIX_RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
@@ -446,93 +432,79 @@ public class Vocabulary {
 	}
 
 	public static String getReferenceUri(Reference reference, String uriPrefix) {
-		md.reset();
+		ValueUriHasher hasher = ValueUriHasher.getInstance();
 		for (SnakGroup snakgroup : reference.getSnakGroups()) {
 			for (Snak snak : snakgroup.getSnaks()) {
-				updateMessageDigestWithInt(md, snak.hashCode());
+				hasher.update(snak.hashCode());
 			}
 		}
 
-		return uriPrefix + VALUE_PREFIX_REFERENCE + bytesToHex(md.digest());
+		return hasher.getUri(uriPrefix, VALUE_PREFIX_REFERENCE);
 	}
 
 	public static String getTimeValueUri(TimeValue value, String uriPrefix) {
-		md.reset();
-		updateMessageDigestWithLong(md, value.getYear());
-		md.update(value.getMonth());
-		md.update(value.getDay());
-		md.update(value.getHour());
-		md.update(value.getMinute());
-		md.update(value.getSecond());
-		updateMessageDigestWithString(md, value.getPreferredCalendarModel());
-		updateMessageDigestWithInt(md, value.getBeforeTolerance());
-		updateMessageDigestWithInt(md, value.getAfterTolerance());
-		updateMessageDigestWithInt(md, value.getTimezoneOffset());
+		ValueUriHasher hasher = ValueUriHasher.getInstance();
+		hasher.update(value.getYear());
+		hasher.update(value.getMonth());
+		hasher.update(value.getDay());
+		hasher.update(value.getHour());
+		hasher.update(value.getMinute());
+		hasher.update(value.getSecond());
+		hasher.update(value.getPreferredCalendarModel());
+		hasher.update(value.getBeforeTolerance());
+		hasher.update(value.getAfterTolerance());
+		hasher.update(value.getTimezoneOffset());
 
-		return uriPrefix + VALUE_PREFIX_TIME + bytesToHex(md.digest());
+		return hasher.getUri(uriPrefix, VALUE_PREFIX_TIME);
 	}
 
 	public static String getGlobeCoordinatesValueUri(
 			GlobeCoordinatesValue value, String uriPrefix) {
-		md.reset();
-		updateMessageDigestWithString(md, value.getGlobe());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getLatitude())
-				.hashCode());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getLongitude())
-				.hashCode());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getPrecision())
-				.hashCode());
+		ValueUriHasher hasher = ValueUriHasher.getInstance();
+		hasher.update(value.getGlobe());
+		hasher.update((long) Double.valueOf(value.getLatitude()).hashCode());
+		hasher.update((long) Double.valueOf(value.getLongitude()).hashCode());
+		hasher.update((long) Double.valueOf(value.getPrecision()).hashCode());
 
-		return uriPrefix + VALUE_PREFIX_GLOBECOORDS + bytesToHex(md.digest());
+		return hasher.getUri(uriPrefix, VALUE_PREFIX_GLOBECOORDS);
 	}
 
 	public static String getQuantityValueUri(QuantityValue value,
 			String uriPrefix) {
-		md.reset();
-		updateMessageDigestWithInt(md, value.getNumericValue().hashCode());
+		ValueUriHasher hasher = ValueUriHasher.getInstance();
+		hasher.update(value.getNumericValue().hashCode());
 		if(value.getLowerBound() != null) {
-			updateMessageDigestWithInt(md, value.getLowerBound().hashCode());
+			hasher.update(value.getLowerBound().hashCode());
 		}
 		if(value.getUpperBound() != null) {
-			updateMessageDigestWithInt(md, value.getUpperBound().hashCode());
+			hasher.update(value.getUpperBound().hashCode());
 		}
-		updateMessageDigestWithInt(md, value.getUnit().hashCode());
-
-		return uriPrefix + VALUE_PREFIX_QUANTITY + bytesToHex(md.digest());
-	}
-
-	static ByteBuffer longByteBuffer = ByteBuffer.allocate(Long.SIZE / 8);
-
-	static void updateMessageDigestWithLong(MessageDigest md, long x) {
-		longByteBuffer.putLong(0, x);
-		longByteBuffer.rewind(); // important!
-		md.update(longByteBuffer);
-	}
-
-	static ByteBuffer intByteBuffer = ByteBuffer.allocate(Integer.SIZE / 8);
+		hasher.update(value.getUnit().hashCode());
 
-	static void updateMessageDigestWithInt(MessageDigest md, int x) {
-		intByteBuffer.putInt(0, x);
-		intByteBuffer.rewind(); // important!
-		md.update(intByteBuffer);
+		return hasher.getUri(uriPrefix, VALUE_PREFIX_QUANTITY);
 	}
 
-	static void updateMessageDigestWithString(MessageDigest md, String s) {
-		if (s == null) {
-			return;
-		}
-		md.update(s.getBytes(StandardCharsets.UTF_8));
+	/**
+	 * Returns the upper 64 bits of the digest that was used in the last
+	 * hash-based URI that the current thread has created, e.g., with
+	 * {@link #getReferenceUri(Reference, String)}. Together with
+	 * {@link #getLastDigestLow()}, this allows digests to be stored in a
+	 * {@link DigestSet} without parsing them from the URI again.
+	 *
+	 * @return the upper 64 bits of the digest
+	 */
+	public static long getLastDigestHigh() {
+		return ValueUriHasher.instances.get().getDigestHigh();
 	}
 
-	final protected static char[] hexArray = "0123456789abcdef".toCharArray();
-
-	static String bytesToHex(byte[] bytes) {
-		char[] hexChars = new char[bytes.length * 2];
-		for (int j = 0; j < bytes.length; j++) {
-			int v = bytes[j] & 0xFF;
-			hexChars[j * 2] = hexArray[v >>> 4];
-			hexChars[j * 2 + 1] = hexArray[v & 0x0F];
-		}
-		return new String(hexChars);
+	/**
+	 * Returns the lower 64 bits of the digest that was used in the last
+	 * hash-based URI that the current thread has created.
+	 *
+	 * @see #getLastDigestHigh()
+	 * @return the lower 64 bits of the digest
+	 */
+	public static long getLastDigestLow() {
+		return ValueUriHasher.instances.get().getDigestLow();
 	}
 }
@@ -32,6 +32,7 @@ import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
 import org.wikidata.wdtk.datamodel.interfaces.StringValue;
 import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
 import org.wikidata.wdtk.datamodel.interfaces.ValueVisitor;
+import org.wikidata.wdtk.rdf.DigestSet;
 import org.wikidata.wdtk.rdf.OwlDeclarationBuffer;
 import org.wikidata.wdtk.rdf.PropertyRegister;
 import org.wikidata.wdtk.rdf.RdfWriter;
@@ -133,6 +134,32 @@ public class AnyValueConverter implements
 				this.currentPropertyIdValue, this.simple);
 	}
 
+	/**
+	 * Sets the set of digests that is used to remember which complex values
+	 * have already been written. See
+	 * {@link BufferedValueConverter#setDeclaredValues(DigestSet)}.
+	 *
+	 * @param declaredValues
+	 *            set of digests of written values
+	 */
+	public void setDeclaredValues(DigestSet declaredValues) {
+		this.timeValueConverter.setDeclaredValues(declaredValues);
+		this.globeCoordinatesValueConverter.setDeclaredValues(declaredValues);
+		this.quantityValueConverter.setDeclaredValues(declaredValues);
+	}
+
+	/**
+	 * Returns the number of complex values that have been buffered but not
+	 * written yet.
+	 *
+	 * @return number of buffered values
+	 */
+	public int getBufferedValueCount() {
+		return this.timeValueConverter.getBufferedValueCount()
+				+ this.globeCoordinatesValueConverter.getBufferedValueCount()
+				+ this.quantityValueConverter.getBufferedValueCount();
+	}
+
 	@Override
 	public void writeAuxiliaryTriples() throws RDFHandlerException {
 		this.entityIdValueConverter.writeAuxiliaryTriples();
@@ -20,13 +20,12 @@ package org.wikidata.wdtk.rdf.values;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.openrdf.model.Resource;
 import org.openrdf.rio.RDFHandlerException;
+import org.wikidata.wdtk.rdf.DigestSet;
 import org.wikidata.wdtk.rdf.OwlDeclarationBuffer;
 import org.wikidata.wdtk.rdf.PropertyRegister;
 import org.wikidata.wdtk.rdf.RdfWriter;
@@ -34,17 +33,20 @@ import org.wikidata.wdtk.rdf.RdfWriter;
 public abstract class BufferedValueConverter<V extends org.wikidata.wdtk.datamodel.interfaces.Value>
 		extends AbstractValueConverter<V> {
 
-	final List<V> valueQueue;
-	final List<Resource> valueSubjectQueue;
-	final HashSet<Resource> declaredValues;
+	/**
+	 * Values that should still be written, indexed by their RDF resource.
+	 * Since the resource is based on a hash of the value, this removes
+	 * duplicates within one batch.
+	 */
+	final Map<Resource, QueuedValue<V>> valueQueue;
+	DigestSet declaredValues;
 
 	public BufferedValueConverter(RdfWriter rdfWriter,
 			PropertyRegister propertyRegister,
 			OwlDeclarationBuffer rdfConversionBuffer) {
 		super(rdfWriter, propertyRegister, rdfConversionBuffer);
-		this.valueQueue = new ArrayList<V>();
-		this.valueSubjectQueue = new ArrayList<Resource>();
-		this.declaredValues = new HashSet<Resource>();
+		this.valueQueue = new LinkedHashMap<Resource, QueuedValue<V>>();
+		this.declaredValues = new DigestSet();
 	}
 
 	/**
@@ -55,23 +57,48 @@ public abstract class BufferedValueConverter<V extends org.wikidata.wdtk.datamod
 	 *            the value to be serialized
 	 * @param resource
 	 *            the RDF resource that is used as a subject for serialization
+	 * @param digestHigh
+	 *            the upper 64 bits of the digest in the URI of the resource
+	 * @param digestLow
+	 *            the lower 64 bits of the digest in the URI of the resource
+	 */
+	void addValue(V value, Resource resource, long digestHigh, long digestLow) {
+		if (!this.valueQueue.containsKey(resource)) {
+			this.valueQueue.put(resource, new QueuedValue<V>(value,
+					digestHigh, digestLow));
+		}
+	}
+
+	/**
+	 * Returns the number of values that have been added but not written yet.
+	 *
+	 * @return number of buffered values
+	 */
+	public int getBufferedValueCount() {
+		return this.valueQueue.size();
+	}
+
+	/**
+	 * Sets the set of digests that is used to remember which values have
+	 * already been written. The set may be shared with other converters.
+	 *
+	 * @param declaredValues
+	 *            set of digests of written values
 	 */
-	void addValue(V value, Resource resource) {
-		this.valueQueue.add(value);
-		this.valueSubjectQueue.add(resource);
+	public void setDeclaredValues(DigestSet declaredValues) {
+		this.declaredValues = declaredValues;
 	}
 
 	@Override
 	public void writeAuxiliaryTriples() throws RDFHandlerException {
-		Iterator<V> valueIterator = this.valueQueue.iterator();
-		for (Resource resource : this.valueSubjectQueue) {
-			if (!this.declaredValues.add(resource)) {
-				valueIterator.next();
-				continue;
+		for (Map.Entry<Resource, QueuedValue<V>> entry : this.valueQueue
+				.entrySet()) {
+			QueuedValue<V> queuedValue = entry.getValue();
+			if (this.declaredValues.add(queuedValue.digestHigh,
+					queuedValue.digestLow)) {
+				writeValue(queuedValue.value, entry.getKey());
 			}
-			writeValue(valueIterator.next(), resource);
 		}
-		this.valueSubjectQueue.clear();
 		this.valueQueue.clear();
 	}
 
@@ -86,4 +113,23 @@ public abstract class BufferedValueConverter<V extends org.wikidata.wdtk.datamod
 	public abstract void writeValue(V value, Resource resource)
 			throws RDFHandlerException;
 
+	/**
+	 * A value that waits to be written, together with the digest of its
+	 * resource.
+	 *
+	 * @param <V>
+	 *            the type of the value
+	 */
+	static class QueuedValue<V> {
+		final V value;
+		final long digestHigh;
+		final long digestLow;
+
+		QueuedValue(V value, long digestHigh, long digestLow) {
+			this.value = value;
+			this.digestHigh = digestHigh;
+			this.digestLow = digestLow;
+		}
+	}
+
 }
@@ -53,9 +53,11 @@ public class GlobeCoordinatesValueConverter extends
 			URI valueUri = this.rdfWriter.getUri(Vocabulary
 					.getGlobeCoordinatesValueUri(value,
 							this.propertyRegister.getUriPrefix()));
+			long digestHigh = Vocabulary.getLastDigestHigh();
+			long digestLow = Vocabulary.getLastDigestLow();
 
 			this.rdfConversionBuffer.addObjectProperty(propertyIdValue);
-			addValue(value, valueUri);
+			addValue(value, valueUri, digestHigh, digestLow);
 
 			return valueUri;
 		default:
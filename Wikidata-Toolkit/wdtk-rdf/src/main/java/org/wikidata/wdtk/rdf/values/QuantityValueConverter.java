@@ -57,9 +57,11 @@ public class QuantityValueConverter extends
 				URI valueUri = this.rdfWriter.getUri(Vocabulary
 						.getQuantityValueUri(value,
 								this.propertyRegister.getUriPrefix()));
+				long digestHigh = Vocabulary.getLastDigestHigh();
+				long digestLow = Vocabulary.getLastDigestLow();
 
 				this.rdfConversionBuffer.addObjectProperty(propertyIdValue);
-				addValue(value, valueUri);
+				addValue(value, valueUri, digestHigh, digestLow);
 
 				return valueUri;
 			}
@@ -57,8 +57,10 @@ public class TimeValueConverter extends BufferedValueConverter<TimeValue> {
 				URI valueUri = this.rdfWriter.getUri(Vocabulary
 						.getTimeValueUri(value,
 								this.propertyRegister.getUriPrefix()));
+				long digestHigh = Vocabulary.getLastDigestHigh();
+				long digestLow = Vocabulary.getLastDigestLow();
 				this.rdfConversionBuffer.addObjectProperty(propertyIdValue);
-				addValue(value, valueUri);
+				addValue(value, valueUri, digestHigh, digestLow);
 
 				return valueUri;
 			}
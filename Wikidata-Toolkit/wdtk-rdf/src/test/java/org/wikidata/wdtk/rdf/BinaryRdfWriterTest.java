@@ -0,0 +1,129 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+
+public class BinaryRdfWriterTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	Model readBinaryRdf(byte[] bytes) throws IOException, RDFHandlerException {
+		Model model = new LinkedHashModel();
+		new BinaryRdfReader(new ByteArrayInputStream(bytes))
+				.parse(new StatementCollector(model));
+		return model;
+	}
+
+	byte[] serialize(RDFFormat format) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RdfSerializer serializer = new RdfSerializer(format, out,
+				new SitesImpl(), new MockPropertyRegister());
+		serializer.open();
+		serializer.processItemDocument(this.objectFactory.createItemDocument());
+		serializer.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testSerialization() throws RDFParseException,
+			RDFHandlerException, IOException {
+		byte[] binary = serialize(BinaryRdfWriter.BINARY_RDF);
+		byte[] ntriples = serialize(RDFFormat.NTRIPLES);
+
+		assertEquals(RdfTestHelpers.parseRdf(RdfTestHelpers
+				.getResourceFromFile("completeRDFDocument.rdf")),
+				readBinaryRdf(binary));
+		assertTrue(binary.length * 2 < ntriples.length);
+	}
+
+	@Test
+	public void testTermsAndDictionaryReset() throws RDFHandlerException,
+			IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryRdfWriter writer = new BinaryRdfWriter(out, 5);
+		URI subject = writer.getUri("http://example.org/Q1");
+		Model expected = new LinkedHashModel();
+
+		writer.start();
+		writer.writeNamespaceDeclaration("ex", "http://example.org/");
+		for (int i = 0; i < 3 * BinaryRdfWriter.BLOCK_SIZE; i++) {
+			URI predicate = writer.getUri("http://example.org/P" + (i % 7));
+			writer.writeTripleStringObject(subject, predicate, "äöü " + i);
+			expected.add(subject, predicate, writer.getLiteral("äöü " + i));
+		}
+		writer.writeTripleValueObject(subject, RdfWriter.RDFS_LABEL,
+				writer.getLiteral("label", "en"));
+		expected.add(subject, RdfWriter.RDFS_LABEL,
+				writer.getLiteral("label", "en"));
+		writer.writeTripleIntegerObject(writer.getFreshBNode(),
+				RdfWriter.WB_LATITUDE, -42);
+		writer.writeTripleUriObject("http://example.org/Q2",
+				RdfWriter.RDF_TYPE, Vocabulary.WB_ITEM);
+		expected.add(writer.getUri("http://example.org/Q2"),
+				RdfWriter.RDF_TYPE, RdfWriter.WB_ITEM);
+		writer.finish();
+
+		Model model = readBinaryRdf(out.toByteArray());
+		assertEquals(writer.getTripleCount(), model.size());
+		assertEquals("http://example.org/", model.getNamespace("ex")
+				.getName());
+		assertEquals(1, model.filter(null, RdfWriter.WB_LATITUDE,
+				RdfWriter.factory.createLiteral(-42)).size());
+		model.remove(null, RdfWriter.WB_LATITUDE, null);
+		assertEquals(expected, model);
+	}
+
+	@Test
+	public void testConcatenatedStreams() throws RDFParseException,
+			RDFHandlerException, IOException {
+		byte[] binary = serialize(BinaryRdfWriter.BINARY_RDF);
+		byte[] concatenated = new byte[2 * binary.length];
+		System.arraycopy(binary, 0, concatenated, 0, binary.length);
+		System.arraycopy(binary, 0, concatenated, binary.length,
+				binary.length);
+
+		Model model = readBinaryRdf(concatenated);
+		assertEquals(readBinaryRdf(binary).size(), model.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidInput() throws RDFHandlerException, IOException {
+		readBinaryRdf("<http://example.org/> <http://example.org/> <http://example.org/> ."
+				.getBytes());
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class DigestSetTest {
+
+	@Test
+	public void testAddAndGrow() throws IOException {
+		try (DigestSet set = new DigestSet()) {
+			for (long i = 0; i < 10000; i++) {
+				assertTrue(set.add(i, -i));
+			}
+			for (long i = 0; i < 10000; i++) {
+				assertFalse(set.add(i, -i));
+			}
+			assertEquals(10000, set.size());
+			assertFalse(set.isMapped());
+			assertEquals(0, set.getEvictedCount());
+		}
+	}
+
+	@Test
+	public void testAddUri() throws IOException {
+		try (DigestSet set = new DigestSet()) {
+			assertTrue(set.add("http://www.wikidata.org/entity/VTec11d94e4f5bb7b00a79196734f49066"));
+			assertFalse(set.add("http://www.wikidata.org/entity/VTec11d94e4f5bb7b00a79196734f49066"));
+			assertFalse(set.add(0xec11d94e4f5bb7b0L, 0x0a79196734f49066L));
+			assertTrue(set.add("http://www.wikidata.org/entity/VQec11d94e4f5bb7b00a79196734f49067"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddInvalidUri() {
+		new DigestSet().add("http://www.wikidata.org/entity/Q42");
+	}
+
+	@Test
+	public void testZeroDigest() {
+		DigestSet set = new DigestSet();
+		assertTrue(set.add(0, 0));
+		assertFalse(set.add(0, 0));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void testSpillToDisk() throws IOException {
+		try (DigestSet set = new DigestSet(16 * DigestSet.INITIAL_CAPACITY,
+				false)) {
+			for (long i = 1; i <= 5000; i++) {
+				assertTrue(set.add(i * 31, i));
+			}
+			assertTrue(set.isMapped());
+			for (long i = 1; i <= 5000; i++) {
+				assertFalse(set.add(i * 31, i));
+			}
+			assertEquals(5000, set.size());
+		}
+	}
+
+	@Test
+	public void testLossyMode() throws IOException {
+		try (DigestSet set = new DigestSet(16 * DigestSet.INITIAL_CAPACITY,
+				true)) {
+			for (long i = 1; i <= 5000; i++) {
+				assertTrue(set.add(i * 31, i));
+			}
+			assertFalse(set.isMapped());
+			assertTrue(set.size() <= DigestSet.INITIAL_CAPACITY);
+			// the most recent digest is always remembered
+			assertFalse(set.add(5000 * 31, 5000));
+
+			int duplicates = 0;
+			for (long i = 1; i <= 5000; i++) {
+				if (set.add(i * 31, i)) {
+					duplicates++;
+				}
+			}
+			assertTrue(duplicates > 0);
+			assertTrue(duplicates <= set.getEvictedCount());
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import org.openrdf.rio.RDFFormat;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+
+public class IncrementalRdfSerializerTest {
+
+	static final int TASKS = RdfSerializer.TASK_ITEMS
+			| RdfSerializer.TASK_LABELS;
+
+	final EntityRevisionIndex revisionIndex = new EntityRevisionIndex(TASKS);
+
+	ItemDocument makeItemDocument(String id, String label, long revisionId) {
+		return ItemDocumentBuilder
+				.forItemId(Datamodel.makeWikidataItemIdValue(id))
+				.withLabel(label, "en").withRevisionId(revisionId).build();
+	}
+
+	/**
+	 * Runs an incremental export of the given documents and returns the list
+	 * of changes.
+	 */
+	String export(ItemDocument... itemDocuments) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream changes = new ByteArrayOutputStream();
+		IncrementalRdfSerializer serializer = new IncrementalRdfSerializer(
+				RDFFormat.NTRIPLES, out, changes, new SitesImpl(),
+				new MockPropertyRegister(), this.revisionIndex);
+		serializer.open();
+		for (ItemDocument itemDocument : itemDocuments) {
+			serializer.processItemDocument(itemDocument);
+		}
+		serializer.close();
+		return new String(changes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testChangedEntities() {
+		assertEquals("A Q1\nA Q2\nA Q3\n", export(
+				makeItemDocument("Q1", "one", 10),
+				makeItemDocument("Q2", "two", 20),
+				makeItemDocument("Q3", "three", 30)));
+		assertEquals(3, this.revisionIndex.size());
+
+		// Q1 deleted, Q2 modified, Q3 has a new revision with the same
+		// content, Q4 added
+		assertEquals("M Q2\nM Q3\nA Q4\nD Q1\n", export(
+				makeItemDocument("Q2", "deux", 21),
+				makeItemDocument("Q3", "three", 32),
+				makeItemDocument("Q4", "four", 40)));
+		assertEquals("", export(makeItemDocument("Q2", "deux", 21),
+				makeItemDocument("Q3", "three", 32),
+				makeItemDocument("Q4", "four", 40)));
+		assertEquals(21, this.revisionIndex.getRevisionId(Datamodel
+				.makeWikidataItemIdValue("Q2")));
+		assertEquals(-1, this.revisionIndex.getRevisionId(Datamodel
+				.makeWikidataItemIdValue("Q1")));
+	}
+
+	@Test
+	public void testEntitiesWithoutRevision() {
+		assertEquals("A Q1\nA Q2\n", export(makeItemDocument("Q1", "one", 0),
+				makeItemDocument("Q2", "two", 0)));
+		// without revision ids, the content is compared
+		assertEquals("M Q2\n", export(makeItemDocument("Q1", "one", 0),
+				makeItemDocument("Q2", "deux", 0)));
+		// a known revision id is not compared with a missing one
+		assertEquals("M Q1\n", export(makeItemDocument("Q1", "one", 10),
+				makeItemDocument("Q2", "deux", 0)));
+	}
+
+	@Test
+	public void testUnchangedEntitiesAreNotSerialized() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IncrementalRdfSerializer serializer = new IncrementalRdfSerializer(
+				RDFFormat.NTRIPLES, out, new ByteArrayOutputStream(),
+				new SitesImpl(), new MockPropertyRegister(),
+				this.revisionIndex);
+		serializer.open();
+		long basicTripleCount = serializer.getTripleCount();
+		this.revisionIndex.update(
+				Datamodel.makeWikidataItemIdValue("Q1"), 10, 0);
+		serializer.processItemDocument(makeItemDocument("Q1", "one", 10));
+		serializer.processPropertyDocument(new TestObjectFactory()
+				.createEmptyPropertyDocument());
+		serializer.close();
+
+		assertEquals(basicTripleCount, serializer.getTripleCount());
+		assertEquals(1, serializer.getUnchangedCount());
+		assertEquals(0, serializer.getAddedCount());
+		assertEquals(1, this.revisionIndex.size());
+	}
+
+	@Test
+	public void testWriteAndReadIndex() throws IOException {
+		MockDirectoryManager directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+		for (int i = 1; i <= 2000; i++) {
+			this.revisionIndex.update(
+					Datamodel.makeWikidataItemIdValue("Q" + i), 100 + i, i);
+		}
+		this.revisionIndex.update(
+				Datamodel.makeWikidataPropertyIdValue("P1"), 7, 0);
+		this.revisionIndex.write(directoryManager, "revisions.index");
+
+		EntityRevisionIndex loadedIndex = new EntityRevisionIndex(TASKS);
+		assertTrue(loadedIndex.read(directoryManager, "revisions.index"));
+		assertEquals(2001, loadedIndex.size());
+		assertEquals(1234, loadedIndex.getRevisionId(Datamodel
+				.makeWikidataItemIdValue("Q1134")));
+		assertEquals(7, loadedIndex.getRevisionId(Datamodel
+				.makeWikidataPropertyIdValue("P1")));
+		assertEquals(-1, loadedIndex.getRevisionId(Datamodel
+				.makeWikidataPropertyIdValue("P2")));
+
+		EntityRevisionIndex otherIndex = new EntityRevisionIndex(
+				RdfSerializer.TASK_ALL_ENTITIES);
+		assertFalse(otherIndex.read(directoryManager, "revisions.index"));
+		assertFalse(otherIndex.read(directoryManager, "missing.index"));
+	}
+
+}
@@ -42,8 +42,10 @@ public class MockPropertyRegister extends PropertyRegister {
 	public MockPropertyRegister() {
 		super("P1921", ApiConnection.getWikidataApiConnection(),
 				Datamodel.SITE_WIKIDATA);
-		this.datatypes.putAll(KNOWN_PROPERTY_TYPES);
-		this.uriPatterns.putAll(KNOWN_URI_PATTERNS);
+		for (Map.Entry<String, String> e : KNOWN_PROPERTY_TYPES.entrySet()) {
+			putPropertyInformation(e.getKey(), e.getValue(),
+					KNOWN_URI_PATTERNS.get(e.getKey()));
+		}
 
 	}
 
@@ -58,12 +60,10 @@ public class MockPropertyRegister extends PropertyRegister {
 
 		public WithNullPropertyTypes() {
 			super();
-			Map<String, String> NULL_PROPERTY_TYPES = new HashMap<>();
-			for (Map.Entry<String, String> e : KNOWN_PROPERTY_TYPES.entrySet()) {
-				NULL_PROPERTY_TYPES.put(e.getKey(), null);
+			for (String propertyId : KNOWN_PROPERTY_TYPES.keySet()) {
+				putPropertyInformation(propertyId, null,
+						KNOWN_URI_PATTERNS.get(propertyId));
 			}
-			this.datatypes.putAll(NULL_PROPERTY_TYPES);
-			this.uriPatterns.putAll(KNOWN_URI_PATTERNS);
 
 		}
 	}
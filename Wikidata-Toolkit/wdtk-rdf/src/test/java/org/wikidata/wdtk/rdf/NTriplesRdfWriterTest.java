@@ -0,0 +1,147 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+
+public class NTriplesRdfWriterTest {
+
+	static final String[] STRINGS = { "plain", "", "with \"quotes\"",
+			"back\\slash", "line\nbreak\r\ttab", "control \u0001\u000b\u001f\u007f",
+			"umlaut äöü", "cjk 中文",
+			"surrogates 😀", "￿" };
+
+	final BNode[] bnodes = { RdfWriter.factory.createBNode("node1"),
+			RdfWriter.factory.createBNode("1a-b_cä"),
+			RdfWriter.factory.createBNode() };
+
+	/**
+	 * Writes the same triples with the given writer.
+	 */
+	void writeTriples(RdfWriter writer) throws RDFHandlerException {
+		writer.start();
+		writer.writeNamespaceDeclaration("wo", Vocabulary.PREFIX_WBONTO);
+		URI subject = writer.getUri("http://example.org/Q1");
+		URI custom = writer.getUri("http://example.org/päth#x");
+
+		for (String s : STRINGS) {
+			writer.writeTripleStringObject(subject, RdfWriter.RDFS_LABEL, s);
+			writer.writeTripleValueObject(subject, RdfWriter.SCHEMA_DESCRIPTION,
+					writer.getLiteral(s, "de-ch"));
+			writer.writeTripleLiteralObject(subject, custom, s,
+					RdfWriter.XSD_STRING);
+			writer.writeTripleUriObject("http://example.org/" + s, custom,
+					"http://example.org/o#" + s);
+		}
+		for (BNode bnode : this.bnodes) {
+			writer.writeTripleUriObject(bnode, RdfWriter.RDF_TYPE,
+					Vocabulary.OWL_RESTRICTION);
+			writer.writeTripleValueObject(subject, custom, bnode);
+		}
+		writer.writeTripleIntegerObject(subject, RdfWriter.WB_LATITUDE,
+				-42);
+		writer.writeTripleValueObject(subject, RdfWriter.RDF_TYPE,
+				RdfWriter.WB_ITEM);
+		writer.writeTripleValueObject("http://example.org/Q2",
+				RdfWriter.SCHEMA_ABOUT, RdfWriter.factory.createLiteral(1.5));
+		writer.finish();
+	}
+
+	@Test
+	public void testSameOutputAsRio() throws RDFHandlerException {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		RdfWriter rioWriter = new RdfWriter(RDFFormat.NTRIPLES, expected);
+		writeTriples(rioWriter);
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		NTriplesRdfWriter ntWriter = new NTriplesRdfWriter(actual);
+		writeTriples(ntWriter);
+
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(rioWriter.getTripleCount(), ntWriter.getTripleCount());
+	}
+
+	@Test
+	public void testLongStrings() throws RDFHandlerException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < NTriplesRdfWriter.BUFFER_SIZE / 3; i++) {
+			sb.append((char) (i % 300));
+		}
+		String s = sb.toString();
+		URI subject = RdfWriter.factory.createURI("http://example.org/Q1");
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		RdfWriter rioWriter = new RdfWriter(RDFFormat.NTRIPLES, expected);
+		rioWriter.start();
+		rioWriter.writeTripleStringObject(subject, RdfWriter.RDFS_LABEL, s);
+		rioWriter.writeTripleUriObject(subject, RdfWriter.RDFS_SEE_ALSO,
+				"http://example.org/" + s);
+		rioWriter.finish();
+
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		NTriplesRdfWriter ntWriter = new NTriplesRdfWriter(actual);
+		ntWriter.start();
+		ntWriter.writeTripleStringObject(subject, RdfWriter.RDFS_LABEL, s);
+		ntWriter.writeTripleUriObject(subject, RdfWriter.RDFS_SEE_ALSO,
+				"http://example.org/" + s);
+		ntWriter.finish();
+
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidUri() throws RDFHandlerException {
+		NTriplesRdfWriter writer = new NTriplesRdfWriter(
+				new ByteArrayOutputStream());
+		writer.writeTripleUriObject("not a uri", RdfWriter.RDF_TYPE,
+				Vocabulary.WB_ITEM);
+	}
+
+	@Test
+	public void testSerializerUsesNTriplesWriter() throws RDFHandlerException,
+			RDFParseException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RdfSerializer serializer = new RdfSerializer(RDFFormat.NTRIPLES, out,
+				new SitesImpl(), new MockPropertyRegister());
+		serializer.open();
+		serializer.processItemDocument(new TestObjectFactory()
+				.createItemDocument());
+		serializer.close();
+
+		assertEquals(NTriplesRdfWriter.class, serializer.rdfWriter.getClass());
+		assertEquals(RdfTestHelpers.parseRdf(RdfTestHelpers
+				.getResourceFromFile("completeRDFDocument.rdf")),
+				RdfTestHelpers.parseRdf(out.toString()));
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.PropertyDocumentBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
+import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
+
+/**
+ * Tests for fetching property information online. Unlike
+ * {@link PropertyRegisterTest}, no mock objects are used; the data fetcher is
+ * replaced by a simple subclass.
+ *
+ * @author agent
+ *
+ */
+public class PropertyRegisterFetchTest {
+
+	static final String SITE_IRI = "http://www.example.org/entities/";
+
+	/**
+	 * Data fetcher that returns fixed documents without accessing the Web.
+	 */
+	static class StubDataFetcher extends WikibaseDataFetcher {
+
+		final Map<String, EntityDocument> result;
+		final AtomicInteger fetchCount = new AtomicInteger();
+
+		StubDataFetcher(Map<String, EntityDocument> result) {
+			super(new ApiConnection("http://localhost/"), SITE_IRI);
+			this.result = result;
+		}
+
+		@Override
+		public Map<String, EntityDocument> getEntityDocuments(
+				List<String> entityIds) {
+			this.fetchCount.incrementAndGet();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return this.result;
+		}
+	}
+
+	static EntityDocument makePropertyDocument(String propertyId,
+			String datatype) {
+		return PropertyDocumentBuilder.forPropertyIdAndDatatype(
+				getPropertyIdValue(propertyId), datatype).build();
+	}
+
+	static PropertyIdValue getPropertyIdValue(String propertyId) {
+		return Datamodel.makePropertyIdValue(propertyId, SITE_IRI);
+	}
+
+	PropertyRegister makePropertyRegister(StubDataFetcher dataFetcher) {
+		PropertyRegister propertyRegister = new PropertyRegister("P1921",
+				new ApiConnection("http://localhost/"), SITE_IRI);
+		propertyRegister.dataFetcher = dataFetcher;
+		return propertyRegister;
+	}
+
+	@Test
+	public void testConcurrentMissesAreCoalesced() throws Exception {
+		Map<String, EntityDocument> result = new HashMap<>();
+		result.put("P434",
+				makePropertyDocument("P434", DatatypeIdValue.DT_STRING));
+		result.put("P23", makePropertyDocument("P23", DatatypeIdValue.DT_ITEM));
+		StubDataFetcher dataFetcher = new StubDataFetcher(result);
+		final PropertyRegister propertyRegister = makePropertyRegister(
+				dataFetcher);
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<String> results = Collections
+				.synchronizedList(new ArrayList<String>());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					results.add(propertyRegister
+							.getPropertyType(getPropertyIdValue("P434")));
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(Collections.nCopies(8, DatatypeIdValue.DT_STRING),
+				results);
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				propertyRegister.getPropertyType(getPropertyIdValue("P23")));
+		assertEquals(1, dataFetcher.fetchCount.get());
+	}
+
+	@Test
+	public void testDocumentWithOtherId() {
+		// the API may return a document under the id that was requested, even
+		// if the document has another id, e.g., after a redirect
+		Map<String, EntityDocument> result = new HashMap<>();
+		result.put("P1",
+				makePropertyDocument("P434", DatatypeIdValue.DT_STRING));
+		result.put("P2", makePropertyDocument("P2", DatatypeIdValue.DT_ITEM));
+		result.put("P3", makePropertyDocument("P3", DatatypeIdValue.DT_TIME));
+		PropertyRegister propertyRegister = makePropertyRegister(
+				new StubDataFetcher(result));
+
+		assertNull(propertyRegister.getPropertyType(getPropertyIdValue("P1")));
+		assertEquals(DatatypeIdValue.DT_STRING,
+				propertyRegister.getKnownPropertyInfo("P434").datatype);
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				propertyRegister.getKnownPropertyInfo("P2").datatype);
+		assertEquals(DatatypeIdValue.DT_TIME,
+				propertyRegister.getKnownPropertyInfo("P3").datatype);
+	}
+
+	@Test
+	public void testLargePropertyIds() throws IOException {
+		PropertyRegister propertyRegister = makePropertyRegister(
+				new StubDataFetcher(
+						Collections.<String, EntityDocument> emptyMap()));
+		propertyRegister.setOfflineMode(true);
+		propertyRegister.setPropertyType(getPropertyIdValue("P2000000000"),
+				DatatypeIdValue.DT_ITEM);
+		propertyRegister.setPropertyType(getPropertyIdValue("P31"),
+				DatatypeIdValue.DT_ITEM);
+
+		int maxLength = PropertyRegister.MAX_ARRAY_PROPERTY_ID_NUMBER + 1;
+		assertTrue(propertyRegister.propertyInfos.length() <= maxLength);
+		assertEquals(DatatypeIdValue.DT_ITEM, propertyRegister
+				.getPropertyType(getPropertyIdValue("P2000000000")));
+		assertNull(propertyRegister
+				.getPropertyType(getPropertyIdValue("P2000000001")));
+
+		MockDirectoryManager directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+		propertyRegister.writeSnapshot(directoryManager,
+				"properties.snapshot");
+		PropertyRegister loadedRegister = makePropertyRegister(
+				new StubDataFetcher(
+						Collections.<String, EntityDocument> emptyMap()));
+		assertTrue(loadedRegister.readSnapshot(directoryManager,
+				"properties.snapshot"));
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				loadedRegister.getKnownPropertyInfo("P2000000000").datatype);
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				loadedRegister.getKnownPropertyInfo("P31").datatype);
+	}
+
+}
@@ -21,31 +21,43 @@ package org.wikidata.wdtk.rdf;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
 import org.wikidata.wdtk.datamodel.interfaces.DataObjectFactory;
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Reference;
 import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
 import org.wikidata.wdtk.datamodel.interfaces.Statement;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.rdf.PropertyRegister.PropertyInfo;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
 import org.wikidata.wdtk.wikibaseapi.ApiConnection;
 import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
@@ -59,9 +71,12 @@ public class PropertyRegisterTest {
 	final TestObjectFactory objectFactory = new TestObjectFactory();
 	final DataObjectFactory dataObjectFactory = new DataObjectFactoryImpl();
 
+	Map<String, EntityDocument> mockResult;
+
 	@Before
 	public void setUp() throws MediaWikiApiErrorException {
 		Map<String, EntityDocument> mockResult = new HashMap<String, EntityDocument>();
+		this.mockResult = mockResult;
 		List<StatementGroup> mockStatementGroups = new ArrayList<StatementGroup>();
 
 		PropertyIdValue pid434 = dataObjectFactory.getPropertyIdValue("P434",
@@ -146,7 +161,7 @@ public class PropertyRegisterTest {
 				this.propertyRegister.getPropertyUriPattern(pid));
 		assertEquals(50,
 				this.propertyRegister.smallestUnfetchedPropertyIdNumber);
-		assertTrue(this.propertyRegister.datatypes.keySet().contains("P434"));
+		assertNotNull(this.propertyRegister.getKnownPropertyInfo("P434"));
 	}
 
 	@Test
@@ -160,7 +175,7 @@ public class PropertyRegisterTest {
 						.getPropertyIdValue("P434", this.siteIri)));
 		assertEquals(50,
 				this.propertyRegister.smallestUnfetchedPropertyIdNumber);
-		assertTrue(this.propertyRegister.datatypes.keySet().contains("P434"));
+		assertNotNull(this.propertyRegister.getKnownPropertyInfo("P434"));
 	}
 
 	@Test
@@ -199,6 +214,27 @@ public class PropertyRegisterTest {
 				"http://www.wikidata.org/ontology#propertyTypeString");
 	}
 
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedMapViews() {
+		this.propertyRegister.setOfflineMode(true);
+		this.propertyRegister.datatypes.put("P1001", DatatypeIdValue.DT_ITEM);
+		this.propertyRegister.uriPatterns.put("P1001",
+				"http://example.org/$1");
+
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				this.propertyRegister.getPropertyType(dataObjectFactory
+						.getPropertyIdValue("P1001", this.siteIri)));
+		assertEquals("http://example.org/$1",
+				this.propertyRegister.getPropertyUriPattern(dataObjectFactory
+						.getPropertyIdValue("P1001", this.siteIri)));
+		assertTrue(this.propertyRegister.datatypes.containsKey("P1001"));
+		assertFalse(this.propertyRegister.datatypes.containsKey("P1002"));
+		assertFalse(this.propertyRegister.datatypes.containsKey("Q1001"));
+		assertEquals(Collections.singletonMap("P1001",
+				"http://example.org/$1"), this.propertyRegister.uriPatterns);
+	}
+
 	@Test
 	public void testWikidataPropertyRegister() {
 		PropertyRegister pr = PropertyRegister.getWikidataPropertyRegister();
@@ -206,4 +242,143 @@ public class PropertyRegisterTest {
 		assertEquals("P1921", pr.uriPatternPropertyId);
 	}
 
+	@Test
+	public void testOfflineMode() throws MediaWikiApiErrorException {
+		this.propertyRegister.setOfflineMode(true);
+		assertTrue(this.propertyRegister.isOfflineMode());
+		assertNull(this.propertyRegister.getPropertyType(dataObjectFactory
+				.getPropertyIdValue("P434", this.siteIri)));
+		Mockito.verify(this.propertyRegister.dataFetcher, Mockito.never())
+				.getEntityDocuments(Mockito.anyListOf(String.class));
+	}
+
+	@Test
+	public void testPropertyDocumentProcessor()
+			throws MediaWikiApiErrorException {
+		EntityDocumentProcessor processor = this.propertyRegister
+				.getPropertyDocumentProcessor();
+		processor.processItemDocument(this.objectFactory.createItemDocument());
+		for (EntityDocument document : this.mockResult.values()) {
+			processor.processPropertyDocument((PropertyDocument) document);
+		}
+
+		assertEquals(435,
+				this.propertyRegister.smallestUnfetchedPropertyIdNumber);
+		assertEquals("http://musicbrainz.org/$1/artist",
+				this.propertyRegister.getPropertyUriPattern(dataObjectFactory
+						.getPropertyIdValue("P434", this.siteIri)));
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				this.propertyRegister.getPropertyType(dataObjectFactory
+						.getPropertyIdValue("P23", this.siteIri)));
+		// Deleted properties are not fetched online:
+		assertNull(this.propertyRegister.getPropertyType(dataObjectFactory
+				.getPropertyIdValue("P10", this.siteIri)));
+		Mockito.verify(this.propertyRegister.dataFetcher, Mockito.never())
+				.getEntityDocuments(Mockito.anyListOf(String.class));
+	}
+
+	@Test
+	public void testSnapshot() throws IOException, MediaWikiApiErrorException {
+		MockDirectoryManager directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+		assertEquals(DatatypeIdValue.DT_STRING,
+				this.propertyRegister.getPropertyType(dataObjectFactory
+						.getPropertyIdValue("P434", this.siteIri)));
+		this.propertyRegister.writeSnapshot(directoryManager,
+				"properties.snapshot");
+
+		PropertyRegister loadedRegister = new PropertyRegister("P1921",
+				new ApiConnection("http://localhost/"), this.siteIri);
+		loadedRegister.dataFetcher = Mockito.mock(WikibaseDataFetcher.class);
+		assertTrue(loadedRegister.readSnapshot(directoryManager,
+				"properties.snapshot"));
+
+		for (int i = 1; i < 500; i++) {
+			PropertyInfo expected = this.propertyRegister
+					.getKnownPropertyInfo("P" + i);
+			PropertyInfo loaded = loadedRegister.getKnownPropertyInfo("P" + i);
+			if (expected == null) {
+				assertNull(loaded);
+			} else {
+				assertEquals(expected.datatype, loaded.datatype);
+				assertEquals(expected.uriPattern, loaded.uriPattern);
+			}
+		}
+		assertEquals(50, loadedRegister.smallestUnfetchedPropertyIdNumber);
+		assertEquals("http://musicbrainz.org/$1/artist",
+				loadedRegister.getPropertyUriPattern(dataObjectFactory
+						.getPropertyIdValue("P434", this.siteIri)));
+		Mockito.verify(loadedRegister.dataFetcher, Mockito.never())
+				.getEntityDocuments(Mockito.anyListOf(String.class));
+	}
+
+	@Test
+	public void testSnapshotForOtherSite() throws IOException {
+		MockDirectoryManager directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+		this.propertyRegister.writeSnapshot(directoryManager,
+				"properties.snapshot");
+
+		PropertyRegister otherRegister = new PropertyRegister("P1921",
+				new ApiConnection("http://localhost/"),
+				"http://example.com/entity/");
+		assertFalse(otherRegister.readSnapshot(directoryManager,
+				"properties.snapshot"));
+		assertFalse(otherRegister.readSnapshot(directoryManager,
+				"missing.snapshot"));
+	}
+
+	@Test
+	public void testConcurrentMissesAreCoalesced() throws Exception {
+		final AtomicInteger fetchCount = new AtomicInteger();
+		WikibaseDataFetcher dataFetcher = Mockito
+				.mock(WikibaseDataFetcher.class);
+		Mockito.when(dataFetcher.getFilter()).thenReturn(
+				new DocumentDataFilter());
+		Mockito.when(
+				dataFetcher.getEntityDocuments(Mockito
+						.anyListOf(String.class))).thenAnswer(
+				new Answer<Map<String, EntityDocument>>() {
+					@Override
+					public Map<String, EntityDocument> answer(
+							InvocationOnMock invocation) throws Exception {
+						fetchCount.incrementAndGet();
+						Thread.sleep(200);
+						return PropertyRegisterTest.this.mockResult;
+					}
+				});
+		this.propertyRegister.dataFetcher = dataFetcher;
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<String> results = Collections
+				.synchronizedList(new ArrayList<String>());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					results.add(propertyRegister.getPropertyType(dataObjectFactory
+							.getPropertyIdValue("P434", siteIri)));
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(Collections.nCopies(8, DatatypeIdValue.DT_STRING), results);
+		assertEquals(DatatypeIdValue.DT_ITEM,
+				this.propertyRegister.getPropertyType(dataObjectFactory
+						.getPropertyIdValue("P23", this.siteIri)));
+		assertEquals(1, fetchCount.get());
+	}
+
 }
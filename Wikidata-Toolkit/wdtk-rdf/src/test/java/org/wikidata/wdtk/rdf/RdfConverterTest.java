@@ -21,6 +21,7 @@ package org.wikidata.wdtk.rdf;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -96,6 +97,37 @@ public class RdfConverterTest {
 				.getResourceFromFile("ItemDocument.rdf")));
 	}
 
+	@Test
+	public void testDeferredFlush() throws RDFHandlerException,
+			IOException, RDFParseException {
+		this.rdfConverter.setFlushPolicy(10, 0);
+		ItemDocument document = this.objectFactory.createItemDocument();
+		this.rdfConverter.writeItemDocument(document);
+		assertTrue(this.rdfConverter.getBufferedObjectCount() > 0);
+		this.rdfConverter.flush();
+		this.rdfWriter.finish();
+		Model model = RdfTestHelpers.parseRdf(out.toString());
+		assertEquals(model, RdfTestHelpers.parseRdf(RdfTestHelpers
+				.getResourceFromFile("ItemDocument.rdf")));
+	}
+
+	@Test
+	public void testFlushOnBufferedObjectLimit() throws RDFHandlerException,
+			IOException, RDFParseException {
+		this.rdfConverter.setFlushPolicy(10, 1);
+		ItemDocument document = this.objectFactory.createItemDocument();
+		this.rdfConverter.writeItemDocument(document);
+		this.rdfWriter.finish();
+		Model model = RdfTestHelpers.parseRdf(out.toString());
+		assertEquals(model, RdfTestHelpers.parseRdf(RdfTestHelpers
+				.getResourceFromFile("ItemDocument.rdf")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFlushPolicy() {
+		this.rdfConverter.setFlushPolicy(0, 0);
+	}
+
 	@Test
 	public void testWriteItemDocumentWithNullPropertyTypes() throws RDFHandlerException,
 			IOException, RDFParseException {
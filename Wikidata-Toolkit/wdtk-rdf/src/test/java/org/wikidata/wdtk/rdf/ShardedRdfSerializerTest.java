@@ -0,0 +1,90 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+
+public class ShardedRdfSerializerTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	void processDocuments(EntityDocumentDumpProcessor processor) {
+		processor.open();
+		for (int i = 0; i < 250; i++) {
+			processor.processItemDocument(this.objectFactory
+					.createItemDocument());
+			processor.processPropertyDocument(this.objectFactory
+					.createEmptyPropertyDocument());
+		}
+		processor.close();
+	}
+
+	@Test
+	public void testShardsMatchSingleSerializer() throws RDFParseException,
+			RDFHandlerException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RdfSerializer serializer = new RdfSerializer(RDFFormat.NTRIPLES, out,
+				new SitesImpl(), new MockPropertyRegister());
+		processDocuments(serializer);
+
+		List<ByteArrayOutputStream> shardOuts = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			shardOuts.add(new ByteArrayOutputStream());
+		}
+		ShardedRdfSerializer shardedSerializer = new ShardedRdfSerializer(
+				RDFFormat.NTRIPLES, new ArrayList<OutputStream>(shardOuts),
+				new SitesImpl(), new MockPropertyRegister(), new DigestSet());
+		processDocuments(shardedSerializer);
+
+		StringBuilder merged = new StringBuilder();
+		for (ByteArrayOutputStream shardOut : shardOuts) {
+			merged.append(shardOut.toString());
+		}
+		Model model = RdfTestHelpers.parseRdf(out.toString());
+
+		assertEquals(serializer.getTripleCount(),
+				shardedSerializer.getTripleCount());
+		assertEquals(model, RdfTestHelpers.parseRdf(merged.toString()));
+		assertEquals(3, shardedSerializer.getShardCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoOutputs() {
+		new ShardedRdfSerializer(RDFFormat.NTRIPLES,
+				new ArrayList<OutputStream>(), new SitesImpl(),
+				new MockPropertyRegister(), new DigestSet());
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+
+public class VocabularyTest {
+
+	static final String URI_PREFIX = Datamodel.SITE_WIKIDATA;
+
+	static List<String> getValueUris(int count) {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			result.add(Vocabulary.getTimeValueUri(Datamodel.makeTimeValue(
+					1900 + i, (byte) 1, (byte) 1, TimeValue.CM_GREGORIAN_PRO),
+					URI_PREFIX));
+			result.add(Vocabulary.getGlobeCoordinatesValueUri(Datamodel
+					.makeGlobeCoordinatesValue(i % 90, -i % 180,
+							GlobeCoordinatesValue.PREC_DEGREE,
+							GlobeCoordinatesValue.GLOBE_EARTH), URI_PREFIX));
+			result.add(Vocabulary.getQuantityValueUri(Datamodel
+					.makeQuantityValue(new BigDecimal(i)), URI_PREFIX));
+		}
+		return result;
+	}
+
+	@Test
+	public void testValueUriFormat() {
+		String uri = Vocabulary.getTimeValueUri(Datamodel.makeTimeValue(2000,
+				(byte) 1, (byte) 1, TimeValue.CM_GREGORIAN_PRO), URI_PREFIX);
+
+		assertTrue(uri.startsWith(URI_PREFIX + Vocabulary.VALUE_PREFIX_TIME));
+		assertEquals(URI_PREFIX.length() + 2 + 32, uri.length());
+		assertEquals(uri, Vocabulary.getTimeValueUri(Datamodel.makeTimeValue(
+				2000, (byte) 1, (byte) 1, TimeValue.CM_GREGORIAN_PRO),
+				URI_PREFIX));
+	}
+
+	@Test
+	public void testLastDigest() {
+		String uri = Vocabulary.getQuantityValueUri(
+				Datamodel.makeQuantityValue(BigDecimal.TEN), URI_PREFIX);
+		int start = uri.length() - DigestSet.DIGEST_HEX_LENGTH;
+
+		assertEquals(DigestSet.parseHexLong(uri, start),
+				Vocabulary.getLastDigestHigh());
+		assertEquals(DigestSet.parseHexLong(uri, start + 16),
+				Vocabulary.getLastDigestLow());
+	}
+
+	@Test
+	public void testLongUriPrefix() {
+		StringBuilder prefix = new StringBuilder("http://example.org/");
+		for (int i = 0; i < 20; i++) {
+			prefix.append("long/path/");
+		}
+		String uri = Vocabulary.getQuantityValueUri(
+				Datamodel.makeQuantityValue(BigDecimal.ONE), prefix.toString());
+
+		assertTrue(uri.startsWith(prefix + Vocabulary.VALUE_PREFIX_QUANTITY));
+		assertEquals(prefix.length() + 2 + 32, uri.length());
+	}
+
+	@Test
+	public void testConcurrentValueUris() throws Exception {
+		final List<String> expected = getValueUris(500);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() {
+						return getValueUris(500);
+					}
+				}));
+			}
+			for (Future<List<String>> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
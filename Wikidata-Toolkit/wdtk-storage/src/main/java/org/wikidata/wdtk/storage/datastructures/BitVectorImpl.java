@@ -115,6 +115,87 @@ public class BitVectorImpl implements BitVector, Iterable<Boolean> {
 		return ((word >> position) & 1) == 1;
 	}
 
+	/**
+	 * Returns the number of <code>true</code> values of a bit vector in the
+	 * interval from <i>from</i> (inclusive) to <i>to</i> (exclusive). The
+	 * bits are counted word by word.
+	 *
+	 * @param bitVector
+	 *            bit vector
+	 * @param from
+	 *            first position
+	 * @param to
+	 *            position after the last position, at most the size of the
+	 *            bit vector
+	 * @return number of <code>true</code> values in the interval
+	 */
+	static long countTrueBits(BitVector bitVector, long from, long to) {
+		if (from >= to) {
+			return 0;
+		}
+		long firstWord = from >> LG_WORD_SIZE;
+		long lastWord = (to - 1) >> LG_WORD_SIZE;
+		long ret = 0;
+		for (long wordIndex = firstWord; wordIndex <= lastWord; wordIndex++) {
+			long word = getWord(bitVector, wordIndex);
+			if (wordIndex == firstWord) {
+				word &= -1L << (from & WORD_MASK);
+			}
+			if (wordIndex == lastWord) {
+				word &= -1L >>> (WORD_MASK - ((to - 1) & WORD_MASK));
+			}
+			ret += Long.bitCount(word);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the position of the <i>n</i>-th occurrence (<i>nOccurrence</i>)
+	 * of <i>bit</i> at or after position <i>from</i> in a bit vector. The bit
+	 * vector is scanned word by word.
+	 *
+	 * @param bitVector
+	 *            bit vector
+	 * @param bit
+	 *            bit
+	 * @param from
+	 *            first position
+	 * @param nOccurrence
+	 *            number of occurrences; this value must be a positive number
+	 * @return position of the <i>n</i>-th occurrence of <i>bit</i> or
+	 *         {@link RankedBitVector#NOT_FOUND} if there are not enough
+	 *         occurrences
+	 */
+	static long findPosition(BitVector bitVector, boolean bit, long from,
+			long nOccurrence) {
+		long size = bitVector.size();
+		if (from >= size) {
+			return RankedBitVector.NOT_FOUND;
+		}
+		long lastWord = (size - 1) >> LG_WORD_SIZE;
+		long leftOccurrences = nOccurrence;
+		long wordIndex = from >> LG_WORD_SIZE;
+		long word = getWord(bitVector, wordIndex);
+		word = (bit ? word : ~word) & (-1L << (from & WORD_MASK));
+		while (true) {
+			if (wordIndex == lastWord) {
+				word &= -1L >>> (WORD_MASK - ((size - 1) & WORD_MASK));
+			}
+			int occurrences = Long.bitCount(word);
+			if (occurrences >= leftOccurrences) {
+				return (wordIndex << LG_WORD_SIZE)
+						+ selectInWord(word, (int) (leftOccurrences - 1));
+			}
+			if (wordIndex == lastWord) {
+				return RankedBitVector.NOT_FOUND;
+			}
+			leftOccurrences -= occurrences;
+			wordIndex++;
+			word = getWord(bitVector, wordIndex);
+			word = bit ? word : ~word;
+		}
+	}
+
 	/**
 	 * @param bitVectorSize
 	 *            bit vector sizes
@@ -124,6 +205,76 @@ public class BitVectorImpl implements BitVector, Iterable<Boolean> {
 		return Math.max(MINIMUM_ARRAY_SIZE, getSizeInWords(bitVectorSize));
 	}
 
+	/**
+	 * Returns the word with the given index of a bit vector, which contains
+	 * the bits from position 64 * <i>wordIndex</i> on, with the first bit as
+	 * the least significant bit. Positions outside the bit vector contain
+	 * <code>false</code>.
+	 *
+	 * @param bitVector
+	 *            bit vector
+	 * @param wordIndex
+	 *            index of the word
+	 * @return the word with the given index
+	 */
+	static long getWord(BitVector bitVector, long wordIndex) {
+		if (bitVector instanceof BitVectorImpl) {
+			long[] arrayOfBits = ((BitVectorImpl) bitVector).arrayOfBits;
+			return wordIndex < arrayOfBits.length ? arrayOfBits[(int) wordIndex]
+					: 0;
+		}
+		long wordStart = wordIndex << LG_WORD_SIZE;
+		if (wordStart >= bitVector.size()) {
+			return 0;
+		}
+		if (bitVector instanceof MappedBitVector) {
+			return ((MappedBitVector) bitVector).getWord(wordIndex);
+		}
+		long ret = 0;
+		long wordEnd = Math.min(wordStart + WORD_SIZE, bitVector.size());
+		for (long index = wordStart; index < wordEnd; index++) {
+			if (bitVector.getBit(index)) {
+				ret |= 1L << (index - wordStart);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the position of the <code>true</code> value with the given rank
+	 * in a word. The byte that contains the value is found with broadword
+	 * operations on the counts of all bytes, so that only the bits of one
+	 * byte need to be inspected.
+	 *
+	 * @param word
+	 *            word
+	 * @param rank
+	 *            number of <code>true</code> values before the value to be
+	 *            found; must be less than the number of <code>true</code>
+	 *            values of the word
+	 * @return position of the value in the word
+	 */
+	static int selectInWord(long word, int rank) {
+		// counts of all bytes, accumulated from the least significant byte on
+		long byteSums = word - ((word & 0xAAAAAAAAAAAAAAAAL) >>> 1);
+		byteSums = (byteSums & 0x3333333333333333L)
+				+ ((byteSums >>> 2) & 0x3333333333333333L);
+		byteSums = (byteSums + (byteSums >>> 4)) & 0x0F0F0F0F0F0F0F0FL;
+		byteSums *= 0x0101010101010101L;
+
+		// number of bytes that end with at most rank values
+		long rankInEachByte = rank * 0x0101010101010101L;
+		int place = Long.bitCount(((rankInEachByte | 0x8080808080808080L) - byteSums)
+				& 0x8080808080808080L) << 3;
+
+		int rankInByte = rank - (int) (((byteSums << 8) >>> place) & 0xFF);
+		long byteValue = (word >>> place) & 0xFF;
+		for (int i = 0; i < rankInByte; i++) {
+			byteValue &= byteValue - 1;
+		}
+		return place + Long.numberOfTrailingZeros(byteValue);
+	}
+
 	/**
 	 * @param position
 	 *            position
@@ -0,0 +1,1194 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Implementation of {@link RankedBitVector} for sparse bit vectors. The
+ * vector is divided into chunks of 2<sup>16</sup> positions, and only chunks
+ * that contain <code>true</code> values are stored. Each chunk uses the most
+ * compact of three representations: a sorted array of the positions of
+ * <code>true</code> values, a bitmap, or a list of runs of consecutive
+ * <code>true</code> values. This follows the design of Roaring bitmaps.
+ * <p>
+ * Bit vectors of this kind can be combined efficiently with
+ * {@link #and(CompressedBitVector)}, {@link #or(CompressedBitVector)}, and
+ * {@link #andNot(CompressedBitVector)}. The positions of <code>true</code>
+ * values can be iterated with {@link #nextSetBit(long)}, without creating an
+ * object for each position. A bit vector can be stored with
+ * {@link #write(DataOutput)} and loaded with {@link #read(DataInput)}.
+ * <p>
+ * Like {@link BitVectorImpl}, this bit vector is <i>flexible</i>: bits can be
+ * set at any non-negative position, and positions outside the vector contain
+ * <code>false</code>.
+ *
+ * @author agent
+ *
+ */
+public class CompressedBitVector implements RankedBitVector,
+		Iterable<Boolean> {
+
+	static final int LG_CHUNK_SIZE = 16;
+	static final int CHUNK_MASK = (1 << LG_CHUNK_SIZE) - 1;
+
+	/**
+	 * Number of words of a bitmap chunk.
+	 */
+	static final int BITMAP_WORDS = 1 << (LG_CHUNK_SIZE - BitVectorImpl.LG_WORD_SIZE);
+
+	/**
+	 * Maximal number of positions in an array chunk. Chunks with more
+	 * positions are stored as bitmaps, which need the same space.
+	 */
+	static final int MAX_ARRAY_SIZE = 4096;
+
+	static final byte TYPE_ARRAY = 0;
+	static final byte TYPE_BITMAP = 1;
+	static final byte TYPE_RUN = 2;
+
+	/**
+	 * Set of positions within one chunk, given as numbers from 0 to 65535.
+	 */
+	abstract static class Container {
+
+		abstract int getCardinality();
+
+		abstract boolean contains(int value);
+
+		/**
+		 * Adds a value. The result may be a container of another type.
+		 */
+		abstract Container add(int value);
+
+		/**
+		 * Removes a value. The result may be a container of another type.
+		 */
+		abstract Container remove(int value);
+
+		/**
+		 * @return number of values that are less than or equal to the given
+		 *         value
+		 */
+		abstract int rank(int value);
+
+		/**
+		 * @return the value with the given number of smaller values
+		 */
+		abstract int select(int rank);
+
+		/**
+		 * @return the smallest value that is greater than or equal to the
+		 *         given value, or -1 if there is none
+		 */
+		abstract int nextValue(int from);
+
+		/**
+		 * Sets the bits of all values in the given bitmap.
+		 */
+		abstract void orInto(long[] words);
+
+		abstract Container copy();
+
+		abstract byte getType();
+
+		abstract void write(DataOutput output) throws IOException;
+
+		long[] toWords() {
+			long[] words = new long[BITMAP_WORDS];
+			orInto(words);
+			return words;
+		}
+
+		/**
+		 * @return the position of the value that is not in the container and
+		 *         has the given number of smaller values that are not in the
+		 *         container
+		 */
+		int selectZero(int rank) {
+			long[] words = toWords();
+			int leftZeros = rank;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				int zeros = Long.bitCount(~words[i]);
+				if (zeros > leftZeros) {
+					return (i << BitVectorImpl.LG_WORD_SIZE)
+							+ BitVectorImpl.selectInWord(~words[i], leftZeros);
+				}
+				leftZeros -= zeros;
+			}
+			throw new IndexOutOfBoundsException("Rank " + rank
+					+ " is out of bounds.");
+		}
+
+		/**
+		 * Returns the most compact container for the given bitmap.
+		 *
+		 * @param words
+		 *            bitmap, which is used by the result if it is a bitmap
+		 *            container
+		 * @return the container, or null if the bitmap is empty
+		 */
+		static Container fromWords(long[] words) {
+			int cardinality = 0;
+			int runCount = 0;
+			long previousWord = 0;
+			for (long word : words) {
+				cardinality += Long.bitCount(word);
+				runCount += Long.bitCount(word
+						& ~((word << 1) | (previousWord >>> 63)));
+				previousWord = word;
+			}
+			if (cardinality == 0) {
+				return null;
+			}
+
+			int arrayBytes = 2 * cardinality;
+			int runBytes = 4 * runCount + 2;
+			if (runBytes < Math.min(arrayBytes, 8 * BITMAP_WORDS)) {
+				return new RunContainer(words, runCount, cardinality);
+			} else if (cardinality <= MAX_ARRAY_SIZE) {
+				return new ArrayContainer(words, cardinality);
+			} else {
+				return new BitmapContainer(words, cardinality);
+			}
+		}
+
+		static Container read(DataInput input) throws IOException {
+			byte type = input.readByte();
+			switch (type) {
+			case TYPE_ARRAY:
+				int cardinality = input.readChar();
+				char[] values = new char[cardinality];
+				for (int i = 0; i < cardinality; i++) {
+					values[i] = input.readChar();
+				}
+				return new ArrayContainer(values, cardinality);
+			case TYPE_BITMAP:
+				long[] words = new long[BITMAP_WORDS];
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					words[i] = input.readLong();
+				}
+				return fromWords(words);
+			case TYPE_RUN:
+				int runCount = input.readChar();
+				char[] starts = new char[runCount];
+				char[] lengths = new char[runCount];
+				for (int i = 0; i < runCount; i++) {
+					starts[i] = input.readChar();
+					lengths[i] = input.readChar();
+				}
+				return new RunContainer(starts, lengths, runCount);
+			default:
+				throw new IOException("Unknown chunk type " + type + ".");
+			}
+		}
+
+	}
+
+	/**
+	 * Container that stores its values in a sorted array.
+	 */
+	static final class ArrayContainer extends Container {
+
+		char[] values;
+		int cardinality;
+
+		ArrayContainer() {
+			this.values = new char[4];
+		}
+
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		ArrayContainer(long[] words, int cardinality) {
+			this.values = new char[cardinality];
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					this.values[this.cardinality++] = (char) ((i << BitVectorImpl.LG_WORD_SIZE) + Long
+							.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		int getCardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			return Arrays.binarySearch(this.values, 0, this.cardinality,
+					(char) value) >= 0;
+		}
+
+		@Override
+		Container add(int value) {
+			int index = Arrays.binarySearch(this.values, 0, this.cardinality,
+					(char) value);
+			if (index >= 0) {
+				return this;
+			}
+			if (this.cardinality == MAX_ARRAY_SIZE) {
+				long[] words = toWords();
+				words[value >>> BitVectorImpl.LG_WORD_SIZE] |= 1L << value;
+				return new BitmapContainer(words, this.cardinality + 1);
+			}
+			index = -index - 1;
+			if (this.cardinality == this.values.length) {
+				this.values = Arrays.copyOf(this.values,
+						Math.min(2 * this.cardinality, MAX_ARRAY_SIZE));
+			}
+			System.arraycopy(this.values, index, this.values, index + 1,
+					this.cardinality - index);
+			this.values[index] = (char) value;
+			this.cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(int value) {
+			int index = Arrays.binarySearch(this.values, 0, this.cardinality,
+					(char) value);
+			if (index >= 0) {
+				System.arraycopy(this.values, index + 1, this.values, index,
+						this.cardinality - index - 1);
+				this.cardinality--;
+			}
+			return this;
+		}
+
+		@Override
+		int rank(int value) {
+			int index = Arrays.binarySearch(this.values, 0, this.cardinality,
+					(char) value);
+			return index >= 0 ? index + 1 : -index - 1;
+		}
+
+		@Override
+		int select(int rank) {
+			return this.values[rank];
+		}
+
+		@Override
+		int nextValue(int from) {
+			int index = Arrays.binarySearch(this.values, 0, this.cardinality,
+					(char) from);
+			if (index >= 0) {
+				return from;
+			}
+			index = -index - 1;
+			return index < this.cardinality ? this.values[index] : -1;
+		}
+
+		@Override
+		void orInto(long[] words) {
+			for (int i = 0; i < this.cardinality; i++) {
+				words[this.values[i] >>> BitVectorImpl.LG_WORD_SIZE] |= 1L << this.values[i];
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(this.values,
+					Math.max(this.cardinality, 4)), this.cardinality);
+		}
+
+		@Override
+		byte getType() {
+			return TYPE_ARRAY;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			output.writeChar(this.cardinality);
+			for (int i = 0; i < this.cardinality; i++) {
+				output.writeChar(this.values[i]);
+			}
+		}
+
+		/**
+		 * @return a container with the values of this container that are
+		 *         (or are not) in the given container
+		 */
+		Container filter(Container other, boolean keep) {
+			char[] result = new char[this.cardinality];
+			int size = 0;
+			for (int i = 0; i < this.cardinality; i++) {
+				if (other.contains(this.values[i]) == keep) {
+					result[size++] = this.values[i];
+				}
+			}
+			return size == 0 ? null : new ArrayContainer(result, size);
+		}
+
+	}
+
+	/**
+	 * Container that stores its values in a bitmap of 65536 bits.
+	 */
+	static final class BitmapContainer extends Container {
+
+		final long[] words;
+		int cardinality;
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int getCardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			return ((this.words[value >>> BitVectorImpl.LG_WORD_SIZE] >>> value) & 1) != 0;
+		}
+
+		@Override
+		Container add(int value) {
+			int index = value >>> BitVectorImpl.LG_WORD_SIZE;
+			long word = this.words[index] | (1L << value);
+			if (word != this.words[index]) {
+				this.words[index] = word;
+				this.cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(int value) {
+			int index = value >>> BitVectorImpl.LG_WORD_SIZE;
+			long word = this.words[index] & ~(1L << value);
+			if (word != this.words[index]) {
+				this.words[index] = word;
+				this.cardinality--;
+				if (this.cardinality <= MAX_ARRAY_SIZE) {
+					return new ArrayContainer(this.words, this.cardinality);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		int rank(int value) {
+			int index = value >>> BitVectorImpl.LG_WORD_SIZE;
+			int ret = 0;
+			for (int i = 0; i < index; i++) {
+				ret += Long.bitCount(this.words[i]);
+			}
+			return ret
+					+ Long.bitCount(this.words[index]
+							& (-1L >>> (BitVectorImpl.WORD_MASK - (value & BitVectorImpl.WORD_MASK))));
+		}
+
+		@Override
+		int select(int rank) {
+			int leftValues = rank;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				int count = Long.bitCount(this.words[i]);
+				if (count > leftValues) {
+					return (i << BitVectorImpl.LG_WORD_SIZE)
+							+ BitVectorImpl.selectInWord(this.words[i],
+									leftValues);
+				}
+				leftValues -= count;
+			}
+			throw new IndexOutOfBoundsException("Rank " + rank
+					+ " is out of bounds.");
+		}
+
+		@Override
+		int nextValue(int from) {
+			int index = from >>> BitVectorImpl.LG_WORD_SIZE;
+			long word = this.words[index] & (-1L << from);
+			while (word == 0) {
+				index++;
+				if (index == BITMAP_WORDS) {
+					return -1;
+				}
+				word = this.words[index];
+			}
+			return (index << BitVectorImpl.LG_WORD_SIZE)
+					+ Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		void orInto(long[] words) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				words[i] |= this.words[i];
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(Arrays.copyOf(this.words,
+					BITMAP_WORDS), this.cardinality);
+		}
+
+		@Override
+		byte getType() {
+			return TYPE_BITMAP;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			for (long word : this.words) {
+				output.writeLong(word);
+			}
+		}
+
+	}
+
+	/**
+	 * Container that stores its values as runs of consecutive values. Run
+	 * containers are not modified; changes create a container of another
+	 * type.
+	 */
+	static final class RunContainer extends Container {
+
+		/**
+		 * First values of the runs.
+		 */
+		final char[] starts;
+
+		/**
+		 * Number of values of each run, minus one.
+		 */
+		final char[] lengths;
+
+		final int runCount;
+		final int cardinality;
+
+		RunContainer(char[] starts, char[] lengths, int runCount) {
+			this.starts = starts;
+			this.lengths = lengths;
+			this.runCount = runCount;
+			int cardinality = 0;
+			for (int i = 0; i < runCount; i++) {
+				cardinality += this.lengths[i] + 1;
+			}
+			this.cardinality = cardinality;
+		}
+
+		RunContainer(long[] words, int runCount, int cardinality) {
+			this.starts = new char[runCount];
+			this.lengths = new char[runCount];
+			this.runCount = runCount;
+			this.cardinality = cardinality;
+			int run = 0;
+			int value = nextValueInWords(words, 0, true);
+			while (value >= 0) {
+				int end = nextValueInWords(words, value, false);
+				if (end < 0) {
+					end = 1 << LG_CHUNK_SIZE;
+				}
+				this.starts[run] = (char) value;
+				this.lengths[run] = (char) (end - value - 1);
+				run++;
+				value = end < (1 << LG_CHUNK_SIZE) ? nextValueInWords(words,
+						end, true) : -1;
+			}
+		}
+
+		/**
+		 * @return the first position at or after <i>from</i> where the bitmap
+		 *         contains <i>bit</i>, or -1 if there is none
+		 */
+		static int nextValueInWords(long[] words, int from, boolean bit) {
+			int index = from >>> BitVectorImpl.LG_WORD_SIZE;
+			long word = (bit ? words[index] : ~words[index]) & (-1L << from);
+			while (word == 0) {
+				index++;
+				if (index == BITMAP_WORDS) {
+					return -1;
+				}
+				word = bit ? words[index] : ~words[index];
+			}
+			return (index << BitVectorImpl.LG_WORD_SIZE)
+					+ Long.numberOfTrailingZeros(word);
+		}
+
+		/**
+		 * @return index of the last run that starts at or before the given
+		 *         value, or -1 if there is none
+		 */
+		int findRun(int value) {
+			int index = Arrays.binarySearch(this.starts, 0, this.runCount,
+					(char) value);
+			return index >= 0 ? index : -index - 2;
+		}
+
+		/**
+		 * @return a modifiable container with the same values
+		 */
+		Container toModifiableContainer() {
+			long[] words = toWords();
+			if (this.cardinality <= MAX_ARRAY_SIZE) {
+				return new ArrayContainer(words, this.cardinality);
+			} else {
+				return new BitmapContainer(words, this.cardinality);
+			}
+		}
+
+		@Override
+		int getCardinality() {
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(int value) {
+			int run = findRun(value);
+			return run >= 0 && value <= this.starts[run] + this.lengths[run];
+		}
+
+		@Override
+		Container add(int value) {
+			if (contains(value)) {
+				return this;
+			}
+			return toModifiableContainer().add(value);
+		}
+
+		@Override
+		Container remove(int value) {
+			if (!contains(value)) {
+				return this;
+			}
+			return toModifiableContainer().remove(value);
+		}
+
+		@Override
+		int rank(int value) {
+			int ret = 0;
+			for (int i = 0; i < this.runCount && this.starts[i] <= value; i++) {
+				ret += Math.min(value - this.starts[i], this.lengths[i]) + 1;
+			}
+			return ret;
+		}
+
+		@Override
+		int select(int rank) {
+			int leftValues = rank;
+			for (int i = 0; i < this.runCount; i++) {
+				if (this.lengths[i] >= leftValues) {
+					return this.starts[i] + leftValues;
+				}
+				leftValues -= this.lengths[i] + 1;
+			}
+			throw new IndexOutOfBoundsException("Rank " + rank
+					+ " is out of bounds.");
+		}
+
+		@Override
+		int nextValue(int from) {
+			int run = findRun(from);
+			if (run >= 0 && from <= this.starts[run] + this.lengths[run]) {
+				return from;
+			}
+			return run + 1 < this.runCount ? this.starts[run + 1] : -1;
+		}
+
+		@Override
+		void orInto(long[] words) {
+			for (int i = 0; i < this.runCount; i++) {
+				int start = this.starts[i];
+				int end = start + this.lengths[i];
+				int firstWord = start >>> BitVectorImpl.LG_WORD_SIZE;
+				int lastWord = end >>> BitVectorImpl.LG_WORD_SIZE;
+				for (int j = firstWord; j <= lastWord; j++) {
+					long word = -1L;
+					if (j == firstWord) {
+						word &= -1L << start;
+					}
+					if (j == lastWord) {
+						word &= -1L >>> (BitVectorImpl.WORD_MASK - (end & BitVectorImpl.WORD_MASK));
+					}
+					words[j] |= word;
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			return this;
+		}
+
+		@Override
+		byte getType() {
+			return TYPE_RUN;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			output.writeChar(this.runCount);
+			for (int i = 0; i < this.runCount; i++) {
+				output.writeChar(this.starts[i]);
+				output.writeChar(this.lengths[i]);
+			}
+		}
+
+	}
+
+	/**
+	 * Keys of the stored chunks in ascending order. The key of a chunk is
+	 * the position of its first bit divided by 2<sup>16</sup>.
+	 */
+	long[] keys;
+
+	/**
+	 * Containers of the stored chunks.
+	 */
+	Container[] containers;
+
+	int chunkCount;
+
+	long size;
+
+	/**
+	 * Number of <code>true</code> values in all chunks up to and including
+	 * the chunk at each index, or null if it must be computed again.
+	 */
+	long[] cumulativeCardinalities;
+
+	/**
+	 * Constructor of a bit vector of size 0.
+	 */
+	public CompressedBitVector() {
+		this.keys = new long[4];
+		this.containers = new Container[4];
+	}
+
+	/**
+	 * Copy constructor of a bit vector.
+	 *
+	 * @param bitVector
+	 *            bit vector
+	 */
+	public CompressedBitVector(BitVector bitVector) {
+		this();
+		if (bitVector instanceof CompressedBitVector) {
+			CompressedBitVector other = (CompressedBitVector) bitVector;
+			for (int i = 0; i < other.chunkCount; i++) {
+				addChunk(other.keys[i], other.containers[i].copy());
+			}
+		} else {
+			for (long index = 0; index < bitVector.size(); index++) {
+				if (bitVector.getBit(index)) {
+					setBit(index, true);
+				}
+			}
+		}
+		this.size = bitVector.size();
+	}
+
+	/**
+	 * Reads a bit vector that was written with {@link #write(DataOutput)}.
+	 *
+	 * @param input
+	 *            the input to read from
+	 * @return the bit vector
+	 * @throws IOException
+	 *             if the input could not be read or does not contain a bit
+	 *             vector
+	 */
+	public static CompressedBitVector read(DataInput input) throws IOException {
+		CompressedBitVector ret = new CompressedBitVector();
+		ret.size = input.readLong();
+		int chunkCount = input.readInt();
+		for (int i = 0; i < chunkCount; i++) {
+			long key = input.readLong();
+			if ((i > 0 && key <= ret.keys[i - 1])
+					|| key > (ret.size - 1) >>> LG_CHUNK_SIZE) {
+				throw new IOException("Invalid chunk " + key + ".");
+			}
+			Container container = Container.read(input);
+			if (container != null) {
+				ret.addChunk(key, container);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes this bit vector in a compact binary form, which can be read with
+	 * {@link #read(DataInput)}.
+	 *
+	 * @param output
+	 *            the output to write to
+	 * @throws IOException
+	 *             if the output could not be written
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeLong(this.size);
+		output.writeInt(this.chunkCount);
+		for (int i = 0; i < this.chunkCount; i++) {
+			output.writeLong(this.keys[i]);
+			output.writeByte(this.containers[i].getType());
+			this.containers[i].write(output);
+		}
+	}
+
+	/**
+	 * Returns a new bit vector that contains <code>true</code> at the
+	 * positions where both this and the other bit vector contain
+	 * <code>true</code>. Its size is the larger size of the two bit vectors.
+	 *
+	 * @param other
+	 *            the other bit vector
+	 * @return the conjunction of the bit vectors
+	 */
+	public CompressedBitVector and(CompressedBitVector other) {
+		CompressedBitVector ret = new CompressedBitVector();
+		int i = 0;
+		int j = 0;
+		while (i < this.chunkCount && j < other.chunkCount) {
+			if (this.keys[i] < other.keys[j]) {
+				i++;
+			} else if (this.keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Container a = this.containers[i];
+				Container b = other.containers[j];
+				Container container;
+				if (a instanceof ArrayContainer) {
+					container = ((ArrayContainer) a).filter(b, true);
+				} else if (b instanceof ArrayContainer) {
+					container = ((ArrayContainer) b).filter(a, true);
+				} else {
+					long[] words = a.toWords();
+					long[] otherWords = b.toWords();
+					for (int k = 0; k < BITMAP_WORDS; k++) {
+						words[k] &= otherWords[k];
+					}
+					container = Container.fromWords(words);
+				}
+				if (container != null) {
+					ret.addChunk(this.keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		ret.size = Math.max(this.size, other.size);
+		return ret;
+	}
+
+	/**
+	 * Returns a new bit vector that contains <code>true</code> at the
+	 * positions where this or the other bit vector contain <code>true</code>.
+	 * Its size is the larger size of the two bit vectors.
+	 *
+	 * @param other
+	 *            the other bit vector
+	 * @return the disjunction of the bit vectors
+	 */
+	public CompressedBitVector or(CompressedBitVector other) {
+		CompressedBitVector ret = new CompressedBitVector();
+		int i = 0;
+		int j = 0;
+		while (i < this.chunkCount || j < other.chunkCount) {
+			if (j == other.chunkCount
+					|| (i < this.chunkCount && this.keys[i] < other.keys[j])) {
+				ret.addChunk(this.keys[i], this.containers[i].copy());
+				i++;
+			} else if (i == this.chunkCount || this.keys[i] > other.keys[j]) {
+				ret.addChunk(other.keys[j], other.containers[j].copy());
+				j++;
+			} else {
+				long[] words = this.containers[i].toWords();
+				other.containers[j].orInto(words);
+				ret.addChunk(this.keys[i], Container.fromWords(words));
+				i++;
+				j++;
+			}
+		}
+		ret.size = Math.max(this.size, other.size);
+		return ret;
+	}
+
+	/**
+	 * Returns a new bit vector that contains <code>true</code> at the
+	 * positions where this bit vector contains <code>true</code> and the other
+	 * bit vector contains <code>false</code>. Its size is the size of this
+	 * bit vector.
+	 *
+	 * @param other
+	 *            the other bit vector
+	 * @return the difference of the bit vectors
+	 */
+	public CompressedBitVector andNot(CompressedBitVector other) {
+		CompressedBitVector ret = new CompressedBitVector();
+		int j = 0;
+		for (int i = 0; i < this.chunkCount; i++) {
+			while (j < other.chunkCount && other.keys[j] < this.keys[i]) {
+				j++;
+			}
+			Container a = this.containers[i];
+			Container container;
+			if (j == other.chunkCount || other.keys[j] != this.keys[i]) {
+				container = a.copy();
+			} else if (a instanceof ArrayContainer) {
+				container = ((ArrayContainer) a).filter(other.containers[j],
+						false);
+			} else {
+				long[] words = a.toWords();
+				long[] otherWords = other.containers[j].toWords();
+				for (int k = 0; k < BITMAP_WORDS; k++) {
+					words[k] &= ~otherWords[k];
+				}
+				container = Container.fromWords(words);
+			}
+			if (container != null) {
+				ret.addChunk(this.keys[i], container);
+			}
+		}
+		ret.size = this.size;
+		return ret;
+	}
+
+	/**
+	 * Converts all chunks to their most compact representation. This is
+	 * useful after setting many bits, since chunks that are modified are not
+	 * converted to runs automatically.
+	 */
+	public void runOptimize() {
+		for (int i = 0; i < this.chunkCount; i++) {
+			this.containers[i] = Container.fromWords(this.containers[i]
+					.toWords());
+		}
+	}
+
+	/**
+	 * Returns the number of <code>true</code> values in this bit vector.
+	 *
+	 * @return number of <code>true</code> values
+	 */
+	public long cardinality() {
+		return this.chunkCount == 0 ? 0
+				: getCumulativeCardinalities()[this.chunkCount - 1];
+	}
+
+	/**
+	 * Returns the first position at or after the given position that contains
+	 * <code>true</code>. The positions of all <code>true</code> values can be
+	 * iterated as follows:
+	 *
+	 * <pre>
+	 * for (long i = bv.nextSetBit(0); i &gt;= 0; i = bv.nextSetBit(i + 1)) {
+	 * 	// ...
+	 * }
+	 * </pre>
+	 *
+	 * @param position
+	 *            position to start from
+	 * @return the position of the next <code>true</code> value, or -1 if there
+	 *         is none
+	 */
+	public long nextSetBit(long position) {
+		assertNonNegativePosition(position);
+		long key = position >>> LG_CHUNK_SIZE;
+		int index = findChunk(key);
+		if (index >= 0) {
+			int value = this.containers[index].nextValue((int) (position & CHUNK_MASK));
+			if (value >= 0) {
+				return (key << LG_CHUNK_SIZE) + value;
+			}
+			index++;
+		} else {
+			index = -index - 1;
+		}
+		if (index < this.chunkCount) {
+			return (this.keys[index] << LG_CHUNK_SIZE)
+					+ this.containers[index].nextValue(0);
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean addBit(boolean bit) {
+		setBit(this.size, bit);
+		return true;
+	}
+
+	/**
+	 * Adds a chunk after all existing chunks.
+	 */
+	void addChunk(long key, Container container) {
+		insertChunk(this.chunkCount, key, container);
+	}
+
+	/**
+	 * @param position
+	 *            position
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	void assertNonNegativePosition(long position)
+			throws IndexOutOfBoundsException {
+		if ((position < 0)) {
+			throw new IndexOutOfBoundsException("Position " + position
+					+ " is out of bounds.");
+		}
+	}
+
+	@Override
+	public long countBits(boolean bit, long position) {
+		assertNonNegativePosition(position);
+		long key = position >>> LG_CHUNK_SIZE;
+		int index = findChunk(key);
+		long trueValues;
+		if (index >= 0) {
+			trueValues = (index > 0 ? getCumulativeCardinalities()[index - 1]
+					: 0)
+					+ this.containers[index]
+							.rank((int) (position & CHUNK_MASK));
+		} else {
+			index = -index - 1;
+			trueValues = index > 0 ? getCumulativeCardinalities()[index - 1]
+					: 0;
+		}
+		return bit ? trueValues : ((position + 1) - trueValues);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BitVector)) {
+			return false;
+		}
+		BitVector other = (BitVector) obj;
+		if (this.size != other.size()) {
+			return false;
+		}
+
+		if (other instanceof CompressedBitVector) {
+			CompressedBitVector otherCompressed = (CompressedBitVector) other;
+			if (this.chunkCount != otherCompressed.chunkCount) {
+				return false;
+			}
+			for (int i = 0; i < this.chunkCount; i++) {
+				if (this.keys[i] != otherCompressed.keys[i]
+						|| !Arrays.equals(this.containers[i].toWords(),
+								otherCompressed.containers[i].toWords())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		for (long i = 0; i < this.size; i++) {
+			if (getBit(i) != other.getBit(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            key of a chunk
+	 * @return the index of the chunk, or (-(insertion point) - 1) if there is
+	 *         no such chunk
+	 */
+	int findChunk(long key) {
+		if (this.chunkCount > 0 && this.keys[this.chunkCount - 1] == key) {
+			return this.chunkCount - 1; // common case when adding bits
+		}
+		return Arrays.binarySearch(this.keys, 0, this.chunkCount, key);
+	}
+
+	@Override
+	public long findPosition(boolean bit, long nOccurrence) {
+		if (nOccurrence <= 0) {
+			return NOT_FOUND;
+		}
+		long[] cumulative = getCumulativeCardinalities();
+		long position;
+		if (bit) {
+			if (this.chunkCount == 0
+					|| nOccurrence > cumulative[this.chunkCount - 1]) {
+				return NOT_FOUND;
+			}
+			// cumulative cardinalities are strictly increasing
+			int index = Arrays.binarySearch(cumulative, 0, this.chunkCount,
+					nOccurrence);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			long before = index > 0 ? cumulative[index - 1] : 0;
+			position = (this.keys[index] << LG_CHUNK_SIZE)
+					+ this.containers[index]
+							.select((int) (nOccurrence - before - 1));
+		} else {
+			// find the first chunk that ends with enough false values
+			int index = 0;
+			while (index < this.chunkCount
+					&& ((this.keys[index] + 1) << LG_CHUNK_SIZE)
+							- cumulative[index] < nOccurrence) {
+				index++;
+			}
+			long before = index > 0 ? cumulative[index - 1] : 0;
+			if (index == this.chunkCount
+					|| nOccurrence <= (this.keys[index] << LG_CHUNK_SIZE)
+							- before) {
+				// the position is not in a stored chunk
+				position = nOccurrence - 1 + before;
+			} else {
+				long zerosBefore = (this.keys[index] << LG_CHUNK_SIZE)
+						- before;
+				position = (this.keys[index] << LG_CHUNK_SIZE)
+						+ this.containers[index]
+								.selectZero((int) (nOccurrence - zerosBefore - 1));
+			}
+		}
+		return position < this.size ? position : NOT_FOUND;
+	}
+
+	@Override
+	public boolean getBit(long position) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			return false;
+		}
+		int index = findChunk(position >>> LG_CHUNK_SIZE);
+		return index >= 0
+				&& this.containers[index]
+						.contains((int) (position & CHUNK_MASK));
+	}
+
+	/**
+	 * @return the number of <code>true</code> values up to and including each
+	 *         chunk
+	 */
+	long[] getCumulativeCardinalities() {
+		if (this.cumulativeCardinalities == null) {
+			long[] cumulative = new long[this.chunkCount];
+			long count = 0;
+			for (int i = 0; i < this.chunkCount; i++) {
+				count += this.containers[i].getCardinality();
+				cumulative[i] = count;
+			}
+			this.cumulativeCardinalities = cumulative;
+		}
+		return this.cumulativeCardinalities;
+	}
+
+	@Override
+	public int hashCode() {
+		// same as BitVectorImpl, so that equal bit vectors have equal hashes
+		int ret = (int) this.size;
+		for (int i = 0; i < this.chunkCount; i++) {
+			for (long word : this.containers[i].toWords()) {
+				ret += (0x1F * word);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Inserts a chunk at the given index.
+	 */
+	void insertChunk(int index, long key, Container container) {
+		if (this.chunkCount == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, 2 * this.chunkCount);
+			this.containers = Arrays.copyOf(this.containers,
+					2 * this.chunkCount);
+		}
+		System.arraycopy(this.keys, index, this.keys, index + 1,
+				this.chunkCount - index);
+		System.arraycopy(this.containers, index, this.containers, index + 1,
+				this.chunkCount - index);
+		this.keys[index] = key;
+		this.containers[index] = container;
+		this.chunkCount++;
+		this.cumulativeCardinalities = null;
+	}
+
+	@Override
+	public Iterator<Boolean> iterator() {
+		return new BitVectorIterator(this);
+	}
+
+	/**
+	 * Removes the chunk at the given index.
+	 */
+	void removeChunk(int index) {
+		System.arraycopy(this.keys, index + 1, this.keys, index,
+				this.chunkCount - index - 1);
+		System.arraycopy(this.containers, index + 1, this.containers, index,
+				this.chunkCount - index - 1);
+		this.chunkCount--;
+		this.containers[this.chunkCount] = null;
+	}
+
+	@Override
+	public void setBit(long position, boolean bit) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			this.size = position + 1;
+		}
+		long key = position >>> LG_CHUNK_SIZE;
+		int value = (int) (position & CHUNK_MASK);
+		int index = findChunk(key);
+		if (bit) {
+			if (index < 0) {
+				insertChunk(-index - 1, key, new ArrayContainer().add(value));
+			} else {
+				this.containers[index] = this.containers[index].add(value);
+			}
+		} else if (index >= 0) {
+			Container container = this.containers[index].remove(value);
+			if (container.getCardinality() == 0) {
+				removeChunk(index);
+			} else {
+				this.containers[index] = container;
+			}
+		}
+		this.cumulativeCardinalities = null;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (long position = 0; position < this.size; position++) {
+			sb.append(getBit(position) ? "1" : "0");
+		}
+		return sb.toString();
+	}
+
+}
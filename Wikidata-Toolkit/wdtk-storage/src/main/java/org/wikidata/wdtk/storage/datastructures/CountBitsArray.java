@@ -20,11 +20,7 @@ package org.wikidata.wdtk.storage.datastructures;
  * #L%
  */
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-
-import org.apache.commons.lang3.ArrayUtils;
 
 /**
  * This class keeps the count of occurrences of <code>true</code> values in a
@@ -39,9 +35,14 @@ import org.apache.commons.lang3.ArrayUtils;
  * since it has only one bit, and it does not contain more <code>true</code>
  * values.
  * <p>
- * For efficiency reasons, this class assumes that the bit vector is unmodified.
- * Any modification of the bit vector needs to be notified in
- * {@link FindPositionArray#update()}.
+ * The bits are counted word by word, so that counting within a block takes
+ * at most <i>blockSize</i> / 64 + 1 steps. The array is extended when bits are
+ * added to the bit vector, and only the blocks after a modified position are
+ * computed again.
+ * <p>
+ * For efficiency reasons, this class assumes that the bit vector is only
+ * modified by adding bits. Any other modification of the bit vector needs to
+ * be notified in {@link CountBitsArray#update(long)}.
  * 
  * @see RankedBitVectorImpl
  * 
@@ -61,15 +62,24 @@ class CountBitsArray {
 
 	/**
 	 * This array contains the number of <code>true</code> values found in each
-	 * block.
+	 * block. Only the first {@link #countArraySize} cells are used.
+	 */
+	long[] countArray = new long[1];
+
+	/**
+	 * Number of cells of {@link #countArray} that are used.
+	 */
+	int countArraySize;
+
+	/**
+	 * Number of complete blocks whose counts are up to date.
 	 */
-	long[] countArray;
+	long validBlocks;
 
 	/**
-	 * If this value is <code>true</code>, there is a new bit vector and the
-	 * array needs to be updated.
+	 * Size of the bit vector when the array was last updated.
 	 */
-	boolean hasChanged;
+	long indexedSize;
 
 	/**
 	 * Creates a count array with a given block size.
@@ -86,7 +96,6 @@ class CountBitsArray {
 							+ blockSize + ".");
 		}
 		this.bitVector = bitVector;
-		this.hasChanged = true;
 		this.blockSize = blockSize;
 	}
 
@@ -97,14 +106,20 @@ class CountBitsArray {
 	 */
 	public long countBits(boolean bit, long position) {
 		updateCount();
-		int blockNumber = (int) (position / this.blockSize);
-		long mark = ((long) blockNumber) * this.blockSize;
+		long blockNumber = position / this.blockSize;
+		long mark = blockNumber * this.blockSize;
 		long trueValues = 0;
-		if (blockNumber > 0) {
-			trueValues = this.countArray[blockNumber - 1];
-		}
-		for (long index = mark; index <= position; index++) {
-			trueValues += this.bitVector.getBit(index) ? 1 : 0;
+		if (blockNumber > this.countArraySize) {
+			// the position is after the end of the bit vector
+			if (this.countArraySize > 0) {
+				trueValues = this.countArray[this.countArraySize - 1];
+			}
+		} else {
+			if (blockNumber > 0) {
+				trueValues = this.countArray[(int) blockNumber - 1];
+			}
+			trueValues += BitVectorImpl.countTrueBits(this.bitVector, mark,
+					Math.min(position + 1, this.bitVector.size()));
 		}
 		return bit ? trueValues : ((position + 1) - trueValues);
 	}
@@ -118,60 +133,71 @@ class CountBitsArray {
 		return this.blockSize;
 	}
 
-	/**
-	 * Returns a list of Long that contains the indices of positions computed
-	 * according to the given bit vector.
-	 * 
-	 * @return a list of Long that contains the indices of positions computed
-	 *         according to the given bit vector
-	 */
-	List<Long> getCountList() {
-		List<Long> ret = new ArrayList<Long>();
-		long lastValue = 0;
-		int positionInBlock = 0;
-		for (long index = 0; index < this.bitVector.size(); index++) {
-			if (this.bitVector.getBit(index)) {
-				lastValue++;
-			}
-			positionInBlock++;
-			if (positionInBlock == this.blockSize) {
-				ret.add(lastValue);
-				positionInBlock = 0;
-			}
-		}
-		if (positionInBlock > 0) {
-			ret.add(lastValue);
-		}
-		return ret;
-	}
-
 	@Override
 	public String toString() {
 		updateCount();
-		return Arrays.toString(this.countArray);
+		return Arrays.toString(Arrays.copyOf(this.countArray,
+				this.countArraySize));
 	}
 
 	/**
 	 * Notifies this object that the bit vector has changed, and therefore, the
 	 * computed internal array must be updated.
-	 * 
-	 * @param bitVector
-	 *            new bit vector
 	 */
 	public void update() {
-		this.hasChanged = true;
+		update(0);
+	}
+
+	/**
+	 * Notifies this object that the bit vector has changed at the given
+	 * position, and therefore, the counts of the following blocks must be
+	 * updated.
+	 * 
+	 * @param position
+	 *            position of the modified bit
+	 */
+	public void update(long position) {
+		this.validBlocks = Math.min(this.validBlocks, position
+				/ this.blockSize);
+		this.indexedSize = -1;
 	}
 
 	/**
-	 * This method updates the internal array only if the bit vector has been
-	 * changed since the last update or creation of this class.
+	 * This method updates the internal array if the bit vector has been
+	 * changed since the last update or creation of this class. The counts are
+	 * computed in a single pass over the words of the bit vector, starting
+	 * after the last block whose count is still valid.
 	 */
 	void updateCount() {
-		if (this.hasChanged) {
-			this.countArray = ArrayUtils.toPrimitive(getCountList().toArray(
-					new Long[0]));
-			this.hasChanged = false;
+		long size = this.bitVector.size();
+		if (size == this.indexedSize) {
+			return;
+		}
+
+		long completeBlocks = size / this.blockSize;
+		long blocks = completeBlocks + ((size % this.blockSize) > 0 ? 1 : 0);
+		if (blocks > this.countArray.length) {
+			if (blocks > Integer.MAX_VALUE) {
+				throw new IllegalStateException(
+						"The bit vector has too many blocks.");
+			}
+			this.countArray = Arrays.copyOf(this.countArray, (int) Math.max(
+					blocks, Math.min(Integer.MAX_VALUE,
+							2L * this.countArray.length)));
+		}
+
+		long block = Math.min(this.validBlocks, completeBlocks);
+		long trueValues = block > 0 ? this.countArray[(int) block - 1] : 0;
+		for (; block < blocks; block++) {
+			long mark = block * this.blockSize;
+			trueValues += BitVectorImpl.countTrueBits(this.bitVector, mark,
+					Math.min(mark + this.blockSize, size));
+			this.countArray[(int) block] = trueValues;
 		}
+
+		this.countArraySize = (int) blocks;
+		this.validBlocks = completeBlocks;
+		this.indexedSize = size;
 	}
 
 }
@@ -20,11 +20,7 @@ package org.wikidata.wdtk.storage.datastructures;
  * #L%
  */
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-
-import org.apache.commons.lang3.ArrayUtils;
 
 /**
  * This class keeps the positions where the <i>n</i>-th <i>bit</i> value can be
@@ -53,9 +49,14 @@ import org.apache.commons.lang3.ArrayUtils;
  * Please observe that the blocks have the same size in number of occurrences,
  * but may cover different number of positions in the bit vector.
  * <p>
- * For efficiency reasons, this class assumes that the bit vector is unmodified.
- * Any modification of the bit vector needs to be notified in
- * {@link FindPositionArray#update()}.
+ * The bit vector is scanned word by word, and the position within a word is
+ * found with broadword operations. The array is extended when bits are added
+ * to the bit vector, and only the positions after a modified position are
+ * computed again.
+ * <p>
+ * For efficiency reasons, this class assumes that the bit vector is only
+ * modified by adding bits. Any other modification of the bit vector needs to
+ * be notified in {@link FindPositionArray#update(long)}.
  * 
  * @see RankedBitVectorImpl
  * 
@@ -79,15 +80,32 @@ class FindPositionArray {
 	final int blockSize;
 
 	/**
-	 * If this value is <code>true</code>, there is a new bit vector and the
-	 * array needs to be updated.
+	 * This array contains the position. Only the first
+	 * {@link #positionArraySize} cells are used.
+	 */
+	long[] positionArray = new long[] { -1L };
+	/*
+	 * The -1 is pointing to the previous position of the first valid position
+	 * of the bit vector, which starts at index 0. Since the zeroth occurrence
+	 * of a bit is undefined, the first occurrence can be at position 0, or
+	 * later.
+	 */
+
+	/**
+	 * Number of cells of {@link #positionArray} that are used.
+	 */
+	int positionArraySize = 1;
+
+	/**
+	 * Position up to which the bit vector has been scanned.
 	 */
-	boolean hasChanged;
+	long scannedSize;
 
 	/**
-	 * This array contains the position.
+	 * Number of occurrences found after the last position in the array and
+	 * before {@link #scannedSize}.
 	 */
-	long[] positionArray;
+	long pendingOccurrences;
 
 	/**
 	 * Constructs a new array using a given block size of occurrences.
@@ -131,7 +149,6 @@ class FindPositionArray {
 							+ blockSize + ".");
 		}
 		this.bitVector = bitVector;
-		this.hasChanged = true;
 		this.bit = bit;
 		this.blockSize = blockSize;
 	}
@@ -150,82 +167,94 @@ class FindPositionArray {
 		if (nOccurrence <= 0) {
 			return RankedBitVector.NOT_FOUND;
 		}
-		int findPos = (int) (nOccurrence / this.blockSize);
-		if (findPos < this.positionArray.length) {
-			long pos0 = this.positionArray[findPos];
+		long findPos = nOccurrence / this.blockSize;
+		if (findPos < this.positionArraySize) {
+			long pos0 = this.positionArray[(int) findPos];
 			long leftOccurrences = nOccurrence - (findPos * this.blockSize);
 			if (leftOccurrences == 0) {
 				return pos0;
 			}
-			for (long index = pos0 + 1; index < this.bitVector.size(); index++) {
-				if (this.bitVector.getBit(index) == this.bit) {
-					leftOccurrences--;
-				}
-				if (leftOccurrences == 0) {
-					return index;
-				}
-			}
+			return BitVectorImpl.findPosition(this.bitVector, this.bit,
+					pos0 + 1, leftOccurrences);
 		}
 		return RankedBitVector.NOT_FOUND;
 	}
 
-	/**
-	 * Returns a list of Long that contains the indices of positions computed
-	 * according to the given bit vector.
-	 * 
-	 * @return a list of Long that contains the indices of positions computed
-	 *         according to the given bit vector
-	 */
-	List<Long> getPositionList() {
-		List<Long> ret = new ArrayList<Long>();
-
-		ret.add(-1L);
-		/*
-		 * This -1 is pointing to the previous position of the first valid
-		 * position of the bit vector, which starts at index 0. Since the zeroth
-		 * occurrence of a bit is undefined, the first occurrence can be at
-		 * position 0, or later.
-		 */
-
-		long count = 0;
-		for (long index = 0; index < this.bitVector.size(); index++) {
-			if (this.bitVector.getBit(index) == this.bit) {
-				count++;
-			}
-			if (count >= this.blockSize) {
-				count = 0;
-				ret.add(index);
-			}
-		}
-		return ret;
-	}
-
 	@Override
 	public String toString() {
 		updateCount();
-		return Arrays.toString(this.positionArray);
+		return Arrays.toString(Arrays.copyOf(this.positionArray,
+				this.positionArraySize));
 	}
 
 	/**
 	 * Notifies this object that the bit vector has changed, and therefore, the
 	 * computed internal array must be updated.
-	 * 
-	 * @param bitVector
-	 *            new bit vector
 	 */
 	public void update() {
-		this.hasChanged = true;
+		update(0);
+	}
+
+	/**
+	 * Notifies this object that the bit vector has changed at the given
+	 * position, and therefore, the positions from there on must be updated.
+	 * 
+	 * @param position
+	 *            position of the modified bit
+	 */
+	public void update(long position) {
+		if (position >= this.scannedSize) {
+			return;
+		}
+		while (this.positionArray[this.positionArraySize - 1] >= position) {
+			this.positionArraySize--;
+		}
+		this.scannedSize = this.positionArray[this.positionArraySize - 1] + 1;
+		this.pendingOccurrences = 0;
 	}
 
 	/**
-	 * This method updates the internal array only if the bit vector has been
-	 * changed since the last update or creation of this class.
+	 * This method updates the internal array if bits have been added to the
+	 * bit vector since the last update. Only the part of the bit vector that
+	 * has not been scanned yet is inspected.
 	 */
 	void updateCount() {
-		if (this.hasChanged) {
-			this.positionArray = ArrayUtils.toPrimitive(getPositionList()
-					.toArray(new Long[0]));
-			this.hasChanged = false;
+		long size = this.bitVector.size();
+		if (this.scannedSize >= size) {
+			return;
 		}
+
+		long occurrences = this.bit ? BitVectorImpl.countTrueBits(
+				this.bitVector, this.scannedSize, size)
+				: (size - this.scannedSize)
+						- BitVectorImpl.countTrueBits(this.bitVector,
+								this.scannedSize, size);
+		while (this.pendingOccurrences + occurrences >= this.blockSize) {
+			long position = BitVectorImpl.findPosition(this.bitVector,
+					this.bit, this.scannedSize, this.blockSize
+							- this.pendingOccurrences);
+			occurrences -= this.blockSize - this.pendingOccurrences;
+			addPosition(position);
+			this.scannedSize = position + 1;
+			this.pendingOccurrences = 0;
+		}
+		this.pendingOccurrences += occurrences;
+		this.scannedSize = size;
 	}
+
+	/**
+	 * Appends a position to the array.
+	 * 
+	 * @param position
+	 *            position
+	 */
+	void addPosition(long position) {
+		if (this.positionArraySize == this.positionArray.length) {
+			this.positionArray = Arrays.copyOf(this.positionArray,
+					2 * this.positionArraySize);
+		}
+		this.positionArray[this.positionArraySize] = position;
+		this.positionArraySize++;
+	}
+
 }
@@ -0,0 +1,82 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Static methods shared by the primitive hash maps of this package.
+ *
+ * @author agent
+ *
+ */
+class HashMapUtils {
+
+	/**
+	 * Maximal number of entries per 4 slots before a map is resized.
+	 */
+	static final int MAX_LOAD_QUARTERS = 3;
+
+	private HashMapUtils() {
+	}
+
+	/**
+	 * Returns the number of slots that is needed for the given number of
+	 * entries. The result is a power of two.
+	 *
+	 * @param expectedSize
+	 *            expected number of entries
+	 * @param minimumCapacity
+	 *            minimal number of slots, which is a power of two
+	 * @return number of slots
+	 */
+	static int getCapacity(int expectedSize, int minimumCapacity) {
+		int capacity = minimumCapacity;
+		while (isFull(expectedSize, capacity)) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Returns true if the given number of entries needs more than the given
+	 * number of slots.
+	 */
+	static boolean isFull(int size, int capacity) {
+		return 4L * size > (long) MAX_LOAD_QUARTERS * capacity;
+	}
+
+	/**
+	 * Spreads the bits of an <code>int</code> key, so that consecutive keys
+	 * do not occupy consecutive slots.
+	 */
+	static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Spreads the bits of a <code>long</code> key.
+	 */
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,258 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Hash map from <code>int</code> keys to objects that does not create objects
+ * for its entries. It uses open addressing with linear probing. The map does
+ * not support null values.
+ * <p>
+ * Entries are visited through their slots, without allocating an iterator:
+ *
+ * <pre>
+ * for (int slot = map.nextSlot(-1); slot &gt;= 0; slot = map.nextSlot(slot)) {
+ * 	int key = map.keyAt(slot);
+ * 	V value = map.valueAt(slot);
+ * }
+ * </pre>
+ *
+ * @author agent
+ *
+ * @param <V>
+ *            type of values
+ */
+public class IntObjectHashMap<V> {
+
+	static final int MINIMUM_CAPACITY = 8;
+
+	/**
+	 * Keys of the entries. A slot is empty if its value is null. The entry
+	 * for key 0 is stored in the last slot.
+	 */
+	int[] keys;
+
+	Object[] values;
+
+	/**
+	 * Number of entries with a key other than 0.
+	 */
+	int size;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public IntObjectHashMap() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty map that can hold the given number of entries
+	 * without being resized.
+	 *
+	 * @param expectedSize
+	 *            expected number of entries
+	 */
+	public IntObjectHashMap(int expectedSize) {
+		allocate(HashMapUtils.getCapacity(expectedSize, MINIMUM_CAPACITY));
+	}
+
+	/**
+	 * Removes all entries from the map.
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns true if the map contains the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @return true if the map contains the key
+	 */
+	public boolean containsKey(int key) {
+		return findSlot(key) >= 0;
+	}
+
+	/**
+	 * Returns the value of the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @return the value of the key, or null if the map does not contain the
+	 *         key
+	 */
+	public V get(int key) {
+		int slot = findSlot(key);
+		return slot >= 0 ? valueAt(slot) : null;
+	}
+
+	/**
+	 * Returns the key of the entry in the given slot.
+	 *
+	 * @param slot
+	 *            slot returned by {@link #nextSlot(int)}
+	 * @return key
+	 */
+	public int keyAt(int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * Returns the first slot after the given slot that holds an entry.
+	 *
+	 * @param slot
+	 *            slot to start after, or -1 to find the first slot
+	 * @return the next slot with an entry, or -1 if there is none
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < this.values.length; i++) {
+			if (this.values[i] != null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sets the value of the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value, which must not be null
+	 * @return the previous value of the key, or null if the map did not
+	 *         contain the key
+	 * @throws NullPointerException
+	 *             if the value is null
+	 */
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not supported.");
+		}
+		int slot = findOrInsertSlot(key);
+		V ret = valueAt(slot);
+		this.values[slot] = value;
+		return ret;
+	}
+
+	/**
+	 * Returns the number of entries in the map.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return this.values[this.values.length - 1] != null ? this.size + 1
+				: this.size;
+	}
+
+	/**
+	 * Returns the value of the entry in the given slot.
+	 *
+	 * @param slot
+	 *            slot returned by {@link #nextSlot(int)}
+	 * @return value
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) this.values[slot];
+	}
+
+	/**
+	 * Allocates the arrays for the given number of slots, plus one slot for
+	 * key 0.
+	 */
+	void allocate(int capacity) {
+		this.keys = new int[capacity + 1];
+		this.values = new Object[capacity + 1];
+	}
+
+	/**
+	 * @return the slot of the key, or -1 if the map does not contain the key
+	 */
+	int findSlot(int key) {
+		if (key == 0) {
+			return this.values[this.values.length - 1] != null ? this.values.length - 1
+					: -1;
+		}
+		int mask = this.keys.length - 2;
+		int slot = HashMapUtils.hash(key) & mask;
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of the key, which is reserved for the key if the map
+	 *         does not contain it
+	 */
+	int findOrInsertSlot(int key) {
+		if (key == 0) {
+			return this.keys.length - 1;
+		}
+		int mask = this.keys.length - 2;
+		int slot = HashMapUtils.hash(key) & mask;
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (HashMapUtils.isFull(this.size + 1, mask + 1)) {
+			rehash();
+			return findOrInsertSlot(key);
+		}
+		this.keys[slot] = key;
+		this.size++;
+		return slot;
+	}
+
+	/**
+	 * Doubles the number of slots and inserts all entries again.
+	 */
+	void rehash() {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		int zeroSlot = oldKeys.length - 1;
+		allocate(2 * zeroSlot);
+		int mask = this.keys.length - 2;
+		for (int i = 0; i < zeroSlot; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = HashMapUtils.hash(oldKeys[i]) & mask;
+				while (this.keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+		this.values[this.keys.length - 1] = oldValues[zeroSlot];
+	}
+
+}
@@ -0,0 +1,269 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Hash map from <code>long</code> keys to <code>long</code> values that does
+ * not create objects for its entries. It uses open addressing with linear
+ * probing. Keys that have not been added are mapped to 0, so that the map can
+ * be used for counting with {@link #addTo(long, long)}.
+ * <p>
+ * Entries are visited through their slots, without allocating an iterator:
+ *
+ * <pre>
+ * for (int slot = map.nextSlot(-1); slot &gt;= 0; slot = map.nextSlot(slot)) {
+ * 	long key = map.keyAt(slot);
+ * 	long value = map.valueAt(slot);
+ * }
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class LongLongHashMap {
+
+	static final int MINIMUM_CAPACITY = 8;
+
+	/**
+	 * Keys of the entries, where 0 marks an empty slot. The entry for key 0
+	 * is stored in the last slot.
+	 */
+	long[] keys;
+
+	long[] values;
+
+	/**
+	 * Number of entries with a key other than 0.
+	 */
+	int size;
+
+	boolean hasZeroKey;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public LongLongHashMap() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty map that can hold the given number of entries
+	 * without being resized.
+	 *
+	 * @param expectedSize
+	 *            expected number of entries
+	 */
+	public LongLongHashMap(int expectedSize) {
+		allocate(HashMapUtils.getCapacity(expectedSize, MINIMUM_CAPACITY));
+	}
+
+	/**
+	 * Adds the given increment to the value of the given key, which is 0 if
+	 * the key was not in the map.
+	 *
+	 * @param key
+	 *            key
+	 * @param increment
+	 *            number to add
+	 * @return the new value of the key
+	 */
+	public long addTo(long key, long increment) {
+		int slot = findOrInsertSlot(key);
+		this.values[slot] += increment;
+		return this.values[slot];
+	}
+
+	/**
+	 * Removes all entries from the map.
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.values, 0);
+		this.size = 0;
+		this.hasZeroKey = false;
+	}
+
+	/**
+	 * Returns true if the map contains the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @return true if the map contains the key
+	 */
+	public boolean containsKey(long key) {
+		return findSlot(key) >= 0;
+	}
+
+	/**
+	 * Returns the value of the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @return the value of the key, or 0 if the map does not contain the key
+	 */
+	public long get(long key) {
+		int slot = findSlot(key);
+		return slot >= 0 ? this.values[slot] : 0;
+	}
+
+	/**
+	 * Returns the key of the entry in the given slot.
+	 *
+	 * @param slot
+	 *            slot returned by {@link #nextSlot(int)}
+	 * @return key
+	 */
+	public long keyAt(int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * Returns the first slot after the given slot that holds an entry.
+	 *
+	 * @param slot
+	 *            slot to start after, or -1 to find the first slot
+	 * @return the next slot with an entry, or -1 if there is none
+	 */
+	public int nextSlot(int slot) {
+		int zeroSlot = this.keys.length - 1;
+		for (int i = slot + 1; i < zeroSlot; i++) {
+			if (this.keys[i] != 0) {
+				return i;
+			}
+		}
+		return (this.hasZeroKey && slot < zeroSlot) ? zeroSlot : -1;
+	}
+
+	/**
+	 * Sets the value of the given key.
+	 *
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 * @return the previous value of the key, or 0 if the map did not contain
+	 *         the key
+	 */
+	public long put(long key, long value) {
+		int slot = findOrInsertSlot(key);
+		long ret = this.values[slot];
+		this.values[slot] = value;
+		return ret;
+	}
+
+	/**
+	 * Returns the number of entries in the map.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return this.hasZeroKey ? this.size + 1 : this.size;
+	}
+
+	/**
+	 * Returns the value of the entry in the given slot.
+	 *
+	 * @param slot
+	 *            slot returned by {@link #nextSlot(int)}
+	 * @return value
+	 */
+	public long valueAt(int slot) {
+		return this.values[slot];
+	}
+
+	/**
+	 * Allocates the arrays for the given number of slots, plus one slot for
+	 * key 0.
+	 */
+	void allocate(int capacity) {
+		this.keys = new long[capacity + 1];
+		this.values = new long[capacity + 1];
+	}
+
+	/**
+	 * @return the slot of the key, or -1 if the map does not contain the key
+	 */
+	int findSlot(long key) {
+		if (key == 0) {
+			return this.hasZeroKey ? this.keys.length - 1 : -1;
+		}
+		int mask = this.keys.length - 2;
+		int slot = HashMapUtils.hash(key) & mask;
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of the key, which is added with value 0 if the map does
+	 *         not contain it
+	 */
+	int findOrInsertSlot(long key) {
+		if (key == 0) {
+			this.hasZeroKey = true;
+			return this.keys.length - 1;
+		}
+		int mask = this.keys.length - 2;
+		int slot = HashMapUtils.hash(key) & mask;
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (HashMapUtils.isFull(this.size + 1, mask + 1)) {
+			rehash();
+			return findOrInsertSlot(key);
+		}
+		this.keys[slot] = key;
+		this.size++;
+		return slot;
+	}
+
+	/**
+	 * Doubles the number of slots and inserts all entries again.
+	 */
+	void rehash() {
+		long[] oldKeys = this.keys;
+		long[] oldValues = this.values;
+		int zeroSlot = oldKeys.length - 1;
+		allocate(2 * zeroSlot);
+		int mask = this.keys.length - 2;
+		for (int i = 0; i < zeroSlot; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = HashMapUtils.hash(oldKeys[i]) & mask;
+				while (this.keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+		this.values[this.keys.length - 1] = oldValues[zeroSlot];
+	}
+
+}
@@ -0,0 +1,539 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Implementation of {@link RankedBitVector} that keeps its data outside of
+ * the Java heap, either in a memory-mapped file or in direct buffers. A bit
+ * vector in a file can be closed and opened again without reading or
+ * rebuilding anything, so that it is suitable for large sets of flags that
+ * should be kept across runs, e.g., one bit for each Wikidata item.
+ * <p>
+ * Bits are stored in blocks of 512 bits. Each block is preceded by the number
+ * of <code>true</code> bits in all previous blocks, so that
+ * {@link #countBits(boolean, long)} only needs to inspect one block. The
+ * position of the <i>n</i>-th occurrence of a bit is found by binary search
+ * over the blocks. The counts are updated lazily after changes. Blocks are
+ * grouped into segments of a fixed size, so that the vector can grow beyond
+ * the 2GB that one buffer can address.
+ * <p>
+ * Like {@link BitVectorImpl}, this bit vector is <i>flexible</i>: bits can be
+ * set at any non-negative position, and positions outside the vector contain
+ * <code>false</code>.
+ *
+ * @author agent
+ *
+ */
+public class MappedBitVector implements RankedBitVector, Iterable<Boolean>,
+		Closeable {
+
+	static final long MAGIC = 0x5744544B42495456L; // "WDTKBITV"
+	static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Size of the file header in bytes.
+	 */
+	static final int HEADER_SIZE = 64;
+	static final int HEADER_SIZE_POSITION = 16;
+	static final int HEADER_VALID_BLOCKS_POSITION = 24;
+
+	static final int LG_WORD_SIZE = 6;
+	static final int WORD_MASK = 0x3F;
+	static final int LG_WORDS_PER_BLOCK = 3;
+	static final int WORDS_PER_BLOCK = 1 << LG_WORDS_PER_BLOCK;
+	static final int LG_BLOCK_SIZE = LG_WORD_SIZE + LG_WORDS_PER_BLOCK;
+	static final int BLOCK_SIZE = 1 << LG_BLOCK_SIZE;
+
+	/**
+	 * Number of longs used to store one block: the count and the words.
+	 */
+	static final int LONGS_PER_BLOCK = WORDS_PER_BLOCK + 1;
+
+	static final int LG_BLOCKS_PER_SEGMENT = 16;
+	static final long SEGMENT_MASK = (1L << LG_BLOCKS_PER_SEGMENT) - 1;
+	static final int SEGMENT_BYTES = (LONGS_PER_BLOCK << LG_BLOCKS_PER_SEGMENT) * 8;
+
+	/**
+	 * Channel of the file that backs this bit vector, or null if direct
+	 * buffers are used.
+	 */
+	final FileChannel channel;
+
+	/**
+	 * Header of the file, or null if direct buffers are used.
+	 */
+	final MappedByteBuffer header;
+
+	ByteBuffer[] segmentBuffers;
+	LongBuffer[] segments;
+
+	long size;
+
+	/**
+	 * Number of blocks at the start of the vector whose count of preceding
+	 * <code>true</code> bits is up to date.
+	 */
+	long validBlocks;
+
+	/**
+	 * Constructor of a bit vector of size 0 that is stored in direct buffers.
+	 */
+	public MappedBitVector() {
+		this.channel = null;
+		this.header = null;
+		this.segmentBuffers = new ByteBuffer[0];
+		this.segments = new LongBuffer[0];
+	}
+
+	/**
+	 * Constructor of a bit vector that is stored in the given file. If the
+	 * file exists, the bit vector that it contains is opened; otherwise, a
+	 * new bit vector of size 0 is created. Changes are written to the file
+	 * by the operating system; {@link #flush()} or {@link #close()} should be
+	 * called to make sure that the file is complete.
+	 *
+	 * @param file
+	 *            the file that stores the bit vector
+	 * @throws IOException
+	 *             if the file could not be opened or does not contain a bit
+	 *             vector
+	 */
+	public MappedBitVector(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			boolean isNew = this.channel.size() == 0;
+			this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE);
+			this.header.order(ByteOrder.LITTLE_ENDIAN);
+			if (isNew) {
+				this.header.putLong(0, MAGIC);
+				this.header.putInt(8, FORMAT_VERSION);
+				this.header.putInt(12, LG_BLOCKS_PER_SEGMENT);
+			} else if (this.header.getLong(0) != MAGIC
+					|| this.header.getInt(8) != FORMAT_VERSION
+					|| this.header.getInt(12) != LG_BLOCKS_PER_SEGMENT) {
+				throw new IOException("File \"" + file
+						+ "\" does not contain a bit vector.");
+			}
+			this.size = this.header.getLong(HEADER_SIZE_POSITION);
+			this.validBlocks = this.header
+					.getLong(HEADER_VALID_BLOCKS_POSITION);
+
+			int segmentCount = (int) ((this.channel.size() - HEADER_SIZE + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+			this.segmentBuffers = new ByteBuffer[0];
+			this.segments = new LongBuffer[0];
+			ensureSegments(Math.max(segmentCount,
+					getSegmentCount(getBlockCount(this.size))));
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param sizeInBits
+	 *            size in bits
+	 * @return the number of blocks that are needed to store the given number
+	 *         of bits
+	 */
+	static long getBlockCount(long sizeInBits) {
+		return (sizeInBits + BLOCK_SIZE - 1) >>> LG_BLOCK_SIZE;
+	}
+
+	/**
+	 * @param blockCount
+	 *            number of blocks
+	 * @return the number of segments that are needed to store the given
+	 *         number of blocks
+	 */
+	static int getSegmentCount(long blockCount) {
+		return (int) ((blockCount + SEGMENT_MASK) >>> LG_BLOCKS_PER_SEGMENT);
+	}
+
+	@Override
+	public boolean addBit(boolean bit) {
+		setBit(this.size, bit);
+		return true;
+	}
+
+	/**
+	 * @param position
+	 *            position
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	void assertNonNegativePosition(long position)
+			throws IndexOutOfBoundsException {
+		if ((position < 0)) {
+			throw new IndexOutOfBoundsException("Position " + position
+					+ " is out of bounds.");
+		}
+	}
+
+	/**
+	 * Writes all changes to the file and makes sure that the counts of
+	 * <code>true</code> bits are up to date, so that the bit vector can be
+	 * used right away when it is opened again. Nothing happens if direct
+	 * buffers are used.
+	 */
+	public void flush() {
+		if (this.header == null) {
+			return;
+		}
+		updateCounts(getBlockCount(this.size));
+		for (ByteBuffer segment : this.segmentBuffers) {
+			((MappedByteBuffer) segment).force();
+		}
+		this.header.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null) {
+			flush();
+			this.channel.close();
+		}
+		this.segmentBuffers = new ByteBuffer[0];
+		this.segments = new LongBuffer[0];
+	}
+
+	@Override
+	public long countBits(boolean bit, long position) {
+		assertNonNegativePosition(position);
+		long trueValues = countTrueBitsBefore(Math.min(position + 1, this.size));
+		return bit ? trueValues : ((position + 1) - trueValues);
+	}
+
+	/**
+	 * @param position
+	 *            position, at most the size of the bit vector
+	 * @return the number of <code>true</code> bits before the given position
+	 */
+	long countTrueBitsBefore(long position) {
+		if (position == 0) {
+			return 0;
+		}
+		long block = (position - 1) >>> LG_BLOCK_SIZE;
+		updateCounts(block + 1);
+		long result = getLong(block, 0);
+		long wordIndex = (position - 1) >>> LG_WORD_SIZE;
+		for (long i = block << LG_WORDS_PER_BLOCK; i < wordIndex; i++) {
+			result += Long.bitCount(getWord(i));
+		}
+		int bitsInLastWord = (int) (position - (wordIndex << LG_WORD_SIZE));
+		result += Long.bitCount(getWord(wordIndex)
+				& (-1L >>> (64 - bitsInLastWord)));
+		return result;
+	}
+
+	/**
+	 * Ensures that the bit vector is large enough to contain an element at the
+	 * given position. If the bit vector needs to be enlarged, new
+	 * <code>false</code> elements are added.
+	 *
+	 * @param position
+	 *            position
+	 */
+	void ensureSize(long position) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			this.size = position + 1;
+			ensureSegments(getSegmentCount(getBlockCount(this.size)));
+			if (this.header != null) {
+				this.header.putLong(HEADER_SIZE_POSITION, this.size);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that the given number of segments are available.
+	 *
+	 * @param segmentCount
+	 *            number of segments
+	 */
+	void ensureSegments(int segmentCount) {
+		int oldSegmentCount = this.segments.length;
+		if (segmentCount <= oldSegmentCount) {
+			return;
+		}
+		this.segmentBuffers = Arrays.copyOf(this.segmentBuffers, segmentCount);
+		this.segments = Arrays.copyOf(this.segments, segmentCount);
+		for (int i = oldSegmentCount; i < segmentCount; i++) {
+			ByteBuffer buffer;
+			if (this.channel == null) {
+				buffer = ByteBuffer.allocateDirect(SEGMENT_BYTES);
+			} else {
+				try {
+					buffer = this.channel.map(FileChannel.MapMode.READ_WRITE,
+							HEADER_SIZE + (long) i * SEGMENT_BYTES,
+							SEGMENT_BYTES);
+				} catch (IOException e) {
+					throw new RuntimeException(
+							"Could not enlarge the file of the bit vector: "
+									+ e.getMessage(), e);
+				}
+			}
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			this.segmentBuffers[i] = buffer;
+			this.segments[i] = buffer.asLongBuffer();
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BitVector)) {
+			return false;
+		}
+		BitVector other = (BitVector) obj;
+		if (this.size != other.size()) {
+			return false;
+		}
+
+		long comparisonFirstPos = 0;
+		if (other instanceof MappedBitVector) {
+			MappedBitVector otherMappedBitVector = (MappedBitVector) other;
+			long fullWords = this.size >>> LG_WORD_SIZE;
+			for (long i = 0; i < fullWords; i++) {
+				if (getWord(i) != otherMappedBitVector.getWord(i)) {
+					return false;
+				}
+			}
+			comparisonFirstPos = fullWords << LG_WORD_SIZE;
+		}
+
+		for (long i = comparisonFirstPos; i < this.size; i++) {
+			if (getBit(i) != other.getBit(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long findPosition(boolean bit, long nOccurrence) {
+		if (nOccurrence <= 0) {
+			return NOT_FOUND;
+		}
+		long blockCount = getBlockCount(this.size);
+		long trueValues = countTrueBitsBefore(this.size);
+		if (nOccurrence > (bit ? trueValues : this.size - trueValues)) {
+			return NOT_FOUND;
+		}
+
+		// find the last block that starts with fewer occurrences
+		long low = 0;
+		long high = blockCount - 1;
+		while (low < high) {
+			long middle = (low + high + 1) >>> 1;
+			if (countOccurrencesBeforeBlock(bit, middle) < nOccurrence) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		long leftOccurrences = nOccurrence
+				- countOccurrencesBeforeBlock(bit, low);
+		long wordIndex = low << LG_WORDS_PER_BLOCK;
+		while (true) {
+			long word = bit ? getWord(wordIndex) : ~getWord(wordIndex);
+			int occurrences = Long.bitCount(word);
+			if (occurrences >= leftOccurrences) {
+				return (wordIndex << LG_WORD_SIZE)
+						+ BitVectorImpl.selectInWord(word,
+								(int) (leftOccurrences - 1));
+			}
+			leftOccurrences -= occurrences;
+			wordIndex++;
+		}
+	}
+
+	/**
+	 * @param bit
+	 *            bit
+	 * @param block
+	 *            block with up-to-date count
+	 * @return number of occurrences of <i>bit</i> before the given block
+	 */
+	long countOccurrencesBeforeBlock(boolean bit, long block) {
+		long trueValues = getLong(block, 0);
+		return bit ? trueValues : (block << LG_BLOCK_SIZE) - trueValues;
+	}
+
+	@Override
+	public boolean getBit(long position) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			return false;
+		}
+		return ((getWord(position >>> LG_WORD_SIZE) >>> (position & WORD_MASK)) & 1) == 1;
+	}
+
+	/**
+	 * @param block
+	 *            block
+	 * @param offset
+	 *            position of a long within the block; 0 is the count and 1 to
+	 *            8 are the words
+	 * @return the long at the given position
+	 */
+	long getLong(long block, int offset) {
+		return this.segments[(int) (block >>> LG_BLOCKS_PER_SEGMENT)]
+				.get((int) (block & SEGMENT_MASK) * LONGS_PER_BLOCK + offset);
+	}
+
+	/**
+	 * @param wordIndex
+	 *            index of a word
+	 * @return the word with the given index
+	 */
+	long getWord(long wordIndex) {
+		return getLong(wordIndex >>> LG_WORDS_PER_BLOCK,
+				(int) (wordIndex & (WORDS_PER_BLOCK - 1)) + 1);
+	}
+
+	@Override
+	public int hashCode() {
+		// same as BitVectorImpl, so that equal bit vectors have equal hashes
+		int ret = (int) this.size;
+		long fullWords = this.size >>> LG_WORD_SIZE;
+		for (long i = 0; i < fullWords; i++) {
+			ret += (0x1F * getWord(i));
+		}
+		int remainingBits = (int) (this.size & WORD_MASK);
+		if (remainingBits > 0) {
+			ret += (0x1F * (getWord(fullWords) & (-1L >>> (64 - remainingBits))));
+		}
+		return ret;
+	}
+
+	@Override
+	public Iterator<Boolean> iterator() {
+		return new BitVectorIterator(this);
+	}
+
+	/**
+	 * @param block
+	 *            block
+	 * @param offset
+	 *            position of a long within the block
+	 * @param value
+	 *            new value of the long
+	 */
+	void setLong(long block, int offset, long value) {
+		this.segments[(int) (block >>> LG_BLOCKS_PER_SEGMENT)].put(
+				(int) (block & SEGMENT_MASK) * LONGS_PER_BLOCK + offset, value);
+	}
+
+	@Override
+	public void setBit(long position, boolean bit) {
+		ensureSize(position);
+		long block = position >>> LG_BLOCK_SIZE;
+		int offset = (int) ((position >>> LG_WORD_SIZE) & (WORDS_PER_BLOCK - 1)) + 1;
+		long word = getLong(block, offset);
+		long newWord = bit ? word | (1L << (position & WORD_MASK)) : word
+				& ~(1L << (position & WORD_MASK));
+		if (newWord != word) {
+			setLong(block, offset, newWord);
+			// the counts of all later blocks are outdated now
+			setValidBlocks(Math.min(this.validBlocks, block + 1));
+		}
+	}
+
+	/**
+	 * Updates the number of blocks with an up-to-date count. The header of
+	 * the file is updated right away when the number decreases, so that
+	 * outdated counts are never used after reopening the file.
+	 *
+	 * @param validBlocks
+	 *            new number of blocks with up-to-date counts
+	 */
+	void setValidBlocks(long validBlocks) {
+		if (this.header != null
+				&& validBlocks < this.header
+						.getLong(HEADER_VALID_BLOCKS_POSITION)) {
+			this.header.putLong(HEADER_VALID_BLOCKS_POSITION, validBlocks);
+		}
+		this.validBlocks = validBlocks;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (long position = 0; position < this.size; position++) {
+			sb.append(getBit(position) ? "1" : "0");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Makes sure that the counts of the given number of blocks are up to
+	 * date.
+	 *
+	 * @param blockCount
+	 *            number of blocks
+	 */
+	void updateCounts(long blockCount) {
+		if (blockCount <= this.validBlocks) {
+			return;
+		}
+		long block = this.validBlocks;
+		long count = 0;
+		if (block == 0) {
+			setLong(0, 0, 0);
+			block = 1;
+		} else {
+			count = getLong(block - 1, 0);
+		}
+		for (; block < blockCount; block++) {
+			for (int i = 1; i <= WORDS_PER_BLOCK; i++) {
+				count += Long.bitCount(getLong(block - 1, i));
+			}
+			setLong(block, 0, count);
+		}
+		this.validBlocks = blockCount;
+		if (this.header != null) {
+			this.header.putLong(HEADER_VALID_BLOCKS_POSITION, blockCount);
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Array of <code>long</code> values that is stored in a memory-mapped file.
+ * The array can be closed and opened again without reading its contents, so
+ * it is suitable for large indexes that are addressed by a dense numeric id,
+ * e.g., the numeric part of Wikidata item ids.
+ * <p>
+ * The array grows as needed when values are set. Positions that have never
+ * been set contain 0. Values are stored in segments of a fixed size, so that
+ * the array can grow beyond the 2GB that one buffer can address.
+ *
+ * @author agent
+ *
+ */
+public class MappedLongArray implements Closeable {
+
+	static final long MAGIC = 0x5744544B4C4F4E47L; // "WDTKLONG"
+	static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Size of the file header in bytes.
+	 */
+	static final int HEADER_SIZE = 64;
+	static final int HEADER_SIZE_POSITION = 16;
+
+	static final int LG_SEGMENT_SIZE = 20;
+	static final long SEGMENT_MASK = (1L << LG_SEGMENT_SIZE) - 1;
+	static final int SEGMENT_BYTES = 8 << LG_SEGMENT_SIZE;
+
+	final FileChannel channel;
+
+	final MappedByteBuffer header;
+
+	MappedByteBuffer[] segmentBuffers;
+	LongBuffer[] segments;
+
+	long size;
+
+	/**
+	 * Constructor of an array that is stored in the given file. If the file
+	 * exists, the array that it contains is opened; otherwise, a new array of
+	 * size 0 is created. {@link #flush()} or {@link #close()} should be
+	 * called to make sure that the file is complete.
+	 *
+	 * @param file
+	 *            the file that stores the array
+	 * @throws IOException
+	 *             if the file could not be opened or does not contain an
+	 *             array
+	 */
+	public MappedLongArray(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			boolean isNew = this.channel.size() == 0;
+			this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE);
+			this.header.order(ByteOrder.LITTLE_ENDIAN);
+			if (isNew) {
+				this.header.putLong(0, MAGIC);
+				this.header.putInt(8, FORMAT_VERSION);
+				this.header.putInt(12, LG_SEGMENT_SIZE);
+			} else if (this.header.getLong(0) != MAGIC
+					|| this.header.getInt(8) != FORMAT_VERSION
+					|| this.header.getInt(12) != LG_SEGMENT_SIZE) {
+				throw new IOException("File \"" + file
+						+ "\" does not contain an array.");
+			}
+			this.size = this.header.getLong(HEADER_SIZE_POSITION);
+
+			this.segmentBuffers = new MappedByteBuffer[0];
+			this.segments = new LongBuffer[0];
+			ensureSegments(getSegmentCount(this.size));
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param size
+	 *            number of values
+	 * @return the number of segments that are needed to store the given
+	 *         number of values
+	 */
+	static int getSegmentCount(long size) {
+		return (int) ((size + SEGMENT_MASK) >>> LG_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Writes all changes to the file. This happens automatically when the
+	 * array is closed.
+	 */
+	public void flush() {
+		for (MappedByteBuffer segment : this.segmentBuffers) {
+			segment.force();
+		}
+		this.header.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel.isOpen()) {
+			flush();
+			this.channel.close();
+		}
+		this.segmentBuffers = new MappedByteBuffer[0];
+		this.segments = new LongBuffer[0];
+	}
+
+	/**
+	 * Makes sure that the given number of segments are available.
+	 *
+	 * @param segmentCount
+	 *            number of segments
+	 */
+	void ensureSegments(int segmentCount) {
+		int oldSegmentCount = this.segments.length;
+		if (segmentCount <= oldSegmentCount) {
+			return;
+		}
+		this.segmentBuffers = Arrays.copyOf(this.segmentBuffers, segmentCount);
+		this.segments = Arrays.copyOf(this.segments, segmentCount);
+		for (int i = oldSegmentCount; i < segmentCount; i++) {
+			MappedByteBuffer buffer;
+			try {
+				buffer = this.channel.map(FileChannel.MapMode.READ_WRITE,
+						HEADER_SIZE + (long) i * SEGMENT_BYTES, SEGMENT_BYTES);
+			} catch (IOException e) {
+				throw new RuntimeException(
+						"Could not enlarge the file of the array: "
+								+ e.getMessage(), e);
+			}
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			this.segmentBuffers[i] = buffer;
+			this.segments[i] = ((ByteBuffer) buffer).asLongBuffer();
+		}
+	}
+
+	/**
+	 * Returns the value at the given position.
+	 *
+	 * @param position
+	 *            position
+	 * @return the value, or 0 if the position is outside the array
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	public long get(long position) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			return 0;
+		}
+		return this.segments[(int) (position >>> LG_SEGMENT_SIZE)]
+				.get((int) (position & SEGMENT_MASK));
+	}
+
+	/**
+	 * Sets the value at the given position. The array is enlarged if needed.
+	 *
+	 * @param position
+	 *            position
+	 * @param value
+	 *            value
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	public void set(long position, long value) {
+		assertNonNegativePosition(position);
+		if (position >= this.size) {
+			this.size = position + 1;
+			ensureSegments(getSegmentCount(this.size));
+			this.header.putLong(HEADER_SIZE_POSITION, this.size);
+		}
+		this.segments[(int) (position >>> LG_SEGMENT_SIZE)].put(
+				(int) (position & SEGMENT_MASK), value);
+	}
+
+	/**
+	 * Returns the size of the array, which is one more than the largest
+	 * position that has been set.
+	 *
+	 * @return size of the array
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * @param position
+	 *            position
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is a negative number
+	 */
+	void assertNonNegativePosition(long position)
+			throws IndexOutOfBoundsException {
+		if (position < 0) {
+			throw new IndexOutOfBoundsException("Position " + position
+					+ " is out of bounds.");
+		}
+	}
+
+}
@@ -130,9 +130,8 @@ public class RankedBitVectorImpl implements RankedBitVector, Iterable<Boolean> {
 
 	@Override
 	public boolean addBit(boolean bit) {
-		boolean ret = this.bitVector.addBit(bit);
-		notifyObservers();
-		return ret;
+		// the auxiliary arrays are extended when the new bit is needed
+		return this.bitVector.addBit(bit);
 	}
 
 	@Override
@@ -175,10 +174,10 @@ public class RankedBitVectorImpl implements RankedBitVector, Iterable<Boolean> {
 		return this.bitVector.iterator();
 	}
 
-	void notifyObservers() {
-		this.countBitsArray.update();
-		this.findPositionOfFalse.update();
-		this.findPositionOfTrue.update();
+	void notifyObservers(long position) {
+		this.countBitsArray.update(position);
+		this.findPositionOfFalse.update(position);
+		this.findPositionOfTrue.update(position);
 	}
 
 	@Override
@@ -186,7 +185,7 @@ public class RankedBitVectorImpl implements RankedBitVector, Iterable<Boolean> {
 		boolean oldBit = getBit(position);
 		if (oldBit != bit) {
 			this.bitVector.setBit(position, bit);
-			notifyObservers();
+			notifyObservers(position);
 		}
 	}
 
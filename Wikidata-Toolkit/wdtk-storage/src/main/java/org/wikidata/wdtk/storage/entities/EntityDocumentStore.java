@@ -0,0 +1,649 @@
+package org.wikidata.wdtk.storage.entities;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentSource;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.json.jackson.JacksonTermedStatementDocument;
+import org.wikidata.wdtk.datamodel.json.jackson.JsonSerializer;
+import org.wikidata.wdtk.storage.datastructures.MappedBitVector;
+import org.wikidata.wdtk.storage.datastructures.MappedLongArray;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persistent store for entity documents that supports random access by
+ * entity id. Documents are added by using the store as an
+ * {@link EntityDocumentProcessor}, typically while processing a dump, and can
+ * later be looked up by id. Like <code>WikibaseDataFetcher</code>, the store
+ * is an {@link EntityDocumentSource}, so code that looks up documents can
+ * switch between local and online data.
+ * <p>
+ * The store uses a directory with the following files:
+ * <ul>
+ * <li>documents.bin: the JSON serializations of the documents, in blocks of
+ * several documents that are compressed together. Blocks are only appended;
+ * a document that is added again is written to a new block.</li>
+ * <li>items.idx and properties.idx: memory-mapped arrays that are addressed
+ * by the numeric part of the entity id and contain the position of the
+ * block and the position of the document within the block.</li>
+ * <li>items.bits and properties.bits: memory-mapped bit vectors that record
+ * which ids have a document.</li>
+ * </ul>
+ * A lookup therefore needs two memory accesses and one block read. Only the
+ * most recently read block is cached, so documents are read fastest in the
+ * order in which they were added. Lexemes and other types of entities are
+ * not supported.
+ * <p>
+ * The index is only updated after the block of a document has been written
+ * to the documents file. If the store is not closed properly, the documents
+ * that were not written yet are lost, but all other documents can still be
+ * read correctly.
+ * <p>
+ * All public methods are synchronized, so the store can be shared by
+ * several threads.
+ *
+ * @author agent
+ *
+ */
+public class EntityDocumentStore implements EntityDocumentProcessor,
+		EntityDocumentSource, Closeable {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(EntityDocumentStore.class);
+
+	static final String DOCUMENTS_FILE = "documents.bin";
+	static final String ITEM_INDEX_FILE = "items.idx";
+	static final String ITEM_PRESENCE_FILE = "items.bits";
+	static final String PROPERTY_INDEX_FILE = "properties.idx";
+	static final String PROPERTY_PRESENCE_FILE = "properties.bits";
+
+	/**
+	 * Size in bytes of the uncompressed documents of a block, above which no
+	 * further documents are added to the block. Larger blocks compress
+	 * better, but take longer to read.
+	 */
+	static final int BLOCK_SIZE = 16384;
+
+	/**
+	 * Number of bits of an index entry that store the position of a document
+	 * within its block. The remaining bits store the position of the block.
+	 */
+	static final int LG_MAX_DOCUMENTS_PER_BLOCK = 8;
+	static final int MAX_DOCUMENTS_PER_BLOCK = 1 << LG_MAX_DOCUMENTS_PER_BLOCK;
+
+	/**
+	 * Size in bytes of the header of a block, which contains the size of the
+	 * uncompressed and of the compressed data.
+	 */
+	static final int BLOCK_HEADER_SIZE = 8;
+
+	/**
+	 * The IRI of the site that the documents are from.
+	 */
+	final String siteIri;
+
+	final FileChannel documents;
+
+	final MappedLongArray itemIndex;
+	final MappedBitVector items;
+	final MappedLongArray propertyIndex;
+	final MappedBitVector properties;
+
+	final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Size of the documents file, which is also the position of the block
+	 * that is currently filled.
+	 */
+	long documentsSize;
+
+	/**
+	 * Uncompressed data of the block that is currently filled.
+	 */
+	final ByteArrayOutputStream pendingBlock = new ByteArrayOutputStream();
+	final DataOutputStream pendingOutput = new DataOutputStream(
+			this.pendingBlock);
+	int pendingDocuments;
+
+	/**
+	 * Index entries of the documents in the block that is currently filled,
+	 * which are written to the index when the block is written.
+	 */
+	final Map<String, Long> pendingEntries = new HashMap<>();
+
+	/**
+	 * Position of the block in {@link #cachedBlock}, or -1 if no block was
+	 * read yet.
+	 */
+	long cachedBlockPosition = -1;
+	ByteBuffer cachedBlock;
+
+	/**
+	 * Opens the store in the given directory, or creates a new empty store if
+	 * the directory does not contain one yet. The directory is created if
+	 * needed. The store should be closed with {@link #close()} when it is no
+	 * longer used; documents that were added after the last call of
+	 * {@link #flush()} may be lost otherwise.
+	 *
+	 * @param directory
+	 *            the directory of the store
+	 * @param siteIri
+	 *            the IRI of the site that the documents are from, e.g.,
+	 *            "http://www.wikidata.org/entity/"
+	 * @throws IOException
+	 *             if the files of the store could not be opened
+	 */
+	public EntityDocumentStore(Path directory, String siteIri)
+			throws IOException {
+		this.siteIri = siteIri;
+		Files.createDirectories(directory);
+		this.documents = FileChannel.open(directory.resolve(DOCUMENTS_FILE),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.documentsSize = this.documents.size();
+		this.itemIndex = new MappedLongArray(directory.resolve(ITEM_INDEX_FILE));
+		this.items = new MappedBitVector(directory.resolve(ITEM_PRESENCE_FILE));
+		this.propertyIndex = new MappedLongArray(
+				directory.resolve(PROPERTY_INDEX_FILE));
+		this.properties = new MappedBitVector(
+				directory.resolve(PROPERTY_PRESENCE_FILE));
+	}
+
+	@Override
+	public synchronized void processItemDocument(ItemDocument itemDocument) {
+		addDocument(itemDocument.getItemId().getId(),
+				JsonSerializer.getJsonString(itemDocument));
+	}
+
+	@Override
+	public synchronized void processPropertyDocument(
+			PropertyDocument propertyDocument) {
+		addDocument(propertyDocument.getPropertyId().getId(),
+				JsonSerializer.getJsonString(propertyDocument));
+	}
+
+	/**
+	 * Returns the number of entities that have a document in the store.
+	 *
+	 * @return number of documents
+	 */
+	public synchronized long getDocumentCount() {
+		long count = this.items.countBits(true, this.items.size())
+				+ this.properties.countBits(true, this.properties.size());
+		for (String entityId : this.pendingEntries.keySet()) {
+			if (!isIndexed(entityId)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns true if the store contains a document for the entity of the
+	 * given id.
+	 *
+	 * @param entityId
+	 *            string ID (e.g., "P31" or "Q42") of the entity
+	 * @return true if the entity has a document in the store
+	 */
+	public synchronized boolean containsEntityDocument(String entityId) {
+		return getIndexEntry(entityId) >= 0;
+	}
+
+	/**
+	 * Returns the document for the entity of the given string ID.
+	 *
+	 * @param entityId
+	 *            string ID (e.g., "P31" or "Q42") of requested entity
+	 * @return the document, or null if the store does not contain it
+	 * @throws IOException
+	 *             if the document could not be read
+	 */
+	@Override
+	public synchronized EntityDocument getEntityDocument(String entityId)
+			throws IOException {
+		long entry = getIndexEntry(entityId);
+		return entry < 0 ? null : readDocument(entityId, entry);
+	}
+
+	/**
+	 * Returns the documents for the entities of the given string IDs. The
+	 * result is a map from entity IDs to {@link EntityDocument} objects. IDs
+	 * that have no document in the store are not set in the map.
+	 *
+	 * @param entityIds
+	 *            string IDs (e.g., "P31", "Q42") of requested entities
+	 * @return map from IDs for which data could be found to the documents
+	 * @throws IOException
+	 *             if a document could not be read
+	 */
+	public Map<String, EntityDocument> getEntityDocuments(String... entityIds)
+			throws IOException {
+		return getEntityDocuments(Arrays.asList(entityIds));
+	}
+
+	/**
+	 * Returns the documents for the entities of the given string IDs. The
+	 * result is a map from entity IDs to {@link EntityDocument} objects. IDs
+	 * that have no document in the store are not set in the map.
+	 *
+	 * @param entityIds
+	 *            list of string IDs (e.g., "P31", "Q42") of requested
+	 *            entities
+	 * @return map from IDs for which data could be found to the documents
+	 * @throws IOException
+	 *             if a document could not be read
+	 */
+	@Override
+	public synchronized Map<String, EntityDocument> getEntityDocuments(
+			List<String> entityIds) throws IOException {
+		final Map<String, EntityDocument> result = new HashMap<>();
+		for (String entityId : getIdsInStorageOrder(entityIds)) {
+			result.put(entityId,
+					readDocument(entityId, getIndexEntry(entityId)));
+		}
+		return result;
+	}
+
+	/**
+	 * Passes the documents for the entities of the given string IDs to the
+	 * given processor. Documents are read in the order in which they are
+	 * stored, which is much faster for large numbers of entities than looking
+	 * them up one by one. IDs that have no document in the store are
+	 * ignored.
+	 *
+	 * @param entityIds
+	 *            list of string IDs (e.g., "P31", "Q42") of requested
+	 *            entities
+	 * @param entityDocumentProcessor
+	 *            the processor that should receive the documents
+	 * @throws IOException
+	 *             if a document could not be read
+	 */
+	@Override
+	public synchronized void processEntityDocuments(List<String> entityIds,
+			EntityDocumentProcessor entityDocumentProcessor)
+			throws IOException {
+		for (String entityId : getIdsInStorageOrder(entityIds)) {
+			EntityDocument document = readDocument(entityId,
+					getIndexEntry(entityId));
+			if (document instanceof ItemDocument) {
+				entityDocumentProcessor
+						.processItemDocument((ItemDocument) document);
+			} else if (document instanceof PropertyDocument) {
+				entityDocumentProcessor
+						.processPropertyDocument((PropertyDocument) document);
+			}
+		}
+	}
+
+	/**
+	 * Writes all documents that have been added to disk.
+	 *
+	 * @throws IOException
+	 *             if the documents could not be written
+	 */
+	public synchronized void flush() throws IOException {
+		writePendingBlock();
+		this.documents.force(false);
+		this.itemIndex.flush();
+		this.items.flush();
+		this.propertyIndex.flush();
+		this.properties.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!this.documents.isOpen()) {
+			return;
+		}
+		try {
+			writePendingBlock();
+		} finally {
+			this.documents.close();
+			this.itemIndex.close();
+			this.items.close();
+			this.propertyIndex.close();
+			this.properties.close();
+		}
+	}
+
+	/**
+	 * Adds the JSON serialization of a document to the block that is
+	 * currently filled. The index is updated when the block is written.
+	 *
+	 * @param entityId
+	 *            string ID of the entity
+	 * @param json
+	 *            JSON serialization of the document, or null if it could not
+	 *            be serialized
+	 */
+	void addDocument(String entityId, String json) {
+		long numericId = getNumericId(entityId);
+		if (json == null || numericId < 0) {
+			logger.warn("Could not store document of entity " + entityId
+					+ ".");
+			return;
+		}
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		try {
+			if (this.pendingDocuments == MAX_DOCUMENTS_PER_BLOCK
+					|| (this.pendingDocuments > 0 && this.pendingBlock.size()
+							+ bytes.length > BLOCK_SIZE)) {
+				writePendingBlock();
+			}
+			long entry = (this.documentsSize << LG_MAX_DOCUMENTS_PER_BLOCK)
+					| this.pendingDocuments;
+			this.pendingOutput.writeInt(bytes.length);
+			this.pendingOutput.write(bytes);
+			this.pendingDocuments++;
+			this.pendingEntries.put(entityId, entry);
+		} catch (IOException e) {
+			logger.error("Failed to store entity document: " + e.toString());
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Returns the entry of the index for the entity of the given id. The
+	 * entry contains the position of the block in the documents file and the
+	 * position of the document within the block.
+	 *
+	 * @param entityId
+	 *            string ID of the entity
+	 * @return index entry, or -1 if the store does not contain the entity
+	 */
+	long getIndexEntry(String entityId) {
+		Long pendingEntry = this.pendingEntries.get(entityId);
+		if (pendingEntry != null) {
+			return pendingEntry;
+		}
+		if (!isIndexed(entityId)) {
+			return -1;
+		}
+		long numericId = getNumericId(entityId);
+		long entry = entityId.charAt(0) == 'Q' ? this.itemIndex
+				.get(numericId) : this.propertyIndex.get(numericId);
+		// entries are only written for complete blocks, so this can only
+		// happen if the documents file has been truncated
+		if ((entry >>> LG_MAX_DOCUMENTS_PER_BLOCK) >= this.documentsSize) {
+			return -1;
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns true if the index of the store has an entry for the entity of
+	 * the given id. Documents in the block that is currently filled are not
+	 * considered.
+	 *
+	 * @param entityId
+	 *            string ID of the entity
+	 * @return true if the index has an entry for the entity
+	 */
+	boolean isIndexed(String entityId) {
+		long numericId = getNumericId(entityId);
+		if (numericId < 0) {
+			return false;
+		}
+		if (entityId.charAt(0) == 'Q') {
+			return this.items.getBit(numericId);
+		} else {
+			return this.properties.getBit(numericId);
+		}
+	}
+
+	/**
+	 * Returns the given ids that have a document in the store, in the order
+	 * in which their documents are stored.
+	 */
+	List<String> getIdsInStorageOrder(List<String> entityIds) {
+		final Map<String, Long> entries = new HashMap<>();
+		for (String entityId : entityIds) {
+			long entry = getIndexEntry(entityId);
+			if (entry >= 0) {
+				entries.put(entityId, entry);
+			}
+		}
+		List<String> result = new ArrayList<>(entries.keySet());
+		Collections.sort(result, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return entries.get(o1).compareTo(entries.get(o2));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the numeric part of an item or property id, such as 42 for
+	 * "Q42".
+	 *
+	 * @param entityId
+	 *            string ID of the entity
+	 * @return numeric id, or -1 if the id is not the id of an item or
+	 *         property
+	 */
+	static long getNumericId(String entityId) {
+		if (entityId == null || entityId.length() < 2
+				|| entityId.length() > 19
+				|| (entityId.charAt(0) != 'Q' && entityId.charAt(0) != 'P')) {
+			return -1;
+		}
+		long ret = 0;
+		for (int i = 1; i < entityId.length(); i++) {
+			int digit = entityId.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			ret = 10 * ret + digit;
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads the document of the given index entry.
+	 *
+	 * @param entityId
+	 *            string ID of the entity that the document should belong to
+	 * @param entry
+	 *            index entry of the document
+	 * @return the document
+	 * @throws IOException
+	 *             if the document could not be read, or if it is not the
+	 *             document of the given entity
+	 */
+	EntityDocument readDocument(String entityId, long entry)
+			throws IOException {
+		long blockPosition = entry >>> LG_MAX_DOCUMENTS_PER_BLOCK;
+		if (blockPosition == this.documentsSize) {
+			writePendingBlock();
+		}
+		ByteBuffer block = readBlock(blockPosition);
+		int position = 0;
+		for (int i = (int) (entry & (MAX_DOCUMENTS_PER_BLOCK - 1)); i > 0; i--) {
+			position += 4 + block.getInt(position);
+		}
+		int length = block.getInt(position);
+		JacksonTermedStatementDocument document = this.mapper.readValue(
+				block.array(), position + 4, length,
+				JacksonTermedStatementDocument.class);
+		document.setSiteIri(this.siteIri);
+		if (!entityId.equals(document.getEntityId().getId())) {
+			throw new IOException("Index entry of " + entityId
+					+ " points to the document of "
+					+ document.getEntityId().getId() + ".");
+		}
+		return document;
+	}
+
+	/**
+	 * Reads and uncompresses the block at the given position of the documents
+	 * file.
+	 *
+	 * @param blockPosition
+	 *            position of the block
+	 * @return uncompressed data of the block
+	 * @throws IOException
+	 *             if the block could not be read
+	 */
+	ByteBuffer readBlock(long blockPosition) throws IOException {
+		if (blockPosition == this.cachedBlockPosition) {
+			return this.cachedBlock;
+		}
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		readFully(header, blockPosition);
+		int uncompressedSize = header.getInt(0);
+		int compressedSize = header.getInt(4);
+		ByteBuffer compressed = ByteBuffer.allocate(compressedSize);
+		readFully(compressed, blockPosition + BLOCK_HEADER_SIZE);
+
+		byte[] uncompressed = new byte[uncompressedSize];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array());
+			if (inflater.inflate(uncompressed) != uncompressedSize) {
+				throw new IOException("Block at position " + blockPosition
+						+ " is incomplete.");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Block at position " + blockPosition
+					+ " is corrupt: " + e.getMessage(), e);
+		} finally {
+			inflater.end();
+		}
+
+		this.cachedBlockPosition = blockPosition;
+		this.cachedBlock = ByteBuffer.wrap(uncompressed);
+		return this.cachedBlock;
+	}
+
+	/**
+	 * Fills the given buffer with data from the documents file.
+	 *
+	 * @param buffer
+	 *            the buffer to fill
+	 * @param position
+	 *            position in the documents file where reading starts
+	 * @throws IOException
+	 *             if the file ends before the buffer is full
+	 */
+	void readFully(ByteBuffer buffer, long position) throws IOException {
+		long filePosition = position;
+		while (buffer.hasRemaining()) {
+			int count = this.documents.read(buffer, filePosition);
+			if (count < 0) {
+				throw new IOException("Unexpected end of documents file.");
+			}
+			filePosition += count;
+		}
+	}
+
+	/**
+	 * Compresses the block that is currently filled, appends it to the
+	 * documents file, and writes the index entries of its documents.
+	 *
+	 * @throws IOException
+	 *             if the block could not be written
+	 */
+	void writePendingBlock() throws IOException {
+		if (this.pendingDocuments == 0) {
+			return;
+		}
+		this.pendingOutput.flush();
+		byte[] uncompressed = this.pendingBlock.toByteArray();
+		Deflater deflater = new Deflater();
+		byte[] compressed;
+		int compressedSize;
+		try {
+			deflater.setInput(uncompressed);
+			deflater.finish();
+			compressed = new byte[uncompressed.length + 64];
+			compressedSize = 0;
+			while (!deflater.finished()) {
+				if (compressedSize == compressed.length) {
+					compressed = Arrays.copyOf(compressed,
+							2 * compressed.length);
+				}
+				compressedSize += deflater.deflate(compressed, compressedSize,
+						compressed.length - compressedSize);
+			}
+		} finally {
+			deflater.end();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_HEADER_SIZE
+				+ compressedSize);
+		buffer.putInt(uncompressed.length);
+		buffer.putInt(compressedSize);
+		buffer.put(compressed, 0, compressedSize);
+		buffer.flip();
+		long position = this.documentsSize;
+		while (buffer.hasRemaining()) {
+			position += this.documents.write(buffer, position);
+		}
+
+		this.documentsSize = position;
+		this.pendingBlock.reset();
+		this.pendingDocuments = 0;
+
+		for (Map.Entry<String, Long> entry : this.pendingEntries.entrySet()) {
+			String entityId = entry.getKey();
+			long numericId = getNumericId(entityId);
+			if (entityId.charAt(0) == 'Q') {
+				this.itemIndex.set(numericId, entry.getValue());
+				this.items.setBit(numericId, true);
+			} else {
+				this.propertyIndex.set(numericId, entry.getValue());
+				this.properties.setBit(numericId, true);
+			}
+		}
+		this.pendingEntries.clear();
+	}
+
+}
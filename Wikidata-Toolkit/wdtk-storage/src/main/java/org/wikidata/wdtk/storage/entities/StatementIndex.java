@@ -0,0 +1,294 @@
+package org.wikidata.wdtk.storage.entities;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.wikidata.wdtk.storage.datastructures.CompressedBitVector;
+import org.wikidata.wdtk.storage.datastructures.MappedLongArray;
+
+/**
+ * Index of the statements of a dump that answers queries such as "all items
+ * with P31=Q5" or "all items with a P569" without processing the dump again.
+ * The index is built in one pass over the dump with a
+ * {@link StatementIndexBuilder}.
+ * <p>
+ * For every property, the index contains a column of (value, subject) pairs,
+ * sorted by value and then by subject. The subjects of one value are
+ * therefore stored next to each other and form the posting list of this
+ * value. The posting list of the special value 0 contains all subjects that
+ * have some statement with the property. Only values that are items or
+ * properties are indexed; statements with other values, or with no value or
+ * some value, only count for the existence of the property.
+ * <p>
+ * The columns are kept in a memory-mapped file, so that the index does not
+ * need to fit on the Java heap. The results of queries are returned as
+ * {@link CompressedBitVector} objects where bit <i>k</i> is set for the
+ * subject with key <i>k</i>. The key of an entity is twice its numeric id for
+ * items and twice its numeric id plus one for properties; it can be turned
+ * back into an id with {@link #getEntityId(long)}. Results can be combined
+ * with {@link CompressedBitVector#and(CompressedBitVector)} and the other
+ * operations of compressed bit vectors, e.g., to find all humans with a date
+ * of birth:
+ *
+ * <pre>
+ * CompressedBitVector result = index.getSubjects(&quot;P31&quot;, &quot;Q5&quot;).and(
+ * 		index.getSubjects(&quot;P569&quot;));
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class StatementIndex implements Closeable {
+
+	static final String POSTINGS_FILE = "postings.bin";
+	static final String PROPERTIES_FILE = "properties.bin";
+
+	/**
+	 * Value that is stored for every subject that uses a property.
+	 */
+	static final long ANY_VALUE = 0;
+
+	/**
+	 * Largest entity key that can be indexed. Keys must fit into the lower
+	 * half of a posting, which contains the value in its upper half. Values
+	 * are stored as key + 1, so the largest key is one less than the largest
+	 * int; this keeps the sign bit of postings clear, so that they can be
+	 * sorted as signed longs.
+	 */
+	static final long MAX_ENTITY_KEY = Integer.MAX_VALUE - 1;
+
+	final MappedLongArray postings;
+
+	/**
+	 * Numeric ids of the indexed properties in ascending order.
+	 */
+	final int[] propertyIds;
+
+	/**
+	 * Position of the first posting of each property.
+	 */
+	final long[] propertyStarts;
+
+	/**
+	 * Number of postings of each property.
+	 */
+	final long[] propertySizes;
+
+	/**
+	 * Opens the index in the given directory.
+	 *
+	 * @param directory
+	 *            the directory of the index, as created by a
+	 *            {@link StatementIndexBuilder}
+	 * @throws IOException
+	 *             if the directory does not contain an index or the index
+	 *             could not be opened
+	 */
+	public StatementIndex(Path directory) throws IOException {
+		Path propertiesFile = directory.resolve(PROPERTIES_FILE);
+		Path postingsFile = directory.resolve(POSTINGS_FILE);
+		if (!Files.exists(propertiesFile) || !Files.exists(postingsFile)) {
+			throw new IOException("Directory \"" + directory
+					+ "\" does not contain a statement index.");
+		}
+
+		try (InputStream in = Files.newInputStream(propertiesFile);
+				DataInputStream input = new DataInputStream(
+						new BufferedInputStream(in))) {
+			int propertyCount = input.readInt();
+			this.propertyIds = new int[propertyCount];
+			this.propertyStarts = new long[propertyCount];
+			this.propertySizes = new long[propertyCount];
+			for (int i = 0; i < propertyCount; i++) {
+				this.propertyIds[i] = input.readInt();
+				this.propertyStarts[i] = input.readLong();
+				this.propertySizes[i] = input.readLong();
+			}
+		}
+		this.postings = new MappedLongArray(postingsFile);
+	}
+
+	/**
+	 * Returns the key of the entity with the given id.
+	 *
+	 * @param entityId
+	 *            string ID of an item or property, e.g., "Q42"
+	 * @return the key, or -1 if the id is not the id of an item or property
+	 */
+	static long getEntityKey(String entityId) {
+		long numericId = EntityDocumentStore.getNumericId(entityId);
+		if (numericId < 0) {
+			return -1;
+		}
+		return (numericId << 1) | (entityId.charAt(0) == 'P' ? 1 : 0);
+	}
+
+	/**
+	 * Returns the string ID of the entity with the given key, i.e., the id of
+	 * the subject that is represented by the given bit of the result of a
+	 * query.
+	 *
+	 * @param entityKey
+	 *            key of an entity
+	 * @return string ID of the entity, e.g., "Q42"
+	 */
+	public static String getEntityId(long entityKey) {
+		return ((entityKey & 1) == 0 ? "Q" : "P") + (entityKey >>> 1);
+	}
+
+	/**
+	 * Returns all subjects that have a statement with the given property.
+	 *
+	 * @param propertyId
+	 *            string ID of the property, e.g., "P569"
+	 * @return bit vector of the keys of the subjects
+	 */
+	public CompressedBitVector getSubjects(String propertyId) {
+		return getSubjects(propertyId, ANY_VALUE);
+	}
+
+	/**
+	 * Returns all subjects that have a statement with the given property and
+	 * value.
+	 *
+	 * @param propertyId
+	 *            string ID of the property, e.g., "P31"
+	 * @param valueId
+	 *            string ID of the value, e.g., "Q5"
+	 * @return bit vector of the keys of the subjects
+	 */
+	public CompressedBitVector getSubjects(String propertyId, String valueId) {
+		long valueKey = getEntityKey(valueId);
+		if (valueKey < 0 || valueKey > MAX_ENTITY_KEY) {
+			return new CompressedBitVector();
+		}
+		return getSubjects(propertyId, valueKey + 1);
+	}
+
+	/**
+	 * Returns the number of subjects that have a statement with the given
+	 * property. This is faster than computing the subjects.
+	 *
+	 * @param propertyId
+	 *            string ID of the property, e.g., "P569"
+	 * @return number of subjects
+	 */
+	public long countSubjects(String propertyId) {
+		long[] range = findPostings(propertyId, ANY_VALUE);
+		return range[1] - range[0];
+	}
+
+	/**
+	 * Returns the number of subjects that have a statement with the given
+	 * property and value. This is faster than computing the subjects.
+	 *
+	 * @param propertyId
+	 *            string ID of the property, e.g., "P31"
+	 * @param valueId
+	 *            string ID of the value, e.g., "Q5"
+	 * @return number of subjects
+	 */
+	public long countSubjects(String propertyId, String valueId) {
+		long valueKey = getEntityKey(valueId);
+		if (valueKey < 0 || valueKey > MAX_ENTITY_KEY) {
+			return 0;
+		}
+		long[] range = findPostings(propertyId, valueKey + 1);
+		return range[1] - range[0];
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.postings.close();
+	}
+
+	/**
+	 * Returns the subjects of the posting list of the given value.
+	 *
+	 * @param propertyId
+	 *            string ID of the property
+	 * @param value
+	 *            value as stored in the postings
+	 * @return bit vector of the keys of the subjects
+	 */
+	CompressedBitVector getSubjects(String propertyId, long value) {
+		long[] range = findPostings(propertyId, value);
+		CompressedBitVector result = new CompressedBitVector();
+		for (long i = range[0]; i < range[1]; i++) {
+			result.setBit(this.postings.get(i) & 0xFFFFFFFFL, true);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the positions of the posting list of the given value.
+	 *
+	 * @param propertyId
+	 *            string ID of the property
+	 * @param value
+	 *            value as stored in the postings
+	 * @return array with the first position of the posting list and the
+	 *         position after its end
+	 */
+	long[] findPostings(String propertyId, long value) {
+		long propertyKey = EntityDocumentStore.getNumericId(propertyId);
+		int index = -1;
+		if (propertyKey >= 0 && propertyKey <= Integer.MAX_VALUE
+				&& propertyId.charAt(0) == 'P') {
+			index = Arrays.binarySearch(this.propertyIds,
+					(int) propertyKey);
+		}
+		if (index < 0) {
+			return new long[] { 0, 0 };
+		}
+		long start = this.propertyStarts[index];
+		long end = start + this.propertySizes[index];
+		return new long[] { findFirstPosting(start, end, value),
+				findFirstPosting(start, end, value + 1) };
+	}
+
+	/**
+	 * Returns the first position in the given range whose value is at least
+	 * the given value, or the end of the range if there is none.
+	 */
+	long findFirstPosting(long start, long end, long value) {
+		long low = start;
+		long high = end;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if ((this.postings.get(middle) >>> 32) < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
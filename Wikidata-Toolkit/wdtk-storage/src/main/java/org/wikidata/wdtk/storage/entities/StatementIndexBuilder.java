@@ -0,0 +1,409 @@
+package org.wikidata.wdtk.storage.entities;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+import org.wikidata.wdtk.storage.datastructures.IntObjectHashMap;
+import org.wikidata.wdtk.storage.datastructures.MappedLongArray;
+
+/**
+ * Processor that builds a {@link StatementIndex} in one pass over a dump. The
+ * index is written to the given directory when {@link #close()} is called,
+ * and can be opened with {@link StatementIndex#StatementIndex(Path)} after
+ * that. An existing index in the directory is replaced.
+ * <p>
+ * Postings are collected in memory for each property. Whenever the number of
+ * postings reaches the buffer size, they are sorted and written to a
+ * temporary file in the directory. When processing ends, these files are
+ * merged into the columns of the index. The heap that is needed is therefore
+ * bounded by the buffer size, no matter how large the dump is.
+ *
+ * @author agent
+ *
+ */
+public class StatementIndexBuilder implements EntityDocumentDumpProcessor {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(StatementIndexBuilder.class);
+
+	/**
+	 * Default number of postings that are collected in memory before they
+	 * are written to a temporary file. Each posting needs 8 bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 24;
+
+	static final String RUN_FILE_PREFIX = "run-";
+	static final String RUN_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * Postings of one property that have been collected in memory.
+	 */
+	static class PostingBuffer {
+		long[] postings = new long[16];
+		int size;
+
+		void add(long posting) {
+			if (this.size == this.postings.length) {
+				this.postings = Arrays.copyOf(this.postings, 2 * this.size);
+			}
+			this.postings[this.size++] = posting;
+		}
+	}
+
+	/**
+	 * Reader for the postings of a temporary file, which contains the sorted
+	 * postings of each property in ascending order of properties.
+	 */
+	static class RunReader {
+		final DataInputStream input;
+
+		/**
+		 * Property of the postings that are read, or
+		 * {@link Integer#MAX_VALUE} if the file has been read completely.
+		 */
+		int property;
+		int remainingPostings;
+		long posting;
+
+		RunReader(DataInputStream input) throws IOException {
+			this.input = input;
+			readProperty();
+		}
+
+		void readProperty() throws IOException {
+			this.property = this.input.readInt();
+			if (this.property < 0) {
+				this.property = Integer.MAX_VALUE;
+				this.remainingPostings = 0;
+			} else {
+				this.remainingPostings = this.input.readInt();
+			}
+		}
+
+		/**
+		 * Reads the next posting of the current property.
+		 *
+		 * @return false if there are no more postings for this property
+		 */
+		boolean readPosting() throws IOException {
+			if (this.remainingPostings == 0) {
+				return false;
+			}
+			this.posting = this.input.readLong();
+			this.remainingPostings--;
+			return true;
+		}
+	}
+
+	final Path directory;
+
+	final int bufferSize;
+
+	final IntObjectHashMap<PostingBuffer> buffers = new IntObjectHashMap<>();
+
+	int bufferedPostings;
+
+	final List<Path> runFiles = new ArrayList<>();
+
+	/**
+	 * Creates a builder that writes the index to the given directory, using
+	 * the default buffer size.
+	 *
+	 * @param directory
+	 *            the directory of the index
+	 */
+	public StatementIndexBuilder(Path directory) {
+		this(directory, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a builder that writes the index to the given directory.
+	 *
+	 * @param directory
+	 *            the directory of the index
+	 * @param bufferSize
+	 *            number of postings that are collected in memory before they
+	 *            are written to a temporary file
+	 */
+	public StatementIndexBuilder(Path directory, int bufferSize) {
+		this.directory = directory;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void open() {
+		try {
+			Files.createDirectories(this.directory);
+			// an incomplete index must not be opened
+			Files.deleteIfExists(this.directory
+					.resolve(StatementIndex.PROPERTIES_FILE));
+			Files.deleteIfExists(this.directory
+					.resolve(StatementIndex.POSTINGS_FILE));
+		} catch (IOException e) {
+			reportException(e);
+		}
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		addStatements(itemDocument.getItemId(),
+				itemDocument.getStatementGroups());
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		addStatements(propertyDocument.getPropertyId(),
+				propertyDocument.getStatementGroups());
+	}
+
+	@Override
+	public void close() {
+		try {
+			writeRun();
+			mergeRuns();
+		} catch (IOException e) {
+			reportException(e);
+		} finally {
+			for (Path runFile : this.runFiles) {
+				try {
+					Files.deleteIfExists(runFile);
+				} catch (IOException e) {
+					logger.warn("Could not delete temporary file " + runFile
+							+ ": " + e.toString());
+				}
+			}
+			this.runFiles.clear();
+		}
+	}
+
+	/**
+	 * Adds the postings for the statements of one subject.
+	 *
+	 * @param subject
+	 *            the subject of the statements
+	 * @param statementGroups
+	 *            the statements
+	 */
+	void addStatements(EntityIdValue subject,
+			List<StatementGroup> statementGroups) {
+		long subjectKey = StatementIndex.getEntityKey(subject.getId());
+		if (subjectKey < 0 || subjectKey > StatementIndex.MAX_ENTITY_KEY) {
+			return;
+		}
+		for (StatementGroup sg : statementGroups) {
+			long propertyId = EntityDocumentStore.getNumericId(sg
+					.getProperty().getId());
+			if (propertyId < 0 || propertyId > Integer.MAX_VALUE) {
+				continue;
+			}
+			PostingBuffer buffer = this.buffers.get((int) propertyId);
+			if (buffer == null) {
+				buffer = new PostingBuffer();
+				this.buffers.put((int) propertyId, buffer);
+			}
+			int oldSize = buffer.size;
+			buffer.add((StatementIndex.ANY_VALUE << 32) | subjectKey);
+			for (Statement s : sg) {
+				Value value = s.getValue();
+				if (value instanceof EntityIdValue) {
+					long valueKey = StatementIndex
+							.getEntityKey(((EntityIdValue) value).getId());
+					if (valueKey >= 0
+							&& valueKey <= StatementIndex.MAX_ENTITY_KEY) {
+						buffer.add(((valueKey + 1) << 32) | subjectKey);
+					}
+				}
+			}
+			this.bufferedPostings += buffer.size - oldSize;
+		}
+
+		if (this.bufferedPostings >= this.bufferSize) {
+			try {
+				writeRun();
+			} catch (IOException e) {
+				reportException(e);
+			}
+		}
+	}
+
+	/**
+	 * Sorts the postings that have been collected in memory and writes them to
+	 * a new temporary file.
+	 *
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	void writeRun() throws IOException {
+		if (this.bufferedPostings == 0) {
+			return;
+		}
+		int[] properties = new int[this.buffers.size()];
+		int propertyCount = 0;
+		for (int slot = this.buffers.nextSlot(-1); slot >= 0; slot = this.buffers
+				.nextSlot(slot)) {
+			properties[propertyCount++] = this.buffers.keyAt(slot);
+		}
+		Arrays.sort(properties);
+
+		Path runFile = this.directory.resolve(RUN_FILE_PREFIX
+				+ this.runFiles.size() + RUN_FILE_SUFFIX);
+		this.runFiles.add(runFile);
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+			for (int property : properties) {
+				PostingBuffer buffer = this.buffers.get(property);
+				Arrays.sort(buffer.postings, 0, buffer.size);
+				int count = 0;
+				for (int i = 0; i < buffer.size; i++) {
+					if (i == 0 || buffer.postings[i] != buffer.postings[i - 1]) {
+						buffer.postings[count++] = buffer.postings[i];
+					}
+				}
+				out.writeInt(property);
+				out.writeInt(count);
+				for (int i = 0; i < count; i++) {
+					out.writeLong(buffer.postings[i]);
+				}
+			}
+			out.writeInt(-1);
+		}
+
+		this.buffers.clear();
+		this.bufferedPostings = 0;
+	}
+
+	/**
+	 * Merges the temporary files into the files of the index.
+	 *
+	 * @throws IOException
+	 *             if the files could not be read or written
+	 */
+	void mergeRuns() throws IOException {
+		List<Integer> propertyIds = new ArrayList<>();
+		List<Long> propertyStarts = new ArrayList<>();
+		List<Long> propertySizes = new ArrayList<>();
+
+		List<RunReader> readers = new ArrayList<>();
+		try (MappedLongArray postings = new MappedLongArray(
+				this.directory.resolve(StatementIndex.POSTINGS_FILE))) {
+			for (Path runFile : this.runFiles) {
+				readers.add(new RunReader(new DataInputStream(
+						new BufferedInputStream(Files.newInputStream(runFile)))));
+			}
+
+			PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(
+					1, readers.size()), new Comparator<RunReader>() {
+				@Override
+				public int compare(RunReader o1, RunReader o2) {
+					return Long.compare(o1.posting, o2.posting);
+				}
+			});
+			long position = 0;
+			while (true) {
+				int property = Integer.MAX_VALUE;
+				for (RunReader reader : readers) {
+					property = Math.min(property, reader.property);
+				}
+				if (property == Integer.MAX_VALUE) {
+					break;
+				}
+
+				for (RunReader reader : readers) {
+					if (reader.property == property && reader.readPosting()) {
+						queue.add(reader);
+					}
+				}
+				long start = position;
+				long lastPosting = -1;
+				while (!queue.isEmpty()) {
+					RunReader reader = queue.poll();
+					if (reader.posting != lastPosting) {
+						postings.set(position++, reader.posting);
+						lastPosting = reader.posting;
+					}
+					if (reader.readPosting()) {
+						queue.add(reader);
+					}
+				}
+				propertyIds.add(property);
+				propertyStarts.add(start);
+				propertySizes.add(position - start);
+
+				for (RunReader reader : readers) {
+					if (reader.property == property) {
+						reader.readProperty();
+					}
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.input.close();
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(this.directory
+						.resolve(StatementIndex.PROPERTIES_FILE))))) {
+			out.writeInt(propertyIds.size());
+			for (int i = 0; i < propertyIds.size(); i++) {
+				out.writeInt(propertyIds.get(i));
+				out.writeLong(propertyStarts.get(i));
+				out.writeLong(propertySizes.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Reports a given exception as a RuntimeException, since the interface
+	 * does not allow us to throw checked exceptions directly.
+	 *
+	 * @param e
+	 *            the exception to report
+	 * @throws RuntimeException
+	 *             in all cases
+	 */
+	void reportException(IOException e) {
+		logger.error("Failed to build statement index: " + e.toString());
+		throw new RuntimeException(e.toString(), e);
+	}
+
+}
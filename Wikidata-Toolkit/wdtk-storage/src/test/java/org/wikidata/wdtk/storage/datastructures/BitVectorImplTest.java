@@ -247,6 +247,32 @@ public class BitVectorImplTest {
 
 	}
 
+	@Test
+	public void testSelectInWord() {
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				0x2468);
+		for (int i = 0; i < 0x100; i++) {
+			long word = 0;
+			for (int j = 0; j < BitVectorImpl.WORD_SIZE; j++) {
+				if (generator.getPseudorandomBoolean()
+						&& generator.getPseudorandomBoolean()) {
+					word |= 1L << j;
+				}
+			}
+			if (i == 0) {
+				word = -1L;
+			}
+			int rank = 0;
+			for (int j = 0; j < BitVectorImpl.WORD_SIZE; j++) {
+				if (((word >>> j) & 1) == 1) {
+					Assert.assertEquals(j,
+							BitVectorImpl.selectInWord(word, rank));
+					rank++;
+				}
+			}
+		}
+	}
+
 	@Test
 	public void testSize() {
 		{
@@ -0,0 +1,226 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for {@link CompressedBitVector}.
+ *
+ * @author agent
+ *
+ */
+public class CompressedBitVectorTest {
+
+	/**
+	 * Asserts that the given bit vector has the same bits, counts, and
+	 * positions as the reference bit vector.
+	 *
+	 * @param expected
+	 *            reference bit vector
+	 * @param bv
+	 *            bit vector to check
+	 */
+	void assertSameRanks(RankedBitVectorImpl expected, CompressedBitVector bv) {
+		Assert.assertEquals(expected, bv);
+		Assert.assertEquals(bv, expected);
+		Assert.assertEquals(expected.hashCode(), bv.hashCode());
+		Assert.assertEquals(expected.countBits(true, expected.size()),
+				bv.cardinality());
+		for (long index = 0; index < expected.size(); index += 7) {
+			Assert.assertEquals(expected.countBits(true, index),
+					bv.countBits(true, index));
+			Assert.assertEquals(expected.countBits(false, index),
+					bv.countBits(false, index));
+			Assert.assertEquals(expected.findPosition(true, index),
+					bv.findPosition(true, index));
+			Assert.assertEquals(expected.findPosition(false, index),
+					bv.findPosition(false, index));
+		}
+	}
+
+	/**
+	 * Returns a bit vector with pseudorandom bits in the given ranges, where
+	 * each range has its own density of <code>true</code> values. This covers
+	 * array, bitmap, and run chunks.
+	 */
+	RankedBitVectorImpl createBitVector(int seed) {
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				seed);
+		RankedBitVectorImpl ret = new RankedBitVectorImpl();
+		int[] densities = { 0, 1, 16, 2, 0, 16, 8 };
+		for (int density : densities) {
+			for (int i = 0; i < 0x10000; i++) {
+				boolean bit = false;
+				for (int j = 0; j < density && !bit; j++) {
+					bit = generator.getPseudorandomBoolean()
+							&& generator.getPseudorandomBoolean()
+							&& generator.getPseudorandomBoolean()
+							&& generator.getPseudorandomBoolean();
+				}
+				ret.addBit(density == 16 ? (i % 1000) < 900 : bit);
+			}
+		}
+		return ret;
+	}
+
+	@Test
+	public void testAddAndSetBits() {
+		RankedBitVectorImpl expected = createBitVector(1234);
+		CompressedBitVector bv = new CompressedBitVector();
+		for (long index = 0; index < expected.size(); index++) {
+			bv.addBit(expected.getBit(index));
+		}
+		assertSameRanks(expected, bv);
+
+		bv.runOptimize();
+		assertSameRanks(expected, bv);
+
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				4321);
+		for (long index = 0; index < expected.size(); index += 3) {
+			boolean bit = generator.getPseudorandomBoolean();
+			expected.setBit(index, bit);
+			bv.setBit(index, bit);
+		}
+		assertSameRanks(expected, bv);
+	}
+
+	@Test
+	public void testCopyConstructor() {
+		RankedBitVectorImpl expected = createBitVector(1111);
+		CompressedBitVector bv = new CompressedBitVector(expected);
+		assertSameRanks(expected, bv);
+		assertSameRanks(expected, new CompressedBitVector(bv));
+	}
+
+	@Test
+	public void testFlexibleSize() {
+		CompressedBitVector bv = new CompressedBitVector();
+		Assert.assertEquals(0, bv.size());
+		Assert.assertFalse(bv.getBit(0x1000000));
+		bv.setBit(0x1000000, true);
+		Assert.assertEquals(0x1000001, bv.size());
+		Assert.assertTrue(bv.getBit(0x1000000));
+		Assert.assertEquals(1, bv.countBits(true, 0x1000000));
+		Assert.assertEquals(0x1000000, bv.countBits(false, 0x1000000));
+		Assert.assertEquals(0x1000000, bv.findPosition(true, 1));
+		Assert.assertEquals(0xFFFFFF, bv.findPosition(false, 0x1000000));
+		Assert.assertEquals(RankedBitVector.NOT_FOUND,
+				bv.findPosition(false, 0x1000001));
+		bv.setBit(0x1000000, false);
+		Assert.assertEquals(0, bv.cardinality());
+		Assert.assertEquals(0x1000001, bv.size());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidPosition() {
+		new CompressedBitVector().setBit(-1, true);
+	}
+
+	@Test
+	public void testNextSetBit() {
+		RankedBitVectorImpl expected = createBitVector(2222);
+		CompressedBitVector bv = new CompressedBitVector(expected);
+		bv.runOptimize();
+		long count = 0;
+		long previous = -1;
+		for (long i = bv.nextSetBit(0); i >= 0; i = bv.nextSetBit(i + 1)) {
+			count++;
+			Assert.assertTrue(expected.getBit(i));
+			Assert.assertEquals(i, expected.findPosition(true, count));
+			Assert.assertTrue(i > previous);
+			previous = i;
+		}
+		Assert.assertEquals(expected.countBits(true, expected.size()), count);
+	}
+
+	@Test
+	public void testLogicalOperations() {
+		RankedBitVectorImpl bv0 = createBitVector(3333);
+		RankedBitVectorImpl bv1 = createBitVector(4444);
+		bv1.setBit(bv1.size() + 0x20000, true);
+		CompressedBitVector cbv0 = new CompressedBitVector(bv0);
+		CompressedBitVector cbv1 = new CompressedBitVector(bv1);
+		cbv1.runOptimize();
+
+		RankedBitVectorImpl expectedAnd = new RankedBitVectorImpl();
+		RankedBitVectorImpl expectedOr = new RankedBitVectorImpl();
+		RankedBitVectorImpl expectedAndNot = new RankedBitVectorImpl();
+		for (long index = 0; index < bv1.size(); index++) {
+			expectedAnd.addBit(bv0.getBit(index) && bv1.getBit(index));
+			expectedOr.addBit(bv0.getBit(index) || bv1.getBit(index));
+			if (index < bv0.size()) {
+				expectedAndNot.addBit(bv0.getBit(index) && !bv1.getBit(index));
+			}
+		}
+
+		assertSameRanks(expectedAnd, cbv0.and(cbv1));
+		assertSameRanks(expectedAnd, cbv1.and(cbv0));
+		assertSameRanks(expectedOr, cbv0.or(cbv1));
+		assertSameRanks(expectedOr, cbv1.or(cbv0));
+		assertSameRanks(expectedAndNot, cbv0.andNot(cbv1));
+
+		// the operands are not changed
+		assertSameRanks(bv0, cbv0);
+		assertSameRanks(bv1, cbv1);
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		RankedBitVectorImpl expected = createBitVector(5555);
+		CompressedBitVector bv = new CompressedBitVector(expected);
+		bv.runOptimize();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		bv.write(new DataOutputStream(out));
+		CompressedBitVector bv2 = CompressedBitVector
+				.read(new DataInputStream(new ByteArrayInputStream(out
+						.toByteArray())));
+		assertSameRanks(expected, bv2);
+		Assert.assertEquals(bv, bv2);
+	}
+
+	@Test
+	public void testSparseVectors() {
+		CompressedBitVector bv0 = new CompressedBitVector();
+		CompressedBitVector bv1 = new CompressedBitVector();
+		for (long index = 0; index < 100000000L; index += 7) {
+			bv0.setBit(index, true);
+		}
+		for (long index = 0; index < 100000000L; index += 1000) {
+			bv1.setBit(index, true);
+		}
+		CompressedBitVector bv = bv0.and(bv1);
+		Assert.assertEquals((100000000L - 1) / 7000 + 1, bv.cardinality());
+		for (long i = bv.nextSetBit(0); i >= 0; i = bv.nextSetBit(i + 1)) {
+			Assert.assertEquals(0, i % 7000);
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for {@link IntIntHashMap}.
+ *
+ * @author agent
+ *
+ */
+public class IntIntHashMapTest {
+
+	@Test
+	public void testCounting() {
+		IntIntHashMap map = new IntIntHashMap();
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(1234);
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(5000) - 100;
+			Integer value = expected.get(key);
+			expected.put(key, value == null ? 1 : value + 1);
+			Assert.assertEquals((int) expected.get(key), map.addTo(key, 1));
+		}
+		Assert.assertEquals(expected.size(), map.size());
+		for (int key = -200; key < 5000; key++) {
+			Assert.assertEquals(expected.containsKey(key), map.containsKey(key));
+			Assert.assertEquals(expected.containsKey(key) ? expected.get(key)
+					: 0, map.get(key));
+		}
+
+		int count = 0;
+		for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+			Assert.assertEquals((int) expected.get(map.keyAt(slot)),
+					map.valueAt(slot));
+			count++;
+		}
+		Assert.assertEquals(expected.size(), count);
+	}
+
+	@Test
+	public void testPutAndClear() {
+		IntIntHashMap map = new IntIntHashMap(2);
+		Assert.assertEquals(0, map.put(0, 5));
+		Assert.assertEquals(0, map.put(Integer.MIN_VALUE, 7));
+		Assert.assertEquals(5, map.put(0, 6));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals(6, map.get(0));
+		Assert.assertEquals(7, map.get(Integer.MIN_VALUE));
+		Assert.assertFalse(map.containsKey(1));
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertEquals(-1, map.nextSlot(-1));
+	}
+
+}
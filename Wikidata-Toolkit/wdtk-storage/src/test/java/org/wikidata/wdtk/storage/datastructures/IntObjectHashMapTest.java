@@ -0,0 +1,72 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for {@link IntObjectHashMap}.
+ *
+ * @author agent
+ *
+ */
+public class IntObjectHashMapTest {
+
+	@Test
+	public void testPutAndGet() {
+		IntObjectHashMap<String> map = new IntObjectHashMap<>();
+		Map<Integer, String> expected = new HashMap<>();
+		Random random = new Random(4321);
+		for (int i = 0; i < 50000; i++) {
+			int key = random.nextInt(20000) - 100;
+			String value = "v" + i;
+			Assert.assertEquals(expected.put(key, value), map.put(key, value));
+		}
+		Assert.assertEquals(expected.size(), map.size());
+		for (int key = -200; key < 20000; key++) {
+			Assert.assertEquals(expected.containsKey(key), map.containsKey(key));
+			Assert.assertEquals(expected.get(key), map.get(key));
+		}
+
+		int count = 0;
+		for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+			Assert.assertEquals(expected.get(map.keyAt(slot)),
+					map.valueAt(slot));
+			count++;
+		}
+		Assert.assertEquals(expected.size(), count);
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertNull(map.get(0));
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullValue() {
+		new IntObjectHashMap<String>().put(1, null);
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for {@link LongLongHashMap}.
+ *
+ * @author agent
+ *
+ */
+public class LongLongHashMapTest {
+
+	@Test
+	public void testCounting() {
+		LongLongHashMap map = new LongLongHashMap();
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(5678);
+		for (int i = 0; i < 100000; i++) {
+			long key = (random.nextInt(5000) - 100) * 0x100000001L;
+			long increment = random.nextInt(1000);
+			Long value = expected.get(key);
+			expected.put(key, value == null ? increment : value + increment);
+			Assert.assertEquals((long) expected.get(key),
+					map.addTo(key, increment));
+		}
+		Assert.assertEquals(expected.size(), map.size());
+
+		int count = 0;
+		for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+			Assert.assertEquals((long) expected.get(map.keyAt(slot)),
+					map.valueAt(slot));
+			count++;
+		}
+		Assert.assertEquals(expected.size(), count);
+		Assert.assertEquals(0, map.get(1));
+		Assert.assertEquals(expected.get(0L).longValue(), map.put(0, 3));
+		Assert.assertEquals(3, map.get(0));
+	}
+
+}
@@ -0,0 +1,162 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link MappedBitVector}.
+ *
+ * @author agent
+ *
+ */
+public class MappedBitVectorTest {
+
+	Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("wdtk-bitvector", ".bin");
+		Files.delete(this.file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.file);
+	}
+
+	/**
+	 * Asserts that the given bit vector has the same bits, counts, and
+	 * positions as the reference bit vector.
+	 *
+	 * @param expected
+	 *            reference bit vector
+	 * @param bv
+	 *            bit vector to check
+	 */
+	void assertSameRanks(RankedBitVectorImpl expected, RankedBitVector bv) {
+		Assert.assertEquals(expected, bv);
+		Assert.assertEquals(bv, expected);
+		Assert.assertEquals(expected.hashCode(), bv.hashCode());
+		for (long index = 0; index < expected.size(); index += 7) {
+			Assert.assertEquals(expected.countBits(true, index),
+					bv.countBits(true, index));
+			Assert.assertEquals(expected.countBits(false, index),
+					bv.countBits(false, index));
+			Assert.assertEquals(expected.findPosition(true, index),
+					bv.findPosition(true, index));
+			Assert.assertEquals(expected.findPosition(false, index),
+					bv.findPosition(false, index));
+		}
+	}
+
+	@Test
+	public void testDirectBuffers() {
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				0x1234);
+		RankedBitVectorImpl expected = new RankedBitVectorImpl();
+		MappedBitVector bv = new MappedBitVector();
+		for (int i = 0; i < 0x3000; i++) {
+			boolean value = generator.getPseudorandomBoolean();
+			expected.addBit(value);
+			bv.addBit(value);
+		}
+		assertSameRanks(expected, bv);
+
+		expected.setBit(0x10, !expected.getBit(0x10));
+		bv.setBit(0x10, expected.getBit(0x10));
+		expected.setBit(0x5000, true);
+		bv.setBit(0x5000, true);
+		assertSameRanks(expected, bv);
+		Assert.assertFalse(bv.getBit(0x6000));
+		Assert.assertEquals(expected.toString(), bv.toString());
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				0x4321);
+		RankedBitVectorImpl expected = new RankedBitVectorImpl();
+		try (MappedBitVector bv = new MappedBitVector(this.file)) {
+			for (int i = 0; i < 0x2000; i++) {
+				boolean value = generator.getPseudorandomBoolean();
+				expected.addBit(value);
+				bv.addBit(value);
+			}
+			Assert.assertEquals(expected.countBits(true, 0x1FFF),
+					bv.countBits(true, 0x1FFF));
+			// change a bit after the counts have been computed
+			expected.setBit(3, !expected.getBit(3));
+			bv.setBit(3, expected.getBit(3));
+		}
+
+		try (MappedBitVector bv = new MappedBitVector(this.file)) {
+			Assert.assertEquals(MappedBitVector.getBlockCount(0x2000),
+					bv.validBlocks);
+			assertSameRanks(expected, bv);
+		}
+	}
+
+	@Test
+	public void testMultipleSegments() throws IOException {
+		long segmentSize = MappedBitVector.BLOCK_SIZE << MappedBitVector.LG_BLOCKS_PER_SEGMENT;
+		long[] positions = { 1, segmentSize - 1, segmentSize,
+				2 * segmentSize + 0x101 };
+		try (MappedBitVector bv = new MappedBitVector(this.file)) {
+			for (long position : positions) {
+				bv.setBit(position, true);
+			}
+		}
+
+		try (MappedBitVector bv = new MappedBitVector(this.file)) {
+			Assert.assertEquals(positions[3] + 1, bv.size());
+			for (int i = 0; i < positions.length; i++) {
+				Assert.assertTrue(bv.getBit(positions[i]));
+				Assert.assertEquals(i + 1, bv.countBits(true, positions[i]));
+				Assert.assertEquals(positions[i],
+						bv.findPosition(true, i + 1));
+			}
+			Assert.assertEquals(segmentSize - 2,
+					bv.findPosition(false, segmentSize - 2));
+			Assert.assertEquals(RankedBitVector.NOT_FOUND,
+					bv.findPosition(true, positions.length + 1));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidFile() throws IOException {
+		Files.write(this.file, new byte[MappedBitVector.HEADER_SIZE]);
+		new MappedBitVector(this.file).close();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testNegativePosition() {
+		new MappedBitVector().setBit(-1, true);
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.wikidata.wdtk.storage.datastructures;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link MappedLongArray}.
+ *
+ * @author agent
+ *
+ */
+public class MappedLongArrayTest {
+
+	Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("wdtk-longarray", ".bin");
+		Files.delete(this.file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.file);
+	}
+
+	@Test
+	public void testSetAndReopen() throws IOException {
+		long large = 3 * MappedLongArray.SEGMENT_MASK + 5;
+		try (MappedLongArray array = new MappedLongArray(this.file)) {
+			Assert.assertEquals(0, array.size());
+			Assert.assertEquals(0, array.get(17));
+			for (long i = 0; i < 1000; i++) {
+				array.set(i, i * i - 500);
+			}
+			array.set(large, Long.MIN_VALUE);
+			Assert.assertEquals(large + 1, array.size());
+			Assert.assertEquals(0, array.get(large - 1));
+		}
+
+		try (MappedLongArray array = new MappedLongArray(this.file)) {
+			Assert.assertEquals(large + 1, array.size());
+			for (long i = 0; i < 1000; i++) {
+				Assert.assertEquals(i * i - 500, array.get(i));
+			}
+			Assert.assertEquals(Long.MIN_VALUE, array.get(large));
+			Assert.assertEquals(0, array.get(large + 1));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidFile() throws IOException {
+		Files.write(this.file, new byte[100]);
+		new MappedLongArray(this.file).close();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidPosition() throws IOException {
+		try (MappedLongArray array = new MappedLongArray(this.file)) {
+			array.set(-1, 1);
+		}
+	}
+
+}
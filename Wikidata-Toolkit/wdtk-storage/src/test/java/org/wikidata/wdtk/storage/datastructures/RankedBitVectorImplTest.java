@@ -340,6 +340,28 @@ public class RankedBitVectorImplTest {
 		Assert.assertFalse(it.hasNext());
 	}
 
+	@Test
+	public void testModificationsAfterQueries() {
+		PseudorandomBooleanGenerator generator = new PseudorandomBooleanGenerator(
+				0x1357);
+		RankedBitVectorImpl bv = new RankedBitVectorImpl(0, 0x50, 0x40);
+		for (int i = 0; i < 0x1000; i++) {
+			bv.addBit(generator.getPseudorandomBoolean());
+			if ((i % 0x123) == 0) {
+				assertCorrectCount(bv, i);
+				assertCorrectFindPosition(bv, i / 2);
+			}
+		}
+		assertCorrectCount(bv);
+		assertCorrectFindPosition(bv);
+
+		bv.setBit(0x800, !bv.getBit(0x800));
+		bv.setBit(0x10, !bv.getBit(0x10));
+		bv.setBit(0x1100, true);
+		assertCorrectCount(bv);
+		assertCorrectFindPosition(bv);
+	}
+
 	@Test
 	public void testSize0() {
 		RankedBitVectorImpl bv = new RankedBitVectorImpl(0x100);
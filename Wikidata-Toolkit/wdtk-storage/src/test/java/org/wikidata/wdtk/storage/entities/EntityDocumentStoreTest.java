@@ -0,0 +1,224 @@
+package org.wikidata.wdtk.storage.entities;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.PropertyDocumentBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentSource;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+/**
+ * Test class for {@link EntityDocumentStore}.
+ *
+ * @author agent
+ *
+ */
+public class EntityDocumentStoreTest {
+
+	static final String SITE_IRI = Datamodel.SITE_WIKIDATA;
+
+	Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("wdtk-store");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (DirectoryStream<Path> files = Files
+				.newDirectoryStream(this.directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	ItemDocument makeItemDocument(int id) {
+		return ItemDocumentBuilder
+				.forItemId(Datamodel.makeWikidataItemIdValue("Q" + id))
+				.withLabel("item " + id, "en").withRevisionId(id).build();
+	}
+
+	PropertyDocument makePropertyDocument(int id) {
+		return PropertyDocumentBuilder
+				.forPropertyIdAndDatatype(
+						Datamodel.makeWikidataPropertyIdValue("P" + id),
+						DatatypeIdValue.DT_ITEM)
+				.withLabel("property " + id, "en").build();
+	}
+
+	@Test
+	public void testAddAndReopen() throws IOException {
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			for (int i = 1; i <= 2000; i += 3) {
+				store.processItemDocument(makeItemDocument(i));
+			}
+			store.processPropertyDocument(makePropertyDocument(31));
+			// documents can be read before they are written to disk
+			Assert.assertEquals(makeItemDocument(1999),
+					store.getEntityDocument("Q1999"));
+		}
+
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			Assert.assertEquals(668, store.getDocumentCount());
+			for (int i = 1; i <= 2000; i++) {
+				EntityDocument document = store.getEntityDocument("Q" + i);
+				if (i % 3 == 1) {
+					Assert.assertEquals(makeItemDocument(i), document);
+				} else {
+					Assert.assertNull(document);
+				}
+			}
+			Assert.assertEquals(makePropertyDocument(31),
+					store.getEntityDocument("P31"));
+			Assert.assertTrue(store.containsEntityDocument("P31"));
+			Assert.assertFalse(store.containsEntityDocument("P1"));
+			Assert.assertNull(store.getEntityDocument("Q100000"));
+			Assert.assertNull(store.getEntityDocument("L1"));
+			Assert.assertNull(store.getEntityDocument("Qx"));
+		}
+	}
+
+	@Test
+	public void testReopenWithoutClose() throws IOException {
+		// simulate a crash by not closing the first store
+		@SuppressWarnings("resource")
+		EntityDocumentStore crashedStore = new EntityDocumentStore(
+				this.directory, SITE_IRI);
+		crashedStore.processItemDocument(makeItemDocument(1));
+		crashedStore.flush();
+		crashedStore.processItemDocument(makeItemDocument(2));
+		crashedStore.processItemDocument(makeItemDocument(3));
+		Assert.assertEquals(3, crashedStore.getDocumentCount());
+
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			Assert.assertEquals(1, store.getDocumentCount());
+			Assert.assertNull(store.getEntityDocument("Q2"));
+			// the new block is stored where the unwritten block would have
+			// been
+			store.processItemDocument(makeItemDocument(4));
+			store.flush();
+			Assert.assertEquals(makeItemDocument(1),
+					store.getEntityDocument("Q1"));
+			Assert.assertEquals(makeItemDocument(4),
+					store.getEntityDocument("Q4"));
+			Assert.assertNull(store.getEntityDocument("Q2"));
+			Assert.assertNull(store.getEntityDocument("Q3"));
+			Assert.assertEquals(1,
+					store.getEntityDocuments("Q2", "Q3", "Q4").size());
+		}
+	}
+
+	@Test
+	public void testEntityDocumentSource() throws Exception {
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			store.processItemDocument(makeItemDocument(42));
+			EntityDocumentSource source = store;
+			Assert.assertEquals(makeItemDocument(42),
+					source.getEntityDocument("Q42"));
+			Assert.assertEquals(1,
+					source.getEntityDocuments(Arrays.asList("Q42", "Q43"))
+							.size());
+		}
+	}
+
+	@Test
+	public void testUpdateDocument() throws IOException {
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			store.processItemDocument(makeItemDocument(42));
+			store.flush();
+			ItemDocument newDocument = ItemDocumentBuilder
+					.forItemId(Datamodel.makeWikidataItemIdValue("Q42"))
+					.withLabel("Douglas Adams", "en").build();
+			store.processItemDocument(newDocument);
+			Assert.assertEquals(newDocument, store.getEntityDocument("Q42"));
+			Assert.assertEquals(1, store.getDocumentCount());
+		}
+	}
+
+	@Test
+	public void testGetEntityDocuments() throws IOException {
+		try (EntityDocumentStore store = new EntityDocumentStore(
+				this.directory, SITE_IRI)) {
+			for (int i = 1; i <= 1000; i++) {
+				store.processItemDocument(makeItemDocument(i));
+			}
+			store.processPropertyDocument(makePropertyDocument(31));
+
+			Map<String, EntityDocument> documents = store.getEntityDocuments(
+					"Q900", "P31", "Q2", "Q5000");
+			Assert.assertEquals(3, documents.size());
+			Assert.assertEquals(makeItemDocument(900), documents.get("Q900"));
+			Assert.assertEquals(makeItemDocument(2), documents.get("Q2"));
+			Assert.assertEquals(makePropertyDocument(31),
+					documents.get("P31"));
+
+			List<String> ids = new ArrayList<>();
+			for (int i = 1000; i > 0; i -= 2) {
+				ids.add("Q" + i);
+			}
+			ids.addAll(Arrays.asList("P31", "P32"));
+			final List<EntityDocument> processed = new ArrayList<>();
+			store.processEntityDocuments(ids, new EntityDocumentProcessor() {
+				@Override
+				public void processItemDocument(ItemDocument itemDocument) {
+					processed.add(itemDocument);
+				}
+
+				@Override
+				public void processPropertyDocument(
+						PropertyDocument propertyDocument) {
+					processed.add(propertyDocument);
+				}
+			});
+			Assert.assertEquals(501, processed.size());
+			// documents are processed in the order in which they were added
+			Assert.assertEquals(makeItemDocument(2), processed.get(0));
+			Assert.assertEquals(makePropertyDocument(31), processed.get(500));
+		}
+	}
+
+}
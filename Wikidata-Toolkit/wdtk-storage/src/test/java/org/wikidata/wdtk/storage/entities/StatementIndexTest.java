@@ -0,0 +1,238 @@
+package org.wikidata.wdtk.storage.entities;
+
+/*
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.PropertyDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+import org.wikidata.wdtk.storage.datastructures.CompressedBitVector;
+
+/**
+ * Test class for {@link StatementIndex} and {@link StatementIndexBuilder}.
+ *
+ * @author agent
+ *
+ */
+public class StatementIndexTest {
+
+	Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("wdtk-index");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (DirectoryStream<Path> files = Files
+				.newDirectoryStream(this.directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	Statement makeStatement(EntityIdValue subject, String propertyId,
+			Value value) {
+		StatementBuilder builder = StatementBuilder.forSubjectAndProperty(
+				subject, Datamodel.makeWikidataPropertyIdValue(propertyId));
+		if (value == null) {
+			builder.withSomeValue();
+		} else {
+			builder.withValue(value);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Creates an item where Q<i>id</i> is an instance of Q5 if <i>id</i> is
+	 * even and an instance of Q1000000 if <i>id</i> is divisible by 3. Every
+	 * fifth item has a string value for P18 and every seventh item has some
+	 * value for P279.
+	 */
+	ItemDocument makeItemDocument(int id) {
+		ItemIdValue subject = Datamodel.makeWikidataItemIdValue("Q" + id);
+		ItemDocumentBuilder builder = ItemDocumentBuilder.forItemId(subject);
+		if (id % 2 == 0) {
+			builder.withStatement(makeStatement(subject, "P31",
+					Datamodel.makeWikidataItemIdValue("Q5")));
+		}
+		if (id % 3 == 0) {
+			builder.withStatement(makeStatement(subject, "P31",
+					Datamodel.makeWikidataItemIdValue("Q1000000")));
+		}
+		if (id % 5 == 0) {
+			builder.withStatement(makeStatement(subject, "P18",
+					Datamodel.makeStringValue("Image " + id + ".jpg")));
+		}
+		if (id % 7 == 0) {
+			builder.withStatement(makeStatement(subject, "P279", null));
+		}
+		return builder.build();
+	}
+
+	void buildIndex(int bufferSize) {
+		StatementIndexBuilder builder = new StatementIndexBuilder(
+				this.directory, bufferSize);
+		builder.open();
+		for (int i = 1; i <= 1000; i++) {
+			builder.processItemDocument(makeItemDocument(i));
+		}
+		// a duplicate document must not lead to duplicate postings
+		builder.processItemDocument(makeItemDocument(6));
+		EntityIdValue property = Datamodel.makeWikidataPropertyIdValue("P1");
+		builder.processPropertyDocument(PropertyDocumentBuilder
+				.forPropertyIdAndDatatype(
+						Datamodel.makeWikidataPropertyIdValue("P1"),
+						DatatypeIdValue.DT_ITEM)
+				.withStatement(
+						makeStatement(property, "P31",
+								Datamodel.makeWikidataItemIdValue("Q5")))
+				.build());
+		builder.close();
+	}
+
+	void assertIndex() throws IOException {
+		try (StatementIndex index = new StatementIndex(this.directory)) {
+			// 500 even items, 167 odd multiples of 3, and P1
+			Assert.assertEquals(668, index.countSubjects("P31"));
+			Assert.assertEquals(501, index.countSubjects("P31", "Q5"));
+			Assert.assertEquals(333, index.countSubjects("P31", "Q1000000"));
+			Assert.assertEquals(200, index.countSubjects("P18"));
+			Assert.assertEquals(0, index.countSubjects("P18", "Q5"));
+			Assert.assertEquals(142, index.countSubjects("P279"));
+			Assert.assertEquals(0, index.countSubjects("P999"));
+			Assert.assertEquals(0, index.countSubjects("Q31"));
+			Assert.assertEquals(0, index.countSubjects("P31", "Q6"));
+
+			CompressedBitVector humans = index.getSubjects("P31", "Q5");
+			Assert.assertEquals(501, humans.cardinality());
+			Assert.assertTrue(humans.getBit(StatementIndex
+					.getEntityKey("P1")));
+			Assert.assertTrue(humans.getBit(StatementIndex
+					.getEntityKey("Q1000")));
+			Assert.assertFalse(humans.getBit(StatementIndex
+					.getEntityKey("Q999")));
+
+			CompressedBitVector both = humans.and(index.getSubjects("P31",
+					"Q1000000"));
+			Assert.assertEquals(166, both.cardinality());
+			long key = both.nextSetBit(0);
+			Assert.assertEquals("Q6", StatementIndex.getEntityId(key));
+
+			CompressedBitVector withImage = humans.and(index
+					.getSubjects("P18"));
+			Assert.assertEquals(100, withImage.cardinality());
+			Assert.assertEquals("Q10",
+					StatementIndex.getEntityId(withImage.nextSetBit(0)));
+		}
+	}
+
+	@Test
+	public void testSingleRun() throws IOException {
+		buildIndex(StatementIndexBuilder.DEFAULT_BUFFER_SIZE);
+		assertIndex();
+	}
+
+	@Test
+	public void testManyRuns() throws IOException {
+		buildIndex(100);
+		assertIndex();
+	}
+
+	@Test
+	public void testRebuild() throws IOException {
+		buildIndex(100);
+		buildIndex(1000);
+		assertIndex();
+		try (DirectoryStream<Path> files = Files
+				.newDirectoryStream(this.directory)) {
+			int count = 0;
+			for (Path file : files) {
+				Assert.assertFalse(file.getFileName().toString()
+						.endsWith(StatementIndexBuilder.RUN_FILE_SUFFIX));
+				count++;
+			}
+			Assert.assertEquals(2, count);
+		}
+	}
+
+	@Test
+	public void testLargeValueKeys() throws IOException {
+		// Q1073741823 has the largest key that can be indexed
+		ItemIdValue largestItem = Datamodel
+				.makeWikidataItemIdValue("Q1073741823");
+		EntityIdValue tooLargeProperty = Datamodel
+				.makeWikidataPropertyIdValue("P1073741823");
+		Assert.assertEquals(StatementIndex.MAX_ENTITY_KEY,
+				StatementIndex.getEntityKey(largestItem.getId()));
+
+		StatementIndexBuilder builder = new StatementIndexBuilder(
+				this.directory, 100);
+		builder.open();
+		for (int i = 1; i <= 3; i++) {
+			ItemIdValue subject = Datamodel.makeWikidataItemIdValue("Q" + i);
+			Value value = (i == 2) ? tooLargeProperty : largestItem;
+			builder.processItemDocument(ItemDocumentBuilder.forItemId(subject)
+					.withStatement(makeStatement(subject, "P31", value))
+					.build());
+		}
+		builder.close();
+
+		try (StatementIndex index = new StatementIndex(this.directory)) {
+			Assert.assertEquals(3, index.countSubjects("P31"));
+			Assert.assertEquals(2,
+					index.countSubjects("P31", largestItem.getId()));
+			Assert.assertEquals(0,
+					index.countSubjects("P31", tooLargeProperty.getId()));
+			CompressedBitVector subjects = index.getSubjects("P31",
+					largestItem.getId());
+			Assert.assertEquals("Q1",
+					StatementIndex.getEntityId(subjects.nextSetBit(0)));
+			Assert.assertEquals(0,
+					index.getSubjects("P31", tooLargeProperty.getId())
+							.cardinality());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingIndex() throws IOException {
+		new StatementIndex(this.directory).close();
+	}
+
+}
@@ -22,10 +22,7 @@ package org.wikidata.wdtk.wikibaseapi;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,10 +30,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wikidata.wdtk.util.WebResourceFetcherImpl;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MaxlagErrorException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorHandler;
 
@@ -45,7 +43,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Class to build up and hold a connection to a Wikibase API, managing cookies
- * and login.
+ * and login. The actual HTTP requests are made by an {@link HttpTransport},
+ * which keeps network connections alive between requests by default.
  *
  * @author Michael Guenther
  *
@@ -95,6 +94,12 @@ public class ApiConnection {
 	 */
 	final static String HEADER_FIELD_SET_COOKIE = "Set-Cookie";
 
+	/**
+	 * Name of the HTTP response header field that tells us how many seconds to
+	 * wait before retrying a request.
+	 */
+	final static String HEADER_FIELD_RETRY_AFTER = "Retry-After";
+
 	/**
 	 * String value in the result field of the JSON response if the login was
 	 * successful.
@@ -175,25 +180,53 @@ public class ApiConnection {
 	String password = "";
 
 	/**
-	 * Map of cookies that are currently set.
+	 * Map of cookies that are currently set. The map is concurrent since
+	 * requests may be sent from several threads at once.
+	 */
+	final Map<String, String> cookies = new ConcurrentHashMap<>();
+
+	/**
+	 * Transport used to send HTTP requests.
 	 */
-	final Map<String, String> cookies = new HashMap<>();
+	volatile HttpTransport transport;
 
 	/**
 	 * Mapper object used for deserializing JSON data.
 	 */
 	final ObjectMapper mapper = new ObjectMapper();
 
+	/**
+	 * Transport that is used by all connections that are created without a
+	 * transport of their own, or null if it was not needed yet.
+	 */
+	static HttpClientTransport defaultTransport = null;
+
 	/**
 	 * Creates an object to manage a connection to the Web API of a Wikibase
-	 * site.
+	 * site. HTTP requests are sent using the shared transport returned by
+	 * {@link #getDefaultTransport()}.
 	 *
 	 * @param apiBaseUrl
 	 *            base URI to the API, e.g.,
 	 *            "https://www.wikidata.org/w/api.php/"
 	 */
 	public ApiConnection(String apiBaseUrl) {
+		this(apiBaseUrl, getDefaultTransport());
+	}
+
+	/**
+	 * Creates an object to manage a connection to the Web API of a Wikibase
+	 * site, using the given transport for HTTP requests.
+	 *
+	 * @param apiBaseUrl
+	 *            base URI to the API, e.g.,
+	 *            "https://www.wikidata.org/w/api.php/"
+	 * @param transport
+	 *            the transport used to send requests
+	 */
+	public ApiConnection(String apiBaseUrl, HttpTransport transport) {
 		this.apiBaseUrl = apiBaseUrl;
+		this.transport = transport;
 	}
 
 	/**
@@ -214,6 +247,43 @@ public class ApiConnection {
 		return new ApiConnection(ApiConnection.URL_TEST_WIKIDATA_API);
 	}
 
+	/**
+	 * Returns the transport that is shared by all connections that were
+	 * created without a transport of their own. Sharing one transport means
+	 * that these connections also share one pool of network connections,
+	 * instead of each opening a pool that is never closed. Changing the
+	 * timeouts of this transport affects all of these connections.
+	 *
+	 * @return the default transport
+	 */
+	public static synchronized HttpClientTransport getDefaultTransport() {
+		if (defaultTransport == null) {
+			defaultTransport = new HttpClientTransport();
+		}
+		return defaultTransport;
+	}
+
+	/**
+	 * Returns the transport that is used to send HTTP requests.
+	 *
+	 * @return the transport
+	 */
+	public HttpTransport getTransport() {
+		return this.transport;
+	}
+
+	/**
+	 * Sets the transport that is used to send HTTP requests. This can be used
+	 * to configure timeouts or connection limits, or to use a different HTTP
+	 * implementation.
+	 *
+	 * @param transport
+	 *            the transport to use
+	 */
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
+	}
+
 	/**
 	 * Builds a string that serializes a list of objects separated by the pipe
 	 * character. The toString methods are used to turn objects into strings.
@@ -294,7 +364,7 @@ public class ApiConnection {
 			Map<String, String> params = new HashMap<>();
 			params.put("action", "logout");
 			params.put("format", "json"); // reduce the output
-			sendRequest("POST", params);
+			sendRequest("POST", params).close();
 
 			this.loggedIn = false;
 			this.username = "";
@@ -324,29 +394,95 @@ public class ApiConnection {
 	 *            will create a query string for the request.
 	 * @return API result
 	 * @throws IOException
+	 *             if the request failed or the server returned an error code
 	 */
 	public InputStream sendRequest(String requestMethod,
 			Map<String, String> parameters) throws IOException {
+		return sendHttpRequest(requestMethod, parameters).getContent();
+	}
+
+	/**
+	 * Sends a request to the API with the given parameters and parses the JSON
+	 * result. Errors reported by the API are thrown as exceptions, and
+	 * warnings are logged. For {@link MaxlagErrorException}, the time given
+	 * in the HTTP Retry-After header is recorded in the exception.
+	 *
+	 * @param requestMethod
+	 *            either POST or GET
+	 * @param parameters
+	 *            Maps parameter keys to values. Out of this map the function
+	 *            will create a query string for the request.
+	 * @return root node of the JSON result
+	 * @throws IOException
+	 *             if the request failed or the server returned an error code
+	 * @throws MediaWikiApiErrorException
+	 *             if the API returned an error
+	 */
+	public JsonNode sendJsonRequest(String requestMethod,
+			Map<String, String> parameters) throws IOException,
+			MediaWikiApiErrorException {
+		HttpTransportResponse response = sendHttpRequest(requestMethod,
+				parameters);
+		JsonNode root;
+		try (InputStream content = response.getContent()) {
+			root = this.mapper.readTree(content);
+		}
+
+		try {
+			checkErrors(root);
+		} catch (MaxlagErrorException e) {
+			List<String> retryAfter = response.getHeaderFields().get(
+					HEADER_FIELD_RETRY_AFTER);
+			if (retryAfter != null && !retryAfter.isEmpty()) {
+				try {
+					e.setRetryAfter(Integer.parseInt(retryAfter.get(0).trim()));
+				} catch (NumberFormatException ex) {
+					// HTTP dates are allowed too, but not used by MediaWiki
+				}
+			}
+			throw e;
+		}
+		logWarnings(root);
+		return root;
+	}
+
+	/**
+	 * Sends a request to the API with the given parameters and the given
+	 * request method and returns the complete response, including header
+	 * fields. It automatically fills the cookie map with cookies in the result
+	 * header after the request.
+	 *
+	 * @param requestMethod
+	 *            either POST or GET
+	 * @param parameters
+	 *            Maps parameter keys to values. Out of this map the function
+	 *            will create a query string for the request.
+	 * @return API response
+	 * @throws IOException
+	 *             if the request failed or the server returned an error code
+	 */
+	HttpTransportResponse sendHttpRequest(String requestMethod,
+			Map<String, String> parameters) throws IOException {
 		String queryString = getQueryString(parameters);
-		URL url = new URL(this.apiBaseUrl);
-		HttpURLConnection connection = (HttpURLConnection) WebResourceFetcherImpl
-				.getUrlConnection(url);
-
-		setupConnection(requestMethod, queryString, connection);
-		OutputStreamWriter writer = new OutputStreamWriter(
-				connection.getOutputStream());
-		writer.write(queryString);
-		writer.flush();
-		writer.close();
-
-		int rc = connection.getResponseCode();
-		if (rc != 200) {
+		Map<String, String> headers = new HashMap<>();
+		String cookieString = getCookieString();
+		if (!cookieString.isEmpty()) {
+			headers.put(ApiConnection.PARAM_COOKIE, cookieString);
+		}
+
+		HttpTransportResponse response = this.transport.sendRequest(
+				requestMethod, this.apiBaseUrl, queryString, headers);
+
+		int rc = response.getResponseCode();
+		if (rc >= 400) {
+			response.getContent().close();
+			throw new IOException("API request returned response code " + rc);
+		} else if (rc != 200) {
 			logger.warn("Error: API request returned response code " + rc);
 		}
 
-		InputStream iStream = connection.getInputStream();
-		fillCookies(connection.getHeaderFields());
-		return iStream;
+		fillCookies(response.getHeaderFields());
+		return response;
 	}
 
 	/**
@@ -360,9 +496,16 @@ public class ApiConnection {
 	public void checkErrors(JsonNode root) throws MediaWikiApiErrorException {
 		if (root.has("error")) {
 			JsonNode errorNode = root.path("error");
-			MediaWikiApiErrorHandler.throwMediaWikiApiErrorException(errorNode
-					.path("code").asText("UNKNOWN"), errorNode.path("info")
-					.asText("No details provided"));
+			try {
+				MediaWikiApiErrorHandler.throwMediaWikiApiErrorException(
+						errorNode.path("code").asText("UNKNOWN"), errorNode
+								.path("info").asText("No details provided"));
+			} catch (MaxlagErrorException e) {
+				if (errorNode.has("lag")) {
+					e.setLag(errorNode.path("lag").asDouble());
+				}
+				throw e;
+			}
 		}
 	}
 
@@ -611,31 +754,4 @@ public class ApiConnection {
 		return builder.toString();
 	}
 
-	/**
-	 * Configures a given {@link HttpURLConnection} object to send requests.
-	 * Takes the request method (either "POST" or "GET") and query string.
-	 *
-	 * @param requestMethod
-	 *            either "POST" or "GET"
-	 * @param queryString
-	 *            the query string to submit
-	 * @param connection
-	 *            the connection to configure
-	 * @throws IOException
-	 *             if the given protocol is not valid
-	 */
-	void setupConnection(String requestMethod, String queryString,
-			HttpURLConnection connection) throws IOException {
-		connection.setRequestMethod(requestMethod);
-		connection.setDoInput(true);
-		connection.setDoOutput(true);
-		connection.setUseCaches(false);
-		connection.setRequestProperty("Content-Type",
-				"application/x-www-form-urlencoded");
-		connection.setRequestProperty("Content-Length",
-				String.valueOf(queryString.length()));
-		connection.setRequestProperty(ApiConnection.PARAM_COOKIE,
-				getCookieString());
-	}
-
 }
@@ -0,0 +1,336 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler that decides when the next edit may be made. It combines a token
+ * bucket, which enforces a configured average rate of edits while allowing
+ * short bursts, with an additive-increase/multiplicative-decrease (AIMD)
+ * adjustment of this rate based on the replication lag reported by the
+ * server:
+ * <ul>
+ * <li>Whenever the server reports excessive lag, the current rate is halved
+ * and all editing is paused for a while. The pause grows exponentially with
+ * the number of consecutive lag errors, is at least as long as the lag and
+ * any Retry-After time of the server, and is randomized a little so that
+ * several clients do not all come back at the same time.</li>
+ * <li>Every successful edit increases the current rate by a fixed step, until
+ * the configured rate is reached again.</li>
+ * </ul>
+ * <p>
+ * Objects of this class are thread-safe. One limiter can be shared by several
+ * {@link WbEditEntityAction} objects (e.g., one for each worker thread of a
+ * bot), which will then together stay within the configured limits.
+ *
+ * @author agent
+ *
+ */
+public class EditRateLimiter {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(EditRateLimiter.class);
+
+	/**
+	 * Default number of edits that can be made in a burst without waiting.
+	 * Wikidata.org seems to block fast editors after 9 edits, so this size
+	 * seems to make sense.
+	 */
+	public static final int DEFAULT_BURST_SIZE = 9;
+
+	/**
+	 * Number of successful edits after which the full rate is reached again
+	 * after it was reduced.
+	 */
+	static final int RECOVERY_STEPS = 10;
+
+	/**
+	 * Slowest rate that the limiter falls back to, in milliseconds per edit.
+	 */
+	static final double MAX_MSECS_PER_EDIT = 60000;
+
+	/**
+	 * Maximal number of edits that can be made in a burst.
+	 */
+	final int burstSize;
+
+	/**
+	 * Average time per edit in milliseconds at full speed.
+	 */
+	int averageMsecsPerEdit;
+
+	/**
+	 * Current average time per edit in milliseconds, which is never shorter
+	 * than {@link #averageMsecsPerEdit}.
+	 */
+	double currentMsecsPerEdit;
+
+	/**
+	 * Number of edits that can currently be made without waiting.
+	 */
+	double tokens;
+
+	/**
+	 * Time (from {@link System#nanoTime()}) when {@link #tokens} was last
+	 * updated.
+	 */
+	long lastRefillTime;
+
+	/**
+	 * Time (from {@link System#nanoTime()}) until which editing is paused.
+	 */
+	long pausedUntil;
+
+	/**
+	 * Number of lag errors since the last successful edit.
+	 */
+	int consecutiveLagErrors = 0;
+
+	/**
+	 * Pause after the first lag error in milliseconds, unless the server asks
+	 * for a longer pause.
+	 */
+	int initialBackoff = 1000;
+
+	/**
+	 * Maximal pause after lag errors in milliseconds.
+	 */
+	int maxBackoff = 300000;
+
+	final Random random = new Random();
+
+	/**
+	 * Creates a limiter that allows one edit every two seconds on average,
+	 * with bursts of up to {@link #DEFAULT_BURST_SIZE} edits.
+	 */
+	public EditRateLimiter() {
+		this(2000, DEFAULT_BURST_SIZE);
+	}
+
+	/**
+	 * Creates a limiter with the given settings.
+	 *
+	 * @param averageMsecsPerEdit
+	 *            average time per edit in milliseconds; 0 to disable the
+	 *            limit (lag errors will still slow down editing)
+	 * @param burstSize
+	 *            number of edits that can be made without waiting, at least 1
+	 */
+	public EditRateLimiter(int averageMsecsPerEdit, int burstSize) {
+		if (burstSize < 1) {
+			throw new IllegalArgumentException("Burst size must be positive.");
+		}
+		this.burstSize = burstSize;
+		this.averageMsecsPerEdit = Math.max(0, averageMsecsPerEdit);
+		this.currentMsecsPerEdit = this.averageMsecsPerEdit;
+		this.tokens = burstSize;
+		this.lastRefillTime = System.nanoTime();
+		this.pausedUntil = this.lastRefillTime;
+	}
+
+	/**
+	 * Returns the average time in milliseconds that one edit takes at full
+	 * speed.
+	 *
+	 * @return average time per edit in milliseconds
+	 */
+	public synchronized int getAverageTimePerEdit() {
+		return this.averageMsecsPerEdit;
+	}
+
+	/**
+	 * Sets the average time in milliseconds that one edit takes at full speed.
+	 * This also resets any slowdown caused by earlier lag errors.
+	 *
+	 * @param milliseconds
+	 *            the new value in milliseconds; 0 to disable the limit
+	 */
+	public synchronized void setAverageTimePerEdit(int milliseconds) {
+		refill(System.nanoTime());
+		this.averageMsecsPerEdit = Math.max(0, milliseconds);
+		this.currentMsecsPerEdit = this.averageMsecsPerEdit;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the configured maximal number of edits per minute.
+	 *
+	 * @return edits per minute, or {@link Double#POSITIVE_INFINITY} if there
+	 *         is no limit
+	 */
+	public synchronized double getEditsPerMinute() {
+		return 60000.0 / this.averageMsecsPerEdit;
+	}
+
+	/**
+	 * Sets the maximal number of edits per minute. This is an alternative to
+	 * {@link #setAverageTimePerEdit(int)}.
+	 *
+	 * @param editsPerMinute
+	 *            the maximal number of edits per minute
+	 */
+	public void setEditsPerMinute(double editsPerMinute) {
+		setAverageTimePerEdit((int) Math.round(60000.0 / editsPerMinute));
+	}
+
+	/**
+	 * Returns the number of edits per minute that are currently allowed. This
+	 * is lower than {@link #getEditsPerMinute()} after lag errors.
+	 *
+	 * @return current edits per minute
+	 */
+	public synchronized double getCurrentEditsPerMinute() {
+		return 60000.0 / this.currentMsecsPerEdit;
+	}
+
+	/**
+	 * Sets the pause after the first lag error, unless the server asks for a
+	 * longer pause. Consecutive errors double this time.
+	 *
+	 * @param milliseconds
+	 *            initial pause in milliseconds
+	 */
+	public synchronized void setInitialBackoff(int milliseconds) {
+		this.initialBackoff = milliseconds;
+	}
+
+	/**
+	 * Sets the maximal pause after lag errors. This limit takes precedence
+	 * over the lag and retry times reported by the server.
+	 *
+	 * @param milliseconds
+	 *            maximal pause in milliseconds
+	 */
+	public synchronized void setMaxBackoff(int milliseconds) {
+		this.maxBackoff = milliseconds;
+	}
+
+	/**
+	 * Waits until the next edit may be made according to the current rate and
+	 * any pause after lag errors. If the thread is interrupted while waiting,
+	 * the method returns early and the interrupt flag is set.
+	 */
+	public synchronized void acquire() {
+		boolean loggedWait = false;
+		while (true) {
+			long now = System.nanoTime();
+			refill(now);
+			long waitNanos;
+			boolean paused = now - this.pausedUntil < 0;
+			if (paused) {
+				waitNanos = this.pausedUntil - now;
+			} else if (this.tokens >= 1) {
+				this.tokens -= 1;
+				return;
+			} else {
+				waitNanos = (long) ((1 - this.tokens)
+						* this.currentMsecsPerEdit * 1000000);
+			}
+
+			if (!loggedWait) {
+				logger.info((paused ? "Server is lagging." : "We are editing too fast.")
+						+ " Pausing for "
+						+ TimeUnit.NANOSECONDS.toMillis(waitNanos)
+						+ " milliseconds.");
+				loggedWait = true;
+			}
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, waitNanos));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records that an edit was successful. This increases the rate of edits if
+	 * it was reduced because of lag errors.
+	 */
+	public synchronized void reportSuccess() {
+		this.consecutiveLagErrors = 0;
+		if (this.currentMsecsPerEdit > this.averageMsecsPerEdit) {
+			refill(System.nanoTime());
+			double rate = 1 / this.currentMsecsPerEdit + 1
+					/ (this.averageMsecsPerEdit * (double) RECOVERY_STEPS);
+			this.currentMsecsPerEdit = Math.max(this.averageMsecsPerEdit,
+					1 / rate);
+		}
+	}
+
+	/**
+	 * Records that an edit failed since the server is lagging. This halves the
+	 * current rate of edits (but allows no more than one edit per initial
+	 * backoff time) and pauses all editing for some time.
+	 *
+	 * @param lag
+	 *            the lag reported by the server in seconds, or -1 if unknown
+	 * @param retryAfter
+	 *            the time in seconds after which the server suggests to try
+	 *            again, or -1 if unknown
+	 * @return the length of the pause in milliseconds
+	 */
+	public synchronized long reportLag(double lag, int retryAfter) {
+		long now = System.nanoTime();
+		refill(now);
+		this.consecutiveLagErrors++;
+		this.currentMsecsPerEdit = Math.min(
+				Math.max(MAX_MSECS_PER_EDIT, this.averageMsecsPerEdit),
+				Math.max(this.currentMsecsPerEdit * 2, this.initialBackoff));
+		this.tokens = Math.min(this.tokens, 0);
+
+		double backoff = this.initialBackoff
+				* Math.pow(2, Math.min(this.consecutiveLagErrors - 1, 30));
+		backoff = Math.max(backoff, lag * 1000);
+		backoff = Math.max(backoff, retryAfter * 1000.0);
+		backoff += backoff * 0.5 * this.random.nextDouble();
+		long pause = (long) Math.min(backoff, this.maxBackoff);
+
+		long pauseEnd = now + TimeUnit.MILLISECONDS.toNanos(pause);
+		if (pauseEnd - this.pausedUntil > 0) {
+			this.pausedUntil = pauseEnd;
+		}
+		return pause;
+	}
+
+	/**
+	 * Adds the tokens that have been earned since the last update.
+	 *
+	 * @param now
+	 *            the current time from {@link System#nanoTime()}
+	 */
+	void refill(long now) {
+		if (this.currentMsecsPerEdit <= 0) {
+			this.tokens = this.burstSize;
+		} else {
+			double elapsedMsecs = (now - this.lastRefillTime) / 1000000.0;
+			this.tokens = Math.min(this.burstSize, this.tokens + elapsedMsecs
+					/ this.currentMsecsPerEdit);
+		}
+		this.lastRefillTime = now;
+	}
+
+}
@@ -0,0 +1,391 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.json.jackson.JacksonTermedStatementDocument;
+import org.wikidata.wdtk.datamodel.json.jackson.JsonSerializer;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cache for entity documents that were fetched from the Web API. It is used by
+ * {@link WikibaseDataFetcher} to avoid fetching the same data again and
+ * again. Documents are kept in memory, where the least recently used entries
+ * are dropped if the cache is full, and optionally also on disk, so that they
+ * survive the end of the program.
+ * <p>
+ * Entries are keyed by entity id and a signature of the filter settings that
+ * were used for fetching, since the same entity looks different for different
+ * filters. Entries that are younger than the configured time to live are used
+ * without asking the server. Older entries are validated by comparing their
+ * revision id with the current revision id online, which is much cheaper than
+ * fetching the data again. In offline mode, all cached entries are used and
+ * entities that are not in the cache are not found.
+ *
+ * @author agent
+ *
+ */
+public class EntityDocumentCache {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(EntityDocumentCache.class);
+
+	/**
+	 * Default number of documents that are kept in memory.
+	 */
+	public static final int DEFAULT_MEMORY_CAPACITY = 10000;
+
+	/**
+	 * Default time in milliseconds for which entries are used without
+	 * validation (one hour).
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 3600000;
+
+	/**
+	 * Cached document together with the time when it was last known to be
+	 * up to date.
+	 */
+	static class Entry {
+		final EntityDocument document;
+		final String signature;
+		volatile long validationTime;
+
+		Entry(EntityDocument document, String signature, long validationTime) {
+			this.document = document;
+			this.signature = signature;
+			this.validationTime = validationTime;
+		}
+	}
+
+	/**
+	 * The IRI of the site that the documents are from.
+	 */
+	final String siteIri;
+
+	/**
+	 * Directory for storing entries on disk, or null if entries should only
+	 * be kept in memory.
+	 */
+	final DirectoryManager directoryManager;
+
+	/**
+	 * Directories for each filter signature that has been used.
+	 */
+	final Map<String, DirectoryManager> signatureDirectories = new ConcurrentHashMap<>();
+
+	/**
+	 * Entries kept in memory, in order of last access.
+	 */
+	final LinkedHashMap<String, Entry> memoryCache;
+
+	final ObjectMapper mapper = new ObjectMapper();
+
+	long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	boolean offlineMode = false;
+
+	/**
+	 * Creates a cache that keeps documents only in memory.
+	 *
+	 * @param siteIri
+	 *            the IRI of the site that the documents are from
+	 * @param memoryCapacity
+	 *            the maximal number of documents kept in memory
+	 */
+	public EntityDocumentCache(String siteIri, int memoryCapacity) {
+		this(siteIri, memoryCapacity, null);
+	}
+
+	/**
+	 * Creates a cache that keeps documents in memory and in the given
+	 * directory. The directory should only be used for caching documents of
+	 * one site.
+	 *
+	 * @param siteIri
+	 *            the IRI of the site that the documents are from
+	 * @param memoryCapacity
+	 *            the maximal number of documents kept in memory
+	 * @param directoryManager
+	 *            the directory to store documents in, or null if documents
+	 *            should not be stored on disk
+	 */
+	public EntityDocumentCache(String siteIri, final int memoryCapacity,
+			DirectoryManager directoryManager) {
+		this.siteIri = siteIri;
+		this.directoryManager = directoryManager;
+		this.memoryCache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, Entry> eldest) {
+				return size() > memoryCapacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the time in milliseconds for which cached documents are used
+	 * without validating them online.
+	 *
+	 * @return time to live in milliseconds
+	 */
+	public long getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	/**
+	 * Sets the time in milliseconds for which cached documents are used
+	 * without validating them online. After this time, the cache will check if
+	 * the revision of the document is still current.
+	 *
+	 * @param timeToLive
+	 *            time to live in milliseconds
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Returns true if the cache is in offline mode. See
+	 * {@link #setOfflineMode(boolean)}.
+	 *
+	 * @return true if the cache is offline
+	 */
+	public boolean isOfflineMode() {
+		return this.offlineMode;
+	}
+
+	/**
+	 * Switches offline mode on or off. In offline mode, the cache is used
+	 * without any network access: all cached documents are returned, no
+	 * matter how old they are, and documents that are not cached are not
+	 * found.
+	 *
+	 * @param offlineMode
+	 *            true if no network requests should be made
+	 */
+	public void setOfflineMode(boolean offlineMode) {
+		this.offlineMode = offlineMode;
+	}
+
+	/**
+	 * Removes all entries from memory. Entries on disk are not affected.
+	 */
+	public void clearMemory() {
+		synchronized (this.memoryCache) {
+			this.memoryCache.clear();
+		}
+	}
+
+	/**
+	 * Returns the cached entry for the given entity and filter signature, or
+	 * null if there is no such entry.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @param signature
+	 *            string that identifies the filter settings
+	 * @return cached entry or null
+	 */
+	Entry get(String entityId, String signature) {
+		String key = getKey(entityId, signature);
+		synchronized (this.memoryCache) {
+			Entry entry = this.memoryCache.get(key);
+			if (entry != null) {
+				return entry;
+			}
+		}
+
+		Entry entry = readEntry(entityId, signature);
+		if (entry != null) {
+			synchronized (this.memoryCache) {
+				this.memoryCache.put(key, entry);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores the given document in the cache.
+	 *
+	 * @param document
+	 *            the document to store
+	 * @param signature
+	 *            string that identifies the filter settings used to fetch the
+	 *            document
+	 */
+	void put(EntityDocument document, String signature) {
+		Entry entry = new Entry(document, signature,
+				System.currentTimeMillis());
+		synchronized (this.memoryCache) {
+			this.memoryCache.put(
+					getKey(document.getEntityId().getId(), signature), entry);
+		}
+		writeEntry(entry);
+	}
+
+	/**
+	 * Records that the given entry has been found to be up to date.
+	 *
+	 * @param entry
+	 *            the entry that was validated
+	 */
+	void markValid(Entry entry) {
+		entry.validationTime = System.currentTimeMillis();
+		writeEntry(entry);
+	}
+
+	/**
+	 * Returns true if the given entry can be used without validating it
+	 * online.
+	 *
+	 * @param entry
+	 *            the cached entry
+	 * @return true if the entry is fresh
+	 */
+	boolean isFresh(Entry entry) {
+		return this.offlineMode
+				|| System.currentTimeMillis() - entry.validationTime < this.timeToLive;
+	}
+
+	String getKey(String entityId, String signature) {
+		return entityId + "|" + signature;
+	}
+
+	String getFileName(String entityId) {
+		return entityId + ".json";
+	}
+
+	/**
+	 * Returns the directory for entries of the given filter signature, or null
+	 * if entries are not stored on disk.
+	 *
+	 * @param signature
+	 *            string that identifies the filter settings
+	 * @return directory manager or null
+	 * @throws IOException
+	 */
+	DirectoryManager getDirectory(String signature) throws IOException {
+		if (this.directoryManager == null) {
+			return null;
+		}
+		DirectoryManager result = this.signatureDirectories.get(signature);
+		if (result == null) {
+			result = this.directoryManager.getSubdirectoryManager("filter-"
+					+ Integer.toHexString(signature.hashCode()));
+			this.signatureDirectories.put(signature, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the given entry to disk, if a directory was given. Errors are
+	 * logged but otherwise ignored.
+	 *
+	 * @param entry
+	 *            the entry to write
+	 */
+	void writeEntry(Entry entry) {
+		String json;
+		if (entry.document instanceof ItemDocument) {
+			json = JsonSerializer.getJsonString((ItemDocument) entry.document);
+		} else if (entry.document instanceof PropertyDocument) {
+			json = JsonSerializer
+					.getJsonString((PropertyDocument) entry.document);
+		} else {
+			return;
+		}
+
+		try {
+			DirectoryManager directory = getDirectory(entry.signature);
+			if (directory == null) {
+				return;
+			}
+			String content = "{\"signature\":"
+					+ this.mapper.writeValueAsString(entry.signature)
+					+ ",\"validated\":" + entry.validationTime
+					+ ",\"entity\":" + json + "}";
+			String fileName = getFileName(entry.document.getEntityId().getId());
+			try (OutputStream out = directory.getOutputStreamForFile(fileName)) {
+				out.write(content.getBytes(StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			logger.error("Could not write entity document to cache: "
+					+ e.toString());
+		}
+	}
+
+	/**
+	 * Reads the entry for the given entity and signature from disk. Errors are
+	 * logged but otherwise ignored.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @param signature
+	 *            string that identifies the filter settings
+	 * @return the entry, or null if there is no such entry on disk
+	 */
+	Entry readEntry(String entityId, String signature) {
+		try {
+			DirectoryManager directory = getDirectory(signature);
+			String fileName = getFileName(entityId);
+			if (directory == null || !directory.hasFile(fileName)) {
+				return null;
+			}
+			JsonNode root;
+			try (InputStream in = directory.getInputStreamForFile(fileName,
+					CompressionType.NONE)) {
+				root = this.mapper.readTree(in);
+			}
+			if (root == null
+					|| !signature.equals(root.path("signature").asText())) {
+				return null;
+			}
+			JacksonTermedStatementDocument document = this.mapper.treeToValue(
+					root.path("entity"), JacksonTermedStatementDocument.class);
+			document.setSiteIri(this.siteIri);
+			return new Entry(document, signature, root.path("validated")
+					.asLong());
+		} catch (IOException e) {
+			logger.error("Could not read entity document from cache: "
+					+ e.toString());
+			return null;
+		}
+	}
+
+}
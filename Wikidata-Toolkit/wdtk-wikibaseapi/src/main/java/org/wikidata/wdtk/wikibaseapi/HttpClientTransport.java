@@ -0,0 +1,206 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.wikidata.wdtk.util.WebResourceFetcherImpl;
+
+/**
+ * {@link HttpTransport} based on Apache HttpClient. Connections are kept in a
+ * pool and reused for later requests to the same host, which avoids the cost
+ * of new TCP and TLS handshakes for every API call. Compressed responses are
+ * requested and decoded transparently.
+ * <p>
+ * Cookies are not handled by this class, since {@link ApiConnection} manages
+ * them itself. User agent and proxy are taken from the global settings in
+ * {@link WebResourceFetcherImpl}.
+ *
+ * @author agent
+ *
+ */
+public class HttpClientTransport implements HttpTransport, Closeable {
+
+	/**
+	 * Default timeout for establishing connections in milliseconds.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	/**
+	 * Default timeout for waiting for data in milliseconds.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 120000;
+	/**
+	 * Default number of connections that are kept open for each host.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+	final PoolingHttpClientConnectionManager connectionManager;
+
+	final CloseableHttpClient httpClient;
+
+	volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Creates a transport that keeps up to
+	 * {@link #DEFAULT_MAX_CONNECTIONS} connections per host.
+	 */
+	public HttpClientTransport() {
+		this(DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * Creates a transport that keeps up to the given number of connections per
+	 * host. This also limits the number of concurrent requests to one host.
+	 *
+	 * @param maxConnections
+	 *            maximal number of connections per host
+	 */
+	public HttpClientTransport(int maxConnections) {
+		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager.setMaxTotal(maxConnections);
+		this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(this.connectionManager)
+				.disableCookieManagement().build();
+	}
+
+	/**
+	 * Sets the timeout for establishing new connections.
+	 *
+	 * @param connectTimeout
+	 *            timeout in milliseconds, or 0 to wait forever
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Sets the timeout for waiting for data from the server.
+	 *
+	 * @param readTimeout
+	 *            timeout in milliseconds, or 0 to wait forever
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	@Override
+	public HttpTransportResponse sendRequest(String requestMethod, String url,
+			String queryString, Map<String, String> headers)
+			throws IOException {
+		HttpRequestBase request;
+		if ("GET".equals(requestMethod)) {
+			request = new HttpGet(queryString.isEmpty() ? url : url + "?"
+					+ queryString);
+		} else if ("POST".equals(requestMethod)) {
+			HttpPost post = new HttpPost(url);
+			post.setEntity(new StringEntity(queryString,
+					ContentType.APPLICATION_FORM_URLENCODED));
+			request = post;
+		} else {
+			throw new IllegalArgumentException("Unsupported request method \""
+					+ requestMethod + "\".");
+		}
+
+		request.setConfig(getRequestConfig());
+		request.setHeader("User-Agent", WebResourceFetcherImpl.getUserAgent());
+		for (Entry<String, String> header : headers.entrySet()) {
+			request.setHeader(header.getKey(), header.getValue());
+		}
+
+		CloseableHttpResponse response = this.httpClient.execute(request);
+		Map<String, List<String>> headerFields = new HashMap<>();
+		for (Header header : response.getAllHeaders()) {
+			List<String> values = headerFields.get(header.getName());
+			if (values == null) {
+				values = new ArrayList<>();
+				headerFields.put(header.getName(), values);
+			}
+			values.add(header.getValue());
+		}
+
+		HttpEntity entity = response.getEntity();
+		InputStream content;
+		if (entity != null) {
+			// closing the content returns the connection to the pool
+			content = entity.getContent();
+		} else {
+			response.close();
+			content = new ByteArrayInputStream(new byte[0]);
+		}
+		return new HttpTransportResponse(response.getStatusLine()
+				.getStatusCode(), headerFields, content);
+	}
+
+	/**
+	 * Closes all connections of this transport. It cannot be used after this.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.httpClient.close();
+	}
+
+	/**
+	 * Creates the request configuration based on the current timeouts and
+	 * proxy settings.
+	 *
+	 * @return request configuration
+	 */
+	RequestConfig getRequestConfig() {
+		RequestConfig.Builder builder = RequestConfig.custom()
+				.setConnectTimeout(this.connectTimeout)
+				.setSocketTimeout(this.readTimeout);
+		Proxy proxy = WebResourceFetcherImpl.getProxy();
+		if (proxy != null && proxy.type() == Proxy.Type.HTTP
+				&& proxy.address() instanceof InetSocketAddress) {
+			InetSocketAddress address = (InetSocketAddress) proxy.address();
+			builder.setProxy(new HttpHost(address.getHostString(), address
+					.getPort()));
+		}
+		return builder.build();
+	}
+
+}
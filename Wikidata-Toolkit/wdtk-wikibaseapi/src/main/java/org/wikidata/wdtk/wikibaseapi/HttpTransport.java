@@ -0,0 +1,64 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Interface for the HTTP layer that is used by {@link ApiConnection} to send
+ * requests to the Web API. The default implementation is
+ * {@link HttpClientTransport}, which keeps connections alive between
+ * requests. Other implementations can be used to change how requests are
+ * made, or to test API code without network access.
+ * <p>
+ * Implementations must be thread-safe, since one {@link ApiConnection} may be
+ * used to send several requests at once.
+ *
+ * @author agent
+ *
+ */
+public interface HttpTransport {
+
+	/**
+	 * Sends a request to the given URL and returns the response. For POST
+	 * requests, the query string is sent as a form-encoded request body; for
+	 * GET requests, it is appended to the URL. The content of the response is
+	 * decoded if the server compressed it. It should be closed by the caller
+	 * after use, so that the underlying connection can be reused.
+	 *
+	 * @param requestMethod
+	 *            either "POST" or "GET"
+	 * @param url
+	 *            the URL to send the request to
+	 * @param queryString
+	 *            the URL-encoded parameters of the request
+	 * @param headers
+	 *            additional HTTP headers to send with the request
+	 * @return the response
+	 * @throws IOException
+	 *             if the request could not be completed
+	 */
+	HttpTransportResponse sendRequest(String requestMethod, String url,
+			String queryString, Map<String, String> headers)
+			throws IOException;
+
+}
@@ -0,0 +1,99 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Simple record for the response to a request that was sent by an
+ * {@link HttpTransport}. Header field names are case-insensitive.
+ *
+ * @author agent
+ *
+ */
+public class HttpTransportResponse {
+
+	final int responseCode;
+
+	final Map<String, List<String>> headerFields;
+
+	final InputStream content;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param responseCode
+	 *            the HTTP status code of the response
+	 * @param headerFields
+	 *            map from header field names to the values of all header
+	 *            fields of this name; entries with null keys are ignored
+	 * @param content
+	 *            the (decoded) content of the response
+	 */
+	public HttpTransportResponse(int responseCode,
+			Map<String, List<String>> headerFields, InputStream content) {
+		this.responseCode = responseCode;
+		TreeMap<String, List<String>> fields = new TreeMap<>(
+				String.CASE_INSENSITIVE_ORDER);
+		for (Entry<String, List<String>> entry : headerFields.entrySet()) {
+			if (entry.getKey() != null) {
+				fields.put(entry.getKey(), entry.getValue());
+			}
+		}
+		this.headerFields = Collections.unmodifiableMap(fields);
+		this.content = content;
+	}
+
+	/**
+	 * Returns the HTTP status code of the response.
+	 *
+	 * @return status code, e.g., 200
+	 */
+	public int getResponseCode() {
+		return this.responseCode;
+	}
+
+	/**
+	 * Returns the header fields of the response. The keys of the map are
+	 * compared case-insensitively.
+	 *
+	 * @return map from header field names to values
+	 */
+	public Map<String, List<String>> getHeaderFields() {
+		return this.headerFields;
+	}
+
+	/**
+	 * Returns the content of the response. The stream should be closed after
+	 * use.
+	 *
+	 * @return content stream
+	 */
+	public InputStream getContent() {
+		return this.content;
+	}
+
+}
@@ -0,0 +1,136 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+
+import org.wikidata.wdtk.util.WebResourceFetcherImpl;
+
+/**
+ * {@link HttpTransport} based on the {@link HttpURLConnection} of the Java
+ * standard library. It does not need any further libraries. Java keeps
+ * connections alive on its own as long as response streams are read
+ * completely and closed.
+ *
+ * @author agent
+ *
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+	volatile int connectTimeout = HttpClientTransport.DEFAULT_CONNECT_TIMEOUT;
+
+	volatile int readTimeout = HttpClientTransport.DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Sets the timeout for establishing new connections.
+	 *
+	 * @param connectTimeout
+	 *            timeout in milliseconds, or 0 to wait forever
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Sets the timeout for waiting for data from the server.
+	 *
+	 * @param readTimeout
+	 *            timeout in milliseconds, or 0 to wait forever
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	@Override
+	public HttpTransportResponse sendRequest(String requestMethod, String url,
+			String queryString, Map<String, String> headers)
+			throws IOException {
+		boolean isPost = "POST".equals(requestMethod);
+		URL requestUrl;
+		if (isPost || queryString.isEmpty()) {
+			requestUrl = new URL(url);
+		} else {
+			requestUrl = new URL(url + "?" + queryString);
+		}
+		HttpURLConnection connection = (HttpURLConnection) WebResourceFetcherImpl
+				.getUrlConnection(requestUrl);
+
+		setupConnection(requestMethod, queryString, headers, connection);
+		if (isPost) {
+			try (OutputStreamWriter writer = new OutputStreamWriter(
+					connection.getOutputStream())) {
+				writer.write(queryString);
+			}
+		}
+
+		int rc = connection.getResponseCode();
+		InputStream content = connection.getInputStream();
+		if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+			content = new GZIPInputStream(content);
+		}
+		return new HttpTransportResponse(rc, connection.getHeaderFields(),
+				content);
+	}
+
+	/**
+	 * Configures a given {@link HttpURLConnection} object to send requests.
+	 * Takes the request method (either "POST" or "GET") and query string.
+	 *
+	 * @param requestMethod
+	 *            either "POST" or "GET"
+	 * @param queryString
+	 *            the query string to submit
+	 * @param headers
+	 *            additional headers to set
+	 * @param connection
+	 *            the connection to configure
+	 * @throws IOException
+	 *             if the given protocol is not valid
+	 */
+	void setupConnection(String requestMethod, String queryString,
+			Map<String, String> headers, HttpURLConnection connection)
+			throws IOException {
+		connection.setRequestMethod(requestMethod);
+		connection.setConnectTimeout(this.connectTimeout);
+		connection.setReadTimeout(this.readTimeout);
+		connection.setDoInput(true);
+		connection.setUseCaches(false);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		if ("POST".equals(requestMethod)) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type",
+					"application/x-www-form-urlencoded");
+			connection.setRequestProperty("Content-Length",
+					String.valueOf(queryString.length()));
+		}
+		for (Entry<String, String> header : headers.entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+	}
+
+}
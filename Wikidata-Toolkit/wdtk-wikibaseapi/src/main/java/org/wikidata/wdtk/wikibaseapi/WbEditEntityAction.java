@@ -51,8 +51,6 @@ public class WbEditEntityAction {
 	static final Logger logger = LoggerFactory
 			.getLogger(WbEditEntityAction.class);
 
-	static int MAXLAG_SLEEP_TIME = 5000;
-
 	/**
 	 * Connection to an Wikibase API.
 	 */
@@ -81,28 +79,10 @@ public class WbEditEntityAction {
 	int maxLag = 5;
 
 	/**
-	 * Number of recent editing times to monitor in order to avoid editing too
-	 * fast. Wikidata.org seems to block fast editors after 9 edits, so this
-	 * size seems to make sense.
-	 */
-	final static int editTimeWindow = 9;
-
-	/**
-	 * Average time to wait after each edit. Individual edits can be faster than
-	 * this, but it is ensured that this time will be taken per edit in the long
-	 * run.
-	 */
-	int averageMsecsPerEdit = 2000;
-
-	/**
-	 * Times of the last {@link #editTimeWindow} edits. Used in a loop. Most
-	 * recent edit time is at {@link #curEditTimeSlot}.
-	 */
-	final long[] recentEditTimes = new long[editTimeWindow];
-	/**
-	 * @see #recentEditTimes
+	 * Scheduler that decides when edits can be made. It may be shared with
+	 * other objects.
 	 */
-	int curEditTimeSlot = 0;
+	EditRateLimiter editRateLimiter = new EditRateLimiter();
 
 	/**
 	 * Number of edits that will be performed before the object enters
@@ -187,12 +167,16 @@ public class WbEditEntityAction {
 	 * expected speed is reached again. The delay is based on real system time.
 	 * This means that it will only wait as long as necessary. If your program
 	 * takes time between edits for other reasons, there will be no additional
-	 * delay caused by this feature.
+	 * delay caused by this feature. The rate is reduced temporarily if the
+	 * server reports replication lag.
+	 * <p>
+	 * This is a shortcut for the setting of the current
+	 * {@link #getEditRateLimiter() edit rate limiter}.
 	 *
 	 * @return average time per edit in milliseconds
 	 */
 	public int getAverageTimePerEdit() {
-		return this.averageMsecsPerEdit;
+		return this.editRateLimiter.getAverageTimePerEdit();
 	}
 
 	/**
@@ -203,7 +187,28 @@ public class WbEditEntityAction {
 	 *            the new value in milliseconds
 	 */
 	public void setAverageTimePerEdit(int milliseconds) {
-		this.averageMsecsPerEdit = milliseconds;
+		this.editRateLimiter.setAverageTimePerEdit(milliseconds);
+	}
+
+	/**
+	 * Returns the scheduler that decides when edits can be made.
+	 *
+	 * @return the edit rate limiter
+	 */
+	public EditRateLimiter getEditRateLimiter() {
+		return this.editRateLimiter;
+	}
+
+	/**
+	 * Sets the scheduler that decides when edits can be made. Several objects
+	 * that edit the same site, possibly in different threads, should share
+	 * one limiter so that they stay within its limits together.
+	 *
+	 * @param editRateLimiter
+	 *            the edit rate limiter to use
+	 */
+	public void setEditRateLimiter(EditRateLimiter editRateLimiter) {
+		this.editRateLimiter = editRateLimiter;
 	}
 
 	/**
@@ -341,27 +346,25 @@ public class WbEditEntityAction {
 			return null;
 		}
 
-		checkEditSpeed();
-
 		EntityDocument result = null;
 		int retry = 5;
 		MediaWikiApiErrorException lastException = null;
 		while (retry > 0) {
+			this.editRateLimiter.acquire();
 			try {
 				result = doWbEditEntity(parameters);
+				this.editRateLimiter.reportSuccess();
 				break;
 			} catch (TokenErrorException e) { // try again with a fresh token
 				lastException = e;
 				refreshCsrfToken();
 				parameters.put("token", getCsrfToken());
-			} catch (MaxlagErrorException e) { // wait for 5 seconds
+			} catch (MaxlagErrorException e) { // wait before the next edit
 				lastException = e;
-				logger.warn(e.getMessage() + " -- pausing for 5 seconds.");
-				try {
-					Thread.sleep(MAXLAG_SLEEP_TIME);
-				} catch (InterruptedException ex) {
-					Thread.currentThread().interrupt();
-				}
+				long pause = this.editRateLimiter.reportLag(e.getLag(),
+						e.getRetryAfter());
+				logger.warn(e.getMessage() + " -- pausing for " + pause
+						+ " milliseconds.");
 			}
 			retry--;
 		}
@@ -389,26 +392,19 @@ public class WbEditEntityAction {
 	private EntityDocument doWbEditEntity(Map<String, String> parameters)
 			throws IOException, MediaWikiApiErrorException {
 
-		try (InputStream response = this.connection.sendRequest("POST",
-				parameters)) {
-
-			JsonNode root = this.mapper.readTree(response);
+		JsonNode root = this.connection.sendJsonRequest("POST", parameters);
 
-			this.connection.checkErrors(root);
-			this.connection.logWarnings(root);
-
-			if (root.has("item")) {
-				return parseJsonResponse(root.path("item"));
-			} else if (root.has("property")) {
-				// TODO: not tested because of missing
-				// permissions
-				return parseJsonResponse(root.path("property"));
-			} else if (root.has("entity")) {
-				return parseJsonResponse(root.path("entity"));
-			} else {
-				throw new JsonMappingException(
-						"No entity document found in API response.");
-			}
+		if (root.has("item")) {
+			return parseJsonResponse(root.path("item"));
+		} else if (root.has("property")) {
+			// TODO: not tested because of missing
+			// permissions
+			return parseJsonResponse(root.path("property"));
+		} else if (root.has("entity")) {
+			return parseJsonResponse(root.path("entity"));
+		} else {
+			throw new JsonMappingException(
+					"No entity document found in API response.");
 		}
 	}
 
@@ -509,33 +505,4 @@ public class WbEditEntityAction {
 		}
 	}
 
-	/**
-	 * Makes sure that we are not editing too fast. The method stores the last
-	 * {@link WbEditEntityAction#editTimeWindow} time points when an edit was
-	 * made. If the time since the oldest edit in this window is shorter than
-	 * {@link #averageMsecsPerEdit} milliseconds, then the method will pause the
-	 * thread for the remaining time.
-	 */
-	private void checkEditSpeed() {
-		long currentTime = System.nanoTime();
-		int nextIndex = (this.curEditTimeSlot + 1) % editTimeWindow;
-		if (this.recentEditTimes[nextIndex] != 0
-				&& (currentTime - this.recentEditTimes[nextIndex]) / 1000000 < this.averageMsecsPerEdit
-						* editTimeWindow) {
-			long sleepTime = this.averageMsecsPerEdit * editTimeWindow
-					- (currentTime - this.recentEditTimes[nextIndex]) / 1000000;
-			logger.info("We are editing too fast. Pausing for " + sleepTime
-					+ " milliseconds.");
-			try {
-				Thread.sleep(sleepTime);
-			} catch (InterruptedException ex) {
-				Thread.currentThread().interrupt();
-			}
-			currentTime = System.nanoTime();
-		}
-
-		this.recentEditTimes[nextIndex] = currentTime;
-		this.curEditTimeSlot = nextIndex;
-	}
-
 }
@@ -155,6 +155,29 @@ public class WikibaseDataEditor {
 		this.wbEditEntityAction.setAverageTimePerEdit(milliseconds);
 	}
 
+	/**
+	 * Returns the scheduler that decides when edits can be made. See
+	 * {@link WbEditEntityAction#getEditRateLimiter()} for details.
+	 *
+	 * @return the edit rate limiter
+	 */
+	public EditRateLimiter getEditRateLimiter() {
+		return this.wbEditEntityAction.getEditRateLimiter();
+	}
+
+	/**
+	 * Sets the scheduler that decides when edits can be made. Editors that
+	 * work on the same site in several threads should share one limiter. See
+	 * {@link WbEditEntityAction#setEditRateLimiter(EditRateLimiter)} for
+	 * details.
+	 *
+	 * @param editRateLimiter
+	 *            the edit rate limiter to use
+	 */
+	public void setEditRateLimiter(EditRateLimiter editRateLimiter) {
+		this.wbEditEntityAction.setEditRateLimiter(editRateLimiter);
+	}
+
 	/**
 	 * Returns the number of edits that will be performed before entering
 	 * simulation mode, or -1 if there is no limit on the number of edits
@@ -20,16 +20,28 @@ package org.wikidata.wdtk.wikibaseapi;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentSource;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -40,11 +52,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * @author Markus Kroetzsch
  * @author Michael Guenther
  */
-public class WikibaseDataFetcher {
+public class WikibaseDataFetcher implements EntityDocumentSource {
 
 	static final Logger logger = LoggerFactory
 			.getLogger(WikibaseDataFetcher.class);
 
+	/**
+	 * The maximal number of entities that the wbgetentities action of the API
+	 * accepts in a single request (for clients without bot rights).
+	 */
+	public static final int MAX_IDS_PER_REQUEST = 50;
+
 	/**
 	 * API Action to fetch data.
 	 */
@@ -65,6 +83,28 @@ public class WikibaseDataFetcher {
 	 */
 	private final DocumentDataFilter filter = new DocumentDataFilter();
 
+	/**
+	 * Maximal number of ids or titles that are sent in one API request. Larger
+	 * requests are split into several chunks.
+	 */
+	int maxListSize = MAX_IDS_PER_REQUEST;
+
+	/**
+	 * Maximal number of API requests that are sent concurrently.
+	 */
+	int maxRequestsInFlight = 1;
+
+	/**
+	 * Executor used to run concurrent API requests, or null if a temporary
+	 * thread pool should be created whenever needed.
+	 */
+	ExecutorService executor = null;
+
+	/**
+	 * Cache for fetched documents, or null if no cache is used.
+	 */
+	EntityDocumentCache entityDocumentCache = null;
+
 	/**
 	 * Creates an object to fetch data from wikidata.org. This convenience
 	 * method creates a default {@link ApiConnection} that is not logged in. To
@@ -110,6 +150,79 @@ public class WikibaseDataFetcher {
 		return this.filter;
 	}
 
+	/**
+	 * Sets the maximal number of ids or titles that are sent to the API in a
+	 * single request. Requests for more entities are split into several API
+	 * requests automatically. The default is {@link #MAX_IDS_PER_REQUEST},
+	 * which is the limit of the API for normal users; bots may use larger
+	 * values.
+	 *
+	 * @param maxListSize
+	 *            the maximal number of entities per request, at least 1
+	 */
+	public void setMaxListSize(int maxListSize) {
+		if (maxListSize < 1) {
+			throw new IllegalArgumentException(
+					"The number of entities per request must be positive.");
+		}
+		this.maxListSize = maxListSize;
+	}
+
+	/**
+	 * Sets the maximal number of API requests that are in flight at the same
+	 * time when fetching more entities than fit into a single request. The
+	 * default is 1, so that all requests are sent one after the other. Please
+	 * be considerate when increasing this: the API of Wikidata is a shared
+	 * resource.
+	 *
+	 * @param maxRequestsInFlight
+	 *            the maximal number of concurrent requests, at least 1
+	 */
+	public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+		if (maxRequestsInFlight < 1) {
+			throw new IllegalArgumentException(
+					"The number of concurrent requests must be positive.");
+		}
+		this.maxRequestsInFlight = maxRequestsInFlight;
+	}
+
+	/**
+	 * Sets the executor that is used to run API requests concurrently. If no
+	 * executor is set, a temporary thread pool is created for each bulk fetch
+	 * that needs more than one request. The executor is not shut down by this
+	 * object. The number of requests that are in flight at the same time is
+	 * still limited by {@link #setMaxRequestsInFlight(int)}.
+	 *
+	 * @param executor
+	 *            the executor to use, or null to use temporary thread pools
+	 */
+	public void setExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the cache that is used for documents fetched by id, or null if
+	 * no cache is used.
+	 *
+	 * @return the cache or null
+	 */
+	public EntityDocumentCache getEntityDocumentCache() {
+		return this.entityDocumentCache;
+	}
+
+	/**
+	 * Sets the cache that should be used for documents fetched by id. Cached
+	 * documents are returned without fetching them again, as long as they are
+	 * up to date as explained in {@link EntityDocumentCache}. Documents
+	 * fetched by page title are not cached.
+	 *
+	 * @param entityDocumentCache
+	 *            the cache to use, or null to disable caching
+	 */
+	public void setEntityDocumentCache(EntityDocumentCache entityDocumentCache) {
+		this.entityDocumentCache = entityDocumentCache;
+	}
+
 	/**
 	 * Fetches the documents for the entity of the given string IDs. The result
 	 * is an {@link EntityDocument} or null if the data could not be fetched.
@@ -119,6 +232,7 @@ public class WikibaseDataFetcher {
 	 * @return retrieved entity document or null
 	 * @throws MediaWikiApiErrorException
 	 */
+	@Override
 	public EntityDocument getEntityDocument(String entityId)
 			throws MediaWikiApiErrorException {
 		return getEntityDocuments(entityId).get(entityId);
@@ -153,11 +267,40 @@ public class WikibaseDataFetcher {
 	 *         were retrieved
 	 * @throws MediaWikiApiErrorException
 	 */
+	@Override
 	public Map<String, EntityDocument> getEntityDocuments(List<String> entityIds)
 			throws MediaWikiApiErrorException {
-		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
-		properties.ids = ApiConnection.implodeObjects(entityIds);
-		return getEntityDocumentMap(entityIds.size(), properties);
+		Map<String, EntityDocument> result = new HashMap<>();
+		fetchEntityDocumentsById(entityIds, result, null);
+		return result;
+	}
+
+	/**
+	 * Fetches the documents for the entities of the given string IDs and
+	 * passes them to the given processor as soon as they arrive. This is the
+	 * preferred way of fetching large numbers of entities: the IDs are split
+	 * into chunks of suitable size for the API, and up to
+	 * {@link #setMaxRequestsInFlight(int)} requests are sent concurrently.
+	 * Documents are delivered in no particular order, and IDs for which no
+	 * data could be found are ignored.
+	 * <p>
+	 * The processor is only called from the thread that called this method,
+	 * so it does not need to be thread-safe. The method returns when all
+	 * documents have been processed.
+	 *
+	 * @param entityIds
+	 *            list of string IDs (e.g., "P31", "Q42") of requested entities
+	 * @param entityDocumentProcessor
+	 *            the processor that should receive the documents
+	 * @throws MediaWikiApiErrorException
+	 *             if the API returns an error for one of the requests; no
+	 *             further requests are sent in this case
+	 */
+	@Override
+	public void processEntityDocuments(List<String> entityIds,
+			EntityDocumentProcessor entityDocumentProcessor)
+			throws MediaWikiApiErrorException {
+		fetchEntityDocumentsById(entityIds, null, entityDocumentProcessor);
 	}
 
 	/**
@@ -223,33 +366,286 @@ public class WikibaseDataFetcher {
 	public Map<String, EntityDocument> getEntityDocumentsByTitle(
 			String siteKey, List<String> titles)
 			throws MediaWikiApiErrorException {
-		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
-		properties.titles = ApiConnection.implodeObjects(titles);
-		properties.sites = siteKey;
-		return getEntityDocumentMap(titles.size(), properties);
+		List<WbGetEntitiesActionData> requests = new ArrayList<>();
+		for (List<String> chunk : getChunks(titles)) {
+			WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
+			properties.titles = ApiConnection.implodeObjects(chunk);
+			properties.sites = siteKey;
+			requests.add(properties);
+		}
+		Map<String, EntityDocument> result = new HashMap<>();
+		fetchEntityDocuments(requests, result, null, null);
+		return result;
 	}
 
 	/**
-	 * Creates a map of identifiers or page titles to documents retrieved via
-	 * the APIs.
+	 * Fetches the documents for the given entity ids, using the cache if
+	 * available. The resulting documents are added to the given map and
+	 * passed to the given processor, either of which may be null.
 	 *
-	 * @param numOfEntities
-	 *            number of entities that should be retrieved
-	 * @param properties
-	 *            WbGetEntitiesProperties object that includes all relevant
-	 *            parameters for the wbgetentities action
-	 * @return map of document identifiers or titles to documents retrieved via
-	 *         the API URL
+	 * @param entityIds
+	 *            list of string IDs of requested entities
+	 * @param result
+	 *            map to store the results in, or null
+	 * @param entityDocumentProcessor
+	 *            processor to pass the results to, or null
 	 * @throws MediaWikiApiErrorException
 	 */
-	Map<String, EntityDocument> getEntityDocumentMap(int numOfEntities,
-			WbGetEntitiesActionData properties)
+	void fetchEntityDocumentsById(List<String> entityIds,
+			Map<String, EntityDocument> result,
+			EntityDocumentProcessor entityDocumentProcessor)
 			throws MediaWikiApiErrorException {
-		if (numOfEntities == 0) {
-			return Collections.emptyMap();
+		if (this.entityDocumentCache == null) {
+			fetchEntityDocuments(getIdRequests(entityIds), result,
+					entityDocumentProcessor, null);
+			return;
 		}
+
+		String signature = getFilterSignature();
+		List<String> missingIds = new ArrayList<>();
+		List<EntityDocumentCache.Entry> staleEntries = new ArrayList<>();
+		List<EntityDocument> cachedDocuments = new ArrayList<>();
+		for (String entityId : entityIds) {
+			EntityDocumentCache.Entry entry = this.entityDocumentCache.get(
+					entityId, signature);
+			if (entry == null) {
+				missingIds.add(entityId);
+			} else if (this.entityDocumentCache.isFresh(entry)) {
+				cachedDocuments.add(entry.document);
+			} else {
+				staleEntries.add(entry);
+			}
+		}
+
+		if (!staleEntries.isEmpty()) {
+			List<String> staleIds = new ArrayList<>(staleEntries.size());
+			for (EntityDocumentCache.Entry entry : staleEntries) {
+				staleIds.add(entry.document.getEntityId().getId());
+			}
+			Map<String, Long> revisionIds = fetchRevisionIds(staleIds);
+			for (EntityDocumentCache.Entry entry : staleEntries) {
+				Long revisionId = revisionIds.get(entry.document.getEntityId()
+						.getId());
+				if (revisionId != null
+						&& revisionId == entry.document.getRevisionId()) {
+					this.entityDocumentCache.markValid(entry);
+					cachedDocuments.add(entry.document);
+				} else {
+					missingIds.add(entry.document.getEntityId().getId());
+				}
+			}
+		}
+
+		Map<String, EntityDocument> cachedResults = new HashMap<>();
+		for (EntityDocument document : cachedDocuments) {
+			cachedResults.put(document.getEntityId().getId(), document);
+		}
+		handleDocuments(cachedResults, result, entityDocumentProcessor, null);
+
+		if (!this.entityDocumentCache.isOfflineMode()) {
+			fetchEntityDocuments(getIdRequests(missingIds), result,
+					entityDocumentProcessor, signature);
+		}
+	}
+
+	/**
+	 * Fetches the current revision ids of the given entities. This only
+	 * requests basic page information and is much faster than fetching the
+	 * actual data.
+	 *
+	 * @param entityIds
+	 *            list of string IDs of entities
+	 * @return map from ids of existing entities to their revision ids
+	 * @throws MediaWikiApiErrorException
+	 */
+	Map<String, Long> fetchRevisionIds(List<String> entityIds)
+			throws MediaWikiApiErrorException {
+		Map<String, Long> result = new HashMap<>();
+		for (WbGetEntitiesActionData properties : getIdRequests(entityIds)) {
+			properties.props = "info";
+			for (EntityDocument document : this.wbGetEntitiesAction
+					.wbGetEntities(properties).values()) {
+				result.put(document.getEntityId().getId(),
+						document.getRevisionId());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a string that identifies the current filter settings, as far as
+	 * they affect API requests.
+	 *
+	 * @return filter signature
+	 */
+	String getFilterSignature() {
+		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
 		configureProperties(properties);
-		return this.wbGetEntitiesAction.wbGetEntities(properties);
+		return properties.props + ";" + properties.languages + ";"
+				+ properties.sitefilter;
+	}
+
+	/**
+	 * Creates one request for each chunk of the given list of entity ids.
+	 *
+	 * @param entityIds
+	 *            list of string IDs of requested entities
+	 * @return list of requests that fetch all given entities
+	 */
+	List<WbGetEntitiesActionData> getIdRequests(List<String> entityIds) {
+		List<WbGetEntitiesActionData> requests = new ArrayList<>();
+		for (List<String> chunk : getChunks(entityIds)) {
+			WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
+			properties.ids = ApiConnection.implodeObjects(chunk);
+			requests.add(properties);
+		}
+		return requests;
+	}
+
+	/**
+	 * Splits the given list into consecutive chunks that are no longer than
+	 * {@link #maxListSize}.
+	 *
+	 * @param values
+	 *            the list to split
+	 * @return list of chunks, which are views on the given list
+	 */
+	List<List<String>> getChunks(List<String> values) {
+		List<List<String>> chunks = new ArrayList<>();
+		for (int i = 0; i < values.size(); i += this.maxListSize) {
+			chunks.add(values.subList(i,
+					Math.min(values.size(), i + this.maxListSize)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Executes the given requests, using several concurrent API requests if
+	 * allowed by the current settings. The resulting documents are added to
+	 * the given map and passed to the given processor, either of which may be
+	 * null. Both are only accessed from the calling thread.
+	 *
+	 * @param requests
+	 *            the requests to execute
+	 * @param result
+	 *            map to store the results in, keyed by id or title, or null
+	 * @param entityDocumentProcessor
+	 *            processor to pass the results to, or null
+	 * @param cacheSignature
+	 *            filter signature for storing the results in the cache, or
+	 *            null if the results should not be cached
+	 * @throws MediaWikiApiErrorException
+	 * @throws RuntimeException
+	 *             if the thread is interrupted while waiting for concurrent
+	 *             requests; the interrupt status is preserved
+	 */
+	void fetchEntityDocuments(List<WbGetEntitiesActionData> requests,
+			Map<String, EntityDocument> result,
+			EntityDocumentProcessor entityDocumentProcessor,
+			String cacheSignature) throws MediaWikiApiErrorException {
+		for (WbGetEntitiesActionData properties : requests) {
+			configureProperties(properties);
+		}
+
+		if (requests.size() <= 1 || this.maxRequestsInFlight <= 1) {
+			for (WbGetEntitiesActionData properties : requests) {
+				handleDocuments(
+						this.wbGetEntitiesAction.wbGetEntities(properties),
+						result, entityDocumentProcessor, cacheSignature);
+			}
+			return;
+		}
+
+		ExecutorService executorService = this.executor;
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(Math.min(
+					this.maxRequestsInFlight, requests.size()));
+		}
+		CompletionService<Map<String, EntityDocument>> completionService = new ExecutorCompletionService<>(
+				executorService);
+		List<Future<Map<String, EntityDocument>>> futures = new ArrayList<>();
+		try {
+			int submitted = 0;
+			for (int completed = 0; completed < requests.size(); completed++) {
+				while (submitted < requests.size()
+						&& submitted - completed < this.maxRequestsInFlight) {
+					final WbGetEntitiesActionData properties = requests
+							.get(submitted++);
+					futures.add(completionService
+							.submit(new Callable<Map<String, EntityDocument>>() {
+								@Override
+								public Map<String, EntityDocument> call()
+										throws MediaWikiApiErrorException {
+									return WikibaseDataFetcher.this.wbGetEntitiesAction
+											.wbGetEntities(properties);
+								}
+							}));
+				}
+				handleDocuments(completionService.take().get(), result,
+						entityDocumentProcessor, cacheSignature);
+			}
+		} catch (InterruptedException e) {
+			// outstanding requests are cancelled below; partial results must
+			// not be returned as if they were complete
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"Interrupted while fetching entity data", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof MediaWikiApiErrorException) {
+				throw (MediaWikiApiErrorException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else {
+				throw new RuntimeException(e.getCause());
+			}
+		} finally {
+			for (Future<Map<String, EntityDocument>> future : futures) {
+				future.cancel(true);
+			}
+			if (executorService != this.executor) {
+				executorService.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Adds the documents of one API response to the given map and passes them
+	 * to the given processor. They are also stored in the cache if a
+	 * signature is given.
+	 *
+	 * @param documents
+	 *            the documents retrieved by one request
+	 * @param result
+	 *            map to store the results in, or null
+	 * @param entityDocumentProcessor
+	 *            processor to pass the results to, or null
+	 * @param cacheSignature
+	 *            filter signature for storing the documents in the cache, or
+	 *            null if they should not be cached
+	 */
+	void handleDocuments(Map<String, EntityDocument> documents,
+			Map<String, EntityDocument> result,
+			EntityDocumentProcessor entityDocumentProcessor,
+			String cacheSignature) {
+		if (cacheSignature != null && this.entityDocumentCache != null) {
+			for (EntityDocument document : documents.values()) {
+				this.entityDocumentCache.put(document, cacheSignature);
+			}
+		}
+		if (result != null) {
+			result.putAll(documents);
+		}
+		if (entityDocumentProcessor != null) {
+			for (EntityDocument document : documents.values()) {
+				if (document instanceof ItemDocument) {
+					entityDocumentProcessor
+							.processItemDocument((ItemDocument) document);
+				} else if (document instanceof PropertyDocument) {
+					entityDocumentProcessor
+							.processPropertyDocument((PropertyDocument) document);
+				}
+			}
+		}
 	}
 
 	/**
@@ -20,6 +20,9 @@ package org.wikidata.wdtk.wikibaseapi.apierrors;
  * #L%
  */
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Exception to indicate a MediaWiki API error caused by exceeding the maxlag
  * parameter. See <a
@@ -33,6 +36,24 @@ public class MaxlagErrorException extends MediaWikiApiErrorException {
 
 	private static final long serialVersionUID = -4013361654647685959L;
 
+	/**
+	 * Pattern used to find the lag in the error message if it was not reported
+	 * separately, as in "Waiting for 10.64.16.27: 2 seconds lagged".
+	 */
+	static final Pattern LAG_PATTERN = Pattern
+			.compile("(\\d+(?:\\.\\d+)?) seconds? lagged");
+
+	/**
+	 * Replication lag in seconds, or -1 if unknown.
+	 */
+	double lag;
+
+	/**
+	 * Time in seconds after which the server suggests to try again, or -1 if
+	 * unknown.
+	 */
+	int retryAfter = -1;
+
 	/**
 	 * Creates a new exception.
 	 *
@@ -42,6 +63,65 @@ public class MaxlagErrorException extends MediaWikiApiErrorException {
 	 */
 	public MaxlagErrorException(String errorMessage) {
 		super(MediaWikiApiErrorHandler.ERROR_MAXLAG, errorMessage);
+		this.lag = parseLag(errorMessage);
+	}
+
+	/**
+	 * Returns the replication lag of the server in seconds. If the API did not
+	 * report the lag explicitly, it is taken from the error message.
+	 *
+	 * @return lag in seconds, or -1 if unknown
+	 */
+	public double getLag() {
+		return this.lag;
+	}
+
+	/**
+	 * Sets the replication lag of the server in seconds.
+	 *
+	 * @param lag
+	 *            lag in seconds, or -1 if unknown
+	 */
+	public void setLag(double lag) {
+		this.lag = lag;
+	}
+
+	/**
+	 * Returns the number of seconds after which the server suggests to retry
+	 * the request, as given in the HTTP Retry-After header.
+	 *
+	 * @return time in seconds, or -1 if unknown
+	 */
+	public int getRetryAfter() {
+		return this.retryAfter;
+	}
+
+	/**
+	 * Sets the number of seconds after which the server suggests to retry the
+	 * request.
+	 *
+	 * @param retryAfter
+	 *            time in seconds, or -1 if unknown
+	 */
+	public void setRetryAfter(int retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Extracts the lag from an error message of MediaWiki.
+	 *
+	 * @param errorMessage
+	 *            the message
+	 * @return lag in seconds, or -1 if the message does not mention it
+	 */
+	static double parseLag(String errorMessage) {
+		if (errorMessage != null) {
+			Matcher matcher = LAG_PATTERN.matcher(errorMessage);
+			if (matcher.find()) {
+				return Double.parseDouble(matcher.group(1));
+			}
+		}
+		return -1;
 	}
 
 }
@@ -22,14 +22,17 @@ package org.wikidata.wdtk.wikibaseapi;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +43,7 @@ import java.util.TreeSet;
 import org.junit.Before;
 import org.junit.Test;
 import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MaxlagErrorException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -225,13 +229,83 @@ public class ApiConnectionTest {
 	}
 
 	@Test
-	public void testSetupConnection() throws IOException {
-		URL url = new URL("http://example.org/");
-		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-		con.setupConnection("POST", "", connection);
-		assertEquals("application/x-www-form-urlencoded",
-				connection.getRequestProperty("Content-Type"));
+	public void testSendRequestWithTransport() throws IOException {
+		final List<String> sentCookies = new ArrayList<>();
+		final List<String> queryStrings = new ArrayList<>();
+		ApiConnection connection = new ApiConnection("http://example.org/",
+				new HttpTransport() {
+					@Override
+					public HttpTransportResponse sendRequest(
+							String requestMethod, String url,
+							String queryString, Map<String, String> headers) {
+						sentCookies.add(headers.get(ApiConnection.PARAM_COOKIE));
+						queryStrings.add(queryString);
+						Map<String, List<String>> headerFields = new HashMap<>();
+						headerFields.put("set-cookie",
+								Collections.singletonList("session=abc; path=/"));
+						return new HttpTransportResponse(200, headerFields,
+								new ByteArrayInputStream("{}".getBytes()));
+					}
+				});
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("action", "query");
+
+		connection.sendRequest("POST", params).close();
+		connection.sendRequest("POST", params).close();
+
+		assertEquals(Arrays.asList("action=query", "action=query"),
+				queryStrings);
+		assertEquals(null, sentCookies.get(0));
+		assertEquals(split("session=abc; path=/", ';'),
+				split(sentCookies.get(1), ';'));
+	}
+
+	@Test
+	public void testSendJsonRequestMaxlag() throws IOException,
+			MediaWikiApiErrorException {
+		ApiConnection connection = new ApiConnection("http://example.org/",
+				new HttpTransport() {
+					@Override
+					public HttpTransportResponse sendRequest(
+							String requestMethod, String url,
+							String queryString, Map<String, String> headers) {
+						Map<String, List<String>> headerFields = new HashMap<>();
+						headerFields.put("Retry-After",
+								Collections.singletonList("7"));
+						return new HttpTransportResponse(
+								200,
+								headerFields,
+								new ByteArrayInputStream(
+										("{\"error\":{\"code\":\"maxlag\","
+												+ "\"info\":\"Waiting for db: 3 seconds lagged\","
+												+ "\"lag\":3.25}}").getBytes()));
+					}
+				});
+
+		try {
+			connection.sendJsonRequest("POST",
+					new HashMap<String, String>());
+			fail("Expected maxlag error");
+		} catch (MaxlagErrorException e) {
+			assertEquals(3.25, e.getLag(), 0.0001);
+			assertEquals(7, e.getRetryAfter());
+		}
+	}
 
+	@Test(expected = IOException.class)
+	public void testSendRequestErrorCode() throws IOException {
+		ApiConnection connection = new ApiConnection("http://example.org/",
+				new HttpTransport() {
+					@Override
+					public HttpTransportResponse sendRequest(
+							String requestMethod, String url,
+							String queryString, Map<String, String> headers) {
+						return new HttpTransportResponse(503,
+								Collections.<String, List<String>> emptyMap(),
+								new ByteArrayInputStream(new byte[0]));
+					}
+				});
+		connection.sendRequest("POST", new HashMap<String, String>());
 	}
 
 	@Test
@@ -248,6 +322,16 @@ public class ApiConnectionTest {
 				connection.apiBaseUrl);
 	}
 
+	@Test
+	public void testDefaultTransportIsShared() {
+		ApiConnection connection1 = ApiConnection.getWikidataApiConnection();
+		ApiConnection connection2 = ApiConnection
+				.getTestWikidataApiConnection();
+		assertSame(ApiConnection.getDefaultTransport(),
+				connection1.getTransport());
+		assertSame(connection1.getTransport(), connection2.getTransport());
+	}
+
 	@Test
 	public void testGetTestWikidataApiConnection() {
 		ApiConnection connection = ApiConnection.getTestWikidataApiConnection();
@@ -0,0 +1,137 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class EditRateLimiterTest {
+
+	@Test
+	public void testBurstWithoutWaiting() {
+		EditRateLimiter limiter = new EditRateLimiter(60000, 3);
+		long start = System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire();
+		}
+		assertTrue(System.nanoTime() - start < 1000000000L);
+	}
+
+	@Test
+	public void testRateIsEnforced() {
+		EditRateLimiter limiter = new EditRateLimiter(50, 1);
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			limiter.acquire();
+		}
+		// the first edit is free, the others need 50ms each
+		assertTrue(System.nanoTime() - start >= 140000000L);
+	}
+
+	@Test
+	public void testAimd() {
+		EditRateLimiter limiter = new EditRateLimiter(1000, 1);
+		limiter.setMaxBackoff(0);
+		assertEquals(60.0, limiter.getCurrentEditsPerMinute(), 0.0001);
+
+		limiter.reportLag(-1, -1);
+		assertEquals(30.0, limiter.getCurrentEditsPerMinute(), 0.0001);
+		limiter.reportLag(-1, -1);
+		assertEquals(15.0, limiter.getCurrentEditsPerMinute(), 0.0001);
+
+		limiter.reportSuccess();
+		assertEquals(21.0, limiter.getCurrentEditsPerMinute(), 0.0001);
+		for (int i = 0; i < 10; i++) {
+			limiter.reportSuccess();
+		}
+		assertEquals(60.0, limiter.getCurrentEditsPerMinute(), 0.0001);
+	}
+
+	@Test
+	public void testBackoff() {
+		EditRateLimiter limiter = new EditRateLimiter(1000, 1);
+		limiter.setInitialBackoff(100);
+
+		long pause = limiter.reportLag(-1, -1);
+		assertTrue(pause >= 100 && pause <= 150);
+		pause = limiter.reportLag(-1, -1);
+		assertTrue(pause >= 200 && pause <= 300);
+		pause = limiter.reportLag(2.0, -1);
+		assertTrue(pause >= 2000 && pause <= 3000);
+		pause = limiter.reportLag(-1, 5);
+		assertTrue(pause >= 5000 && pause <= 7500);
+
+		limiter.setMaxBackoff(1000);
+		assertEquals(1000, limiter.reportLag(-1, 5));
+	}
+
+	@Test
+	public void testPauseAfterLag() {
+		EditRateLimiter limiter = new EditRateLimiter(0, 1);
+		limiter.setInitialBackoff(100);
+		limiter.setMaxBackoff(100);
+		limiter.reportLag(-1, -1);
+
+		long start = System.nanoTime();
+		limiter.acquire();
+		assertTrue(System.nanoTime() - start >= 90000000L);
+	}
+
+	@Test
+	public void testSharedAcrossThreads() throws InterruptedException {
+		final EditRateLimiter limiter = new EditRateLimiter(20, 1);
+		final AtomicInteger edits = new AtomicInteger();
+		Thread[] threads = new Thread[3];
+		long start = System.nanoTime();
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 3; j++) {
+						limiter.acquire();
+						edits.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(9, edits.get());
+		// 8 edits after the first one at 20ms each
+		assertTrue(System.nanoTime() - start >= 150000000L);
+	}
+
+	@Test
+	public void testEditsPerMinute() {
+		EditRateLimiter limiter = new EditRateLimiter();
+		limiter.setEditsPerMinute(12);
+		assertEquals(5000, limiter.getAverageTimePerEdit());
+		assertEquals(12.0, limiter.getEditsPerMinute(), 0.0001);
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+
+public class EntityDocumentCacheTest {
+
+	MockDirectoryManager directoryManager;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+	}
+
+	static ItemDocument makeItemDocument(String id, long revisionId) {
+		return Datamodel.makeItemDocument(
+				Datamodel.makeWikidataItemIdValue(id),
+				Collections.singletonList(Datamodel
+						.makeMonolingualTextValue("Label " + id, "en")),
+				Collections.<MonolingualTextValue> emptyList(),
+				Collections.<MonolingualTextValue> emptyList(),
+				Collections.<StatementGroup> emptyList(),
+				Collections.<String, SiteLink> emptyMap(), revisionId);
+	}
+
+	@Test
+	public void testMemoryCache() {
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10);
+		ItemDocument document = makeItemDocument("Q42", 5);
+		cache.put(document, "sig");
+
+		assertEquals(document, cache.get("Q42", "sig").document);
+		assertNull(cache.get("Q42", "other"));
+		assertNull(cache.get("Q1", "sig"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 2);
+		cache.put(makeItemDocument("Q1", 1), "sig");
+		cache.put(makeItemDocument("Q2", 1), "sig");
+		cache.get("Q1", "sig");
+		cache.put(makeItemDocument("Q3", 1), "sig");
+
+		assertNotNull(cache.get("Q1", "sig"));
+		assertNull(cache.get("Q2", "sig"));
+		assertNotNull(cache.get("Q3", "sig"));
+	}
+
+	@Test
+	public void testDiskCache() {
+		ItemDocument document = makeItemDocument("Q42", 5);
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10, this.directoryManager);
+		cache.put(document, "sig");
+
+		EntityDocumentCache otherCache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10, this.directoryManager);
+		EntityDocumentCache.Entry entry = otherCache.get("Q42", "sig");
+
+		assertNotNull(entry);
+		assertEquals(document, entry.document);
+		assertEquals(5, entry.document.getRevisionId());
+		assertNull(otherCache.get("Q42", "other"));
+	}
+
+	@Test
+	public void testFreshness() {
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10);
+		EntityDocument document = makeItemDocument("Q42", 5);
+		EntityDocumentCache.Entry entry = new EntityDocumentCache.Entry(
+				document, "sig", 0);
+
+		assertFalse(cache.isFresh(entry));
+		cache.markValid(entry);
+		assertTrue(cache.isFresh(entry));
+		cache.setTimeToLive(0);
+		assertFalse(cache.isFresh(entry));
+		cache.setOfflineMode(true);
+		assertTrue(cache.isFresh(entry));
+	}
+
+}
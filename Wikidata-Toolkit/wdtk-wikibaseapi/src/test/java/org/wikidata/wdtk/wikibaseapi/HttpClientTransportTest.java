@@ -0,0 +1,172 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpClientTransportTest {
+
+	HttpServer server;
+	String url;
+	HttpClientTransport transport;
+
+	/**
+	 * Remote ports of all requests, to find out if connections were reused.
+	 */
+	final List<Integer> clientPorts = Collections
+			.synchronizedList(new ArrayList<Integer>());
+
+	@Before
+	public void setUp() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0),
+				0);
+		this.server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				String body = readString(exchange.getRequestBody());
+				if (exchange.getRequestURI().getQuery() != null) {
+					body = exchange.getRequestURI().getQuery();
+				}
+				if (body.contains("sleep")) {
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				byte[] content = (exchange.getRequestMethod() + " " + body)
+						.getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Set-Cookie", "a=b");
+				String encoding = exchange.getRequestHeaders().getFirst(
+						"Accept-Encoding");
+				if (encoding != null && encoding.contains("gzip")) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+						gzip.write(content);
+					}
+					content = out.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding",
+							"gzip");
+				}
+				exchange.sendResponseHeaders(200, content.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(content);
+				}
+			}
+		});
+		this.server.start();
+		this.url = "http://127.0.0.1:" + this.server.getAddress().getPort()
+				+ "/w/api.php";
+		this.transport = new HttpClientTransport(2);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		this.transport.close();
+		this.server.stop(0);
+	}
+
+	static String readString(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	String readContent(HttpTransportResponse response) throws IOException {
+		try (InputStream content = response.getContent()) {
+			return readString(content);
+		}
+	}
+
+	@Test
+	public void testPostDecodesGzip() throws IOException {
+		HttpTransportResponse response = this.transport.sendRequest("POST",
+				this.url, "action=query&format=json",
+				Collections.<String, String> emptyMap());
+
+		assertEquals(200, response.getResponseCode());
+		assertEquals("POST action=query&format=json", readContent(response));
+		assertEquals(Collections.singletonList("a=b"), response
+				.getHeaderFields().get("set-cookie"));
+	}
+
+	@Test
+	public void testGet() throws IOException {
+		HttpTransportResponse response = this.transport.sendRequest("GET",
+				this.url, "action=query",
+				Collections.<String, String> emptyMap());
+
+		assertEquals("GET action=query", readContent(response));
+	}
+
+	@Test
+	public void testConnectionsAreReused() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			readContent(this.transport.sendRequest("POST", this.url,
+					"action=query", Collections.<String, String> emptyMap()));
+		}
+
+		assertEquals(3, this.clientPorts.size());
+		assertEquals(this.clientPorts.get(0), this.clientPorts.get(2));
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testReadTimeout() throws IOException {
+		this.transport.setReadTimeout(100);
+		this.transport.sendRequest("POST", this.url, "action=sleep",
+				Collections.<String, String> emptyMap());
+	}
+
+	@Test
+	public void testApiConnectionCookies() throws IOException {
+		ApiConnection connection = new ApiConnection(this.url, this.transport);
+		readString(connection.sendRequest("POST",
+				Collections.singletonMap("action", "query")));
+
+		assertEquals("a=b", connection.getCookieString());
+	}
+
+}
@@ -22,10 +22,11 @@ package org.wikidata.wdtk.wikibaseapi;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -102,11 +103,13 @@ public class MockApiConnection extends ApiConnection {
 	}
 
 	@Override
-	public InputStream sendRequest(String requestMethod,
+	HttpTransportResponse sendHttpRequest(String requestMethod,
 			Map<String, String> parameters) throws IOException {
 		if (this.webResources.containsKey(parameters.hashCode())) {
-			return new ByteArrayInputStream(this.webResources.get(parameters
-					.hashCode()));
+			return new HttpTransportResponse(200,
+					Collections.<String, List<String>> emptyMap(),
+					new ByteArrayInputStream(this.webResources.get(parameters
+							.hashCode())));
 		} else {
 			throw new IOException("API result not mocked for parameters "
 					+ parameters);
@@ -0,0 +1,94 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2015 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class UrlConnectionTransportTest {
+
+	@Test
+	public void testSetupConnection() throws IOException {
+		URL url = new URL("http://example.org/");
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		new UrlConnectionTransport().setupConnection("POST", "",
+				Collections.singletonMap(ApiConnection.PARAM_COOKIE, "a=b"),
+				connection);
+		assertEquals("application/x-www-form-urlencoded",
+				connection.getRequestProperty("Content-Type"));
+		assertEquals("gzip", connection.getRequestProperty("Accept-Encoding"));
+		assertEquals("a=b",
+				connection.getRequestProperty(ApiConnection.PARAM_COOKIE));
+	}
+
+	@Test
+	public void testPostDecodesGzip() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(
+				"127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+					gzip.write(HttpClientTransportTest.readString(
+							exchange.getRequestBody()).getBytes(
+							StandardCharsets.UTF_8));
+				}
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				exchange.sendResponseHeaders(200, out.size());
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(out.toByteArray());
+				}
+			}
+		});
+		server.start();
+		try {
+			HttpTransportResponse response = new UrlConnectionTransport()
+					.sendRequest("POST", "http://127.0.0.1:"
+							+ server.getAddress().getPort() + "/",
+							"action=query",
+							Collections.<String, String> emptyMap());
+			try (InputStream content = response.getContent()) {
+				assertEquals("action=query",
+						HttpClientTransportTest.readString(content));
+			}
+		} finally {
+			server.stop(0);
+		}
+	}
+
+}
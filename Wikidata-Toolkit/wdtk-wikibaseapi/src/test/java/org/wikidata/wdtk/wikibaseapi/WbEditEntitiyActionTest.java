@@ -128,7 +128,9 @@ public class WbEditEntitiyActionTest {
 
 		WbEditEntityAction weea = new WbEditEntityAction(con,
 				Datamodel.SITE_WIKIDATA);
-		WbEditEntityAction.MAXLAG_SLEEP_TIME = 0; // speed up the test ...
+		// speed up the test ...
+		weea.getEditRateLimiter().setInitialBackoff(0);
+		weea.getEditRateLimiter().setMaxBackoff(0);
 		weea.wbEditEntity("Q42", null, null, null, "{}", false, false, 0, null);
 	}
 
@@ -23,16 +23,25 @@ package org.wikidata.wdtk.wikibaseapi;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.util.CompressionType;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
@@ -148,6 +157,170 @@ public class WikibaseDataFetcherTest {
 		assertEquals(null, result);
 	}
 
+	@Test
+	public void testWbGetEntitiesChunked() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1|Q2", "Q1", "Q2");
+		setItemResources("Q3", "Q3");
+		wdf.setMaxListSize(2);
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments("Q1",
+				"Q2", "Q3");
+
+		assertEquals(3, results.size());
+		assertTrue(results.containsKey("Q1"));
+		assertTrue(results.containsKey("Q3"));
+	}
+
+	@Test
+	public void testProcessEntityDocumentsConcurrently() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1|Q2", "Q1", "Q2");
+		setItemResources("Q3|Q4", "Q3", "Q4");
+		setItemResources("Q5", "Q5");
+		wdf.setMaxListSize(2);
+		wdf.setMaxRequestsInFlight(2);
+
+		final List<String> ids = new ArrayList<>();
+		wdf.processEntityDocuments(Arrays.asList("Q1", "Q2", "Q3", "Q4", "Q5"),
+				new EntityDocumentProcessor() {
+					@Override
+					public void processItemDocument(ItemDocument itemDocument) {
+						ids.add(itemDocument.getEntityId().getId());
+					}
+
+					@Override
+					public void processPropertyDocument(
+							PropertyDocument propertyDocument) {
+					}
+				});
+
+		Collections.sort(ids);
+		assertEquals(Arrays.asList("Q1", "Q2", "Q3", "Q4", "Q5"), ids);
+	}
+
+	@Test
+	public void testWbGetEntitiesWithExecutor() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1", "Q1");
+		setItemResources("Q2", "Q2");
+		wdf.setMaxListSize(1);
+		wdf.setMaxRequestsInFlight(2);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		wdf.setExecutorService(executor);
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments("Q1",
+				"Q2");
+
+		assertEquals(2, results.size());
+		assertFalse(executor.isShutdown());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testWbGetEntitiesInterrupted() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1", "Q1");
+		setItemResources("Q2", "Q2");
+		wdf.setMaxListSize(1);
+		wdf.setMaxRequestsInFlight(2);
+
+		Thread.currentThread().interrupt();
+		try {
+			wdf.getEntityDocuments("Q1", "Q2");
+			fail("Interrupted fetch should not return results");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof InterruptedException);
+		} finally {
+			// clears the interrupt status for the following tests
+			assertTrue(Thread.interrupted());
+		}
+	}
+
+	@Test(expected = NoSuchEntityErrorException.class)
+	public void testWbGetEntitiesChunkError() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1", "Q1");
+		Map<String, String> parameters = new HashMap<String, String>();
+		setStandardParameters(parameters);
+		parameters.put("ids", "bogus");
+		con.setWebResourceFromPath(parameters, getClass(),
+				"/wbgetentities-bogus.json", CompressionType.NONE);
+		wdf.setMaxListSize(1);
+		wdf.setMaxRequestsInFlight(2);
+
+		wdf.getEntityDocuments("Q1", "bogus");
+	}
+
+	@Test
+	public void testCacheAvoidsRequests() throws IOException,
+			MediaWikiApiErrorException {
+		setItemResources("Q1", "Q1");
+		wdf.setEntityDocumentCache(new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10));
+		wdf.getEntityDocument("Q1");
+		con.webResources.clear();
+
+		EntityDocument result = wdf.getEntityDocument("Q1");
+
+		assertEquals("Q1", result.getEntityId().getId());
+	}
+
+	@Test
+	public void testCacheRevalidation() throws IOException,
+			MediaWikiApiErrorException {
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10);
+		cache.setTimeToLive(0);
+		wdf.setEntityDocumentCache(cache);
+		setItemResources("Q1|Q2", "Q1", "Q2");
+		wdf.getEntityDocuments("Q1", "Q2");
+		con.webResources.clear();
+
+		// Q1 is unchanged, Q2 has a new revision
+		Map<String, String> parameters = new HashMap<String, String>();
+		setStandardParameters(parameters);
+		parameters.put("props", "info");
+		parameters.put("ids", "Q1|Q2");
+		con.setWebResource(parameters, "{\"entities\":{"
+				+ "\"Q1\":{\"type\":\"item\",\"id\":\"Q1\",\"lastrevid\":1},"
+				+ "\"Q2\":{\"type\":\"item\",\"id\":\"Q2\",\"lastrevid\":2}}}");
+		parameters = new HashMap<String, String>();
+		setStandardParameters(parameters);
+		parameters.put("ids", "Q2");
+		setItemResponse(parameters, 2, "Q2");
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments("Q1",
+				"Q2");
+
+		assertEquals(1, results.get("Q1").getRevisionId());
+		assertEquals(2, results.get("Q2").getRevisionId());
+	}
+
+	@Test
+	public void testCacheOfflineMode() throws IOException,
+			MediaWikiApiErrorException {
+		EntityDocumentCache cache = new EntityDocumentCache(
+				Datamodel.SITE_WIKIDATA, 10);
+		wdf.setEntityDocumentCache(cache);
+		setItemResources("Q1", "Q1");
+		wdf.getEntityDocument("Q1");
+		con.webResources.clear();
+		// stale entries are used without validation when offline
+		cache.setTimeToLive(0);
+		cache.setOfflineMode(true);
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments("Q1",
+				"Q2");
+
+		assertEquals(Collections.singleton("Q1"), results.keySet());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetMaxListSizeInvalid() {
+		wdf.setMaxListSize(0);
+	}
+
 	@Test
 	public void testWikidataDataFetcher() throws IOException {
 		WikibaseDataFetcher wbdf = WikibaseDataFetcher.getWikidataDataFetcher();
@@ -157,6 +330,34 @@ public class WikibaseDataFetcherTest {
 				wbdf.wbGetEntitiesAction.connection.apiBaseUrl);
 	}
 
+	/**
+	 * Mocks the response to a request for the given ids, containing a minimal
+	 * item document for each of the given items.
+	 */
+	private void setItemResources(String ids, String... itemIds) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		setStandardParameters(parameters);
+		parameters.put("ids", ids);
+		setItemResponse(parameters, 1, itemIds);
+	}
+
+	private void setItemResponse(Map<String, String> parameters,
+			long revisionId, String... itemIds) {
+		StringBuilder builder = new StringBuilder("{\"entities\":{");
+		for (int i = 0; i < itemIds.length; i++) {
+			if (i > 0) {
+				builder.append(",");
+			}
+			builder.append("\"").append(itemIds[i])
+					.append("\":{\"type\":\"item\",\"id\":\"")
+					.append(itemIds[i]).append("\",\"lastrevid\":")
+					.append(revisionId)
+					.append(",\"labels\":{},\"claims\":{},\"sitelinks\":{}}");
+		}
+		builder.append("},\"success\":1}");
+		con.setWebResource(parameters, builder.toString());
+	}
+
 	private void setStandardParameters(Map<String, String> parameters) {
 		parameters.put("action", "wbgetentities");
 		parameters.put("format", "json");
@@ -73,4 +73,14 @@ public class MediaWikiApiErrorHandlerTest {
 				"Waiting for 10.64.16.27: 2 seconds lagged");
 	}
 
+	@Test
+	public void testMaxlagErrorLag() {
+		MaxlagErrorException e = new MaxlagErrorException(
+				"Waiting for 10.64.16.27: 2.5 seconds lagged");
+		assertEquals(2.5, e.getLag(), 0.0001);
+		assertEquals(-1, e.getRetryAfter());
+		assertEquals(-1, new MaxlagErrorException("no details").getLag(),
+				0.0001);
+	}
+
 }